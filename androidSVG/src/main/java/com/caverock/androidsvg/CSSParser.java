@@ -24,6 +24,8 @@ import com.caverock.androidsvg.SVG.SvgObject;
 import com.caverock.androidsvg.SVGParser.TextScanner;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -217,10 +219,12 @@ class CSSParser
    static class  Ruleset
    {
       private List<Rule>  rules = null;
+      private RuleIndex   index = null;   // Built on first use, discarded when the rules change
 
       // Add a rule to the ruleset. The position at which it is inserted is determined by its specificity value.
       void  add(Rule rule)
       {
+         this.index = null;
          if (this.rules == null)
             this.rules = new ArrayList<>();
          for (int i = 0; i < rules.size(); i++)
@@ -267,6 +271,7 @@ class CSSParser
       {
          if (this.rules == null)
             return;
+         this.index = null;
          Iterator<Rule> iter = this.rules.iterator();
          while (iter.hasNext()) {
             if (iter.next().source == sourceToBeRemoved)
@@ -274,6 +279,36 @@ class CSSParser
          }
       }
 
+      /*
+       * Return the rules that match the given element, in the order they are to be applied.
+       * Only the rules whose rightmost simple selector can match the element are checked.
+       */
+      List<Rule>  getMatchingRules(RuleMatchContext ruleMatchContext, SvgElementBase obj)
+      {
+         if (this.rules == null)
+            return Collections.emptyList();
+         if (this.index == null)
+            this.index = new RuleIndex(this.rules);
+
+         BitSet  candidates = this.index.getCandidates(obj);
+         if (candidates.isEmpty())
+            return Collections.emptyList();
+
+         List<SvgContainer>  ancestors = getAncestors(obj);
+         List<Rule>          result = null;
+         for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+         {
+            Rule  rule = this.rules.get(i);
+            if (ruleMatch(ruleMatchContext, rule.selector, ancestors, obj))
+            {
+               if (result == null)
+                  result = new ArrayList<>();
+               result.add(rule);
+            }
+         }
+         return (result != null) ? result : Collections.<Rule>emptyList();
+      }
+
       @Override
       public String toString()
       {
@@ -287,6 +322,88 @@ class CSSParser
    }
 
 
+   /*
+    * The positions of the rules of a Ruleset, grouped by the rightmost simple selector of each rule:
+    * by id, by class, by element name, or as universal if it has none of those.
+    * An element can only match the rules in the groups of its own id, classes and name, and the universal ones.
+    */
+   private static class  RuleIndex
+   {
+      private final Map<String, BitSet>  byId = new HashMap<>();
+      private final Map<String, BitSet>  byClass = new HashMap<>();
+      private final Map<String, BitSet>  byTag = new HashMap<>();
+      private final BitSet               universal = new BitSet();
+
+      RuleIndex(List<Rule> rules)
+      {
+         for (int i = 0; i < rules.size(); i++)
+         {
+            Selector  selector = rules.get(i).selector;
+            if (selector.isEmpty()) {
+               universal.set(i);
+               continue;
+            }
+            SimpleSelector  sel = selector.get(selector.size() - 1);
+
+            String  id = null;
+            String  className = null;
+            if (sel.attribs != null)
+            {
+               for (Attrib attr: sel.attribs)
+               {
+                  if (attr.name.equals(ID))
+                     id = attr.value;
+                  else if (attr.name.equals(CLASS) && className == null)
+                     className = attr.value;
+               }
+            }
+
+            // Use the most selective part
+            if (id != null)
+               add(byId, id, i);
+            else if (className != null)
+               add(byClass, className, i);
+            else if (sel.tag != null)
+               add(byTag, sel.tag, i);
+            else
+               universal.set(i);
+         }
+      }
+
+      private static void  add(Map<String, BitSet> map, String key, int position)
+      {
+         BitSet  positions = map.get(key);
+         if (positions == null) {
+            positions = new BitSet();
+            map.put(key, positions);
+         }
+         positions.set(position);
+      }
+
+      /*
+       * The positions of the rules that may match the element.
+       */
+      BitSet  getCandidates(SvgElementBase obj)
+      {
+         BitSet  result = (BitSet) universal.clone();
+         if (obj.id != null)
+            or(result, byId.get(obj.id));
+         if (obj.classNames != null) {
+            for (String className: obj.classNames)
+               or(result, byClass.get(className));
+         }
+         or(result, byTag.get(obj.getNodeName().toLowerCase(Locale.US)));
+         return result;
+      }
+
+      private static void  or(BitSet result, BitSet positions)
+      {
+         if (positions != null)
+            result.or(positions);
+      }
+   }
+
+
    static enum  Source
    {
       Document,
@@ -1340,14 +1457,31 @@ class CSSParser
     */
    static boolean  ruleMatch(RuleMatchContext ruleMatchContext, Selector selector, SvgElementBase obj)
    {
-      // Build the list of ancestor objects
+      return ruleMatch(ruleMatchContext, selector, getAncestors(obj), obj);
+   }
+
+
+   /*
+    * Build the list of ancestor objects, from the root down to the parent of obj.
+    */
+   private static List<SvgContainer>  getAncestors(SvgElementBase obj)
+   {
       List<SvgContainer> ancestors = new ArrayList<>();
       SvgContainer  parent = obj.parent;
       while (parent != null) {
-         ancestors.add(0, parent);
+         ancestors.add(parent);
          parent = ((SvgObject) parent).parent;
       }
-      
+      Collections.reverse(ancestors);
+      return ancestors;
+   }
+
+
+   /*
+    * As above, with the ancestors of obj already known. Lets them be shared by all the rules checked for obj.
+    */
+   private static boolean  ruleMatch(RuleMatchContext ruleMatchContext, Selector selector, List<SvgContainer> ancestors, SvgElementBase obj)
+   {
       int  ancestorsPos = ancestors.size() - 1;
 
       // Check the most common case first as a shortcut.
@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -103,6 +104,11 @@ public class SVG
    // CSS rules
    private Ruleset  cssRules = new Ruleset();
 
+   // The CSS rules matching each element, kept between renders for as long as the rules don't change
+   private Map<SvgElementBase, List<CSSParser.Rule>>  matchingRules = new IdentityHashMap<>();
+   private List<CSSParser.Rule>  matchingRulesSource = null;   // the rules the matches were found in
+   private SvgElementBase        matchingRulesTarget = null;   // the :target element they were found for
+
    // Map from id attribute to element
    private Map<String, SvgElementBase> idToElementMap = new HashMap<>();
 
@@ -1023,6 +1029,37 @@ public class SVG
    }
 
 
+   /*
+    * Called at the start of a render. Forgets the matching rules of the elements if the rules,
+    * or the :target element, are not the ones they were found for.
+    */
+   void  checkMatchingCSSRules(CSSParser.RuleMatchContext ruleMatchContext)
+   {
+      List<CSSParser.Rule>  rules = this.cssRules.getRules();
+      SvgElementBase        target = (ruleMatchContext != null) ? ruleMatchContext.targetElement : null;
+
+      boolean  sameRules = (rules == null) ? (matchingRulesSource == null || matchingRulesSource.isEmpty())
+                                           : rules.equals(matchingRulesSource);
+      if (sameRules && target == matchingRulesTarget)
+         return;
+
+      this.matchingRules.clear();
+      this.matchingRulesSource = (rules != null) ? new ArrayList<>(rules) : null;
+      this.matchingRulesTarget = target;
+   }
+
+
+   List<CSSParser.Rule>  getMatchingCSSRules(CSSParser.RuleMatchContext ruleMatchContext, SvgElementBase obj)
+   {
+      List<CSSParser.Rule>  result = this.matchingRules.get(obj);
+      if (result == null) {
+         result = this.cssRules.getMatchingRules(ruleMatchContext, obj);
+         this.matchingRules.put(obj, result);
+      }
+      return result;
+   }
+
+
    //===============================================================================
    // Object sub-types used in the SVG object tree
 
@@ -1126,7 +1163,7 @@ public class SVG
                                                           | SPECIFIED_VIEWPORT_FILL_OPACITY | SPECIFIED_VECTOR_EFFECT;
    */
 
-   static class  Style implements Cloneable
+   static class  Style
    {
       // Which properties have been explicitly specified by this element
       long       specifiedFlags = 0;
@@ -1186,6 +1223,9 @@ public class SVG
       RenderQuality  imageRendering;
 
 
+      // Shared, so that resetting a style does not box a new Float each time
+      private static final Float  OPAQUE = 1f;
+
       static final int  FONT_WEIGHT_NORMAL = 400;
       static final int  FONT_WEIGHT_BOLD = 700;
       static final int  FONT_WEIGHT_LIGHTER = -1;
@@ -1309,26 +1349,63 @@ public class SVG
          this.overflow = isRootSVG ? Boolean.TRUE : Boolean.FALSE;
          this.clip = null;
          this.clipPath = null;
-         this.opacity = 1f;
+         this.opacity = OPAQUE;
          this.stopColor = Colour.BLACK;
-         this.stopOpacity = 1f;
+         this.stopOpacity = OPAQUE;
          this.mask = null;
          this.solidColor = null;
-         this.solidOpacity = 1f;
+         this.solidOpacity = OPAQUE;
          this.viewportFill = null;
-         this.viewportFillOpacity = 1f;
+         this.viewportFillOpacity = OPAQUE;
          this.vectorEffect = VectorEffect.None;
       }
 
 
-      @Override
-      protected Object  clone() throws CloneNotSupportedException
-      {
-         Style obj = (Style) super.clone();
-         if (strokeDashArray != null) {
-            obj.strokeDashArray = strokeDashArray.clone();
-         }
-         return obj;
+      /*
+       * Make this style a copy of another one. Used instead of creating a new copy, so that the
+       * renderer can reuse its styles. The values are shared: they are replaced, never modified.
+       */
+      void  set(Style other)
+      {
+         this.specifiedFlags = other.specifiedFlags;
+         this.fill = other.fill;
+         this.fillRule = other.fillRule;
+         this.fillOpacity = other.fillOpacity;
+         this.stroke = other.stroke;
+         this.strokeOpacity = other.strokeOpacity;
+         this.strokeWidth = other.strokeWidth;
+         this.strokeLineCap = other.strokeLineCap;
+         this.strokeLineJoin = other.strokeLineJoin;
+         this.strokeMiterLimit = other.strokeMiterLimit;
+         this.strokeDashArray = other.strokeDashArray;
+         this.strokeDashOffset = other.strokeDashOffset;
+         this.opacity = other.opacity;
+         this.color = other.color;
+         this.fontFamily = other.fontFamily;
+         this.fontSize = other.fontSize;
+         this.fontWeight = other.fontWeight;
+         this.fontStyle = other.fontStyle;
+         this.textDecoration = other.textDecoration;
+         this.direction = other.direction;
+         this.textAnchor = other.textAnchor;
+         this.overflow = other.overflow;
+         this.clip = other.clip;
+         this.markerStart = other.markerStart;
+         this.markerMid = other.markerMid;
+         this.markerEnd = other.markerEnd;
+         this.display = other.display;
+         this.visibility = other.visibility;
+         this.stopColor = other.stopColor;
+         this.stopOpacity = other.stopOpacity;
+         this.clipPath = other.clipPath;
+         this.clipRule = other.clipRule;
+         this.mask = other.mask;
+         this.solidColor = other.solidColor;
+         this.solidOpacity = other.solidOpacity;
+         this.viewportFill = other.viewportFill;
+         this.viewportFillOpacity = other.viewportFillOpacity;
+         this.vectorEffect = other.vectorEffect;
+         this.imageRendering = other.imageRendering;
       }
    }
 
@@ -1769,6 +1846,8 @@ public class SVG
       PathDefinition  d;
       Float           pathLength;
 
+      android.graphics.Path  renderPath = null;   // d converted by the renderer, kept for the next render
+
       @Override
       String  getNodeName() { return "path"; }
    }
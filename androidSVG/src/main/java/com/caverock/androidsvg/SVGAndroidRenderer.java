@@ -116,8 +116,38 @@ class SVGAndroidRenderer
 
    private CSSParser.RuleMatchContext  ruleMatchContext = null;
 
+   // Objects reused from one render to the next
+   private final RenderPool  pool;
 
-   private class RendererState
+   private static final ThreadLocal<RenderPool>  renderPools = new ThreadLocal<RenderPool>()
+   {
+      @Override
+      protected RenderPool  initialValue()
+      {
+         return new RenderPool();
+      }
+   };
+
+
+   /*
+    * The states, matrices and paths released by the renderers on a thread, ready to be reused,
+    * so that rendering a document that has already been rendered does not allocate per element.
+    * A renderer is only used on one thread, so each thread has its own.
+    */
+   private static class RenderPool
+   {
+      final List<RendererState>  states = new ArrayList<>();
+      final List<Matrix>         matrices = new ArrayList<>();
+      final List<Path>           paths = new ArrayList<>();
+
+      // Scratch objects, for use within a single method
+      final float[]  points = new float[8];
+      final RectF    rect = new RectF();
+      final Box      box = new Box(0, 0, 0, 0);
+   }
+
+
+   private static class RendererState
    {
       Style    style;
       boolean  hasFill;
@@ -144,26 +174,27 @@ class SVGAndroidRenderer
       }
 
       RendererState(RendererState copy)
+      {
+         fillPaint = new Paint();
+         strokePaint = new Paint();
+         style = new Style();
+         set(copy);
+      }
+
+      /*
+       * Make this state a copy of another one, reusing its Paints and Style.
+       * The view port and view box are shared, as they are replaced in a state, never modified.
+       */
+      void  set(RendererState copy)
       {
          hasFill = copy.hasFill;
          hasStroke = copy.hasStroke;
-         fillPaint = new Paint(copy.fillPaint);
-         strokePaint = new Paint(copy.strokePaint);
-         if (copy.viewPort != null)
-            viewPort = new Box(copy.viewPort);
-         if (copy.viewBox != null)
-            viewBox = new Box(copy.viewBox);
+         fillPaint.set(copy.fillPaint);
+         strokePaint.set(copy.strokePaint);
+         viewPort = copy.viewPort;
+         viewBox = copy.viewBox;
          spacePreserve = copy.spacePreserve;
-         try
-         {
-            style = (Style) copy.style.clone();
-         }
-         catch (CloneNotSupportedException e)
-         {
-            // Should never happen
-            Log.e(TAG, "Unexpected clone error", e);
-            style = Style.getDefaultStyle();
-         }
+         style.set(copy.style);
       }
    }
 
@@ -202,6 +233,7 @@ class SVGAndroidRenderer
    {
       this.canvas = canvas;
       this.dpi = defaultDPI;
+      this.pool = renderPools.get();
    }
 
 
@@ -287,6 +319,7 @@ class SVGAndroidRenderer
          this.ruleMatchContext = new CSSParser.RuleMatchContext();
          this.ruleMatchContext.targetElement = document.getElementById(renderOptions.targetId);
       }
+      document.checkMatchingCSSRules(this.ruleMatchContext);
 
       // Initialise the state
       resetState();
@@ -370,8 +403,10 @@ class SVGAndroidRenderer
          parentPush(obj);
       }
 
-      for (SVG.SvgObject child: obj.getChildren()) {
-         render(child);
+      // Indexed, rather than with an Iterator, as this runs for every container on every render
+      List<SvgObject>  children = obj.getChildren();
+      for (int i = 0; i < children.size(); i++) {
+         render(children.get(i));
       }
 
       if (isContainer) {
@@ -389,7 +424,7 @@ class SVGAndroidRenderer
       canvas.save();
       // Save style state
       stateStack.push(state);
-      state = new RendererState(state);
+      state = obtainState(state);
    }
 
 
@@ -398,10 +433,60 @@ class SVGAndroidRenderer
       // Restore matrix and clip
       canvas.restore();
       // Restore style state
+      pool.states.add(state);
       state = stateStack.pop();
    }
 
 
+   // A copy of the given state, reusing a released one if possible. Released by statePop().
+   private RendererState  obtainState(RendererState copy)
+   {
+      int  count = pool.states.size();
+      if (count == 0)
+         return new RendererState(copy);
+      RendererState  result = pool.states.remove(count - 1);
+      result.set(copy);
+      return result;
+   }
+
+
+   // An identity matrix, to be given back with releaseMatrix()
+   private Matrix  obtainMatrix()
+   {
+      int  count = pool.matrices.size();
+      if (count == 0)
+         return new Matrix();
+      Matrix  result = pool.matrices.remove(count - 1);
+      result.reset();
+      return result;
+   }
+
+
+   private void  releaseMatrix(Matrix matrix)
+   {
+      pool.matrices.add(matrix);
+   }
+
+
+   // An empty path, to be given back with releasePath()
+   private Path  obtainPath()
+   {
+      int  count = pool.paths.size();
+      if (count == 0)
+         return new Path();
+      Path  result = pool.paths.remove(count - 1);
+      result.rewind();
+      result.setFillType(Path.FillType.WINDING);
+      return result;
+   }
+
+
+   private void  releasePath(Path path)
+   {
+      pool.paths.add(path);
+   }
+
+
    //==============================================================================
 
 
@@ -409,14 +494,16 @@ class SVGAndroidRenderer
    private void  parentPush(SvgContainer obj)
    {
       parentStack.push(obj);
-      matrixStack.push(canvas.getMatrix());
+      Matrix  matrix = obtainMatrix();
+      canvas.getMatrix(matrix);
+      matrixStack.push(matrix);
    }
 
 
    private void  parentPop()
    {
       parentStack.pop();
-      matrixStack.pop();
+      releaseMatrix(matrixStack.pop());
    }
 
 
@@ -435,12 +522,9 @@ class SVGAndroidRenderer
       // Apply the styles from any CSS files or <style> elements
       if (document.hasCSSRules())
       {
-         for (CSSParser.Rule rule: document.getCSSRules())
-         {
-            if (CSSParser.ruleMatch(this.ruleMatchContext, rule.selector, obj)) {
-               updateStyle(state, rule.style);
-            }
-         }
+         List<CSSParser.Rule>  rules = document.getMatchingCSSRules(this.ruleMatchContext, obj);
+         for (int i = 0; i < rules.size(); i++)
+            updateStyle(state, rules.get(i).style);
       }
 
       // Apply the styles defined by the 'style' attribute. They have the highest precedence.
@@ -495,17 +579,20 @@ class SVGAndroidRenderer
          // It will be rendered at the same width no matter how the document contents are transformed.
 
          // First step: get the current canvas matrix
-         Matrix  currentMatrix = canvas.getMatrix();
+         Matrix  currentMatrix = obtainMatrix();
+         canvas.getMatrix(currentMatrix);
          // Transform the path using this transform
-         Path  transformedPath = new Path();
+         Path  transformedPath = obtainPath();
          path.transform(currentMatrix, transformedPath);
          // Reset the current canvas transform completely
-         canvas.setMatrix(new Matrix());
+         canvas.setMatrix(null);
 
-         // If there is a shader (such as a gradient), we need to update its transform also
+         // If there is a shader (such as a gradient), we need to update its transform also.
+         // Not pooled: older versions of Shader keep a reference to the matrix they are given.
          Shader  shader = state.strokePaint.getShader();
-         Matrix  currentShaderMatrix = new Matrix();
+         Matrix  currentShaderMatrix = null;
          if (shader != null) {
+            currentShaderMatrix = new Matrix();
             shader.getLocalMatrix(currentShaderMatrix);
             Matrix  newShaderMatrix = new Matrix(currentShaderMatrix);
             newShaderMatrix.postConcat(currentMatrix);
@@ -520,6 +607,9 @@ class SVGAndroidRenderer
          // And reset the shader matrix also
          if (shader != null)
             shader.setLocalMatrix(currentShaderMatrix);
+
+         releasePath(transformedPath);
+         releaseMatrix(currentMatrix);
       }
       else
       {
@@ -550,6 +640,14 @@ class SVGAndroidRenderer
    }
 
 
+   // Without arguments. Avoids allocating an empty varargs array for every element rendered.
+   private static void  debug(String message)
+   {
+      if (LibConfig.DEBUG)
+         Log.d(TAG, message);
+   }
+
+
    /*
    private static void  info(String format, Object... args)
    {
@@ -687,18 +785,22 @@ class SVGAndroidRenderer
          return;
 
       // Convert the corners of the child bbox to world space
-      Matrix  m = new Matrix();
+      Matrix  m = obtainMatrix();
+      Matrix  canvasMatrix = obtainMatrix();
       // Get the inverse of the child transform
       if (matrixStack.peek().invert(m)) {
-         float[] pts = {obj.boundingBox.minX, obj.boundingBox.minY,
-                        obj.boundingBox.maxX(), obj.boundingBox.minY,
-                        obj.boundingBox.maxX(), obj.boundingBox.maxY(),
-                        obj.boundingBox.minX, obj.boundingBox.maxY()};
+         float[] pts = pool.points;
+         pts[0] = obj.boundingBox.minX;    pts[1] = obj.boundingBox.minY;
+         pts[2] = obj.boundingBox.maxX();  pts[3] = obj.boundingBox.minY;
+         pts[4] = obj.boundingBox.maxX();  pts[5] = obj.boundingBox.maxY();
+         pts[6] = obj.boundingBox.minX;    pts[7] = obj.boundingBox.maxY();
          // Now concatenate the parent's matrix to create a child-to-parent transform
-         m.preConcat(canvas.getMatrix());
+         canvas.getMatrix(canvasMatrix);
+         m.preConcat(canvasMatrix);
          m.mapPoints(pts);
          // Finally, find the bounding box of the transformed points
-         RectF  rect = new RectF(pts[0], pts[1], pts[0], pts[1]);
+         RectF  rect = pool.rect;
+         rect.set(pts[0], pts[1], pts[0], pts[1]);
          for (int i=2; i<=6; i+=2) {
             if (pts[i] < rect.left) rect.left = pts[i]; 
             if (pts[i] > rect.right) rect.right = pts[i]; 
@@ -707,11 +809,19 @@ class SVGAndroidRenderer
          }
          // Update the parent bounding box with the transformed bbox
          SvgElement  parent = (SvgElement) parentStack.peek();
-         if (parent.boundingBox == null)
+         if (parent.boundingBox == null) {
             parent.boundingBox = Box.fromLimits(rect.left, rect.top, rect.right, rect.bottom);
-         else
-            parent.boundingBox.union(Box.fromLimits(rect.left, rect.top, rect.right, rect.bottom));
+         } else {
+            Box  childBox = pool.box;
+            childBox.minX = rect.left;
+            childBox.minY = rect.top;
+            childBox.width = rect.right - rect.left;
+            childBox.height = rect.bottom - rect.top;
+            parent.boundingBox.union(childBox);
+         }
       }
+      releaseMatrix(canvasMatrix);
+      releaseMatrix(m);
    }
 
 
@@ -728,7 +838,7 @@ class SVGAndroidRenderer
 
       // Save style state
       stateStack.push(state);
-      state = new RendererState(state);
+      state = obtainState(state);
 
       if (state.style.mask != null) {
          SVG.SvgObject  ref = document.resolveIRI(state.style.mask);
@@ -1074,7 +1184,10 @@ class SVGAndroidRenderer
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = (new PathConverter(obj.d)).getPath();
+      // The path data does not change once parsed, so it is only converted on the first render
+      if (obj.renderPath == null)
+         obj.renderPath = (new PathConverter(obj.d)).getPath();
+      Path  path = obj.renderPath;
 
       if (obj.boundingBox == null) {
          obj.boundingBox = calculatePathBounds(path);
@@ -1128,7 +1241,7 @@ class SVGAndroidRenderer
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      Path  path = makePathAndBoundingBox(obj, obtainPath());
       updateParentBoundingBox(obj);
 
       checkForGradientsAndPatterns(obj);
@@ -1144,6 +1257,8 @@ class SVGAndroidRenderer
 
       if (compositing)
          popLayer(obj);
+
+      releasePath(path);
    }
 
 
@@ -1167,7 +1282,7 @@ class SVGAndroidRenderer
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      Path  path = makePathAndBoundingBox(obj, obtainPath());
       updateParentBoundingBox(obj);
 
       checkForGradientsAndPatterns(obj);
@@ -1182,6 +1297,8 @@ class SVGAndroidRenderer
 
       if (compositing)
          popLayer(obj);
+
+      releasePath(path);
    }
 
 
@@ -1205,7 +1322,7 @@ class SVGAndroidRenderer
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      Path  path = makePathAndBoundingBox(obj, obtainPath());
       updateParentBoundingBox(obj);
 
       checkForGradientsAndPatterns(obj);
@@ -1220,6 +1337,8 @@ class SVGAndroidRenderer
 
       if (compositing)
          popLayer(obj);
+
+      releasePath(path);
    }
 
 
@@ -1242,7 +1361,7 @@ class SVGAndroidRenderer
       if (obj.transform != null)
          canvas.concat(obj.transform);
 
-      Path  path = makePathAndBoundingBox(obj);
+      Path  path = makePathAndBoundingBox(obj, obtainPath());
       updateParentBoundingBox(obj);
 
       checkForGradientsAndPatterns(obj);
@@ -1256,6 +1375,8 @@ class SVGAndroidRenderer
 
       if (compositing)
          popLayer(obj);
+
+      releasePath(path);
    }
 
 
@@ -1297,7 +1418,7 @@ class SVGAndroidRenderer
       if (numPoints < 2)
          return;
 
-      Path  path = makePathAndBoundingBox(obj);
+      Path  path = makePathAndBoundingBox(obj, obtainPath());
       updateParentBoundingBox(obj);
 
       path.setFillType(getFillTypeFromState());
@@ -1316,6 +1437,8 @@ class SVGAndroidRenderer
 
       if (compositing)
          popLayer(obj);
+
+      releasePath(path);
    }
 
 
@@ -1382,7 +1505,7 @@ class SVGAndroidRenderer
       if (numPoints < 2)
          return;
 
-      Path  path = makePathAndBoundingBox(obj);
+      Path  path = makePathAndBoundingBox(obj, obtainPath());
       updateParentBoundingBox(obj);
 
       checkForGradientsAndPatterns(obj);
@@ -1399,6 +1522,8 @@ class SVGAndroidRenderer
 
       if (compositing)
          popLayer(obj);
+
+      releasePath(path);
    }
 
 
@@ -3802,13 +3927,13 @@ class SVGAndroidRenderer
                obj.boundingBox = calculatePathBounds(path);
          }
          else if (obj instanceof SVG.Rect)
-            path = makePathAndBoundingBox((SVG.Rect) obj);
+            path = makePathAndBoundingBox((SVG.Rect) obj, new Path());
          else if (obj instanceof SVG.Circle)
-            path = makePathAndBoundingBox((SVG.Circle) obj);
+            path = makePathAndBoundingBox((SVG.Circle) obj, new Path());
          else if (obj instanceof SVG.Ellipse)
-            path = makePathAndBoundingBox((SVG.Ellipse) obj);
+            path = makePathAndBoundingBox((SVG.Ellipse) obj, new Path());
          else if (obj instanceof SVG.PolyLine)
-            path = makePathAndBoundingBox((SVG.PolyLine) obj);
+            path = makePathAndBoundingBox((SVG.PolyLine) obj, new Path());
 
          if (path == null)
             return null;
@@ -4017,13 +4142,13 @@ class SVGAndroidRenderer
 
       Path  path;
       if (obj instanceof SVG.Rect)
-         path = makePathAndBoundingBox((SVG.Rect) obj);
+         path = makePathAndBoundingBox((SVG.Rect) obj, new Path());
       else if (obj instanceof SVG.Circle)
-         path = makePathAndBoundingBox((SVG.Circle) obj);
+         path = makePathAndBoundingBox((SVG.Circle) obj, new Path());
       else if (obj instanceof SVG.Ellipse)
-         path = makePathAndBoundingBox((SVG.Ellipse) obj);
+         path = makePathAndBoundingBox((SVG.Ellipse) obj, new Path());
       else if (obj instanceof SVG.PolyLine)
-         path = makePathAndBoundingBox((SVG.PolyLine) obj);
+         path = makePathAndBoundingBox((SVG.PolyLine) obj, new Path());
       else
          return;
 
@@ -4149,7 +4274,8 @@ class SVGAndroidRenderer
    //==============================================================================
 
 
-   private Path  makePathAndBoundingBox(Line obj)
+   // The makePathAndBoundingBox() methods add the shape to the given empty path, and return it.
+   private Path  makePathAndBoundingBox(Line obj, Path p)
    {
       float x1 = (obj.x1 == null) ? 0 : obj.x1.floatValueX(this);
       float y1 = (obj.y1 == null) ? 0 : obj.y1.floatValueY(this);
@@ -4160,14 +4286,13 @@ class SVGAndroidRenderer
          obj.boundingBox = new Box(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2-x1), Math.abs(y2-y1));
       }
 
-      Path  p = new Path();
       p.moveTo(x1, y1);
       p.lineTo(x2, y2);
       return p;
    }
 
 
-   private Path  makePathAndBoundingBox(Rect obj)
+   private Path  makePathAndBoundingBox(Rect obj, Path p)
    {
       float x, y, w, h, rx, ry;
 
@@ -4196,7 +4321,6 @@ class SVGAndroidRenderer
       float  right = x + w;
       float  bottom = y + h;
 
-      Path  p = new Path();
       if (rx == 0 || ry == 0)
       {
          // Simple rect
@@ -4229,7 +4353,7 @@ class SVGAndroidRenderer
    }
 
 
-   private Path makePathAndBoundingBox(SVG.Circle obj)
+   private Path makePathAndBoundingBox(SVG.Circle obj, Path p)
    {
       float  cx = (obj.cx != null) ? obj.cx.floatValueX(this) : 0f;
       float  cy = (obj.cy != null) ? obj.cy.floatValueY(this) : 0f;
@@ -4246,7 +4370,6 @@ class SVGAndroidRenderer
 
       float  cp = r * BEZIER_ARC_FACTOR;
 
-      Path  p = new Path();
       p.moveTo(cx, top);
       p.cubicTo(cx+cp, top, right, cy-cp, right, cy);
       p.cubicTo(right, cy+cp, cx+cp, bottom, cx, bottom);
@@ -4257,7 +4380,7 @@ class SVGAndroidRenderer
    }
 
 
-   private Path makePathAndBoundingBox(SVG.Ellipse obj)
+   private Path makePathAndBoundingBox(SVG.Ellipse obj, Path p)
    {
       float  cx = (obj.cx != null) ? obj.cx.floatValueX(this) : 0f;
       float  cy = (obj.cy != null) ? obj.cy.floatValueY(this) : 0f;
@@ -4276,7 +4399,6 @@ class SVGAndroidRenderer
       float  cpx = rx * BEZIER_ARC_FACTOR;
       float  cpy = ry * BEZIER_ARC_FACTOR;
 
-      Path  p = new Path();
       p.moveTo(cx, top);
       p.cubicTo(cx+cpx, top, right, cy-cpy, right, cy);
       p.cubicTo(right, cy+cpy, cx+cpx, bottom, cx, bottom);
@@ -4287,10 +4409,8 @@ class SVGAndroidRenderer
    }
 
 
-   private Path makePathAndBoundingBox(SVG.PolyLine obj)
+   private Path makePathAndBoundingBox(SVG.PolyLine obj, Path path)
    {
-      Path  path = new Path();
-
       path.moveTo(obj.points[0], obj.points[1]);
       for (int i=2; i<obj.points.length; i+=2) {
          path.lineTo(obj.points[i], obj.points[i+1]);
@@ -0,0 +1,204 @@
+package com.caverock.androidsvg;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Picture;
+import android.os.Build;
+
+/**
+ * Process-wide cache of the SVG documents loaded by {@link SVGImageView}, and of the Pictures
+ * rendered from them.
+ *
+ * The documents are keyed by resource id or asset file name, and bounded by an estimate of their
+ * memory use. The Pictures are keyed by document, CSS and size, and bounded by count.
+ * Both are least-recently-used caches, trimmed when the system asks for memory.
+ */
+public final class SVGCache
+{
+   /**
+    * The parsed document takes roughly this many times the size of its source.
+    */
+   private static final int     DOCUMENT_SIZE_FACTOR = 4;
+   private static final long    MAX_DOCUMENT_BYTES = Runtime.getRuntime().maxMemory() / 32;
+   private static final int     MAX_PICTURES = 16;
+
+   // In access order, the eldest entry is the least recently used.
+   private static final Map<String, SVG>      documents = new LinkedHashMap<String, SVG>(16, 0.75f, true);
+   private static final Map<String, Long>     documentWeights = new HashMap<String, Long>();
+   private static final Map<String, Picture>  pictures = new LinkedHashMap<String, Picture>(16, 0.75f, true);
+   private static long     documentBytes = 0;
+   private static boolean  callbacksRegistered = false;
+
+
+   private SVGCache()
+   {
+   }
+
+
+   /**
+    * Remove all the documents and Pictures.
+    */
+   public static synchronized void  clear()
+   {
+      documents.clear();
+      documentWeights.clear();
+      documentBytes = 0;
+      pictures.clear();
+   }
+
+
+   //===============================================================================================
+
+
+   static String  getResourceKey(int resourceId)
+   {
+      return "res:" + resourceId;
+   }
+
+
+   static String  getAssetKey(String filename)
+   {
+      return "asset:" + filename;
+   }
+
+
+   /*
+    * The key of a Picture rendered from the document with the given CSS, at the document size.
+    */
+   static String  getPictureKey(String documentKey, SVG svg, String css)
+   {
+      return documentKey + '|' + svg.getDocumentWidth() + 'x' + svg.getDocumentHeight() + '|' + (css == null ? "" : css);
+   }
+
+
+   static synchronized SVG  getDocument(String key)
+   {
+      return documents.get(key);
+   }
+
+
+   /*
+    * @param sourceLength Length of the SVG source, in bytes. Used to estimate the memory use.
+    */
+   static synchronized void  putDocument(Context context, String key, SVG svg, int sourceLength)
+   {
+      registerCallbacks(context);
+
+      long  weight = (long) sourceLength * DOCUMENT_SIZE_FACTOR;
+      if (weight > MAX_DOCUMENT_BYTES)
+         return;
+
+      removeDocument(key);
+      documents.put(key, svg);
+      documentWeights.put(key, weight);
+      documentBytes += weight;
+
+      // evict the least recently used.
+      Iterator<String>  it = documents.keySet().iterator();
+      while (documentBytes > MAX_DOCUMENT_BYTES && it.hasNext())
+      {
+         String  eldest = it.next();
+         Long  eldestWeight = documentWeights.remove(eldest);
+         if (eldestWeight != null)
+            documentBytes -= eldestWeight;
+         it.remove();
+      }
+   }
+
+
+   static synchronized Picture  getPicture(String key)
+   {
+      return pictures.get(key);
+   }
+
+
+   static synchronized void  putPicture(Context context, String key, Picture picture)
+   {
+      registerCallbacks(context);
+
+      pictures.put(key, picture);
+
+      Iterator<String>  it = pictures.keySet().iterator();
+      while (pictures.size() > MAX_PICTURES && it.hasNext())
+      {
+         it.next();
+         it.remove();
+      }
+   }
+
+
+   /*
+    * Pictures are released first, as they are rebuilt from the documents without any parsing.
+    */
+   static synchronized void  trimMemory(int level)
+   {
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+      {
+         clear();
+      }
+      else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+      {
+         pictures.clear();
+      }
+   }
+
+
+   private static void  removeDocument(String key)
+   {
+      if (documents.remove(key) == null)
+         return;
+      Long  weight = documentWeights.remove(key);
+      if (weight != null)
+         documentBytes -= weight;
+   }
+
+
+   /*
+    * ComponentCallbacks2 is available from API 14, so the callbacks are only referenced there.
+    */
+   private static void  registerCallbacks(Context context)
+   {
+      if (callbacksRegistered || context == null)
+         return;
+      callbacksRegistered = true;
+
+      if (Build.VERSION.SDK_INT >= 14)
+         TrimMemoryCallbacks.register(context);
+   }
+
+
+   //===============================================================================================
+
+
+   private static class  TrimMemoryCallbacks implements ComponentCallbacks2
+   {
+      static void  register(Context context)
+      {
+         context.getApplicationContext().registerComponentCallbacks(new TrimMemoryCallbacks());
+      }
+
+      @Override
+      public void  onTrimMemory(int level)
+      {
+         trimMemory(level);
+      }
+
+      @Override
+      public void  onConfigurationChanged(Configuration newConfig)
+      {
+         // nothing to do, the documents are rendered at their own size.
+      }
+
+      @Override
+      public void  onLowMemory()
+      {
+         clear();
+      }
+   }
+}
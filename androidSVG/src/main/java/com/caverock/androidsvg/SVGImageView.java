@@ -17,6 +17,7 @@
 package com.caverock.androidsvg;
 
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
@@ -45,12 +46,20 @@ import android.widget.ImageView;
  *   <dt><code>css</code></dt>
  *   <dd>Optional extra CSS to apply when rendering the SVG</dd>
  * </dl>
+ *
+ * The documents loaded from resources and assets, and the Pictures rendered from them, are kept
+ * in the {@link SVGCache}, so showing the same image again does not parse or render it again.
  */
 @SuppressWarnings("JavaDoc")
 public class SVGImageView extends ImageView
 {
    private SVG            svg = null;
    private RenderOptions  renderOptions = new RenderOptions();
+   private String         css = null;
+   // The cache key of the document, null if it was not loaded from a resource or an asset.
+   private String         documentKey = null;
+   // Incremented on every new image, so that the results of older loads are ignored.
+   private int            loadGeneration = 0;
 
    private static Method  setLayerTypeMethod = null;
 
@@ -96,7 +105,10 @@ public class SVGImageView extends ImageView
          // Check for css attribute
          String  css = a.getString(R.styleable.SVGImageView_css);
          if (css != null)
+         {
+            this.css = css;
             renderOptions.css(css);
+         }
 
          // Check whether svg attribute is a resourceId
          int  resourceId = a.getResourceId(R.styleable.SVGImageView_svg, -1);
@@ -138,7 +150,9 @@ public class SVGImageView extends ImageView
    {
       if (svg == null)
          throw new IllegalArgumentException("Null value passed to setSVG()");
+      loadGeneration++;
       this.svg = svg;
+      this.documentKey = null;
       doRender();
    }
 
@@ -154,7 +168,10 @@ public class SVGImageView extends ImageView
       if (svg == null)
          throw new IllegalArgumentException("Null value passed to setSVG()");
 
+      loadGeneration++;
       this.svg = svg;
+      this.documentKey = null;
+      this.css = css;
       this.renderOptions.css(css);
 
       doRender();
@@ -168,6 +185,7 @@ public class SVGImageView extends ImageView
     */
    public void  setCSS(String css)
    {
+      this.css = css;
       this.renderOptions.css(css);
       doRender();
    }
@@ -181,7 +199,11 @@ public class SVGImageView extends ImageView
    @Override
    public void setImageResource(int resourceId)
    {
-      new LoadResourceTask(getContext(), resourceId).execute();
+      String  key = SVGCache.getResourceKey(resourceId);
+      loadGeneration++;
+      if (setFromCache(key))
+         return;
+      new LoadResourceTask(getContext(), resourceId, key, loadGeneration).execute();
    }
 
 
@@ -220,7 +242,9 @@ public class SVGImageView extends ImageView
       try
       {
          InputStream  is = getContext().getContentResolver().openInputStream(uri);
-         new LoadURITask().execute(is);
+         loadGeneration++;
+         // The content behind a URI can change, so it is not cached.
+         new LoadURITask(null, loadGeneration).execute(is);
          return true;
       }
       catch (FileNotFoundException e)
@@ -233,10 +257,18 @@ public class SVGImageView extends ImageView
 
    private boolean  internalSetImageAsset(String filename)
    {
+      String  key = SVGCache.getAssetKey(filename);
+      if (SVGCache.getDocument(key) != null)
+      {
+         loadGeneration++;
+         return setFromCache(key);
+      }
+
       try
       {
          InputStream  is = getContext().getAssets().open(filename);
-         new LoadURITask().execute(is);
+         loadGeneration++;
+         new LoadURITask(key, loadGeneration).execute(is);
          return true;
       }
       catch (IOException e)
@@ -250,7 +282,9 @@ public class SVGImageView extends ImageView
    private void setFromString(String url)
    {
       try {
+         loadGeneration++;
          this.svg = SVG.getFromString(url);
+         this.documentKey = null;
          doRender();
       } catch (SVGParseException e) {
          // Failed to interpret url as a resource, a filename, or an actual SVG...
@@ -259,6 +293,36 @@ public class SVGImageView extends ImageView
    }
 
 
+   /*
+    * Show the cached document, if there is one. Return true if it worked.
+    */
+   private boolean  setFromCache(String key)
+   {
+      SVG  cached = SVGCache.getDocument(key);
+      if (cached == null)
+         return false;
+
+      this.svg = cached;
+      this.documentKey = key;
+      doRender();
+      return true;
+   }
+
+
+   /*
+    * Show the result of a background load, unless another image was set in the meantime.
+    */
+   private void  setLoaded(SVG svg, String key, int generation)
+   {
+      if (generation != loadGeneration)
+         return;
+
+      this.svg = svg;
+      this.documentKey = (svg != null) ? key : null;
+      doRender();
+   }
+
+
    //===============================================================================================
 
 
@@ -266,41 +330,73 @@ public class SVGImageView extends ImageView
    {
       private Context  context;
       private int      resourceId;
+      private String   key;
+      private int      generation;
 
-      LoadResourceTask(Context context, int resourceId)
+      LoadResourceTask(Context context, int resourceId, String key, int generation)
       {
-         this.context = context;
+         this.context = context.getApplicationContext();
          this.resourceId = resourceId;
+         this.key = key;
+         this.generation = generation;
       }
 
       protected SVG  doInBackground(Integer... params)
       {
+         CountingInputStream  is = new CountingInputStream(context.getResources().openRawResource(resourceId));
          try
          {
-            return SVG.getFromResource(context, resourceId);
+            SVG  svg = SVG.getFromInputStream(is);
+            SVGCache.putDocument(context, key, svg, is.getCount());
+            return svg;
          }
          catch (SVGParseException e)
          {
             Log.e("SVGImageView", String.format("Error loading resource 0x%x: %s", resourceId, e.getMessage()));
          }
+         finally
+         {
+            try
+            {
+               is.close();
+            }
+            catch (IOException e) { /* do nothing */ }
+         }
          return null;
       }
 
       protected void  onPostExecute(SVG svg)
       {
-         SVGImageView.this.svg = svg;
-         doRender();
+         setLoaded(svg, key, generation);
       }
    }
 
 
    private class LoadURITask extends AsyncTask<InputStream, Integer, SVG>
    {
+      private Context  context;
+      private String   key;
+      private int      generation;
+
+      /*
+       * @param key The cache key of the document, null if it is not to be cached.
+       */
+      LoadURITask(String key, int generation)
+      {
+         this.context = getContext().getApplicationContext();
+         this.key = key;
+         this.generation = generation;
+      }
+
       protected SVG  doInBackground(InputStream... is)
       {
          try
          {
-            return SVG.getFromInputStream(is[0]);
+            CountingInputStream  counter = new CountingInputStream(is[0]);
+            SVG  svg = SVG.getFromInputStream(counter);
+            if (key != null)
+               SVGCache.putDocument(context, key, svg, counter.getCount());
+            return svg;
          }
          catch (SVGParseException e)
          {
@@ -319,8 +415,51 @@ public class SVGImageView extends ImageView
 
       protected void  onPostExecute(SVG svg)
       {
-         SVGImageView.this.svg = svg;
-         doRender();
+         setLoaded(svg, key, generation);
+      }
+   }
+
+
+   /*
+    * Counts the bytes read, to estimate the memory used by the parsed document.
+    */
+   private static class CountingInputStream extends FilterInputStream
+   {
+      private int  count = 0;
+
+      CountingInputStream(InputStream in)
+      {
+         super(in);
+      }
+
+      int  getCount()
+      {
+         return count;
+      }
+
+      @Override
+      public int  read() throws IOException
+      {
+         int  b = super.read();
+         if (b != -1)
+            count++;
+         return b;
+      }
+
+      @Override
+      public int  read(byte[] buffer, int offset, int length) throws IOException
+      {
+         int  n = super.read(buffer, offset, length);
+         if (n > 0)
+            count += n;
+         return n;
+      }
+
+      @Override
+      public boolean  markSupported()
+      {
+         // The parser buffers the stream itself, so every byte is counted once.
+         return false;
       }
    }
 
@@ -352,7 +491,22 @@ public class SVGImageView extends ImageView
    {
       if (svg == null)
          return;
-      Picture  picture = this.svg.renderToPicture(renderOptions);
+
+      Picture  picture;
+      if (documentKey != null)
+      {
+         String  pictureKey = SVGCache.getPictureKey(documentKey, svg, css);
+         picture = SVGCache.getPicture(pictureKey);
+         if (picture == null)
+         {
+            picture = this.svg.renderToPicture(renderOptions);
+            SVGCache.putPicture(getContext(), pictureKey, picture);
+         }
+      }
+      else
+      {
+         picture = this.svg.renderToPicture(renderOptions);
+      }
       setSoftwareLayerType();
       setImageDrawable(new PictureDrawable(picture));
    }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.svg;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.caverock.androidsvg.SVG;
+import com.caverock.androidsvg.SVGParseException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import timber.log.Timber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocations made by the SVG renderer when a parsed document is rendered again, as the charts
+ * and icons are while scrolling. Run on a device, the counts are written to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SvgRenderAllocationTests {
+
+    private static final int RENDERS = 20;
+
+    /**
+     * The allocations of a re-render must not grow with the number of elements in the document.
+     */
+    @Test
+    public void reRenderDoesNotAllocatePerElement() throws SVGParseException {
+        Bitmap bitmap = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        SVG small = SVG.getFromString(generateDocument(10));
+        SVG large = SVG.getFromString(generateDocument(1000));
+
+        int smallFirst = countAllocations(small, canvas, 1);
+        int largeFirst = countAllocations(large, canvas, 1);
+        // after the first render, the pools of the renderer are full and the paths converted.
+        int smallAgain = countAllocations(small, canvas, RENDERS);
+        int largeAgain = countAllocations(large, canvas, RENDERS);
+
+        Timber.i("SVG render allocations: first render %d (10 groups), %d (1000 groups); " +
+                "re-render %d, %d", smallFirst, largeFirst, smallAgain, largeAgain);
+
+        // 990 more groups, with 5 shapes each. Allow a little for the runtime itself.
+        assertThat(largeAgain - smallAgain).isLessThan(50);
+
+        bitmap.recycle();
+    }
+
+    /**
+     * @return the average number of objects allocated by each render.
+     */
+    @SuppressWarnings("deprecation")
+    private int countAllocations(SVG document, Canvas canvas, int renders) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < renders; i++) {
+            document.renderToCanvas(canvas);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount() / renders;
+    }
+
+    /**
+     * Groups of filled and stroked shapes, styled with attributes and with a stylesheet, as in
+     * the icons and the charts.
+     */
+    private String generateDocument(int groups) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 200 200\">\n");
+        sb.append("<style>.bar { fill: #2196f3; stroke: #0d47a1; stroke-width: 0.5 } .axis { stroke: #999 }</style>\n");
+        for (int i = 0; i < groups; i++) {
+            int x = i % 190;
+            sb.append(String.format(Locale.US, "<g transform=\"translate(%d 0)\">\n", x));
+            sb.append(String.format(Locale.US, "<rect class=\"bar\" x=\"0\" y=\"%d\" width=\"5\" height=\"%d\"/>\n",
+                    100 - i % 90, i % 90));
+            sb.append("<circle cx=\"2\" cy=\"5\" r=\"2\" fill=\"red\" stroke=\"black\"/>\n");
+            sb.append("<path d=\"M0,190 L5,185 L10,190 Z\" fill=\"green\"/>\n");
+            sb.append("<line class=\"axis\" x1=\"0\" y1=\"195\" x2=\"5\" y2=\"195\"/>\n");
+            sb.append("<polygon points=\"0,10 5,12 3,15\" fill=\"orange\" opacity=\"0.5\"/>\n");
+            sb.append("</g>\n");
+        }
+        sb.append("</svg>\n");
+        return sb.toString();
+    }
+}
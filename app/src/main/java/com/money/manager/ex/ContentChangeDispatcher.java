@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.money.manager.ex;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.money.manager.ex.sync.SyncManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Coalesces the change notifications of the content provider.
+ * The changed uris are collected over a short time window and then each is notified once.
+ * The sync engine is told about the changes once per window, instead of once per write.
+ */
+class ContentChangeDispatcher {
+
+    /**
+     * The time window, in milliseconds, in which the changes are collected.
+     */
+    static final long WINDOW_MS = 300;
+
+    ContentChangeDispatcher(Context context) {
+        this.context = context.getApplicationContext();
+
+        HandlerThread thread = new HandlerThread("ContentChangeDispatcher");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final Object lock = new Object();
+    private final Set<Uri> pendingUris = new LinkedHashSet<>();
+    private boolean dirty;
+    private boolean scheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Queues the notification for the changed uris. The first change in a window schedules
+     * the dispatch so that a long series of writes does not postpone it indefinitely.
+     */
+    void dispatch(Collection<Uri> uris) {
+        if (uris.isEmpty()) return;
+
+        synchronized (lock) {
+            pendingUris.addAll(uris);
+            dirty = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Queues only the sync notification, for changes made directly in the database.
+     */
+    void dispatchDataChanged() {
+        synchronized (lock) {
+            dirty = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Sends the pending notifications immediately. Used before the database is switched or
+     * synchronized, so that the changes are attributed to the right file.
+     */
+    void flush() {
+        List<Uri> uris;
+        synchronized (lock) {
+            handler.removeCallbacks(flushTask);
+            scheduled = false;
+            if (!dirty) return;
+
+            uris = new ArrayList<>(pendingUris);
+            pendingUris.clear();
+            dirty = false;
+        }
+
+        Timber.v("dispatching changes for %d uris", uris.size());
+
+        ContentResolver resolver = context.getContentResolver();
+        for (Uri uri : uris) {
+            resolver.notifyChange(uri, null);
+        }
+        // mark the database as changed, once for all the writes.
+        new SyncManager(context).dataChanged();
+    }
+
+    private void schedule() {
+        if (scheduled) return;
+
+        scheduled = true;
+        handler.postDelayed(flushTask, WINDOW_MS);
+    }
+}
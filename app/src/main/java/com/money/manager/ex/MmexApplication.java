@@ -27,6 +27,7 @@ import com.mikepenz.iconics.Iconics;
 import com.mikepenz.mmex_icon_font_typeface_library.MMXIconFont;
 import com.money.manager.ex.common.MoneyParcelConverter;
 import com.money.manager.ex.core.InfoKeys;
+import com.money.manager.ex.currency.CurrencyCache;
 import com.money.manager.ex.core.database.DatabaseManager;
 import com.money.manager.ex.core.ioc.DaggerMmxComponent;
 import com.money.manager.ex.core.ioc.MmxComponent;
@@ -36,6 +37,7 @@ import com.money.manager.ex.database.QueryAccountBills;
 import com.money.manager.ex.log.DebugTree;
 import com.money.manager.ex.log.ScreenTree;
 import com.money.manager.ex.log.SysLogTree;
+import com.money.manager.ex.notifications.SmsLookupIndex;
 import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.LookAndFeelSettings;
@@ -182,6 +184,9 @@ public class MmexApplication
             openHelperAtomicReference.get().close();
             openHelperAtomicReference.set(db);
         }
+        // currencies are per database.
+        CurrencyCache.invalidate();
+        SmsLookupIndex.invalidate();
     }
 
     private MmxOpenHelper createDbInstance(String path) {
@@ -299,15 +304,15 @@ public class MmexApplication
         }
         QueryAccountBills accountBills = new QueryAccountBills(context);
         Cursor cursor = context.getContentResolver().query(accountBills.getUri(),
-                null,
+                new String[] { "total(" + QueryAccountBills.TOTALBASECONVRATE + ")" },
                 where,
                 null,
                 null);
         if (cursor == null) return 0;
 
-        // calculate summary
-        while (cursor.moveToNext()) {
-            curTotal = curTotal + cursor.getDouble(cursor.getColumnIndex(QueryAccountBills.TOTALBASECONVRATE));
+        // the summary is calculated in the database.
+        if (cursor.moveToFirst()) {
+            curTotal = cursor.getDouble(0);
         }
         cursor.close();
 
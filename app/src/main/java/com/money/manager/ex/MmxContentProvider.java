@@ -17,8 +17,11 @@
 package com.money.manager.ex;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 //import net.sqlcipher.database.SQLiteDatabase;
@@ -28,17 +31,25 @@ import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.text.TextUtils;
 
+import com.money.manager.ex.budget.BudgetActuals;
+import com.money.manager.ex.currency.CurrencyCache;
 import com.money.manager.ex.budget.BudgetQuery;
 import com.money.manager.ex.currency.CurrencyRepository;
+import com.money.manager.ex.database.AccountBalance;
+import com.money.manager.ex.database.BalanceCheckpoint;
+import com.money.manager.ex.database.BriteDatabaseHolder;
 import com.money.manager.ex.database.Dataset;
 import com.money.manager.ex.database.DatasetType;
+import com.money.manager.ex.database.IncomeExpenseRollup;
 import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.database.QueryAccountBills;
 import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.QueryBillDeposits;
 import com.money.manager.ex.database.QueryCategorySubCategory;
 import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
+import com.money.manager.ex.database.QueryStatistics;
 import com.money.manager.ex.database.SQLDataSet;
+import com.money.manager.ex.database.TransactionFact;
 import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
@@ -54,10 +65,17 @@ import com.money.manager.ex.datalayer.SplitRecurringCategoriesRepository;
 import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.datalayer.SubcategoryRepository;
 import com.money.manager.ex.datalayer.StockHistoryRepository;
+import com.money.manager.ex.domainmodel.SplitCategory;
+import com.money.manager.ex.notifications.SmsLookupIndex;
 import com.money.manager.ex.sync.SyncManager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -79,6 +97,9 @@ public class MmxContentProvider
     // object map for the definition of the objects referenced in the URI
     private static SparseArrayCompat<Object> mapContent = new SparseArrayCompat<>();
     private static String mAuthority;
+    // the batch running on the current thread, if any.
+    private static final ThreadLocal<Batch> sBatch = new ThreadLocal<>();
+    private static volatile ContentChangeDispatcher sChangeDispatcher;
 
     public MmxContentProvider() {
         super();
@@ -86,6 +107,10 @@ public class MmxContentProvider
     }
 
     @Inject Lazy<MmxOpenHelper> openHelper;
+    @Inject Lazy<BriteDatabaseHolder> briteDatabase;
+    private TransactionFact transactionFact;
+    private final AccountBalance accountBalance = new AccountBalance();
+    private final IncomeExpenseRollup rollup = new IncomeExpenseRollup();
 
     public static String getAuthority() {
         return mAuthority;
@@ -95,12 +120,38 @@ public class MmxContentProvider
         MmxContentProvider.mAuthority = mAuthority;
     }
 
+    /**
+     * Sends any pending change notifications immediately, i.e. before synchronization.
+     */
+    public static void flushChanges() {
+        ContentChangeDispatcher dispatcher = sChangeDispatcher;
+        if (dispatcher != null) {
+            dispatcher.flush();
+        }
+    }
+
+    /**
+     * Notifies the sync engine about changes made directly in the database, coalesced with
+     * the changes made through the provider.
+     */
+    public static void notifyDataChanged(Context context) {
+        ContentChangeDispatcher dispatcher = sChangeDispatcher;
+        if (dispatcher != null) {
+            dispatcher.dispatchDataChanged();
+        } else {
+            new SyncManager(context).dataChanged();
+        }
+    }
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
         if (context == null) return false;
 
         setAuthority(context.getApplicationContext().getPackageName() + ".provider");
+        if (sChangeDispatcher == null) {
+            sChangeDispatcher = new ContentChangeDispatcher(context);
+        }
 
         List<Dataset> objMoneyManager = Arrays.asList(
             new AccountRepository(context),
@@ -124,6 +175,7 @@ public class MmxContentProvider
                 new QueryAllData(context),
                 new QueryBillDeposits(context),
                 new QueryReportIncomeVsExpenses(context),
+                new QueryReportIncomeVsExpenses(context, true),
                 new BudgetQuery(context),
                 new ViewMobileData(context),
                 new SQLDataSet()
@@ -164,15 +216,34 @@ public class MmxContentProvider
                 case TABLE:
                     logTableInsert(dataset, values);
 
-                    //database.beginTransaction();
                     try {
                         initializeDependencies();
 
-                        id = openHelper.get().getWritableDatabase()
-                                .insertOrThrow(dataset.getSource(), null, values);
-                        //database.setTransactionSuccessful();
+                        SQLiteDatabase database = openHelper.get().getWritableDatabase();
+                        long started = QueryStatistics.start();
+                        database.beginTransaction();
+                        try {
+                            long newId = database.insertOrThrow(dataset.getSource(), null, values);
+                            if (isTransactionTable(dataset)) {
+                                new BalanceCheckpoint().invalidate(database, newId);
+                                long[] accountIds = accountBalance.loadAccountIds(database, newId);
+                                getTransactionFact().refresh(database, newId);
+                                accountBalance.refresh(database, accountIds);
+                                rollup.refresh(database, rollup.loadPeriods(database, newId));
+                            } else if (isSplitTable(dataset)) {
+                                refreshSplitRollups(database, rollup.loadSplitTransactionIds(database,
+                                    SplitCategory.SPLITTRANSID + "=?", new String[] { Long.toString(newId) }), null);
+                            }
+                            database.setTransactionSuccessful();
+                            id = newId;
+                        } finally {
+                            database.endTransaction();
+                        }
+                        // includes the maintenance of the derived tables.
+                        QueryStatistics.record("INSERT INTO " + dataset.getSource(), started, 1);
                     } catch (Exception e) {
                         Timber.e(e, "inserting: %s", "insert");
+                        markBatchFailed();
                     }
                     parse = dataset.getBasepath() + "/" + id;
                     break;
@@ -209,11 +280,36 @@ public class MmxContentProvider
                 case TABLE:
                     logUpdate(dataset, values, whereClause, whereArgs);
 
+                    long started = QueryStatistics.start();
+                    database.beginTransaction();
                     try {
-                        rowsUpdate = database.update(dataset.getSource(), values, whereClause, whereArgs);
+                        int updated;
+                        if (isTransactionTable(dataset)) {
+                            // the selection may not match the records any more after the update.
+                            long[] ids = getTransactionFact().loadIds(database, whereClause, whereArgs);
+                            updated = database.update(dataset.getSource(), values, whereClause, whereArgs);
+                            new BalanceCheckpoint().invalidate(database, ids);
+                            long[] accountIds = accountBalance.loadAccountIds(database, ids);
+                            long[] periods = rollup.loadPeriods(database, ids);
+                            getTransactionFact().refresh(database, ids);
+                            accountBalance.refresh(database, accountIds);
+                            rollup.refresh(database, periods, rollup.loadPeriods(database, ids));
+                        } else if (isSplitTable(dataset)) {
+                            long[] ids = rollup.loadSplitTransactionIds(database, whereClause, whereArgs);
+                            updated = database.update(dataset.getSource(), values, whereClause, whereArgs);
+                            refreshSplitRollups(database, ids, values);
+                        } else {
+                            updated = database.update(dataset.getSource(), values, whereClause, whereArgs);
+                        }
+                        database.setTransactionSuccessful();
+                        rowsUpdate = updated;
                     } catch (Exception ex) {
                         Timber.e(ex, "updating: %s", "update");
+                        markBatchFailed();
+                    } finally {
+                        database.endTransaction();
                     }
+                    QueryStatistics.record("UPDATE " + dataset.getSource(), started, rowsUpdate);
                     break;
                 default:
                     throw new IllegalArgumentException("Type of dataset not supported for update");
@@ -253,14 +349,36 @@ public class MmxContentProvider
                     try {
                         initializeDependencies();
 
-                        rowsDelete = openHelper.get().getWritableDatabase()
-                                .delete(dataset.getSource(), selection, selectionArgs);
-
-                        // committed
-                        //if (BuildConfig.DEBUG) Log.d(LOGCAT, "database set transaction successful");
-                        //database.setTransactionSuccessful();
+                        SQLiteDatabase database = openHelper.get().getWritableDatabase();
+                        long started = QueryStatistics.start();
+                        database.beginTransaction();
+                        try {
+                            int deleted;
+                            if (isTransactionTable(dataset)) {
+                                long[] ids = getTransactionFact().loadIds(database, selection, selectionArgs);
+                                deleted = database.delete(dataset.getSource(), selection, selectionArgs);
+                                new BalanceCheckpoint().invalidate(database, ids);
+                                long[] accountIds = accountBalance.loadAccountIds(database, ids);
+                                long[] periods = rollup.loadPeriods(database, ids);
+                                getTransactionFact().remove(database, ids);
+                                accountBalance.refresh(database, accountIds);
+                                rollup.refresh(database, periods);
+                            } else if (isSplitTable(dataset)) {
+                                long[] ids = rollup.loadSplitTransactionIds(database, selection, selectionArgs);
+                                deleted = database.delete(dataset.getSource(), selection, selectionArgs);
+                                refreshSplitRollups(database, ids, null);
+                            } else {
+                                deleted = database.delete(dataset.getSource(), selection, selectionArgs);
+                            }
+                            database.setTransactionSuccessful();
+                            rowsDelete = deleted;
+                        } finally {
+                            database.endTransaction();
+                        }
+                        QueryStatistics.record("DELETE FROM " + dataset.getSource(), started, rowsDelete);
                     } catch (Exception e) {
                         Timber.e(e, "insert");
+                        markBatchFailed();
                     }
                     break;
                 default:
@@ -275,6 +393,81 @@ public class MmxContentProvider
         return rowsDelete;
     }
 
+    /**
+     * Runs all the operations in one database transaction. Change notifications are sent
+     * once per uri, after the transaction is committed. If any of the operations fails,
+     * the whole batch is rolled back.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        if (sBatch.get() != null) {
+            // already part of a batch.
+            return super.applyBatch(operations);
+        }
+
+        initializeDependencies();
+        SQLiteDatabase database = openHelper.get().getWritableDatabase();
+
+        Batch batch = new Batch();
+        sBatch.set(batch);
+        ContentProviderResult[] results;
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            if (batch.failed) {
+                throw new OperationApplicationException("batch rolled back after a failed operation");
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            sBatch.remove();
+        }
+
+        dispatchChanges(batch.changedUris);
+
+        return results;
+    }
+
+    /**
+     * Inserts all the records in one database transaction.
+     * @return number of inserted records, 0 if the transaction was rolled back.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        if (sBatch.get() != null) {
+            return super.bulkInsert(uri, values);
+        }
+
+        initializeDependencies();
+        SQLiteDatabase database = openHelper.get().getWritableDatabase();
+
+        Batch batch = new Batch();
+        sBatch.set(batch);
+        int inserted = 0;
+        database.beginTransaction();
+        try {
+            for (ContentValues item : values) {
+                insert(uri, item);
+                if (batch.failed) break;
+                inserted++;
+            }
+            if (!batch.failed) {
+                database.setTransactionSuccessful();
+            }
+        } finally {
+            database.endTransaction();
+            sBatch.remove();
+        }
+
+        if (batch.failed) return 0;
+
+        dispatchChanges(batch.changedUris);
+
+        return inserted;
+    }
+
     /**
      * Prepare statement SQL from data set object
      *
@@ -353,11 +546,20 @@ public class MmxContentProvider
     }
 
     public void resetDatabase() {
+        // the pending changes belong to the current database.
+        flushChanges();
+
         if (openHelper != null) {
             openHelper.get().close();
         }
+        if (briteDatabase != null) {
+            briteDatabase.get().reset();
+        }
 
         openHelper = null;
+        briteDatabase = null;
+        CurrencyCache.invalidate();
+        SmsLookupIndex.invalidate();
         initializeDependencies();
     }
 
@@ -369,6 +571,39 @@ public class MmxContentProvider
         MmexApplication.getApp().iocComponent.inject(this);
     }
 
+    private TransactionFact getTransactionFact() {
+        if (transactionFact == null) {
+            transactionFact = new TransactionFact(getContext());
+        }
+        return transactionFact;
+    }
+
+    /**
+     * The transaction facts are maintained together with the writes to the transactions table.
+     */
+    private boolean isTransactionTable(Dataset dataset) {
+        return dataset instanceof AccountTransactionRepository;
+    }
+
+    /**
+     * The split amounts are part of the income and expense rollups.
+     */
+    private boolean isSplitTable(Dataset dataset) {
+        return dataset instanceof SplitCategoriesRepository;
+    }
+
+    /**
+     * Recalculate the rollups of the months of the transactions whose splits were written.
+     * @param values The values written. A split may have been moved to another transaction.
+     */
+    private void refreshSplitRollups(SQLiteDatabase database, long[] ids, ContentValues values) {
+        long[] moved = null;
+        if (values != null && values.getAsLong(SplitCategory.TRANSID) != null) {
+            moved = rollup.loadPeriods(database, values.getAsLong(SplitCategory.TRANSID));
+        }
+        rollup.refresh(database, rollup.loadPeriods(database, ids), moved);
+    }
+
     private void logTableInsert(Dataset dataset, ContentValues values) {
         String log = "INSERT INTO " + dataset.getSource();
         if (values != null) {
@@ -495,11 +730,45 @@ public class MmxContentProvider
     }
 
     private void notifyChange(Uri uri) {
-        if (getContext() == null) return;
+        Batch batch = sBatch.get();
+        if (batch != null) {
+            // sent once the batch is committed.
+            batch.changedUris.add(uri);
+            return;
+        }
+
+        dispatchChanges(Collections.singleton(uri));
+    }
 
-        // notify update. todo Do this also after changes via sqlite.
-        getContext().getContentResolver().notifyChange(uri, null);
-        // notify the sync that database has changed.
-        new SyncManager(getContext()).dataChanged();
+    private void dispatchChanges(Collection<Uri> uris) {
+        if (getContext() == null || uris.isEmpty()) return;
+
+        // cached aggregates are no longer valid.
+        BudgetActuals.invalidate();
+        for (Uri uri : uris) {
+            Object dataset = mapContent.get(sUriMatcher.match(uri));
+            if (dataset instanceof Dataset) {
+                SmsLookupIndex.onTableChanged(((Dataset) dataset).getSource());
+            }
+        }
+
+        // notify the observers and the sync engine. The writes made directly in the database
+        // through the repositories are notified with notifyDataChanged().
+        sChangeDispatcher.dispatch(uris);
+    }
+
+    private void markBatchFailed() {
+        Batch batch = sBatch.get();
+        if (batch != null) {
+            batch.failed = true;
+        }
+    }
+
+    /**
+     * State of a batch of operations running in one transaction.
+     */
+    private static class Batch {
+        final Set<Uri> changedUris = new LinkedHashSet<>();
+        boolean failed;
     }
 }
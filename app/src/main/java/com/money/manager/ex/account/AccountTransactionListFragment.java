@@ -829,7 +829,8 @@ public class AccountTransactionListFragment
     }
 
     private void showFilterDialog() {
-        int numberOfRecords = mAllDataListFragment.getListAdapter().getCount();
+        // all the transactions of the filter, not only the ones loaded in the list.
+        int numberOfRecords = mAllDataListFragment.getTransactionCount();
         FilterDialogFragment dialog = FilterDialogFragment.newInstance(mFilter, mAccount, numberOfRecords);
         dialog.show(getActivity().getSupportFragmentManager(), TAG_FILTER_DIALOG);
     }
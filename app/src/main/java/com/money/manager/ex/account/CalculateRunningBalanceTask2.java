@@ -26,6 +26,7 @@ import com.money.manager.ex.servicelayer.AccountService;
 import com.money.manager.ex.common.AllDataListFragment;
 import com.money.manager.ex.core.TransactionStatuses;
 import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.datalayer.QueryAllDataRepository;
 import com.money.manager.ex.utils.MmxDate;
 import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
@@ -37,15 +38,15 @@ import java.util.Date;
 import java.util.HashMap;
 
 import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
 import info.javaperformance.money.MoneyFactory;
 import timber.log.Timber;
 
 /**
- * Not used!
  * Async task that calculates and updates the amount balance for each transaction in the
  * transactions list.
- * Here the idea is the fast calculation of the balances and caching in memory.
- * The problem is displaying the amounts once they are loaded.
+ * The balance at the start of the displayed period comes from the monthly balance checkpoints
+ * (see AccountService#calculateBalanceOn) so only the displayed transactions are read here.
  */
 public class CalculateRunningBalanceTask2
     extends AsyncTask<Void, Void, HashMap<Integer, Money>> {
@@ -65,7 +66,6 @@ public class CalculateRunningBalanceTask2
     }
 
     private Context context;
-    private HashMap<Integer, Money> balances;
     private int accountId;
     private Date startingDate;
     private Bundle selectionBundle;
@@ -103,83 +103,70 @@ public class CalculateRunningBalanceTask2
         // load data
         Cursor c = loadData();
         if (c == null) return null;
-        int records = c.getCount();
-        if (balances != null && records == balances.size()) return null;
-        if (c.getCount() <= 0) return null;
-
-        Money startingBalance = null;
+        if (c.getCount() <= 0) {
+            c.close();
+            return null;
+        }
 
         AccountService accountService = new AccountService(this.context);
-        AccountTransactionDisplay tx = new AccountTransactionDisplay();
 
-        int originalPosition = c.getPosition();
-        balances = new HashMap<>();
-        String transType;
-        Money amount = MoneyFactory.fromBigDecimal(BigDecimal.ZERO);
-        Money runningBalance = MoneyFactory.fromBigDecimal(BigDecimal.ZERO);
+        // Get starting balance on the given day.
+        MoneyAccumulator runningBalance = new MoneyAccumulator()
+                .add(accountService.loadInitialBalance(this.accountId));
+        if (this.startingDate != null) {
+            String date = new MmxDate(this.startingDate).minusDays(1)
+                    .toIsoDateString();
+            runningBalance.add(accountService.calculateBalanceOn(this.accountId, date));
+        }
 
-        // populate balance amounts
+        HashMap<Integer, Money> balances = new HashMap<>(c.getCount());
+        AccountTransactionDisplay tx = new AccountTransactionDisplay();
+        Money amount = MoneyFactory.fromBigDecimal(BigDecimal.ZERO);
 
         // Move from the earliest record towards the newer ones.
-        int i = c.getCount() - 1;
-
-        while (c.moveToPosition(i)) {
-            // load the initial balance based on the date of the first transaction
-            if (startingBalance == null) {
-                // Get starting balance on the given day.
-                startingBalance = accountService.loadInitialBalance(this.accountId);
-
-                String date = new MmxDate(this.startingDate).minusDays(1)
-                        .toIsoDateString();
-                Money balanceOnDate = accountService.calculateBalanceOn(this.accountId, date);
-                startingBalance = startingBalance.add(balanceOnDate);
-
-                runningBalance = startingBalance;
-            }
-
+        boolean hasRecord = c.moveToLast();
+        while (hasRecord) {
             // adjust the balance for each transaction.
-
+            tx.contentValues.clear();
             tx.loadFromCursor(c);
 
             // Exclude Void transactions from calculation.
             TransactionStatuses status = tx.getStatus();
             if (!status.equals(TransactionStatuses.VOID)) {
-                transType = tx.getTransactionTypeName();
-
-                switch (TransactionTypes.valueOf(transType)) {
+                switch (TransactionTypes.valueOf(tx.getTransactionTypeName())) {
                     case Withdrawal:
-                        amount = tx.getAmount();
-                        break;
                     case Deposit:
                         amount = tx.getAmount();
                         break;
                     case Transfer:
-                        int accountId = tx.getAccountId();
-                        if (accountId == this.accountId) {
+                        if (tx.getAccountId() == this.accountId) {
                             amount = tx.getAmount();
                         } else {
                             amount = tx.getToAmount();
                         }
                         break;
                 }
-                runningBalance = runningBalance.add(amount);
+                runningBalance.add(amount);
             }
 
-            this.balances.put(tx.getId(), runningBalance);
-            i--;
+            balances.put(tx.getId(), runningBalance.toMoney());
+            hasRecord = c.moveToPrevious();
         }
+        c.close();
 
-        // set back to the original position.
-        c.moveToPosition(originalPosition);
-
-        return this.balances;
+        return balances;
     }
 
     private Cursor loadData() {
         String where = this.selectionBundle.getString(AllDataListFragment.KEY_ARGUMENTS_WHERE);
+        String[] whereParams = AllDataListFragment.getWhereParams(this.selectionBundle);
         String sort = this.selectionBundle.getString(AllDataListFragment.KEY_ARGUMENTS_SORT);
 
+        // Only the columns used in the calculation.
+        String[] projection = new String[] { QueryAllData.ID, QueryAllData.TransactionType,
+            QueryAllData.Status, QueryAllData.ACCOUNTID, QueryAllData.Amount, QueryAllData.ToAmount };
+
         QueryAllDataRepository repo = new QueryAllDataRepository(this.context);
-        return repo.query(where, sort);
+        return repo.openCursor(projection, where, whereParams, sort);
     }
 }
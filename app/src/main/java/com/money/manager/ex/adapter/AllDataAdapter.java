@@ -18,6 +18,7 @@ package com.money.manager.ex.adapter;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.graphics.Color;
 import androidx.core.content.ContextCompat;
 import android.text.Html;
@@ -32,11 +33,14 @@ import android.widget.TextView;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
+import com.money.manager.ex.common.PagedCursor;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.QueryBillDeposits;
 import com.money.manager.ex.database.TransactionStatus;
+import com.money.manager.ex.datalayer.Select;
+import com.money.manager.ex.datalayer.SplitCategoriesRepository;
 import com.money.manager.ex.utils.MmxDate;
 import com.money.manager.ex.utils.MmxDateTimeUtils;
 
@@ -87,6 +91,8 @@ public class AllDataAdapter
     // hash map for group
     private HashMap<Integer, Integer> mHeadersAccountIndex;
     private SparseBooleanArray mCheckedPosition;
+    // all the rows are checked, also the ones not loaded yet, except the ones in mCheckedPosition.
+    private boolean mAllChecked = false;
     // account and currency
     private int mAccountId = Constants.NOT_SET;
     private int mCurrencyId = Constants.NOT_SET;
@@ -126,6 +132,12 @@ public class AllDataAdapter
         // take a holder
         AllDataViewHolder holder = (AllDataViewHolder) view.getTag();
 
+        // the page of the row is being read again; the list is refreshed when it arrives.
+        if (cursor instanceof PagedCursor && !((PagedCursor) cursor).isRowLoaded()) {
+            bindPlaceholder(holder);
+            return;
+        }
+
         String transactionType = cursor.getString(cursor.getColumnIndex(TRANSACTIONTYPE));
         boolean isTransfer = TransactionTypes.valueOf(transactionType).equals(TransactionTypes.Transfer);
 
@@ -150,7 +162,7 @@ public class AllDataAdapter
             Locale locale = MmexApplication.getApp().getAppLocale();
             MmxDateTimeUtils dateUtils = new MmxDateTimeUtils(locale);
 
-            Date dateTime = new MmxDate(dateString).toDate();
+            Date dateTime = MmxDate.fromIsoDate(dateString);
 
             String month = dateUtils.format(dateTime, "MMM");
             holder.txtMonth.setText(month);
@@ -234,7 +246,7 @@ public class AllDataAdapter
             holder.txtNotes.setVisibility(View.GONE);
         }
         // check if item is checked
-        if (mCheckedPosition.get(cursor.getPosition(), false)) {
+        if (isPositionChecked(cursor.getPosition())) {
             view.setBackgroundResource(R.color.material_green_100);
         } else {
             view.setBackgroundResource(android.R.color.transparent);
@@ -244,14 +256,92 @@ public class AllDataAdapter
         displayBalanceAmountOrDaysLeft(holder, cursor, context);
     }
 
+    private void bindPlaceholder(AllDataViewHolder holder) {
+        holder.txtDay.setText("");
+        holder.txtMonth.setText("");
+        holder.txtYear.setText("");
+        holder.txtStatus.setText("");
+        holder.txtAmount.setText("");
+        holder.txtPayee.setText("");
+        holder.txtCategorySub.setText("");
+        holder.txtAccountName.setVisibility(View.GONE);
+        holder.txtNotes.setVisibility(View.GONE);
+        holder.txtBalance.setText("");
+        holder.txtBalance.setTag(null);
+    }
+
     public void clearPositionChecked() {
         mCheckedPosition.clear();
+        mAllChecked = false;
     }
 
+    /**
+     * @return the positions checked or unchecked explicitly. When all the positions are
+     * checked, these are the exceptions.
+     */
     public SparseBooleanArray getPositionsChecked() {
         return mCheckedPosition;
     }
 
+    public boolean isPositionChecked(int position) {
+        return mCheckedPosition.get(position, mAllChecked);
+    }
+
+    /**
+     * @return true when all the rows are checked, including the ones not loaded yet.
+     */
+    public boolean isAllPositionsChecked() {
+        return mAllChecked;
+    }
+
+    /**
+     * Check all the rows, including the ones that are not loaded yet.
+     */
+    public void setAllPositionsChecked() {
+        mCheckedPosition.clear();
+        mAllChecked = true;
+    }
+
+    /**
+     * Opens a cursor over all the rows of the list, for the operations that need every row.
+     * The paged cursor only holds a window of the rows so the selection is queried again.
+     * The returned cursor has to be closed.
+     * @param projection The columns to read, or null for all.
+     */
+    public Cursor queryAllRows(String[] projection) {
+        Cursor cursor = getCursor();
+        if (cursor == null) return null;
+
+        if (cursor instanceof PagedCursor) {
+            return ((PagedCursor) cursor).queryAll(projection);
+        }
+
+        // The whole result is already here. It stays open for the list, at its position.
+        final int position = cursor.getPosition();
+        cursor.moveToPosition(-1);
+        return new CursorWrapper(cursor) {
+            @Override
+            public void close() {
+                getWrappedCursor().moveToPosition(position);
+            }
+        };
+    }
+
+    /**
+     * Opens a cursor over the split categories of the split transactions of the list, in the
+     * order of queryAllRows(). The returned cursor has to be closed.
+     * @return null when the list is not read in pages; the splits are then loaded per
+     * transaction.
+     */
+    public Cursor queryAllSplits() {
+        Cursor cursor = getCursor();
+        if (!(cursor instanceof PagedCursor)) return null;
+
+        Select query = ((PagedCursor) cursor).getQuery("T");
+        return new SplitCategoriesRepository(mContext).openSplitCategoriesFor(
+            new QueryAllData(mContext), query);
+    }
+
     /**
      * Set checked in position
      */
@@ -18,18 +18,33 @@ package com.money.manager.ex.assetallocation;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
 
 import com.money.manager.ex.datalayer.AssetClassRepository;
 import com.money.manager.ex.datalayer.AssetClassStockRepository;
+import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.AssetClass;
+import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.servicelayer.AssetAllocationService;
 
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+
+import java.util.HashMap;
+import java.util.Map;
+
 import androidx.loader.content.AsyncTaskLoader;
+import info.javaperformance.money.Money;
 
 /**
  * Custom loader for Asset Allocation. Used to plug into the infrastructure and get
  * notifications on updated/deleted/created objects.
  * Ref: http://www.androiddesignpatterns.com/2012/08/implementing-loaders.html
+ * Downloaded prices are applied to the loaded data, revaluing only the asset classes that hold
+ * the securities, instead of loading the whole asset allocation again.
  */
 public class AssetAllocationLoader
     extends AsyncTaskLoader<AssetClass> {
@@ -38,7 +53,35 @@ public class AssetAllocationLoader
         super(context);
     }
 
+    /**
+     * The time window, in milliseconds, in which the downloaded prices are collected before
+     * they are applied. The prices are downloaded one symbol at a time.
+     */
+    private static final long PRICES_WINDOW_MS = 300;
+
     private AssetClass mData;
+    /**
+     * The service that loaded the data, reused to apply the prices with the accounts it has
+     * already read.
+     */
+    private volatile AssetAllocationService mService;
+    /**
+     * Prices received and not yet applied, by symbol.
+     */
+    private final Map<String, Money> mPendingPrices = new HashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mApplyPricesTask = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingPrices();
+        }
+    };
+    private final Runnable mReloadTask = new Runnable() {
+        @Override
+        public void run() {
+            onContentChanged();
+        }
+    };
 
     /****************************************************/
     /** (1) A task that performs the asynchronous load **/
@@ -48,6 +91,7 @@ public class AssetAllocationLoader
     public AssetClass loadInBackground() {
         AssetAllocationService service = new AssetAllocationService(getContext());
         AssetClass result = service.loadAssetAllocation();
+        mService = service;
         return result;
     }
 
@@ -152,6 +196,53 @@ public class AssetAllocationLoader
         return mObserver;
     }
 
+    @Subscribe
+    public void onEvent(PriceDownloadedEvent event) {
+        if (TextUtils.isEmpty(event.symbol) || event.price == null) return;
+
+        synchronized (mPendingPrices) {
+            boolean scheduled = !mPendingPrices.isEmpty();
+            mPendingPrices.put(event.symbol, event.price);
+            if (scheduled) return;
+        }
+        mHandler.postDelayed(mApplyPricesTask, PRICES_WINDOW_MS);
+    }
+
+    /**
+     * The price updaters that download all the prices at once save them and only post this
+     * event, so the asset allocation is loaded again with the saved prices.
+     */
+    @Subscribe
+    public void onEvent(AllPricesDownloadedEvent event) {
+        // the saved prices replace any that were not applied yet.
+        mHandler.removeCallbacks(mApplyPricesTask);
+        synchronized (mPendingPrices) {
+            mPendingPrices.clear();
+        }
+        mHandler.post(mReloadTask);
+    }
+
+    /**
+     * Runs on the main thread, where the data is read.
+     */
+    private void applyPendingPrices() {
+        Map<String, Money> prices;
+        synchronized (mPendingPrices) {
+            prices = new HashMap<>(mPendingPrices);
+            mPendingPrices.clear();
+        }
+
+        // Without data, the next load reads the saved prices.
+        if (mData == null || isReset()) return;
+
+        AssetAllocationService service = mService;
+        if (service == null) return;
+
+        if (service.updatePrices(mData, prices)) {
+            deliverResult(mData);
+        }
+    }
+
     private void releaseResources(AssetClass data) {
         // For a simple List, there is nothing to do. For something like a Cursor, we
         // would close it in this method. All resources associated with the Loader
@@ -178,12 +269,24 @@ public class AssetAllocationLoader
     private void registerObserver() {
         Uri assetClassUri = new AssetClassRepository(getContext()).getUri();
         Uri linkUri = new AssetClassStockRepository(getContext()).getUri();
+        Uri stockUri = new StockRepository(getContext()).getUri();
 
         getContext().getContentResolver().registerContentObserver(assetClassUri, true, getObserver());
         getContext().getContentResolver().registerContentObserver(linkUri, true, getObserver());
+        getContext().getContentResolver().registerContentObserver(stockUri, true, getObserver());
+
+        // the prices are applied to the loaded data.
+        EventBus.getDefault().register(this);
     }
 
     private void unregisterObserver() {
         getContext().getContentResolver().unregisterContentObserver(getObserver());
+
+        EventBus.getDefault().unregister(this);
+        mHandler.removeCallbacks(mApplyPricesTask);
+        mHandler.removeCallbacks(mReloadTask);
+        synchronized (mPendingPrices) {
+            mPendingPrices.clear();
+        }
     }
 }
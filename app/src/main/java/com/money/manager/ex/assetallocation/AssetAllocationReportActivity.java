@@ -44,13 +44,14 @@ import com.money.manager.ex.core.MenuHelper;
 import com.money.manager.ex.core.file.TextFileExport;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.domainmodel.AssetClass;
-import com.money.manager.ex.servicelayer.AssetAllocationService;
 import com.money.manager.ex.settings.InvestmentSettings;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+import androidx.loader.app.LoaderManager;
+import androidx.loader.content.Loader;
 import info.javaperformance.money.Money;
 import timber.log.Timber;
 
@@ -60,6 +61,8 @@ import timber.log.Timber;
 public class AssetAllocationReportActivity
     extends MmxBaseFragmentActivity {
 
+    private static final int LOADER_ASSET_ALLOCATION = 1;
+
     private Money differenceThreshold;
     private CurrencyService mCurrencyService;
     private WebView webView;
@@ -73,13 +76,9 @@ public class AssetAllocationReportActivity
         InvestmentSettings settings = new InvestmentSettings(this);
         this.differenceThreshold = settings.getAssetAllocationDifferenceThreshold();
 
-        // get asset allocation
-        AssetAllocationService service = new AssetAllocationService(this);
-        AssetClass allocation = service.loadAssetAllocation();
-
-        // create a HTML display.
-        String html = createHtml(allocation);
-        displayOverview(html);
+        // get asset allocation. The loader also delivers it again, once per batch of
+        // downloaded prices.
+        getSupportLoaderManager().initLoader(LOADER_ASSET_ALLOCATION, null, setUpLoaderCallbacks());
     }
 
     @Override
@@ -111,6 +110,26 @@ public class AssetAllocationReportActivity
         }
     }
 
+    private LoaderManager.LoaderCallbacks<AssetClass> setUpLoaderCallbacks() {
+        return new LoaderManager.LoaderCallbacks<AssetClass>() {
+            @Override
+            public Loader<AssetClass> onCreateLoader(int id, Bundle args) {
+                return new AssetAllocationLoader(AssetAllocationReportActivity.this);
+            }
+
+            @Override
+            public void onLoadFinished(Loader<AssetClass> loader, AssetClass data) {
+                // create a HTML display.
+                String html = createHtml(data);
+                displayOverview(html);
+            }
+
+            @Override
+            public void onLoaderReset(Loader<AssetClass> loader) {
+            }
+        };
+    }
+
     private String createHtml(AssetClass allocation) {
         if (allocation == null) {
             return "N/A";
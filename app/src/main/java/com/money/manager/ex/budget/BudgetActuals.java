@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.budget;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.database.ViewMobileData;
+import com.squareup.sqlbrite.BriteDatabase;
+
+import java.util.HashMap;
+
+import androidx.collection.LongSparseArray;
+import timber.log.Timber;
+
+/**
+ * Actual amounts of all the categories and subcategories for a budget period.
+ * The totals are loaded with one grouped query over the mobile data and kept, per budget,
+ * until the transactions change.
+ */
+public class BudgetActuals {
+
+    private static final String TOTAL = "TOTAL";
+
+    /**
+     * Loaded actuals, by budget year id.
+     */
+    private static final LongSparseArray<BudgetActuals> cache = new LongSparseArray<>();
+    /**
+     * Incremented on every invalidation, so that a load running concurrently with a write
+     * does not publish outdated values.
+     */
+    private static int version = 0;
+
+    /**
+     * Returns the actuals for the budget, loading them if they are not cached.
+     * @param budgetYearId Id of the budget.
+     * @param year  Budget year.
+     * @param month Budget month, or NOT_SET for yearly budgets.
+     */
+    public static BudgetActuals get(Context context, BriteDatabase database, long budgetYearId,
+                                    int year, int month) {
+        int loadVersion;
+        synchronized (cache) {
+            BudgetActuals actuals = cache.get(budgetYearId);
+            if (actuals != null && actuals.year == year && actuals.month == month) {
+                return actuals;
+            }
+            loadVersion = version;
+        }
+
+        BudgetActuals actuals = new BudgetActuals(year, month);
+        actuals.load(context, database);
+
+        synchronized (cache) {
+            if (version == loadVersion) {
+                cache.put(budgetYearId, actuals);
+            }
+        }
+        return actuals;
+    }
+
+    /**
+     * Discard all the loaded actuals. Called when the transactions change.
+     */
+    public static void invalidate() {
+        synchronized (cache) {
+            version++;
+            cache.clear();
+        }
+    }
+
+    private BudgetActuals(int year, int month) {
+        this.year = year;
+        this.month = month;
+    }
+
+    private final int year;
+    private final int month;
+    private final HashMap<Integer, Double> categoryTotals = new HashMap<>();
+    private final HashMap<Integer, Double> subCategoryTotals = new HashMap<>();
+
+    /**
+     * @return total for the category, including all its subcategories.
+     */
+    public double getCategoryTotal(int categoryId) {
+        Double total = categoryTotals.get(categoryId);
+        return total == null ? 0 : total;
+    }
+
+    public double getSubCategoryTotal(int subCategoryId) {
+        Double total = subCategoryTotals.get(subCategoryId);
+        return total == null ? 0 : total;
+    }
+
+    private void load(Context context, BriteDatabase database) {
+        try {
+            Cursor cursor = database.query(prepareQuery(context));
+            if (cursor == null) return;
+
+            int categoryIndex = cursor.getColumnIndex(ViewMobileData.CATEGID);
+            int subCategoryIndex = cursor.getColumnIndex(ViewMobileData.SubcategID);
+            int totalIndex = cursor.getColumnIndex(TOTAL);
+
+            while (cursor.moveToNext()) {
+                double total = cursor.getDouble(totalIndex);
+
+                add(categoryTotals, cursor.getInt(categoryIndex), total);
+
+                int subCategoryId = cursor.getInt(subCategoryIndex);
+                if (subCategoryId != Constants.NOT_SET) {
+                    add(subCategoryTotals, subCategoryId, total);
+                }
+            }
+            cursor.close();
+        } catch (IllegalStateException ise) {
+            Timber.e(ise, "loading budget actuals");
+        }
+    }
+
+    private void add(HashMap<Integer, Double> totals, int id, double amount) {
+        Double existing = totals.get(id);
+        totals.put(id, existing == null ? amount : existing + amount);
+    }
+
+    private String prepareQuery(Context context) {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        ViewMobileData mobileData = new ViewMobileData(context);
+
+        String[] projectionIn = new String[]{
+                ViewMobileData.CATEGID, ViewMobileData.SubcategID,
+                "SUM(" + ViewMobileData.AmountBaseConvRate + ") AS " + TOTAL
+        };
+
+        String selection = ViewMobileData.Status + "<>'V' AND " +
+                ViewMobileData.TransactionType + " IN ('Withdrawal', 'Deposit') AND " +
+                ViewMobileData.Year + "=" + Integer.toString(year);
+        if (month != Constants.NOT_SET) {
+            selection += " AND " + ViewMobileData.Month + "=" + Integer.toString(month);
+        }
+
+        String groupBy = ViewMobileData.CATEGID + ", " + ViewMobileData.SubcategID;
+
+        builder.setTables(mobileData.getSource());
+
+        return builder.buildQuery(projectionIn, selection, groupBy, null, null, null);
+    }
+}
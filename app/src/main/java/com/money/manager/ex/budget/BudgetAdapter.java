@@ -18,9 +18,7 @@ package com.money.manager.ex.budget;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteQueryBuilder;
 import androidx.core.content.ContextCompat;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -33,7 +31,6 @@ import com.money.manager.ex.R;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.QueryCategorySubCategory;
-import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.datalayer.BudgetEntryRepository;
 import com.money.manager.ex.domainmodel.BudgetEntry;
 import com.money.manager.ex.settings.AppSettings;
@@ -46,7 +43,6 @@ import javax.inject.Inject;
 import androidx.cursoradapter.widget.SimpleCursorAdapter;
 import dagger.Lazy;
 import info.javaperformance.money.MoneyFactory;
-import timber.log.Timber;
 
 /**
  * Adapter for budgets.
@@ -88,6 +84,7 @@ public class BudgetAdapter
     private String mBudgetName;
     private long mBudgetYearId;
     private HashMap<String, BudgetEntry> mBudgetEntries;
+    private BudgetActuals mActuals;
 
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
@@ -179,12 +176,20 @@ public class BudgetAdapter
         }
     }
 
+    @Override
+    public Cursor swapCursor(Cursor c) {
+        // reloaded data. Use the latest actuals.
+        mActuals = null;
+        return super.swapCursor(c);
+    }
+
     public Context getContext() {
         return mContext;
     }
 
     public void setBudgetName(String budgetName) {
         mBudgetName = budgetName;
+        mActuals = null;
     }
 
     /**
@@ -193,6 +198,7 @@ public class BudgetAdapter
      */
     public void setBudgetYearId(long budgetYearId) {
         this.mBudgetYearId = budgetYearId;
+        mActuals = null;
 
         if (mBudgetEntries != null) {
             mBudgetEntries.clear();
@@ -205,10 +211,10 @@ public class BudgetAdapter
         double actual;
         if (!hasSubcategory) {
             int categoryId = cursor.getInt(cursor.getColumnIndex(BudgetQuery.CATEGID));
-            actual = getAmountForCategory(categoryId);
+            actual = getActuals().getCategoryTotal(categoryId);
         } else {
             int subCategoryId = cursor.getInt(cursor.getColumnIndex(BudgetQuery.SUBCATEGID));
-            actual = getAmountForSubCategory(subCategoryId);
+            actual = getActuals().getSubCategoryTotal(subCategoryId);
         }
         return actual;
     }
@@ -249,78 +255,15 @@ public class BudgetAdapter
         return repo.loadForYear(mBudgetYearId);
     }
 
-    private double getAmountForCategory(int categoryId) {
-        double total = loadTotalFor(ViewMobileData.CATEGID + "=" + Integer.toString(categoryId));
-        return total;
-    }
-
-    private double getAmountForSubCategory(int subCategoryId) {
-        double total = loadTotalFor(ViewMobileData.SubcategID + "=" + Integer.toString(subCategoryId));
-        return total;
-    }
-
-    private double loadTotalFor(String where) {
-        double total = 0;
-
-        int year = getYearFromBudgetName(mBudgetName);
-        where += " AND " + ViewMobileData.Year + "=" + Integer.toString(year);
-        int month = getMonthFromBudgetName(mBudgetName);
-        if (month != Constants.NOT_SET) {
-            where += " AND " + ViewMobileData.Month + "=" + Integer.toString(month);
-        }
-
-        try {
-            String query = prepareQuery(where);
-            Cursor cursor = databaseLazy.get().query(query);
-            if (cursor == null) return 0;
-            // add all the categories and subcategories together.
-            while (cursor.moveToNext()) {
-                total += cursor.getDouble(cursor.getColumnIndex("TOTAL"));
-            }
-            cursor.close();
-        } catch (IllegalStateException ise) {
-            Timber.e(ise, "loading category total");
-        }
-
-        return total;
-    }
-
-    private String prepareQuery(String whereClause) {
-        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
-
-        //data to compose builder
-        String[] projectionIn = new String[]{
-                "ROWID AS _id", ViewMobileData.CATEGID, ViewMobileData.Category,
-                ViewMobileData.SubcategID, ViewMobileData.Subcategory,
-                "SUM(" + ViewMobileData.AmountBaseConvRate + ") AS TOTAL"
-        };
-
-        String selection = ViewMobileData.Status + "<>'V' AND " +
-                ViewMobileData.TransactionType + " IN ('Withdrawal', 'Deposit')";
-        if (!TextUtils.isEmpty(whereClause)) {
-            selection += " AND " + whereClause;
+    /**
+     * The actual amounts for all the categories in the budget are loaded together, on first use.
+     */
+    private BudgetActuals getActuals() {
+        if (mActuals == null) {
+            mActuals = BudgetActuals.get(mContext, databaseLazy.get(), mBudgetYearId,
+                    getYearFromBudgetName(mBudgetName), getMonthFromBudgetName(mBudgetName));
         }
-
-        String groupBy = ViewMobileData.CATEGID + ", " + ViewMobileData.Category + ", " +
-                ViewMobileData.SubcategID + ", " + ViewMobileData.Subcategory;
-
-        String having = null;
-//        if (!TextUtils.isEmpty(((CategoriesReportActivity) context).mFilter)) {
-//            String filter = ((CategoriesReportActivity) context).mFilter;
-//            if (TransactionTypes.valueOf(filter).equals(TransactionTypes.Withdrawal)) {
-//                having = "SUM(" + ViewMobileData.AmountBaseConvRate + ") < 0";
-//            } else {
-//                having = "SUM(" + ViewMobileData.AmountBaseConvRate + ") > 0";
-//            }
-//        }
-
-        String sortOrder = ViewMobileData.Category + ", " + ViewMobileData.Subcategory;
-        String limit = null;
-
-        builder.setTables(mobileData.getSource());
-
-        return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
+        return mActuals;
     }
 
     private int getYearFromBudgetName(String budgetName) {
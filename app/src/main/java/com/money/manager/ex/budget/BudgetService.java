@@ -17,17 +17,31 @@
 
 package com.money.manager.ex.budget;
 
+import android.content.ContentProviderOperation;
 import android.content.Context;
 
+import com.money.manager.ex.datalayer.BudgetEntryRepository;
 import com.money.manager.ex.datalayer.BudgetRepository;
+import com.money.manager.ex.domainmodel.Budget;
+import com.money.manager.ex.domainmodel.BudgetEntry;
 import com.money.manager.ex.servicelayer.ServiceBase;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import timber.log.Timber;
+
 /**
  * Budgets business logic
  */
 public class BudgetService
         extends ServiceBase {
 
+    private static final Pattern PERIOD_PATTERN = Pattern.compile("(\\d{4})(?:-(\\d{1,2}))?");
+
     public BudgetService(Context context) {
         super(context);
     }
@@ -40,10 +54,77 @@ public class BudgetService
     /**
      * Copy budget. It will load the budget with entries and create a copy.
      * Need to get the budget destination period. The period can be only a year/month like the
-     * original budget.
+     * original budget. The copy is created for the period following the original one.
+     * @param budgetId The budget to copy.
+     * @return Indicator whether the copy was created.
+     */
+    public boolean copy(int budgetId) {
+        BudgetRepository repo = new BudgetRepository(getContext());
+        Budget budget = repo.load(budgetId);
+        if (budget == null) return false;
+
+        String name = getNextPeriodName(budget.getName());
+        if (name == null) {
+            Timber.w("can not determine the period after budget %s", budget.getName());
+            return false;
+        }
+
+        return copy(budgetId, name);
+    }
+
+    /**
+     * Copies the budget and all its entries in one transaction.
      * @param budgetId The budget to copy.
+     * @param name The name (period) of the new budget.
+     * @return Indicator whether the copy was created.
+     */
+    public boolean copy(int budgetId, String name) {
+        BudgetRepository repo = new BudgetRepository(getContext());
+        BudgetEntryRepository entryRepo = new BudgetEntryRepository(getContext());
+
+        HashMap<String, BudgetEntry> entries = entryRepo.loadForYear(budgetId);
+        if (entries == null) return false;
+
+        Budget copy = new Budget();
+        copy.setName(name);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(repo.newInsert(copy).build());
+        for (BudgetEntry entry : entries.values()) {
+            entry.contentValues.remove(BudgetEntry.BUDGETENTRYID);
+
+            // link to the budget inserted as the first operation.
+            operations.add(entryRepo.newInsert(entry)
+                .withValueBackReference(BudgetEntry.BUDGETYEARID, 0)
+                .build());
+        }
+
+        return repo.applyBatch(operations) != null;
+    }
+
+    /**
+     * @param name Budget name, in yyyy or yyyy-MM format.
+     * @return The name of the following period, or null if the name is not a period.
      */
-    public void copy(int budgetId) {
-        //todo complete
+    private String getNextPeriodName(String name) {
+        if (name == null) return null;
+
+        Matcher matcher = PERIOD_PATTERN.matcher(name.trim());
+        if (!matcher.matches()) return null;
+
+        int year = Integer.parseInt(matcher.group(1));
+        if (matcher.group(2) == null) {
+            return Integer.toString(year + 1);
+        }
+
+        int month = Integer.parseInt(matcher.group(2));
+        if (month < 1 || month > 12) return null;
+        if (month == 12) {
+            year++;
+            month = 1;
+        } else {
+            month++;
+        }
+        return String.format(Locale.US, "%04d-%02d", year, month);
     }
 }
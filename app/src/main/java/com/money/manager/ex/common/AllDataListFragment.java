@@ -17,10 +17,11 @@
 package com.money.manager.ex.common;
 
 import android.app.Activity;
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.graphics.Typeface;
 import android.os.Bundle;
 
@@ -55,7 +56,6 @@ import com.money.manager.ex.datalayer.Select;
 import com.money.manager.ex.datalayer.SplitCategoriesRepository;
 import com.money.manager.ex.domainmodel.AccountTransaction;
 import com.money.manager.ex.domainmodel.SplitCategory;
-import com.money.manager.ex.sync.SyncManager;
 import com.money.manager.ex.transactions.CheckingTransactionEditActivity;
 import com.money.manager.ex.R;
 import com.money.manager.ex.servicelayer.qif.QifExport;
@@ -67,17 +67,25 @@ import com.money.manager.ex.home.DrawerMenuItem;
 import com.money.manager.ex.home.DrawerMenuItemAdapter;
 import com.money.manager.ex.core.ExportToCsvFile;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.SQLDataSet;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
 
 import androidx.cursoradapter.widget.CursorAdapter;
 import androidx.fragment.app.Fragment;
 import androidx.loader.app.LoaderManager;
 import androidx.loader.content.Loader;
 import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
 import info.javaperformance.money.MoneyFactory;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -114,6 +122,7 @@ public class AllDataListFragment
     public static final int ID_LOADER_ALL_DATA_DETAIL = 1;
 
     public static final String KEY_ARGUMENTS_WHERE = "SearchResultFragment:ArgumentsWhere";
+    public static final String KEY_ARGUMENTS_WHERE_PARAMS = "SearchResultFragment:ArgumentsWhereParams";
     public static final String KEY_ARGUMENTS_SORT = "SearchResultFragment:ArgumentsSort";
 
     public int AccountId = Constants.NOT_SET;
@@ -126,6 +135,7 @@ public class AllDataListFragment
     private View mListHeader = null;
     private Bundle mArguments;
     private boolean mShowFooter = false;
+    private Subscription mFooterSubscription;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -231,24 +241,21 @@ public class AllDataListFragment
                 if (args != null && args.containsKey(KEY_ARGUMENTS_WHERE)) {
                     selection = args.getString(KEY_ARGUMENTS_WHERE);
                 }
-//                String[] whereParams = new String[0];
-//                if (args != null && args.containsKey(KEY_ARGUMENTS_WHERE_PARAMS)) {
-//                    ArrayList<String> whereParamsList = args.getStringArrayList(KEY_ARGUMENTS_WHERE_PARAMS);
-//                    whereParams = whereParamsList.toArray(whereParams);
-//                }
+                String[] whereParams = getWhereParams(args);
 
                 // set sort
                 String sort = "";
                 if (args != null && args.containsKey(KEY_ARGUMENTS_SORT)) {
                     sort = args.getString(KEY_ARGUMENTS_SORT);
                 }
-                // create loader
+                // create loader. The transactions are read in pages, in the order of the sort
+                // completed with the transaction id.
                 QueryAllData allData = new QueryAllData(getActivity());
                 Select query = new Select(allData.getAllColumns())
-                        .where(selection)
+                        .where(selection, whereParams)
                         .orderBy(sort);
 
-                return new MmxCursorLoader(getActivity(), allData.getUri(), query);
+                return new PagedCursorLoader(getActivity(), allData.getUri(), query, QueryAllData.ID);
         }
         return null;
     }
@@ -286,11 +293,7 @@ public class AllDataListFragment
 
                 // Show totals
                 if (this.mShowFooter) {
-                    try {
-                        this.updateFooter(data);
-                    } catch (Exception e) {
-                        Timber.e(e, "displaying footer");
-                    }
+                    this.updateFooter();
                 }
         }
     }
@@ -352,6 +355,9 @@ public class AllDataListFragment
 
     @Override
     public void onDestroy() {
+        if (mFooterSubscription != null) {
+            mFooterSubscription.unsubscribe();
+        }
         if (mMultiChoiceModeListener != null)
             mMultiChoiceModeListener.onDestroyActionMode(null);
         super.onDestroy();
@@ -597,6 +603,20 @@ public class AllDataListFragment
         this.mShowFooter = true;
     }
 
+    /**
+     * @return the number of transactions in the list, including the ones not loaded yet.
+     */
+    public int getTransactionCount() {
+        AllDataAdapter adapter = getAllDataAdapter();
+        if (adapter == null || adapter.getCursor() == null) return 0;
+
+        Cursor cursor = adapter.getCursor();
+        if (cursor instanceof PagedCursor) {
+            return ((PagedCursor) cursor).getTotalCount();
+        }
+        return cursor.getCount();
+    }
+
     // Private methods.
 
     private void renderFooter() {
@@ -615,110 +635,103 @@ public class AllDataListFragment
         listView.addFooterView(footer);
     }
 
-    private void updateFooter(Cursor data) {
-        if (data == null) return;
-
-        String display;
-
-        // number of records
-         display = Integer.toString(data.getCount()) + " " + getString(R.string.records) + ", ";
-
-        // sum
-
-        Money total = MoneyFactory.fromString("0");
-
-        if (data.getCount() != 0) {
-            total = getTotalFromCursor(data);
+    /**
+     * Shows the number of records and the total, calculated in the background for the whole
+     * selection and not only for the rows loaded in the list.
+     */
+    private void updateFooter() {
+        if (mFooterSubscription != null) {
+            mFooterSubscription.unsubscribe();
         }
 
-        TextView txtColumn2 = (TextView) this.footer.findViewById(R.id.textViewColumn2);
+        Bundle arguments = getLatestArguments();
+        final String where = arguments != null ? arguments.getString(KEY_ARGUMENTS_WHERE) : null;
+        final String[] whereParams = getWhereParams(arguments);
+        final Context context = getActivity().getApplicationContext();
 
-        CurrencyService currencyService = new CurrencyService(getContext());
-        display += currencyService.getBaseCurrencyFormatted(total);
+        mFooterSubscription = Single.fromCallable(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return getFooterText(context, where, whereParams);
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<String>() {
+                @Override
+                public void onSuccess(String value) {
+                    TextView txtColumn2 = (TextView) footer.findViewById(R.id.textViewColumn2);
+                    txtColumn2.setText(value);
+                }
 
-        txtColumn2.setText(display);
+                @Override
+                public void onError(Throwable error) {
+                    Timber.e(error, "displaying footer");
+                }
+            });
     }
 
-    private Money getTotalFromCursor(Cursor cursor) {
-        Money total = MoneyFactory.fromString("0");
-        int originalPosition = cursor.getPosition();
-        AllDataAdapter adapter = getAllDataAdapter();
-        CurrencyService currencyService = new CurrencyService(getContext());
+    /**
+     * Counts and sums the transactions by currency and converts each currency total to the
+     * base currency.
+     * @param where The selection of the list.
+     * @param whereParams The parameters of the selection.
+     */
+    private static String getFooterText(Context context, String where, String[] whereParams) {
+        String amountCurrency = "CASE " + QueryAllData.TransactionType + " WHEN '" +
+            TransactionTypes.Transfer.name() + "' THEN ";
+        String sql = "SELECT " +
+            amountCurrency + QueryAllData.ToCurrencyId + " ELSE " + QueryAllData.CURRENCYID + " END, " +
+            "count(*), " +
+            "total(" + amountCurrency + QueryAllData.ToAmount + " ELSE " + QueryAllData.Amount + " END)" +
+            " FROM (" + new QueryAllData(context).getSource() + ") T" +
+            (TextUtils.isEmpty(where) ? "" : " WHERE " + where) +
+            " GROUP BY 1";
+
+        int records = 0;
+        MoneyAccumulator total = new MoneyAccumulator();
+        CurrencyService currencyService = new CurrencyService(context);
         int baseCurrencyId = currencyService.getBaseCurrencyId();
-        ContentValues values = new ContentValues();
 
-        int currencyId;
-        Money amount;
-        Money converted;
-        String transType;
-        TransactionTypes transactionType;
-
-        cursor.moveToPosition(Constants.NOT_SET);
-
-        while(cursor.moveToNext()) {
-            values.clear();
-
-            // Read needed data.
-            DatabaseUtils.cursorStringToContentValues(cursor, adapter.TRANSACTIONTYPE, values);
-            DatabaseUtils.cursorIntToContentValues(cursor, adapter.CURRENCYID, values);
-            DatabaseUtils.cursorIntToContentValues(cursor, adapter.TOCURRENCYID, values);
-            DatabaseUtils.cursorDoubleToCursorValues(cursor, adapter.AMOUNT, values);
-            DatabaseUtils.cursorDoubleToCursorValues(cursor, adapter.TOAMOUNT, values);
-
-            transType = values.getAsString(adapter.TRANSACTIONTYPE);
-            transactionType = TransactionTypes.valueOf(transType);
-
-            if (transactionType.equals(TransactionTypes.Transfer)) {
-                currencyId = values.getAsInteger(adapter.TOCURRENCYID);
-                amount = MoneyFactory.fromString(values.getAsString(adapter.TOAMOUNT));
-            } else {
-                currencyId = values.getAsInteger(adapter.CURRENCYID);
-                amount = MoneyFactory.fromString(values.getAsString(adapter.AMOUNT));
+        Cursor c = context.getContentResolver().query(new SQLDataSet().getUri(), null, sql, whereParams, null);
+        if (c != null) {
+            while (c.moveToNext()) {
+                records += c.getInt(1);
+                Money amount = MoneyFactory.fromDouble(c.getDouble(2));
+                total.add(currencyService.doCurrencyExchange(baseCurrencyId, amount, c.getInt(0)));
             }
-
-            converted = currencyService.doCurrencyExchange(baseCurrencyId, amount, currencyId);
-            total = total.add(converted);
+            c.close();
         }
 
-        cursor.moveToPosition(originalPosition);
-
-        return total;
+        return Integer.toString(records) + " " + context.getString(R.string.records) + ", " +
+            currencyService.getBaseCurrencyFormatted(total.toMoney());
     }
 
     private boolean setStatusCheckingAccount(int[] transId, String status) {
         // check if status = "U" convert to empty string
         if (TextUtils.isEmpty(status) || "U".equalsIgnoreCase(status)) status = "";
 
-        SyncManager sync = new SyncManager(getActivity());
-        // Pause synchronization while bulk processing.
-        sync.disableAutoUpload();
-
-        for (int id : transId) {
-            // content value for updates
-            ContentValues values = new ContentValues();
-            // set new state
-            values.put(ITransactionEntity.STATUS, status.toUpperCase());
-
-            AccountTransactionRepository repo = new AccountTransactionRepository(getActivity());
+        AccountTransactionRepository repo = new AccountTransactionRepository(getActivity());
 
-            // update
-            int updateResult = getActivity().getContentResolver().update(repo.getUri(),
-                    values,
-                    AccountTransaction.TRANSID + "=?",
-                    new String[]{Integer.toString(id)});
-            if (updateResult <= 0) {
-                Toast.makeText(getActivity(), R.string.db_update_failed, Toast.LENGTH_LONG).show();
-
-                sync.enableAutoUpload();
-                sync.dataChanged();
+        // content value for updates
+        ContentValues values = new ContentValues();
+        // set new state
+        values.put(ITransactionEntity.STATUS, status.toUpperCase());
 
-                return false;
-            }
+        // Update all in one transaction. The sync is notified once, after the batch.
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (int id : transId) {
+            operations.add(ContentProviderOperation.newUpdate(repo.getUri())
+                .withValues(values)
+                .withSelection(AccountTransaction.TRANSID + "=?", new String[]{Integer.toString(id)})
+                .withExpectedCount(1)
+                .build());
         }
 
-        // Now notify Dropbox about modifications.
-        sync.enableAutoUpload();
-        sync.dataChanged();
+        if (repo.applyBatch(operations) == null) {
+            Toast.makeText(getActivity(), R.string.db_update_failed, Toast.LENGTH_LONG).show();
+            return false;
+        }
 
         return true;
     }
@@ -740,56 +753,27 @@ public class AllDataListFragment
         alertDialog.onPositive(new MaterialDialog.SingleButtonCallback() {
             @Override
             public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                SyncManager sync = new SyncManager(getActivity());
-
-                // Pause sync notification while bulk processing.
-                sync.disableAutoUpload();
+                SplitCategoriesRepository splitRepo = new SplitCategoriesRepository(getActivity());
+                AccountTransactionRepository repo = new AccountTransactionRepository(getActivity());
 
+                // Delete the splits and the transactions in one transaction.
+                ArrayList<ContentProviderOperation> operations = new ArrayList<>();
                 for (int transactionId : transactionIds) {
-                    // First delete any splits. See if there are any split records.
-                    SplitCategoriesRepository splitRepo = new SplitCategoriesRepository(getActivity());
-                    Cursor curSplit = getActivity().getContentResolver().query(splitRepo.getUri(), null,
-                            SplitCategory.TRANSID + "=" + Integer.toString(transactionId),
-                            null, SplitCategory.SPLITTRANSID);
-                    int splitCount = curSplit.getCount();
-                    curSplit.close();
-
-                    if (splitCount > 0) {
-                        int deleteResult = getActivity().getContentResolver().delete(splitRepo.getUri(),
-                                SplitCategory.TRANSID + "=?",
-                                new String[]{Integer.toString(transactionId)});
-                        if (deleteResult != splitCount) {
-                            Toast.makeText(getActivity(), R.string.db_delete_failed, Toast.LENGTH_SHORT).show();
-
-                            // Now notify Dropbox about modifications.
-                            sync.enableAutoUpload();
-                            sync.dataChanged();
-
-                            return;
-                        }
-                    }
-
-                    // Delete the transaction.
-
-                    AccountTransactionRepository repo = new AccountTransactionRepository(getActivity());
-
-                    int deleteResult = getActivity().getContentResolver().delete(repo.getUri(),
-                            AccountTransaction.TRANSID + "=?",
-                            new String[]{Integer.toString(transactionId)});
-                    if (deleteResult == 0) {
-                        Toast.makeText(getActivity(), R.string.db_delete_failed, Toast.LENGTH_SHORT).show();
-
-                        // Now notify Dropbox about modifications.
-                        sync.enableAutoUpload();
-                        sync.dataChanged();
-
-                        return;
-                    }
+                    String[] args = new String[]{Integer.toString(transactionId)};
+
+                    operations.add(ContentProviderOperation.newDelete(splitRepo.getUri())
+                        .withSelection(SplitCategory.TRANSID + "=?", args)
+                        .build());
+                    operations.add(ContentProviderOperation.newDelete(repo.getUri())
+                        .withSelection(AccountTransaction.TRANSID + "=?", args)
+                        .withExpectedCount(1)
+                        .build());
                 }
 
-                // Now notify Dropbox about modifications.
-                sync.enableAutoUpload();
-                sync.dataChanged();
+                if (repo.applyBatch(operations) == null) {
+                    Toast.makeText(getActivity(), R.string.db_delete_failed, Toast.LENGTH_SHORT).show();
+                    return;
+                }
 
                 // restart loader
                 loadData();
@@ -846,13 +830,8 @@ public class AllDataListFragment
         AllDataAdapter adapter = getAllDataAdapter();
         if(adapter == null) return;
 
-        // Clear selection first.
-        adapter.clearPositionChecked();
-
-        int numRecords = adapter.getCount();
-        for (int i = 0; i < numRecords; i++) {
-            adapter.setPositionChecked(i, true);
-        }
+        // Also the transactions that are not loaded yet.
+        adapter.setAllPositionsChecked();
 
         adapter.notifyDataSetChanged();
     }
@@ -863,16 +842,30 @@ public class AllDataListFragment
         AllDataAdapter adapter = getAllDataAdapter();
         if(adapter == null) return transIds;
 
+        // get checked items from the adapter, not from the list view.
+        // List view only contains the one that was tapped, ignoring the Select All.
+        SparseBooleanArray positionChecked = adapter.getPositionsChecked();
+
+        if (adapter.isAllPositionsChecked()) {
+            // All the transactions of the selection, except the ones unchecked afterwards.
+            Cursor cursor = adapter.queryAllRows(new String[] { QueryAllData.ID });
+            if (cursor == null) return transIds;
+
+            int idColumn = cursor.getColumnIndex(QueryAllData.ID);
+            while (cursor.moveToNext()) {
+                if (positionChecked.get(cursor.getPosition(), true)) {
+                    transIds.add(cursor.getInt(idColumn));
+                }
+            }
+            cursor.close();
+            return transIds;
+        }
+
         Cursor cursor = adapter.getCursor();
         if (cursor != null) {
-            // get checked items & count from the adapter, not from the list view.
-            // List view only contains the one that was tapped, ignoring the Select All.
-//                SparseBooleanArray positionChecked = getListView().getCheckedItemPositions();
-            SparseBooleanArray positionChecked = adapter.getPositionsChecked();
-//                int checkedItemsCount = getListView().getCheckedItemCount();
-            int checkedItemsCount = positionChecked.size();
-
-            for (int i = 0; i < checkedItemsCount; i++) {
+            for (int i = 0; i < positionChecked.size(); i++) {
+                if (!positionChecked.valueAt(i)) continue;
+
                 int position = positionChecked.keyAt(i);
                 // This screws up the selection?
 //                    if (getListHeader() != null)
@@ -992,4 +985,13 @@ public class AllDataListFragment
         mArguments = arguments;
     }
 
+    /**
+     * @return the parameters of the selection in the arguments, or null.
+     */
+    public static String[] getWhereParams(Bundle arguments) {
+        if (arguments == null) return null;
+
+        return arguments.getStringArray(KEY_ARGUMENTS_WHERE_PARAMS);
+    }
+
 }
@@ -52,6 +52,7 @@ import com.money.manager.ex.servicelayer.CategoryService;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.database.QueryCategorySubCategory;
 import com.money.manager.ex.database.SQLTypeTransaction;
+import com.money.manager.ex.database.SearchIndex;
 import com.money.manager.ex.search.CategorySub;
 import com.money.manager.ex.search.SearchActivity;
 import com.money.manager.ex.search.SearchParameters;
@@ -271,9 +272,17 @@ public class CategoryListFragment
                 String whereClause = null;
                 String selectionArgs[] = null;
                 if (!TextUtils.isEmpty(mCurFilter)) {
-                    whereClause = QueryCategorySubCategory.CATEGNAME + " LIKE ? OR "
-                            + QueryCategorySubCategory.SUBCATEGNAME + " LIKE ?";
-                    selectionArgs = new String[]{mCurFilter + "%", mCurFilter + "%"};
+                    // word prefixes, from the search index.
+                    String match = SearchIndex.toMatchExpression(null, mCurFilter);
+                    if (match != null) {
+                        whereClause = SearchIndex.getCategorySelection(QueryCategorySubCategory.CATEGID,
+                                QueryCategorySubCategory.SUBCATEGID);
+                        selectionArgs = new String[]{match, match};
+                    } else {
+                        whereClause = QueryCategorySubCategory.CATEGNAME + " LIKE ? OR "
+                                + QueryCategorySubCategory.SUBCATEGNAME + " LIKE ?";
+                        selectionArgs = new String[]{mCurFilter + "%", mCurFilter + "%"};
+                    }
                 }
                 Select query = new Select(mQuery.getAllColumns())
                     .where(whereClause, selectionArgs)
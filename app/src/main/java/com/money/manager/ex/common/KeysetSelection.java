@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keyset pagination over an ordered query.
+ * The next page is selected with a condition on the sort columns of the last row of the
+ * previous page, instead of an OFFSET, so that each page is read from its position onwards
+ * and costs the same wherever it is in the list.
+ * The sort has to identify the rows, so the id column is appended when it is not the last
+ * sort column. Only plain column names, with an optional ASC/DESC, are supported.
+ */
+public class KeysetSelection {
+
+    /**
+     * @param sort The ORDER BY clause of the query, without the keyword.
+     * @param idColumn The unique column of the query.
+     * @throws IllegalArgumentException when the sort contains anything but column names.
+     */
+    public KeysetSelection(String sort, String idColumn) {
+        List<String> columns = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+
+        if (sort != null && !sort.trim().isEmpty()) {
+            for (String part : sort.split(",")) {
+                String[] words = part.trim().split("\\s+");
+                if (words.length == 0 || words.length > 2 || !isColumnName(words[0])) {
+                    throw new IllegalArgumentException("sort not supported: " + sort);
+                }
+                boolean desc = false;
+                if (words.length == 2) {
+                    String direction = words[1].toUpperCase(Locale.US);
+                    if (direction.equals("DESC")) {
+                        desc = true;
+                    } else if (!direction.equals("ASC")) {
+                        throw new IllegalArgumentException("sort not supported: " + sort);
+                    }
+                }
+                columns.add(words[0]);
+                descending.add(desc);
+            }
+        }
+
+        int last = columns.size() - 1;
+        if (last < 0 || !columns.get(last).equalsIgnoreCase(idColumn)) {
+            columns.add(idColumn);
+            // keep the direction of the previous column, to match its index.
+            descending.add(last >= 0 && descending.get(last));
+        }
+
+        mColumns = columns.toArray(new String[columns.size()]);
+        mDescending = new boolean[mColumns.length];
+        for (int i = 0; i < mDescending.length; i++) {
+            mDescending[i] = descending.get(i);
+        }
+    }
+
+    private final String[] mColumns;
+    private final boolean[] mDescending;
+
+    /**
+     * @return the sort columns, in order. The values of the key are read from these.
+     */
+    public String[] getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * @return the sort, including the id column.
+     */
+    public String getOrderBy() {
+        return getOrderBy(null);
+    }
+
+    /**
+     * @param alias Qualifies the sort columns, for a query that joins the rows with another
+     * table. Null for none.
+     * @return the sort, including the id column.
+     */
+    public String getOrderBy(String alias) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mColumns.length; i++) {
+            if (i > 0) builder.append(", ");
+            if (alias != null) builder.append(alias).append('.');
+            builder.append(mColumns[i]);
+            if (mDescending[i]) builder.append(" DESC");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The condition for the rows that come after the given key in the sort order.
+     * The values are written as literals, so that they are compared with their own type.
+     * NULL sorts before any value in SQLite.
+     * @param key The values of the sort columns of the last row read.
+     * @return the selection, to be combined with the one of the query.
+     */
+    public String getSelectionAfter(Object[] key) {
+        if (key.length != mColumns.length) {
+            throw new IllegalArgumentException("key has " + key.length + " values, expected " +
+                mColumns.length);
+        }
+
+        StringBuilder result = new StringBuilder();
+        StringBuilder equal = new StringBuilder();
+
+        for (int i = 0; i < mColumns.length; i++) {
+            String after = getAfter(mColumns[i], mDescending[i], key[i]);
+            if (after != null) {
+                if (result.length() > 0) result.append(" OR ");
+                result.append("(");
+                result.append(equal);
+                result.append(after);
+                result.append(")");
+            }
+
+            equal.append(key[i] == null
+                ? mColumns[i] + " IS NULL"
+                : mColumns[i] + " = " + toLiteral(key[i]));
+            equal.append(" AND ");
+        }
+
+        if (result.length() == 0) {
+            // nothing can come after the key.
+            return "0";
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return SQL literal for the value read from a cursor.
+     */
+    public static String toLiteral(Object value) {
+        if (value == null) return "NULL";
+        if (value instanceof Number) return value.toString();
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    private String getAfter(String column, boolean descending, Object value) {
+        if (value == null) {
+            return descending
+                ? null
+                : column + " IS NOT NULL";
+        }
+
+        String literal = toLiteral(value);
+        return descending
+            ? "(" + column + " < " + literal + " OR " + column + " IS NULL)"
+            : column + " > " + literal;
+    }
+
+    private boolean isColumnName(String value) {
+        if (value.isEmpty()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') return false;
+        }
+        return true;
+    }
+}
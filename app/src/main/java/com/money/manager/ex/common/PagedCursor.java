@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.common;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.money.manager.ex.datalayer.Select;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Cursor over a query that is read in pages, instead of stepping through all the rows
+ * to count them.
+ * Only the first page is read when the cursor is created. The following page is read in the
+ * background when the position gets close to the last row read, and the count grows;
+ * the registered data set observers (the adapter) are notified.
+ * A limited number of pages is kept open. An evicted page is read again in the background,
+ * from the key of the row before it, when it is needed; its rows are placeholders until then,
+ * see {@link #isRowLoaded()}. The total number of rows is also counted in the background.
+ * The cursor is used on the main thread, as the adapter does.
+ */
+public class PagedCursor
+    extends AbstractCursor {
+
+    public static final int PAGE_SIZE = 100;
+    /**
+     * The next page is requested when the position is this close to the last row read.
+     */
+    public static final int PREFETCH_DISTANCE = 40;
+    /**
+     * The number of pages kept open.
+     */
+    public static final int MAX_PAGES = 8;
+
+    /**
+     * Reads the first page. Call on a background thread.
+     * @throws IllegalArgumentException when the sort of the query can not be paged.
+     */
+    public static PagedCursor open(ContentResolver resolver, Uri uri, Select query, String idColumn) {
+        PagedCursor cursor = new PagedCursor(resolver, uri, query,
+            new KeysetSelection(query.sort, idColumn));
+        cursor.loadFirstPage();
+        return cursor;
+    }
+
+    private PagedCursor(ContentResolver resolver, Uri uri, Select query, KeysetSelection keyset) {
+        mResolver = resolver;
+        mUri = uri;
+        mQuery = query;
+        mKeyset = keyset;
+    }
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final Select mQuery;
+    private final KeysetSelection mKeyset;
+    private final DataSetObservable mPageObservable = new DataSetObservable();
+    private final LinkedHashMap<Integer, Cursor> mPages =
+        new LinkedHashMap<Integer, Cursor>(MAX_PAGES + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Cursor> eldest) {
+                if (size() <= MAX_PAGES) return false;
+
+                if (mCurrent == eldest.getValue()) {
+                    mCurrent = mPlaceholder;
+                }
+                eldest.getValue().close();
+                return true;
+            }
+        };
+    /**
+     * The key of the row before each page, from which the page is read again after it was
+     * evicted. Null for the first page.
+     */
+    private final List<Object[]> mPageStartKeys = new ArrayList<>();
+    /**
+     * The evicted pages being read again.
+     */
+    private final HashMap<Integer, Subscription> mPageSubscriptions = new HashMap<>();
+
+    private String[] mColumnNames;
+    private int[] mKeyColumns;
+    private int mCount;
+    private int mPageCount;
+    /**
+     * All the rows have been read.
+     */
+    private boolean mComplete;
+    private Object[] mLastKey;
+    private Subscription mNextPageSubscription;
+    private Subscription mCountSubscription;
+    private int mTotalCount = -1;
+    private Cursor mCurrent;
+    /**
+     * One row without values, shown while a page is read again.
+     */
+    private MatrixCursor mPlaceholder;
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return true when all the rows have been read and the count is final.
+     */
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    /**
+     * The number of rows of the query, including the ones not read yet.
+     * Counted in the background when the cursor is opened; until then, the rows read so far.
+     */
+    public int getTotalCount() {
+        if (mComplete) return mCount;
+
+        return Math.max(mTotalCount, mCount);
+    }
+
+    /**
+     * @return false when the current row is a placeholder, for a page that is being read
+     * again. The data set observers are notified when it is read.
+     */
+    public boolean isRowLoaded() {
+        return mCurrent != mPlaceholder;
+    }
+
+    /**
+     * Opens a new cursor over all the rows, in the same order. For the operations that need
+     * every row, like the exports. The caller closes it.
+     * @param projection The columns to read, or null for the columns of this cursor.
+     */
+    public Cursor queryAll(String[] projection) {
+        return mResolver.query(mUri, projection == null ? mQuery.projection : projection,
+            mQuery.selection, mQuery.selectionArgs, mKeyset.getOrderBy());
+    }
+
+    /**
+     * The query of all the rows, for the operations that read other data in the same order.
+     * @param alias Qualifies the sort columns, for a query that joins the rows with another
+     * table.
+     * @return the selection and its arguments, and the sort of this cursor.
+     */
+    public Select getQuery(String alias) {
+        return new Select(mQuery.projection)
+            .where(mQuery.selection, mQuery.selectionArgs)
+            .orderBy(mKeyset.getOrderBy(alias));
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        int page = newPosition / PAGE_SIZE;
+        if (page >= mPageCount) {
+            mCurrent = null;
+            return false;
+        }
+
+        Cursor cursor = getPage(page);
+        if (cursor == null) {
+            mPlaceholder.moveToFirst();
+            cursor = mPlaceholder;
+        } else if (!cursor.moveToPosition(newPosition - page * PAGE_SIZE)) {
+            mCurrent = null;
+            return false;
+        }
+        mCurrent = cursor;
+
+        if (!mComplete && newPosition >= mCount - PREFETCH_DISTANCE) {
+            loadNextPage();
+        }
+        return true;
+    }
+
+    @Override
+    public String getString(int column) {
+        return mCurrent.getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return mCurrent.getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mCurrent.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mCurrent.getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return mCurrent.getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mCurrent.getDouble(column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return mCurrent.getBlob(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        return mCurrent.getType(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mCurrent.isNull(column);
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+        super.registerDataSetObserver(observer);
+        mPageObservable.registerObserver(observer);
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        super.unregisterDataSetObserver(observer);
+        mPageObservable.unregisterObserver(observer);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+
+        if (mNextPageSubscription != null) {
+            mNextPageSubscription.unsubscribe();
+            mNextPageSubscription = null;
+        }
+        if (mCountSubscription != null) {
+            mCountSubscription.unsubscribe();
+            mCountSubscription = null;
+        }
+        for (Subscription subscription : mPageSubscriptions.values()) {
+            subscription.unsubscribe();
+        }
+        mPageSubscriptions.clear();
+        Iterator<Cursor> pages = mPages.values().iterator();
+        while (pages.hasNext()) {
+            pages.next().close();
+            pages.remove();
+        }
+        mCurrent = null;
+    }
+
+    // Private
+
+    private void loadFirstPage() {
+        Cursor page = queryPage(null);
+        if (page == null) {
+            mColumnNames = new String[0];
+            mComplete = true;
+            return;
+        }
+
+        mColumnNames = page.getColumnNames();
+        mPlaceholder = new MatrixCursor(mColumnNames, 1);
+        mPlaceholder.addRow(new Object[mColumnNames.length]);
+        mKeyColumns = new int[mKeyset.getColumns().length];
+        for (int i = 0; i < mKeyColumns.length; i++) {
+            mKeyColumns[i] = page.getColumnIndex(mKeyset.getColumns()[i]);
+            if (mKeyColumns[i] < 0) {
+                page.close();
+                throw new IllegalArgumentException("sort column not in the projection: " +
+                    mKeyset.getColumns()[i]);
+            }
+        }
+
+        addPage(page);
+        if (!mComplete) {
+            loadTotalCount();
+        }
+    }
+
+    /**
+     * Counts all the rows of the query, in the background.
+     */
+    private void loadTotalCount() {
+        mCountSubscription = Single.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Cursor c = mResolver.query(mUri, new String[] { "count(*)" }, mQuery.selection,
+                    mQuery.selectionArgs, null);
+                if (c == null) return -1;
+
+                int count = c.moveToFirst() ? c.getInt(0) : -1;
+                c.close();
+                return count;
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Integer>() {
+                @Override
+                public void onSuccess(Integer count) {
+                    mCountSubscription = null;
+                    mTotalCount = count;
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    mCountSubscription = null;
+                    Timber.e(error, "counting the rows");
+                }
+            });
+    }
+
+    /**
+     * Reads an evicted page again, in the background, from the key of the row before it.
+     */
+    private void reloadPage(final int page) {
+        if (mPageSubscriptions.containsKey(page)) return;
+
+        final Object[] after = mPageStartKeys.get(page);
+        mPageSubscriptions.put(page, Single.fromCallable(new Callable<Cursor>() {
+            @Override
+            public Cursor call() throws Exception {
+                return queryPage(after);
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Cursor>() {
+                @Override
+                public void onSuccess(Cursor cursor) {
+                    mPageSubscriptions.remove(page);
+                    if (cursor == null) return;
+                    if (isClosed()) {
+                        cursor.close();
+                        return;
+                    }
+
+                    mPages.put(page, cursor);
+                    mPageObservable.notifyChanged();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    mPageSubscriptions.remove(page);
+                    Timber.e(error, "loading page %d", page);
+                }
+            }));
+    }
+
+    /**
+     * Reads the page after the last one, in the background.
+     */
+    private void loadNextPage() {
+        if (mNextPageSubscription != null) return;
+
+        final Object[] after = mLastKey;
+        mNextPageSubscription = Single.fromCallable(new Callable<Cursor>() {
+            @Override
+            public Cursor call() throws Exception {
+                return queryPage(after);
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Cursor>() {
+                @Override
+                public void onSuccess(Cursor page) {
+                    mNextPageSubscription = null;
+                    if (page == null) return;
+                    if (isClosed()) {
+                        page.close();
+                        return;
+                    }
+
+                    addPage(page);
+                    mPageObservable.notifyChanged();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    mNextPageSubscription = null;
+                    Timber.e(error, "loading the next page");
+                }
+            });
+    }
+
+    private void addPage(Cursor page) {
+        int rows = page.getCount();
+
+        mPageStartKeys.add(mLastKey);
+        mPages.put(mPageCount, page);
+        mPageCount++;
+        mCount += rows;
+        mComplete = rows < PAGE_SIZE;
+
+        if (rows > 0) {
+            page.moveToLast();
+            mLastKey = readKey(page);
+        }
+    }
+
+    /**
+     * @return the page, or null if it was evicted; it is then read again.
+     */
+    private Cursor getPage(int page) {
+        if (page >= mPageCount) return null;
+
+        Cursor cursor = mPages.get(page);
+        if (cursor == null) {
+            reloadPage(page);
+        }
+        return cursor;
+    }
+
+    /**
+     * @param after The key of the last row of the previous page, or null for the first page.
+     */
+    private Cursor queryPage(Object[] after) {
+        String selection = mQuery.selection;
+        if (after != null) {
+            String keyset = mKeyset.getSelectionAfter(after);
+            selection = TextUtils.isEmpty(selection)
+                ? keyset
+                : "(" + selection + ") AND (" + keyset + ")";
+        }
+
+        Cursor page = mResolver.query(mUri, mQuery.projection, selection, mQuery.selectionArgs,
+            mKeyset.getOrderBy() + " LIMIT " + PAGE_SIZE);
+        if (page != null) {
+            // read the rows here, on the calling thread.
+            page.getCount();
+        }
+        return page;
+    }
+
+    private Object[] readKey(Cursor cursor) {
+        Object[] key = new Object[mKeyColumns.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = readValue(cursor, mKeyColumns[i]);
+        }
+        return key;
+    }
+
+    private Object readValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return cursor.getString(column);
+        }
+    }
+}
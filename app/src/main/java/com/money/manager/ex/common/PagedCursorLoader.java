@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.common;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.money.manager.ex.datalayer.Select;
+
+import androidx.loader.content.AsyncTaskLoader;
+import timber.log.Timber;
+
+/**
+ * Loader for a PagedCursor. Only the first page is read before the result is delivered.
+ * Queries with a sort that can not be paged are loaded whole, as MmxCursorLoader does.
+ * Reloads when the data at the uri changes.
+ */
+public class PagedCursorLoader
+    extends AsyncTaskLoader<Cursor> {
+
+    /**
+     * @param idColumn The unique column of the query, used to complete the sort.
+     */
+    public PagedCursorLoader(Context context, Uri uri, Select query, String idColumn) {
+        super(context);
+
+        mObserver = new ForceLoadContentObserver();
+        mUri = uri;
+        mQuery = query;
+        mIdColumn = idColumn;
+    }
+
+    private final ForceLoadContentObserver mObserver;
+    private final Uri mUri;
+    private final Select mQuery;
+    private final String mIdColumn;
+    private Cursor mCursor;
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor;
+        try {
+            try {
+                cursor = PagedCursor.open(getContext().getContentResolver(), mUri, mQuery, mIdColumn);
+                cursor.setNotificationUri(getContext().getContentResolver(), mUri);
+            } catch (IllegalArgumentException e) {
+                Timber.w("loading all the rows: %s", e.getMessage());
+
+                cursor = getContext().getContentResolver().query(mUri, mQuery.projection,
+                    mQuery.selection, mQuery.selectionArgs, mQuery.sort);
+                if (cursor != null) {
+                    cursor.getCount();
+                }
+            }
+        } catch (Exception e) {
+            Timber.e(e, "loading data");
+            return null;
+        }
+
+        if (cursor != null) {
+            cursor.registerContentObserver(mObserver);
+        }
+        return cursor;
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        if (isReset()) {
+            if (cursor != null) cursor.close();
+            return;
+        }
+
+        Cursor oldCursor = mCursor;
+        mCursor = cursor;
+
+        if (isStarted()) {
+            super.deliverResult(cursor);
+        }
+
+        if (oldCursor != null && oldCursor != cursor && !oldCursor.isClosed()) {
+            oldCursor.close();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mCursor != null) {
+            deliverResult(mCursor);
+        }
+        if (takeContentChanged() || mCursor == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(Cursor cursor) {
+        if (cursor != null && !cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        onStopLoading();
+
+        if (mCursor != null && !mCursor.isClosed()) {
+            mCursor.close();
+        }
+        mCursor = null;
+    }
+}
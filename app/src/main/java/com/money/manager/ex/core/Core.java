@@ -113,6 +113,11 @@ public class Core {
         File database = new File(new DatabaseManager(getContext()).getDatabasePath());
         if (!database.exists()) return null;
 
+        if (!MmxOpenHelper.checkpointIfOpen(database.getPath())) {
+            Timber.e("backing up the database: the write-ahead log could not be merged");
+            return null;
+        }
+
         //create folder to copy database
         //MmxDatabaseUtils dbUtils = new MmxDatabaseUtils(getContext());
         DatabaseManager dbManager = new DatabaseManager(getContext());
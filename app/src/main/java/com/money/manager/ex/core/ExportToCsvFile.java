@@ -105,8 +105,10 @@ public class ExportToCsvFile
 	private boolean runTask() {
 		if (mAdapter == null || mAdapter.getCursor() == null)
 			return false;
-		// take cursor
-		Cursor data = mAdapter.getCursor();
+		// take all the rows, also the ones the list has not loaded yet.
+		Cursor data = mAdapter.queryAllRows(null);
+		if (data == null)
+			return false;
 		// create object to write csv file
 		try {
 			CSVWriter csvWriter = new CSVWriter(new FileWriter(mFileName), CSVWriter.DEFAULT_SEPARATOR,
@@ -135,6 +137,8 @@ public class ExportToCsvFile
 			Timber.e(e, "exporting to CSV");
 
 			return false;
+		} finally {
+			data.close();
 		}
 		return true;
 	}
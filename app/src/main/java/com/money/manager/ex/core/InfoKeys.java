@@ -35,4 +35,6 @@ public class InfoKeys {
     public static final String QUOTE_PROVIDER = "QUOTE_PROVIDER";
     public static final String EXCHANGE_RATE_PROVIDER = "EXCHANGE_RATE_PROVIDER";
     public static final String PASSCODE = "PASSCODEMOBILE";
+    // Settings with which the transaction facts were calculated.
+    public static final String TRANSACTION_FACT_SETTINGS = "android:transaction_fact_settings";
 }
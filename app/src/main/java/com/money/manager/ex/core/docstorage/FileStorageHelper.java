@@ -14,9 +14,10 @@ import android.provider.DocumentsContract;
 import android.provider.OpenableColumns;
 
 import com.google.common.io.ByteStreams;
-import com.google.common.io.Files;
 import com.money.manager.ex.core.RequestCodes;
 import com.money.manager.ex.core.database.DatabaseManager;
+import com.money.manager.ex.database.ExternalChanges;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.home.DatabaseMetadata;
 import com.money.manager.ex.utils.MmxDatabaseUtils;
 import com.money.manager.ex.utils.MmxDate;
@@ -156,6 +157,12 @@ public class FileStorageHelper {
      * @param metadata Database file metadata.
      */
     private void pullDatabase(DatabaseMetadata metadata) {
+        // Nothing may be left in the write-ahead log of the file being replaced.
+        if (!MmxOpenHelper.checkpointIfOpen(metadata.localPath)) {
+            Timber.e("downloading database: the write-ahead log could not be merged");
+            return;
+        }
+
         // Delete previous local file, if found.
         File prevFile = new File(metadata.localPath);
         boolean deleted = prevFile.delete();
@@ -198,7 +205,7 @@ public class FileStorageHelper {
 //        }
 
         // upload local file
-        uploadDatabase(metadata);
+        if (!uploadDatabase(metadata)) return;
 
         // Update the modification timestamps, both local and remote.
         MmxDate localLastModifiedMmxDate = getLocalFileModifiedDate(metadata);
@@ -322,11 +329,19 @@ public class FileStorageHelper {
 
     /**
      * Just pushes the given local file to the document provider, using a temporary name.
+     * @return false if the file was not uploaded.
      */
-    private void uploadDatabase(DatabaseMetadata metadata) {
+    private boolean uploadDatabase(DatabaseMetadata metadata) {
         ContentResolver resolver = getContext().getContentResolver();
         Uri remote = Uri.parse(metadata.remotePath);
 
+        // local file, with any write-ahead log merged in. Checked before the remote file is
+        // opened for writing, which truncates it.
+        if (!MmxOpenHelper.checkpointIfOpen(metadata.localPath)) {
+            Timber.e("uploading database: the write-ahead log could not be merged");
+            return false;
+        }
+
         ParcelFileDescriptor pfd = null;
         try {
             pfd = resolver.openFileDescriptor(remote, "w");
@@ -334,19 +349,20 @@ public class FileStorageHelper {
             FileOutputStream fileOutputStream =
                 new FileOutputStream(pfd.getFileDescriptor());
 
-            // local file
             File localFile = new File(metadata.localPath);
-            Files.copy(localFile, fileOutputStream);
+            MmxOpenHelper.copyDatabaseFile(localFile, fileOutputStream);
 
             fileOutputStream.close();
             pfd.close();
 
             Timber.i("Database stored successfully.");
+            return true;
         } catch (FileNotFoundException e) {
             Timber.e(e);
         } catch (IOException e) {
             Timber.e(e);
         }
+        return false;
     }
 
     /**
@@ -397,6 +413,9 @@ public class FileStorageHelper {
             //parcelFileDescriptor.close();
             //providerClient.close();
         }
+
+        // The derived tables are verified when the new file is opened.
+        new ExternalChanges(getContext()).markReplaced(localPath);
     }
 
     /**
@@ -18,13 +18,15 @@
 package com.money.manager.ex.core.ioc;
 
 import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.database.BriteDatabaseHolder;
 import com.money.manager.ex.database.MmxOpenHelper;
 import com.squareup.sqlbrite.BriteDatabase;
 import com.squareup.sqlbrite.SqlBrite;
 
+import javax.inject.Singleton;
+
 import dagger.Module;
 import dagger.Provides;
-import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -46,7 +48,8 @@ public final class DbModule {
         return app.openHelperAtomicReference.get();
     }
 
-    @Provides SqlBrite provideSqlBrite() {
+    @Provides @Singleton
+    SqlBrite provideSqlBrite() {
         return new SqlBrite.Builder().logger(new SqlBrite.Logger() {
             @Override public void log(String message) {
                 Timber.tag("Database").v(message);
@@ -54,9 +57,11 @@ public final class DbModule {
         }).build();
     }
 
-    @Provides BriteDatabase provideDatabase(SqlBrite sqlBrite, MmxOpenHelper helper) {
-        BriteDatabase db = sqlBrite.wrapDatabaseHelper(helper, Schedulers.io());
-        db.setLoggingEnabled(true);
-        return db;
+    /**
+     * The same instance for as long as the database is open.
+     * The statements are logged only if enabled in the database settings.
+     */
+    @Provides BriteDatabase provideDatabase(BriteDatabaseHolder holder, MmxOpenHelper helper) {
+        return holder.get(helper);
     }
 }
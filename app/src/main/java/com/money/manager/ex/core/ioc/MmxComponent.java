@@ -37,10 +37,12 @@ import com.money.manager.ex.investment.InvestmentTransactionEditActivity;
 import com.money.manager.ex.investment.PriceEditActivity;
 import com.money.manager.ex.investment.PriceEditModel;
 import com.money.manager.ex.investment.morningstar.MorningstarPriceUpdater;
+import com.money.manager.ex.investment.watchlist.WatchlistFragment;
 import com.money.manager.ex.recurring.transactions.RecurringTransactionEditActivity;
 import com.money.manager.ex.recurring.transactions.RecurringTransactionListFragment;
 import com.money.manager.ex.reports.BaseReportFragment;
 import com.money.manager.ex.search.SearchParametersFragment;
+import com.money.manager.ex.servicelayer.AccountService;
 import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.DatabaseSettingsFragment;
@@ -85,6 +87,7 @@ public interface MmxComponent {
     void inject(RecurringTransactionListFragment fragment);
     void inject(SearchParametersFragment fragment);
     void inject(SyncPreferenceFragment fragment);
+    void inject(WatchlistFragment fragment);
 
     // Dialogs
     void inject(EditPriceDialog dialog);
@@ -109,6 +112,7 @@ public interface MmxComponent {
     void inject(FormatUtilities utils);
 
     // Business Services
+    void inject(AccountService service);
     void inject(CurrencyService service);
     void inject(InfoService service);
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.database.Cursor;
+
+import com.money.manager.ex.domainmodel.Currency;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Process-wide cache of the currencies and their exchange rates, shared by all the
+ * CurrencyService instances.
+ * All the currencies are loaded with one query on first use. The cache is invalidated
+ * whenever the currencies or the exchange rates are written and when another database is
+ * opened.
+ */
+public class CurrencyCache {
+
+    private static final Object lock = new Object();
+    private static volatile Snapshot snapshot;
+    private static volatile Integer baseCurrencyId;
+    /**
+     * Incremented on every invalidation, so that a load running concurrently with a write
+     * does not publish outdated values.
+     */
+    private static int version = 0;
+
+    /**
+     * @return a copy of the currency with the given id, which the caller can modify, or null
+     * if it does not exist.
+     */
+    public static Currency getCurrency(CurrencyRepository repository, int currencyId) {
+        Currency cached = getSnapshot(repository).currencies.get(currencyId);
+        if (cached == null) return null;
+
+        Currency result = new Currency();
+        result.contentValues.putAll(cached.contentValues);
+        return result;
+    }
+
+    /**
+     * @return the id of the currency with the given code (symbol), or null if it does not exist.
+     */
+    public static Integer getIdForCode(CurrencyRepository repository, String code) {
+        return getSnapshot(repository).codes.get(code);
+    }
+
+    public static Integer getBaseCurrencyId() {
+        return baseCurrencyId;
+    }
+
+    public static void setBaseCurrencyId(Integer id) {
+        baseCurrencyId = id;
+    }
+
+    /**
+     * Discard all the cached currencies and rates. They will be reloaded on the next access.
+     */
+    public static void invalidate() {
+        synchronized (lock) {
+            version++;
+            snapshot = null;
+            baseCurrencyId = null;
+        }
+    }
+
+    private static Snapshot getSnapshot(CurrencyRepository repository) {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+
+        int loadVersion;
+        synchronized (lock) {
+            if (snapshot != null) return snapshot;
+            loadVersion = version;
+        }
+
+        current = load(repository);
+        if (current == null) {
+            // do not keep the failed load.
+            return new Snapshot(new HashMap<Integer, Currency>(), new HashMap<String, Integer>());
+        }
+
+        synchronized (lock) {
+            if (version == loadVersion) {
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+
+    private static Snapshot load(CurrencyRepository repository) {
+        HashMap<Integer, Currency> currencies = new HashMap<>();
+        HashMap<String, Integer> codes = new HashMap<>();
+
+        Cursor c = repository.openCursor(null, null, null);
+        if (c == null) {
+            Timber.w("could not load currencies");
+            return null;
+        }
+
+        while (c.moveToNext()) {
+            Currency currency = Currency.fromCursor(c);
+            currencies.put(currency.getCurrencyId(), currency);
+            codes.put(currency.getCode(), currency.getCurrencyId());
+        }
+        c.close();
+
+        return new Snapshot(currencies, codes);
+    }
+
+    /**
+     * Immutable set of the loaded currencies. The currency entities are mutable, so they are
+     * only handed out as copies.
+     */
+    private static class Snapshot {
+        Snapshot(HashMap<Integer, Currency> currencies, HashMap<String, Integer> codes) {
+            this.currencies = Collections.unmodifiableMap(currencies);
+            this.codes = Collections.unmodifiableMap(codes);
+        }
+
+        final Map<Integer, Currency> currencies;
+        final Map<String, Integer> codes;
+    }
+}
@@ -59,7 +59,9 @@ public class CurrencyRepository
     }
 
     public boolean insert(Currency value) {
-        return this.insert(value.contentValues) > 0;
+        boolean result = this.insert(value.contentValues) > 0;
+        CurrencyCache.invalidate();
+        return result;
     }
 
     public boolean update(Currency value) {
@@ -68,11 +70,14 @@ public class CurrencyRepository
         WhereStatementGenerator generator = new WhereStatementGenerator();
         String where = generator.getStatement(Currency.CURRENCYID, "=", id);
 
-        return update(value, where);
+        boolean result = update(value, where);
+        CurrencyCache.invalidate();
+        return result;
     }
 
     public boolean delete(int id) {
         int result = delete(Currency.CURRENCYID + "=?", new String[]{Integer.toString(id)});
+        CurrencyCache.invalidate();
         return result > 0;
     }
 
@@ -100,6 +105,7 @@ public class CurrencyRepository
             contentValues,
             Currency.CURRENCYID + "=?",
             new String[] { Integer.toString(currencyId) });
+        CurrencyCache.invalidate();
 
         return result;
     }
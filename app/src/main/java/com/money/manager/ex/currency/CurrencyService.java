@@ -23,7 +23,6 @@ import android.database.sqlite.SQLiteDatabase;
 import android.os.Build;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.SparseArray;
 
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
@@ -65,39 +64,20 @@ public class CurrencyService
     public CurrencyService(Context context) {
         super(context);
 
-        mCurrencyCodes = new HashMap<>();
-        mCurrencies = new SparseArray<>();
-
         MmexApplication.getApp().iocComponent.inject(this);
     }
 
     @Inject CurrencyRepositorySql mRepository;
 
-    private Integer mBaseCurrencyId = null;
-    // hash map of all currencies
-    private SparseArray<Currency> mCurrencies;
-    /**
-     * a fast lookup for symbol -> id. i.e. EUR->2.
-     */
-    private HashMap<String, Integer> mCurrencyCodes;
-
     /**
+     * The currencies are read from the application-wide cache, see CurrencyCache.
      * @param currencyId of the currency to be get
      * @return a Currency. Null if fail
      */
     public Currency getCurrency(Integer currencyId) {
         if (currencyId == null || currencyId == Constants.NOT_SET) return null;
 
-        if (mCurrencies.indexOfKey(currencyId) >= 0) {
-            return mCurrencies.get(currencyId);
-        }
-
-        CurrencyRepository repository = getRepository();
-        Currency currency = repository.loadCurrency(currencyId);
-
-        mCurrencies.put(currencyId, currency);
-
-        return currency;
+        return CurrencyCache.getCurrency(getRepository(), currencyId);
     }
 
     public Currency getCurrency(String currencyCode) {
@@ -124,18 +104,7 @@ public class CurrencyService
     }
 
     public Integer getIdForCode(String code) {
-        if (mCurrencyCodes.containsKey(code)) {
-            return mCurrencyCodes.get(code);
-        }
-
-        CurrencyRepository repo = getRepository();
-        Currency currency = repo.loadCurrency(code);
-
-        mCurrencyCodes.put(code, currency.getCurrencyId());
-
-        Integer result = currency.getCurrencyId();
-
-        return result;
+        return CurrencyCache.getIdForCode(getRepository(), code);
     }
 
     public List<Currency> getUsedCurrencies() {
@@ -217,7 +186,8 @@ public class CurrencyService
      * @return Id of base currency
      */
     public int getBaseCurrencyId() {
-        if (mBaseCurrencyId != null) return mBaseCurrencyId;
+        Integer cachedId = CurrencyCache.getBaseCurrencyId();
+        if (cachedId != null) return cachedId;
 
         int result;
 
@@ -248,13 +218,13 @@ public class CurrencyService
                 }
             }
         }
-        mBaseCurrencyId = result;
+        CurrencyCache.setBaseCurrencyId(result);
 
         return result;
     }
 
     public void setBaseCurrencyId(int baseCurrencyId) {
-        mBaseCurrencyId = baseCurrencyId;
+        CurrencyCache.setBaseCurrencyId(baseCurrencyId);
 
         InfoService service = new InfoService(getContext());
         boolean saved = service.setInfoValue(InfoKeys.BASECURRENCYID, Integer.toString(baseCurrencyId));
@@ -374,6 +344,8 @@ public class CurrencyService
             }
         }
 
+        CurrencyCache.invalidate();
+
         return true;
     }
 
@@ -474,10 +446,10 @@ public class CurrencyService
     public boolean saveExchangeRate(String symbol, Money rate) {
         CurrencyRepository repo = getRepository();
 
-        Currency currency = repo.loadCurrency(symbol);
-        int currencyId = currency.getCurrencyId();
+        Integer currencyId = getIdForCode(symbol);
+        if (currencyId == null) return false;
 
-        // update value on database
+        // update value on database. This also invalidates the cached rates.
         int updateResult = repo.saveExchangeRate(currencyId, rate);
 
         return updateResult > 0;
@@ -507,6 +479,9 @@ public class CurrencyService
             currencySymbols.add(symbol);
         }
 
+        // the rates in the cache are about to be replaced.
+        CurrencyCache.invalidate();
+
         IExchangeRateUpdater updater = ExchangeRateUpdaterFactory.getUpdaterInstance(getContext());
         updater.downloadPrices(baseCurrencySymbol, currencySymbols);
         // result received via event
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.money.manager.ex.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.core.TransactionStatuses;
+import com.money.manager.ex.core.TransactionTypes;
+
+import timber.log.Timber;
+
+/**
+ * Account balances (ACCOUNTBALANCE_V1).
+ * Keeps the sum of the transactions of each account, split by transaction status, so that
+ * the account list does not need to read all the transactions. The initial balance and the
+ * investments are added in QueryAccountBills.
+ * The balances of the affected accounts are recalculated from the transaction facts in the
+ * same database transaction as every write to the transactions table.
+ */
+public class AccountBalance {
+
+    public static final String TABLE_NAME = "ACCOUNTBALANCE_V1";
+
+    // FIELDS
+    public static final String ACCOUNTID = "ACCOUNTID";
+    public static final String RECONCILED = "RECONCILED";
+    public static final String UNRECONCILED = "UNRECONCILED";
+    public static final String FOLLOWUP = "FOLLOWUP";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String VOID = "VOID";
+    public static final String TRANSACTIONS = "TRANSACTIONS";
+
+    private static final String TRANSACTIONS_TABLE = "CHECKINGACCOUNT_V1";
+
+    /**
+     * Accounts affected by a change to the given transactions.
+     * Must be called after the transactions are written and before the transaction facts are
+     * refreshed, so that both the previous (facts) and the new (transactions) accounts are
+     * included.
+     */
+    public long[] loadAccountIds(SQLiteDatabase db, long... ids) {
+        if (ids == null || ids.length == 0) return new long[0];
+
+        String selection = " WHERE TRANSID IN (" + DerivedTables.joinIds(ids) + ")";
+        String sql = "SELECT ACCOUNTID FROM " + TransactionFact.TABLE_NAME + selection +
+            " UNION SELECT TOACCOUNTID FROM " + TransactionFact.TABLE_NAME + selection +
+            " UNION SELECT ACCOUNTID FROM " + TRANSACTIONS_TABLE + selection +
+            " UNION SELECT TOACCOUNTID FROM " + TRANSACTIONS_TABLE + selection;
+
+        return DerivedTables.queryIds(db, sql, null);
+    }
+
+    /**
+     * Recalculate the balances of the given accounts from the transaction facts.
+     */
+    public void refresh(SQLiteDatabase db, long... accountIds) {
+        if (accountIds == null || accountIds.length == 0) return;
+
+        String ids = DerivedTables.joinIds(accountIds);
+        db.delete(TABLE_NAME, ACCOUNTID + " IN (" + ids + ")", null);
+        db.execSQL("INSERT INTO " + TABLE_NAME + " " + getBalancesSql(
+            TransactionFact.ACCOUNTID + " IN (" + ids + ")",
+            TransactionFact.TOACCOUNTID + " IN (" + ids + ")"));
+    }
+
+    /**
+     * Recalculate the balances of all the accounts.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        Timber.d("rebuilding account balances");
+
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_NAME, null, null);
+            db.execSQL("INSERT INTO " + TABLE_NAME + " " + getBalancesSql(null, null));
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compare the stored balances with the ones calculated from the transaction facts and
+     * recalculate the accounts that drifted. The balances are calculated once; the stored
+     * accounts without any transactions are found through the indexes on the facts.
+     * @return the number of accounts that were out of sync.
+     */
+    public int verify(SQLiteDatabase db) {
+        String transfer = "'" + TransactionTypes.Transfer.name() + "'";
+        String sql = "SELECT c." + ACCOUNTID + " FROM (" + getBalancesSql(null, null) + ") c" +
+            " LEFT JOIN " + TABLE_NAME + " b ON b." + ACCOUNTID + " = c." + ACCOUNTID +
+            " WHERE b." + ACCOUNTID + " IS NULL" +
+            " OR b." + TRANSACTIONS + " <> c." + TRANSACTIONS +
+            getDifferenceCondition(RECONCILED) +
+            getDifferenceCondition(UNRECONCILED) +
+            getDifferenceCondition(FOLLOWUP) +
+            getDifferenceCondition(DUPLICATE) +
+            getDifferenceCondition(VOID) +
+            " UNION SELECT b." + ACCOUNTID + " FROM " + TABLE_NAME + " b" +
+            " WHERE NOT EXISTS (SELECT 1 FROM " + TransactionFact.TABLE_NAME + " f" +
+            " WHERE f." + TransactionFact.ACCOUNTID + " = b." + ACCOUNTID +
+            " AND f." + TransactionFact.TRANSCODE + " IN (" + getBalanceTypes() + "))" +
+            " AND NOT EXISTS (SELECT 1 FROM " + TransactionFact.TABLE_NAME + " f" +
+            " WHERE f." + TransactionFact.TOACCOUNTID + " = b." + ACCOUNTID +
+            " AND f." + TransactionFact.TRANSCODE + " = " + transfer +
+            " AND " + getIntoAccountCondition("f") + ")";
+
+        int result;
+        db.beginTransaction();
+        try {
+            long[] accountIds = DerivedTables.queryIds(db, sql, null);
+            refresh(db, accountIds);
+            result = accountIds.length;
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (result > 0) {
+            Timber.w("%d account balances were out of sync", result);
+        }
+        return result;
+    }
+
+    // Private
+
+    /**
+     * The balances per account, in the column order of the table.
+     * The transactions from the account and the transfers into it are read separately, so
+     * that each part is served by one of the covering indexes on the transaction facts.
+     * @param fromCondition Selection of the accounts the transactions are from, or null for all.
+     * @param toCondition Selection of the accounts the transfers are into, or null for all.
+     */
+    private String getBalancesSql(String fromCondition, String toCondition) {
+        String deposit = "'" + TransactionTypes.Deposit.name() + "'";
+        String transfer = "'" + TransactionTypes.Transfer.name() + "'";
+
+        String movements = "SELECT " + TransactionFact.ACCOUNTID + ", " + TransactionFact.STATUS +
+            ", CASE WHEN " + TransactionFact.TRANSCODE + " = " + deposit +
+            " THEN " + TransactionFact.TRANSAMOUNT + " ELSE -" + TransactionFact.TRANSAMOUNT + " END AS AMOUNT" +
+            " FROM " + TransactionFact.TABLE_NAME +
+            " WHERE " + TransactionFact.TRANSCODE + " IN (" + getBalanceTypes() + ")" +
+            (fromCondition == null ? "" : " AND " + fromCondition) +
+            " UNION ALL " +
+            "SELECT " + TransactionFact.TOACCOUNTID + ", " + TransactionFact.STATUS +
+            ", " + TransactionFact.TOTRANSAMOUNT +
+            " FROM " + TransactionFact.TABLE_NAME + " f" +
+            " WHERE " + TransactionFact.TRANSCODE + " = " + transfer +
+            " AND " + getIntoAccountCondition("f") +
+            (toCondition == null ? "" : " AND " + toCondition);
+
+        return "SELECT " + TransactionFact.ACCOUNTID + " AS " + ACCOUNTID +
+            ", " + getSumByStatus(TransactionStatuses.RECONCILED) + " AS " + RECONCILED +
+            ", " + getSumByStatus(TransactionStatuses.NONE) + " AS " + UNRECONCILED +
+            ", " + getSumByStatus(TransactionStatuses.FOLLOWUP) + " AS " + FOLLOWUP +
+            ", " + getSumByStatus(TransactionStatuses.DUPLICATE) + " AS " + DUPLICATE +
+            ", " + getSumByStatus(TransactionStatuses.VOID) + " AS " + VOID +
+            ", count(*) AS " + TRANSACTIONS +
+            " FROM (" + movements + ") GROUP BY " + TransactionFact.ACCOUNTID;
+    }
+
+    /**
+     * Transfers that count in the balance of the account they are into.
+     * The facts resolve a missing target account to the source account, so such a transfer is
+     * only recognised as a real transfer into the same account by the original transaction.
+     * Self-transfers count in both legs, as in the balance query on the transactions table.
+     * @param alias Alias of the transaction facts.
+     */
+    private String getIntoAccountCondition(String alias) {
+        return "(" + alias + "." + TransactionFact.TOACCOUNTID + " <> " + alias + "." + TransactionFact.ACCOUNTID +
+            " OR EXISTS (SELECT 1 FROM " + TRANSACTIONS_TABLE + " TX" +
+            " WHERE TX.TRANSID = " + alias + "." + TransactionFact.TRANSID +
+            " AND TX.TOACCOUNTID = TX.ACCOUNTID))";
+    }
+
+    /**
+     * @return the transaction types that count in the balance of the account they are from.
+     */
+    private String getBalanceTypes() {
+        return "'" + TransactionTypes.Withdrawal.name() + "', '" + TransactionTypes.Deposit.name() +
+            "', '" + TransactionTypes.Transfer.name() + "'";
+    }
+
+    private String getSumByStatus(TransactionStatuses status) {
+        return "total(CASE WHEN " + TransactionFact.STATUS + " = '" + status.getCode() +
+            "' THEN AMOUNT ELSE 0 END)";
+    }
+
+    private String getDifferenceCondition(String column) {
+        return " OR abs(b." + column + " - c." + column + ") > " + DerivedTables.TOLERANCE;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.money.manager.ex.core.TransactionStatuses;
+import com.money.manager.ex.core.TransactionTypes;
+
+import java.util.Locale;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
+import info.javaperformance.money.MoneyFactory;
+import timber.log.Timber;
+
+/**
+ * Running balance checkpoints (BALANCECHECKPOINT_V1).
+ * Stores the balance of each account at the end of every month, calculated from the
+ * transaction facts. The initial balance of the account is not included.
+ * The checkpoints of an account are contiguous, from the month of its first transaction on.
+ * A write to a transaction removes the checkpoints of the affected accounts from the
+ * transaction's month onwards and they are recalculated, from the last valid checkpoint,
+ * on the next read.
+ */
+public class BalanceCheckpoint {
+
+    public static final String TABLE_NAME = "BALANCECHECKPOINT_V1";
+
+    // FIELDS
+    public static final String ACCOUNTID = "ACCOUNTID";
+    /**
+     * The month, as yyyy-MM.
+     */
+    public static final String PERIOD = "PERIOD";
+    public static final String BALANCE = "BALANCE";
+
+    private static final String TRANSACTIONS_TABLE = "CHECKINGACCOUNT_V1";
+
+    /**
+     * Calculate the balance of the account by adding together all the transactions before
+     * and on the given date. Only the transactions in the month of the date are read, the
+     * rest comes from the checkpoint at the end of the previous month.
+     * @param isoDate Date in ISO format (yyyy-MM-dd), inclusive.
+     * @return the balance, without the initial balance of the account.
+     */
+    public Money getBalanceOn(SQLiteDatabase db, int accountId, String isoDate) {
+        String period = isoDate.substring(0, 7);
+        String from = period + "-01";
+        Money result;
+        if (update(db, accountId)) {
+            result = loadBalanceBefore(db, accountId, period);
+        } else {
+            // The checkpoints are missing and can not be stored. Read all the transactions.
+            result = MoneyFactory.fromDouble(0);
+            from = "";
+        }
+
+        String sql = "SELECT total(AMOUNT) FROM (" +
+            getMovementsSql(accountId, TransactionFact.TRANSDATE + " >= ? AND " + TransactionFact.TRANSDATE + " <= ?") +
+            ")";
+        Cursor c = db.rawQuery(sql, new String[] { from, isoDate, from, isoDate });
+        if (c == null) return result;
+
+        if (c.moveToFirst()) {
+            result = result.add(MoneyFactory.fromDouble(c.getDouble(0)));
+        }
+        c.close();
+
+        return result;
+    }
+
+    /**
+     * Remove the checkpoints affected by a change to the given transactions.
+     * Must be called after the transactions are written and before the transaction facts are
+     * refreshed, so that both the previous (facts) and the new (transactions) accounts and
+     * dates are taken into account.
+     */
+    public void invalidate(SQLiteDatabase db, long... ids) {
+        if (ids == null || ids.length == 0) return;
+
+        String selection = " WHERE TRANSID IN (" + DerivedTables.joinIds(ids) + ")";
+        String sql = "SELECT ACCOUNTID, min(PERIOD) FROM (" +
+            "SELECT ACCOUNTID, substr(TRANSDATE, 1, 7) AS PERIOD FROM " + TransactionFact.TABLE_NAME + selection +
+            " UNION ALL SELECT TOACCOUNTID, substr(TRANSDATE, 1, 7) FROM " + TransactionFact.TABLE_NAME + selection +
+            " UNION ALL SELECT ACCOUNTID, substr(date(TRANSDATE), 1, 7) FROM " + TRANSACTIONS_TABLE + selection +
+            " UNION ALL SELECT TOACCOUNTID, substr(date(TRANSDATE), 1, 7) FROM " + TRANSACTIONS_TABLE + selection +
+            ") GROUP BY ACCOUNTID";
+
+        Cursor c = db.rawQuery(sql, null);
+        if (c == null) return;
+
+        while (c.moveToNext()) {
+            if (c.isNull(1)) {
+                // Invalid date. Recalculate the whole account.
+                db.delete(TABLE_NAME, ACCOUNTID + "=?", new String[] { c.getString(0) });
+            } else {
+                db.delete(TABLE_NAME, ACCOUNTID + "=? AND " + PERIOD + ">=?",
+                    new String[] { c.getString(0), c.getString(1) });
+            }
+        }
+        c.close();
+    }
+
+    /**
+     * Remove all the checkpoints. They are recalculated on demand.
+     */
+    public void clear(SQLiteDatabase db) {
+        db.delete(TABLE_NAME, null, null);
+    }
+
+    // Private
+
+    /**
+     * Add the missing checkpoints for the account, starting after the last valid one.
+     * The write transaction is only started when checkpoints are missing.
+     * @return false when the checkpoints are missing and could not be added, i.e. on a
+     * read-only database.
+     */
+    private boolean update(SQLiteDatabase db, int accountId) {
+        if (!isUpdateNeeded(db, accountId)) return true;
+        if (db.isReadOnly()) return false;
+
+        // Exclusive, so that the transactions can not change while calculating.
+        db.beginTransaction();
+        try {
+            String lastPeriod = null;
+            MoneyAccumulator balance = new MoneyAccumulator();
+
+            Cursor c = db.rawQuery("SELECT " + PERIOD + ", " + BALANCE + " FROM " + TABLE_NAME +
+                " WHERE " + ACCOUNTID + "=? ORDER BY " + PERIOD + " DESC LIMIT 1",
+                new String[] { Integer.toString(accountId) });
+            if (c != null) {
+                if (c.moveToFirst()) {
+                    lastPeriod = c.getString(0);
+                    balance.add(MoneyFactory.fromString(c.getString(1)));
+                }
+                c.close();
+            }
+
+            String sql = "SELECT substr(" + TransactionFact.TRANSDATE + ", 1, 7) AS PERIOD, total(AMOUNT)" +
+                " FROM (" + getMovementsSql(accountId, TransactionFact.TRANSDATE + " >= ?") + ")" +
+                " GROUP BY 1 ORDER BY 1";
+            String from = lastPeriod == null ? "" : getNextPeriod(lastPeriod) + "-01";
+            c = db.rawQuery(sql, new String[] { from, from });
+            if (c == null) return false;
+
+            SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_NAME +
+                " (" + ACCOUNTID + ", " + PERIOD + ", " + BALANCE + ") VALUES (?, ?, ?)");
+            insert.bindLong(1, accountId);
+
+            String period = lastPeriod == null ? null : getNextPeriod(lastPeriod);
+            int added = 0;
+            while (c.moveToNext()) {
+                if (c.isNull(0)) continue;
+
+                String transactionsPeriod = c.getString(0);
+                if (period == null) period = transactionsPeriod;
+
+                // the months without transactions keep the previous balance.
+                while (period.compareTo(transactionsPeriod) < 0) {
+                    insertCheckpoint(insert, period, balance);
+                    period = getNextPeriod(period);
+                    added++;
+                }
+
+                balance.add(c.getDouble(1));
+                insertCheckpoint(insert, transactionsPeriod, balance);
+                period = getNextPeriod(transactionsPeriod);
+                added++;
+            }
+            c.close();
+            insert.close();
+
+            db.setTransactionSuccessful();
+
+            if (added > 0) {
+                Timber.d("%d balance checkpoints calculated for account %d", added, accountId);
+            }
+        } finally {
+            db.endTransaction();
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the account has transactions after its last checkpoint. A plain read,
+     * without a transaction, as the checkpoints are up to date for most of the reads.
+     */
+    private boolean isUpdateNeeded(SQLiteDatabase db, int accountId) {
+        String lastPeriod = DatabaseUtils.stringForQuery(db, "SELECT max(" + PERIOD + ") FROM " + TABLE_NAME +
+            " WHERE " + ACCOUNTID + "=?", new String[] { Integer.toString(accountId) });
+        String from = lastPeriod == null ? "" : getNextPeriod(lastPeriod) + "-01";
+
+        return DatabaseUtils.longForQuery(db, "SELECT EXISTS (" +
+            getMovementsSql(accountId, TransactionFact.TRANSDATE + " >= ?") + ")",
+            new String[] { from, from }) == 1;
+    }
+
+    private Money loadBalanceBefore(SQLiteDatabase db, int accountId, String period) {
+        Money result = MoneyFactory.fromDouble(0);
+
+        Cursor c = db.rawQuery("SELECT " + BALANCE + " FROM " + TABLE_NAME +
+            " WHERE " + ACCOUNTID + "=? AND " + PERIOD + "<?" +
+            " ORDER BY " + PERIOD + " DESC LIMIT 1",
+            new String[] { Integer.toString(accountId), period });
+        if (c == null) return result;
+
+        if (c.moveToFirst()) {
+            result = MoneyFactory.fromString(c.getString(0));
+        }
+        c.close();
+
+        return result;
+    }
+
+    private void insertCheckpoint(SQLiteStatement insert, String period, MoneyAccumulator balance) {
+        insert.bindString(2, period);
+        insert.bindString(3, balance.toString());
+        insert.executeInsert();
+    }
+
+    /**
+     * Dates and amounts of the transactions, from the point of view of the given account.
+     * The transactions from the account and the transfers into it are read separately, so that
+     * each part is served by one of the covering indexes on the transaction facts.
+     * @param dateCondition Selection on the transaction date. The parameters are used twice.
+     */
+    private String getMovementsSql(int accountId, String dateCondition) {
+        String deposit = "'" + TransactionTypes.Deposit.name() + "'";
+        String withdrawal = "'" + TransactionTypes.Withdrawal.name() + "'";
+        String transfer = "'" + TransactionTypes.Transfer.name() + "'";
+        String notVoid = TransactionFact.STATUS + "<>'" + TransactionStatuses.VOID.getCode() + "'";
+
+        return "SELECT " + TransactionFact.TRANSDATE + ", CASE " + TransactionFact.TRANSCODE +
+            " WHEN " + deposit + " THEN " + TransactionFact.TRANSAMOUNT +
+            " WHEN " + withdrawal + " THEN -" + TransactionFact.TRANSAMOUNT +
+            " WHEN " + transfer + " THEN -" + TransactionFact.TRANSAMOUNT +
+            " ELSE 0 END AS AMOUNT" +
+            " FROM " + TransactionFact.TABLE_NAME +
+            " WHERE " + TransactionFact.ACCOUNTID + "=" + accountId +
+            " AND " + notVoid + " AND " + dateCondition +
+            " UNION ALL " +
+            "SELECT " + TransactionFact.TRANSDATE + ", CASE " + TransactionFact.TRANSCODE +
+            " WHEN " + deposit + " THEN " + TransactionFact.TRANSAMOUNT +
+            " WHEN " + withdrawal + " THEN -" + TransactionFact.TRANSAMOUNT +
+            " WHEN " + transfer + " THEN " + TransactionFact.TOTRANSAMOUNT +
+            " ELSE 0 END AS AMOUNT" +
+            " FROM " + TransactionFact.TABLE_NAME +
+            " WHERE " + TransactionFact.TOACCOUNTID + "=" + accountId +
+            " AND " + TransactionFact.ACCOUNTID + "<>" + accountId +
+            " AND " + notVoid + " AND " + dateCondition;
+    }
+
+    /**
+     * @param period Month as yyyy-MM
+     * @return the following month as yyyy-MM
+     */
+    private String getNextPeriod(String period) {
+        int year = Integer.parseInt(period.substring(0, 4));
+        int month = Integer.parseInt(period.substring(5, 7));
+        if (month == 12) {
+            year++;
+            month = 1;
+        } else {
+            month++;
+        }
+        return String.format(Locale.US, "%04d-%02d", year, month);
+    }
+}
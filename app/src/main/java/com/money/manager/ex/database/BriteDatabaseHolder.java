@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import com.money.manager.ex.settings.AppSettings;
+import com.squareup.sqlbrite.BriteDatabase;
+import com.squareup.sqlbrite.SqlBrite;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import rx.schedulers.Schedulers;
+
+/**
+ * Keeps one BriteDatabase for the open database file, instead of wrapping the open helper
+ * on every injection. Reset when another database is opened.
+ */
+@Singleton
+public class BriteDatabaseHolder {
+
+    @Inject
+    public BriteDatabaseHolder(SqlBrite sqlBrite, AppSettings settings) {
+        mSqlBrite = sqlBrite;
+        mSettings = settings;
+    }
+
+    private final SqlBrite mSqlBrite;
+    private final AppSettings mSettings;
+    private BriteDatabase mDatabase;
+    private MmxOpenHelper mHelper;
+
+    /**
+     * @param helper The open helper of the current database. A new instance is created if
+     *               it is not the one the existing instance wraps.
+     */
+    public synchronized BriteDatabase get(MmxOpenHelper helper) {
+        if (mDatabase == null || mHelper != helper) {
+            mDatabase = mSqlBrite.wrapDatabaseHelper(helper, Schedulers.io());
+            mDatabase.setLoggingEnabled(mSettings.getDatabaseSettings().getSqlLogging());
+            mHelper = helper;
+        }
+        return mDatabase;
+    }
+
+    /**
+     * Log the SQL statements of the current instance. The setting applies to the next ones.
+     */
+    public synchronized void setLoggingEnabled(boolean enabled) {
+        if (mDatabase == null) return;
+
+        mDatabase.setLoggingEnabled(enabled);
+    }
+
+    /**
+     * Release the instance. The open helper it wraps is closed by the caller.
+     */
+    public synchronized void reset() {
+        mDatabase = null;
+        mHelper = null;
+    }
+}
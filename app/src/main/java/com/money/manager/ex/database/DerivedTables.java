@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Arrays;
+
+/**
+ * Helpers shared by the Android-only tables derived from the transactions.
+ */
+final class DerivedTables {
+
+    /**
+     * Differences in the stored amounts below this are rounding, not drift.
+     */
+    static final double TOLERANCE = 0.00001;
+
+    private DerivedTables() {
+    }
+
+    /**
+     * @return the ids as a comma-separated list, for an IN (...) selection.
+     */
+    static String joinIds(long[] ids) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(ids[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the values of the first column of the query.
+     */
+    static long[] queryIds(SQLiteDatabase db, String sql, String[] args) {
+        Cursor c = db.rawQuery(sql, args);
+        if (c == null) return new long[0];
+
+        long[] ids = new long[c.getCount()];
+        int i = 0;
+        while (c.moveToNext()) {
+            ids[i++] = c.getLong(0);
+        }
+        c.close();
+
+        return ids;
+    }
+
+    /**
+     * Compares the first record of two aggregate queries, column by column.
+     * Used to compare a stamp of the source records with the same stamp of the derived ones.
+     * @return true if both queries return the same values.
+     */
+    static boolean isSameRow(SQLiteDatabase db, String sql, String otherSql) {
+        double[] values = queryRow(db, sql);
+        double[] otherValues = queryRow(db, otherSql);
+        if (values == null || otherValues == null) return false;
+
+        return Arrays.equals(values, otherValues);
+    }
+
+    private static double[] queryRow(SQLiteDatabase db, String sql) {
+        Cursor c = db.rawQuery(sql, null);
+        if (c == null) return null;
+
+        double[] values = null;
+        if (c.moveToFirst()) {
+            values = new double[c.getColumnCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = c.getDouble(i);
+            }
+        }
+        c.close();
+
+        return values;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.settings.PreferenceConstants;
+
+/**
+ * Tells whether the database may have been changed outside the app since it was last opened,
+ * so that the tables derived from the transactions need to be verified.
+ * The app keeps the derived tables up to date with its own writes. A full verification is
+ * only needed after the file is replaced by a downloaded copy, or when a stamp of the source
+ * records no longer matches the same stamp of the derived ones, i.e. after another
+ * application added, deleted or edited transactions or splits. The search indexes store
+ * their text, which is compared as it is, so that edits to the notes or to the payee and
+ * category names are found too.
+ * The stamps read all the transactions, so this is checked in the background.
+ */
+public class ExternalChanges {
+
+    public ExternalChanges(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+
+    /**
+     * Record that the file was replaced, i.e. by a downloaded copy. The derived tables are
+     * verified the next time it is opened.
+     * @param dbPath Path to the database file.
+     */
+    public void markReplaced(String dbPath) {
+        getPreferences().edit().putBoolean(dbPath, true).apply();
+    }
+
+    /**
+     * @return whether the derived tables of the database being opened need to be verified.
+     * The derived tables must exist.
+     */
+    public boolean isVerificationNeeded(SQLiteDatabase db) {
+        if (getPreferences().getBoolean(db.getPath(), false)) return true;
+
+        // the facts first, as the rollups are compared only on the amounts.
+        return !new TransactionFact(context).isInSync(db)
+            || !new IncomeExpenseRollup().isInSync(db)
+            || !new SearchIndex(context).isInSync(db);
+    }
+
+    /**
+     * Called after the derived tables were verified successfully.
+     */
+    public void markVerified(SQLiteDatabase db) {
+        getPreferences().edit().remove(db.getPath()).apply();
+    }
+
+    // Private
+
+    private SharedPreferences getPreferences() {
+        return context.getSharedPreferences(PreferenceConstants.EXTERNAL_CHANGES_PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
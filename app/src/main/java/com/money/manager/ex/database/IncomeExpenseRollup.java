@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.money.manager.ex.core.TransactionStatuses;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.domainmodel.SplitCategory;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Monthly income and expense rollups (INCOMEEXPENSEROLLUP_V1).
+ * Keeps the sum of the non-void transactions per month, financial year, transaction type and
+ * account, so that the Income vs Expenses report does not need to read all the transactions.
+ * The amounts are in the currency of the account and are converted to the base currency
+ * with the current rates when the report is read.
+ * The months affected by a write to the transactions or their splits are recalculated in the
+ * same database transaction as the write.
+ */
+public class IncomeExpenseRollup {
+
+    public static final String TABLE_NAME = "INCOMEEXPENSEROLLUP_V1";
+
+    // FIELDS
+    public static final String YEAR = "YEAR";
+    public static final String MONTH = "MONTH";
+    public static final String FINYEAR = "FINYEAR";
+    public static final String TRANSCODE = "TRANSCODE";
+    public static final String ACCOUNTID = "ACCOUNTID";
+    public static final String AMOUNT = "AMOUNT";
+    public static final String TRANSACTIONS = "TRANSACTIONS";
+
+    private static final String TRANSACTIONS_TABLE = "CHECKINGACCOUNT_V1";
+    /**
+     * A month is identified by YEAR * 100 + MONTH.
+     */
+    private static final String PERIOD = "(" + YEAR + " * 100 + " + MONTH + ")";
+
+    /**
+     * Months of the given transactions, according to the transaction facts.
+     * Must be called both before and after the facts are refreshed, so that the previous and
+     * the new month of a transaction are included.
+     */
+    public long[] loadPeriods(SQLiteDatabase db, long... ids) {
+        if (ids == null || ids.length == 0) return new long[0];
+
+        String sql = "SELECT DISTINCT " + PERIOD + " FROM " + TransactionFact.TABLE_NAME +
+            " WHERE " + TransactionFact.TRANSID + " IN (" + DerivedTables.joinIds(ids) + ")" +
+            " AND " + YEAR + " IS NOT NULL AND " + MONTH + " IS NOT NULL";
+
+        return DerivedTables.queryIds(db, sql, null);
+    }
+
+    /**
+     * Ids of the transactions that the split records matching the selection belong to.
+     * Used to collect the transactions affected by a write to the splits before it happens.
+     */
+    public long[] loadSplitTransactionIds(SQLiteDatabase db, String where, String[] whereArgs) {
+        String sql = "SELECT DISTINCT " + SplitCategory.TRANSID + " FROM " + SplitCategory.TABLE_NAME;
+        if (!TextUtils.isEmpty(where)) {
+            sql += " WHERE " + where;
+        }
+
+        return DerivedTables.queryIds(db, sql, whereArgs);
+    }
+
+    /**
+     * Recalculate the rollups of the given months from the transactions.
+     * @param periods Lists of months, as YEAR * 100 + MONTH. Duplicates are ignored.
+     */
+    public void refresh(SQLiteDatabase db, long[]... periods) {
+        Set<Long> unique = new LinkedHashSet<>();
+        for (long[] list : periods) {
+            if (list == null) continue;
+            for (long period : list) {
+                unique.add(period);
+            }
+        }
+        if (unique.isEmpty()) return;
+
+        String selection = TextUtils.join(",", unique);
+        db.delete(TABLE_NAME, PERIOD + " IN (" + selection + ")", null);
+        db.execSQL("INSERT INTO " + TABLE_NAME + " " + getRollupSql(
+            "(d." + YEAR + " * 100 + d." + MONTH + ") IN (" + selection + ")"));
+    }
+
+    /**
+     * Recalculate all the rollups.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        Timber.d("rebuilding income and expense rollups");
+
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_NAME, null, null);
+            db.execSQL("INSERT INTO " + TABLE_NAME + " " + getRollupSql(null));
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compares the total of the stored rollups with the total of the transactions and their
+     * splits, in cents, and the number of records. Detects the amounts changed in another
+     * application, including the ones of the splits, which the transaction facts do not hold.
+     * The months and the accounts are covered by the transaction facts, see
+     * {@link TransactionFact#isInSync(SQLiteDatabase)}.
+     * @return false if the rollups need to be verified.
+     */
+    public boolean isInSync(SQLiteDatabase db) {
+        String stored = "SELECT total(round(" + AMOUNT + " * 100)), total(" + TRANSACTIONS + ")" +
+            " FROM " + TABLE_NAME;
+        String calculated = "SELECT total(round(" + getAmountSql() + " * 100)), count(*)" +
+            " FROM " + TRANSACTIONS_TABLE + " TX" +
+            " LEFT JOIN " + SplitCategory.TABLE_NAME + " st ON st.TRANSID = TX.TRANSID" +
+            " WHERE TX.STATUS <> '" + TransactionStatuses.VOID.getCode() + "'" +
+            " AND strftime('%m', TX.TRANSDATE) IS NOT NULL";
+
+        return DerivedTables.isSameRow(db, calculated, stored);
+    }
+
+    /**
+     * Compare the stored rollups with the ones calculated from the transactions and
+     * recalculate the months that drifted, i.e. after the splits were changed outside the app.
+     * Must be called after the transaction facts are verified. Runs on open only when the
+     * file may have been modified elsewhere, see {@link ExternalChanges}.
+     * @return the number of months that were out of sync.
+     */
+    public int verify(SQLiteDatabase db) {
+        String key = getJoinCondition(YEAR) + " AND " + getJoinCondition(MONTH) +
+            " AND " + getJoinCondition(FINYEAR) + " AND " + getJoinCondition(TRANSCODE) +
+            " AND " + getJoinCondition(ACCOUNTID);
+        // The missing and drifted months, then the stored rollups without transactions.
+        String sql = "SELECT (c." + YEAR + " * 100 + c." + MONTH + ")" +
+            " FROM (" + getRollupSql(null) + ") c" +
+            " LEFT JOIN " + TABLE_NAME + " r ON " + key +
+            " WHERE r." + YEAR + " IS NULL" +
+            " OR r." + TRANSACTIONS + " <> c." + TRANSACTIONS +
+            " OR abs(r." + AMOUNT + " - c." + AMOUNT + ") > " + DerivedTables.TOLERANCE +
+            " UNION SELECT (r." + YEAR + " * 100 + r." + MONTH + ")" +
+            " FROM " + TABLE_NAME + " r" +
+            " WHERE NOT EXISTS (SELECT 1 FROM " + TransactionFact.TABLE_NAME + " d" +
+            " INNER JOIN " + TRANSACTIONS_TABLE + " TX ON TX.TRANSID = d.TRANSID" +
+            " WHERE d." + YEAR + " = r." + YEAR + " AND d." + MONTH + " = r." + MONTH +
+            " AND ifnull(d." + FINYEAR + ", d." + YEAR + ") = r." + FINYEAR +
+            " AND TX.TRANSCODE = r." + TRANSCODE + " AND TX.ACCOUNTID = r." + ACCOUNTID +
+            " AND TX.STATUS <> '" + TransactionStatuses.VOID.getCode() + "')";
+
+        int result;
+        db.beginTransaction();
+        try {
+            long[] periods = DerivedTables.queryIds(db, sql, null);
+            refresh(db, periods);
+            result = periods.length;
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (result > 0) {
+            Timber.w("%d months of income and expense rollups were out of sync", result);
+        }
+        return result;
+    }
+
+    // Private
+
+    /**
+     * The rollups, in the column order of the table. The amounts are calculated as in
+     * mobiledata, with one record per split. The transactions with an invalid date, which
+     * have no month, are not included.
+     * @param condition Selection on the transaction facts (d), or null for all.
+     */
+    private String getRollupSql(String condition) {
+        return "SELECT d." + YEAR + " AS " + YEAR + ", d." + MONTH + " AS " + MONTH +
+            ", ifnull(d." + FINYEAR + ", d." + YEAR + ") AS " + FINYEAR +
+            ", TX.TRANSCODE AS " + TRANSCODE + ", TX.ACCOUNTID AS " + ACCOUNTID +
+            ", total(" + getAmountSql() + ") AS " + AMOUNT +
+            ", count(*) AS " + TRANSACTIONS +
+            " FROM " + TransactionFact.TABLE_NAME + " d" +
+            " INNER JOIN " + TRANSACTIONS_TABLE + " TX ON TX.TRANSID = d.TRANSID" +
+            " LEFT JOIN " + SplitCategory.TABLE_NAME + " st ON st.TRANSID = TX.TRANSID" +
+            " WHERE TX.STATUS <> '" + TransactionStatuses.VOID.getCode() + "'" +
+            " AND d." + YEAR + " IS NOT NULL AND d." + MONTH + " IS NOT NULL" +
+            (condition == null ? "" : " AND " + condition) +
+            " GROUP BY 1, 2, 3, 4, 5";
+    }
+
+    /**
+     * The signed amount of a transaction (TX), or of one of its splits (st).
+     */
+    private String getAmountSql() {
+        String withdrawal = "'" + TransactionTypes.Withdrawal.name() + "'";
+
+        return "ROUND((CASE TX.TRANSCODE WHEN " + withdrawal + " THEN -1 ELSE 1 END)" +
+            " * (CASE TX.CATEGID WHEN -1 THEN st.SPLITTRANSAMOUNT ELSE TX.TRANSAMOUNT END), 2)";
+    }
+
+    private String getJoinCondition(String column) {
+        return "r." + column + " = c." + column;
+    }
+}
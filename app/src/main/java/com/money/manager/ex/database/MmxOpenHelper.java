@@ -16,6 +16,7 @@
  */
 package com.money.manager.ex.database;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -24,9 +25,12 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.os.SystemClock;
 
 import com.google.common.io.Files;
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.InfoKeys;
 import com.money.manager.ex.core.UIHelper;
@@ -39,13 +43,22 @@ import com.money.manager.ex.domainmodel.Subcategory;
 import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.settings.AppSettings;
+import com.money.manager.ex.settings.DatabaseSettings;
 import com.money.manager.ex.sync.SyncManager;
 import com.money.manager.ex.utils.MmxFileUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Currency;
+import java.util.concurrent.Callable;
 
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -66,13 +79,76 @@ public class MmxOpenHelper
      * @param context Current context.
      */
     public MmxOpenHelper(Context context, String dbPath) {
-        super(context, dbPath, null, databaseVersion);
+        super(context, dbPath, new StatisticsCursorFactory(), databaseVersion);
         this.mContext = context;
 
+        DatabaseSettings settings = new AppSettings(context).getDatabaseSettings();
+        // Opt-in. With WAL, the readers do not wait for the writers.
+        mWriteAheadLogging = settings.getWriteAheadLogging();
+        setWriteAheadLoggingEnabled(mWriteAheadLogging);
+
+        QueryStatistics.setEnabled(settings.getQueryStatistics());
     }
 
     private Context mContext;
     private String mPassword = "";
+    private boolean mWriteAheadLogging;
+
+    /**
+     * Merges the write-ahead log of the database at the given path into the database file,
+     * if that database is currently open. A closed database has no pending log.
+     * The checkpoint is retried a few times while the readers keep using the log.
+     * @param dbPath Path to the database file.
+     * @return false if the log could not be merged, so the file does not contain all the
+     * committed changes and must not be copied or replaced.
+     */
+    public static boolean checkpointIfOpen(String dbPath) {
+        MmexApplication app = MmexApplication.getApp();
+        if (app == null || app.openHelperAtomicReference == null) return true;
+
+        MmxOpenHelper helper = app.openHelperAtomicReference.get();
+        if (helper == null || dbPath == null || !dbPath.equals(helper.getDatabaseName())) return true;
+
+        for (int attempt = 1; attempt < CHECKPOINT_ATTEMPTS; attempt++) {
+            if (helper.checkpoint()) return true;
+
+            SystemClock.sleep(CHECKPOINT_RETRY_DELAY_MS);
+        }
+        return helper.checkpoint();
+    }
+
+    private static final int CHECKPOINT_ATTEMPTS = 3;
+    private static final long CHECKPOINT_RETRY_DELAY_MS = 100;
+
+    /**
+     * Copies the database file. The copy is marked as a rollback-journal database, so that
+     * it opens as a standalone file, like the ones created by the desktop version.
+     * The write-ahead log must be checkpointed first.
+     * @param dbFile The database file.
+     * @param output Destination stream. Not closed here.
+     */
+    public static void copyDatabaseFile(File dbFile, OutputStream output) throws IOException {
+        InputStream input = new FileInputStream(dbFile);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            boolean header = true;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                if (header && read > WAL_HEADER_OFFSET + 1
+                        && buffer[WAL_HEADER_OFFSET] == 2 && buffer[WAL_HEADER_OFFSET + 1] == 2) {
+                    // file format read/write versions: 1 = legacy journal, 2 = WAL.
+                    buffer[WAL_HEADER_OFFSET] = 1;
+                    buffer[WAL_HEADER_OFFSET + 1] = 1;
+                }
+                header = false;
+                output.write(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static final int WAL_HEADER_OFFSET = 18;
 
     public Context getContext() {
         return this.mContext;
@@ -94,7 +170,8 @@ public class MmxOpenHelper
 
         try {
             executeRawSql(db, R.raw.tables_v1);
-            db.disableWriteAheadLogging();
+            executeRawSql(db, R.raw.transaction_fact);
+            executeRawSql(db, R.raw.search_index);
             initDatabase(db);
         } catch (Exception e) {
             Timber.e(e, "initializing database");
@@ -103,9 +180,12 @@ public class MmxOpenHelper
 
     @Override
     public void onOpen(SQLiteDatabase db) {
-        db.disableWriteAheadLogging();
         super.onOpen(db);
 
+        initTransactionFacts(db);
+        initSearchIndex(db);
+        verifyDerivedTables(db);
+
 //        int version = db.getVersion();
     }
 
@@ -126,6 +206,20 @@ public class MmxOpenHelper
         // update databases
         updateDatabase(db, oldVersion, newVersion);
 
+        // the derived data is recalculated from the upgraded tables.
+        try {
+            executeRawSql(db, R.raw.transaction_fact);
+            new TransactionFact(getContext()).rebuild(db);
+        } catch (Exception e) {
+            Timber.e(e, "rebuilding transaction facts");
+        }
+        try {
+            executeRawSql(db, R.raw.search_index);
+            new SearchIndex(getContext()).rebuild(db);
+        } catch (Exception e) {
+            Timber.e(e, "rebuilding search indexes");
+        }
+
         // notify sync about the db update.
         new SyncManager(getContext()).dataChanged();
     }
@@ -192,6 +286,60 @@ public class MmxOpenHelper
 //        return null;
 //    }
 
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    /**
+     * Switches the journal mode of the open database. The journal is checkpointed first when
+     * switching back to the rollback journal.
+     * @param enabled Use write-ahead logging.
+     * @return Indicator whether the mode was changed.
+     */
+    public boolean setWriteAheadLogging(boolean enabled) {
+        if (enabled == mWriteAheadLogging) return true;
+
+        try {
+            if (!enabled) checkpoint();
+            setWriteAheadLoggingEnabled(enabled);
+        } catch (IllegalStateException e) {
+            // i.e. a transaction is in progress. The setting applies when the database is reopened.
+            Timber.w(e, "changing journal mode");
+            return false;
+        }
+        mWriteAheadLogging = enabled;
+        return true;
+    }
+
+    /**
+     * Merges the write-ahead log into the database file, so that the file can be copied
+     * on its own. Does nothing in the rollback journal mode.
+     * @return Indicator whether the log has been merged completely. Fails when the readers
+     * keep using the log.
+     */
+    public boolean checkpoint() {
+        if (!mWriteAheadLogging) return true;
+
+        SQLiteDatabase db = getWritableDatabase();
+        if (db == null) return false;
+
+        // TRUNCATE is available from SQLite 3.8.8 and also empties the log file.
+        String mode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? "TRUNCATE" : "FULL";
+        Cursor c = db.rawQuery("PRAGMA wal_checkpoint(" + mode + ")", null);
+        try {
+            if (!c.moveToFirst()) return false;
+
+            // busy, log frames, checkpointed frames
+            boolean complete = c.getInt(0) == 0;
+            if (!complete) {
+                Timber.w("checkpoint incomplete, %d of %d frames", c.getInt(2), c.getInt(1));
+            }
+            return complete;
+        } finally {
+            c.close();
+        }
+    }
+
     public void setPassword(String password) {
         this.mPassword = password;
     }
@@ -273,6 +421,79 @@ public class MmxOpenHelper
         }
     }
 
+    /**
+     * Create the transaction facts table, if missing.
+     * @param db Database being opened.
+     */
+    private void initTransactionFacts(SQLiteDatabase db) {
+        if (db.isReadOnly()) return;
+
+        executeRawSql(db, R.raw.transaction_fact);
+    }
+
+    /**
+     * Create the search indexes, if missing, and the triggers that keep them up to date on this
+     * connection. The indexes are filled when they were just created for an existing database.
+     * @param db Database being opened.
+     */
+    private void initSearchIndex(SQLiteDatabase db) {
+        if (db.isReadOnly()) return;
+
+        try {
+            executeRawSql(db, R.raw.search_index);
+            SearchIndex index = new SearchIndex(getContext());
+            if (index.isMissing(db)) {
+                index.rebuild(db);
+            }
+            index.createTriggers(db);
+        } catch (Exception e) {
+            Timber.e(e, "initializing search indexes");
+        }
+    }
+
+    /**
+     * Verify the transaction facts, the account balances, the income and expense rollups and
+     * the search indexes against the source tables, in the background. Done only when the
+     * database may have been modified by another application, see {@link ExternalChanges}.
+     * A failed verification is repeated on the next open.
+     * @param db Database being opened.
+     */
+    private void verifyDerivedTables(final SQLiteDatabase db) {
+        if (db.isReadOnly()) return;
+
+        Single.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                ExternalChanges changes = new ExternalChanges(getContext());
+                if (!changes.isVerificationNeeded(db)) return 0;
+
+                int corrected = new TransactionFact(getContext()).verify(db);
+                corrected += new AccountBalance().verify(db);
+                corrected += new IncomeExpenseRollup().verify(db);
+                corrected += new SearchIndex(getContext()).verify(db);
+                changes.markVerified(db);
+                return corrected;
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .subscribe(new SingleSubscriber<Integer>() {
+                @Override
+                public void onSuccess(Integer corrected) {
+                    if (corrected == 0) return;
+
+                    // reload the lists and the balances shown from the old values.
+                    ContentResolver resolver = getContext().getContentResolver();
+                    resolver.notifyChange(new QueryAllData(getContext()).getUri(), null);
+                    resolver.notifyChange(new QueryAccountBills(getContext()).getUri(), null);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    Timber.e(error, "verifying derived tables");
+                }
+            });
+    }
+
     private boolean initDatabase(SQLiteDatabase database) {
         try {
             initBaseCurrency(database);
@@ -17,43 +17,50 @@
 package com.money.manager.ex.database;
 
 import android.content.Context;
-import android.text.TextUtils;
 
-import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
 import com.money.manager.ex.utils.MmxFileUtils;
 import com.money.manager.ex.viewmodels.IncomeVsExpenseReportEntity;
 
+/**
+ * Income vs Expenses report, read from the monthly rollups (IncomeExpenseRollup).
+ */
 public class QueryReportIncomeVsExpenses
     extends Dataset {
 
+    private static final String YEAR_PATTERN = "%%year%%";
+
     public QueryReportIncomeVsExpenses(Context context) {
-        super("", DatasetType.QUERY, "report_income_vs_expenses");
+        this(context, false);
+    }
 
-        initialize(context, null);
+    /**
+     * @param financialYears Group the months by financial year instead of calendar year.
+     */
+    public QueryReportIncomeVsExpenses(Context context, boolean financialYears) {
+        super("", DatasetType.QUERY, financialYears
+            ? "report_income_vs_expenses_finyear"
+            : "report_income_vs_expenses");
+
+        initialize(context, financialYears);
     }
 
     @Override
     public String[] getAllColumns() {
         return new String[]{"ROWID AS _id",
             IncomeVsExpenseReportEntity.YEAR,
+            IncomeVsExpenseReportEntity.CALENDAR_YEAR,
             IncomeVsExpenseReportEntity.Month,
             IncomeVsExpenseReportEntity.Income,
             IncomeVsExpenseReportEntity.Expenses,
             IncomeVsExpenseReportEntity.Transfers};
     }
 
-    private void initialize(Context context, String whereStatement) {
-        ViewMobileData mobileData = new ViewMobileData(context);
-        // add where statement
-        if(!TextUtils.isEmpty(whereStatement)) {
-            mobileData.setWhere(whereStatement);
-        }
-        String mobileDataQuery = mobileData.getSource();
-
-        // assemble the source statement by combining queries.
+    private void initialize(Context context, boolean financialYears) {
         String source = MmxFileUtils.getRawAsString(context, R.raw.report_income_vs_expenses);
-        source = source.replace(Constants.MOBILE_DATA_PATTERN, mobileDataQuery);
+        source = source.replace(YEAR_PATTERN, financialYears
+            ? IncomeExpenseRollup.FINYEAR
+            : IncomeExpenseRollup.YEAR);
 
         this.setSource(source);
     }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Per-statement latency histograms and row counts.
+ * Recorded only while switched on in the database settings, which is off by default.
+ * The statements are grouped by their text, with the literal values replaced by "?", so
+ * that the queries built with the ids inline are counted together.
+ */
+public class QueryStatistics {
+
+    /**
+     * Upper bounds of the latency buckets, in milliseconds. The last bucket has no bound.
+     */
+    public static final int[] BUCKET_LIMITS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024 };
+    /**
+     * The statements above this number are counted together.
+     */
+    private static final int MAX_STATEMENTS = 500;
+    private static final String OTHER_STATEMENTS = "(other)";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern VALUE_LIST = Pattern.compile("\\(\\?(?:\\s*,\\s*\\?)*\\)");
+
+    private static volatile boolean enabled = false;
+    private static final Map<String, Statement> statements = new HashMap<>();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * @return the start time of a statement, or 0 if the statistics are off.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record a statement started with {@link #start()}.
+     * @param rows Number of rows read or written.
+     */
+    public static void record(String sql, long started, int rows) {
+        if (started == 0) return;
+
+        recordElapsed(sql, System.nanoTime() - started, rows);
+    }
+
+    public static void recordElapsed(String sql, long nanos, int rows) {
+        if (!enabled || sql == null) return;
+
+        String key = normalize(sql);
+        synchronized (statements) {
+            Statement statement = statements.get(key);
+            if (statement == null) {
+                if (statements.size() >= MAX_STATEMENTS) {
+                    key = OTHER_STATEMENTS;
+                    statement = statements.get(key);
+                }
+                if (statement == null) {
+                    statement = new Statement(key);
+                    statements.put(key, statement);
+                }
+            }
+            statement.add(nanos, rows);
+        }
+    }
+
+    public static void reset() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    /**
+     * @return a copy of the recorded statements, the most expensive in total first.
+     */
+    public static List<Statement> getStatements() {
+        List<Statement> result = new ArrayList<>();
+        synchronized (statements) {
+            for (Statement statement : statements.values()) {
+                result.add(statement.copy());
+            }
+        }
+
+        Collections.sort(result, new Comparator<Statement>() {
+            @Override
+            public int compare(Statement left, Statement right) {
+                return left.totalNanos == right.totalNanos ? 0
+                    : left.totalNanos > right.totalNanos ? -1 : 1;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The statements as comma-separated values, one per line, with the number of executions
+     * in each latency bucket. For the analysis outside the app.
+     */
+    public static String toCsv(List<Statement> statements) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Statement,Count,Rows,TotalMs,MaxMs");
+        for (int limit : BUCKET_LIMITS) {
+            builder.append(",Le").append(limit).append("Ms");
+        }
+        builder.append(",Gt").append(BUCKET_LIMITS[BUCKET_LIMITS.length - 1]).append("Ms\n");
+
+        for (Statement statement : statements) {
+            builder.append('"').append(statement.getSql().replace("\"", "\"\"")).append('"')
+                .append(',').append(statement.getCount())
+                .append(',').append(statement.getRows())
+                .append(',').append(formatMillis(statement.getTotalNanos()))
+                .append(',').append(formatMillis(statement.getMaxNanos()));
+            for (long bucket : statement.buckets) {
+                builder.append(',').append(bucket);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    public static String formatMillis(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1000000.0);
+    }
+
+    /**
+     * The statement text, with the whitespace collapsed and the literals replaced by "?".
+     */
+    static String normalize(String sql) {
+        String result = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        result = STRING_LITERAL.matcher(result).replaceAll("?");
+        result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+        return VALUE_LIST.matcher(result).replaceAll("(?)");
+    }
+
+    static int getBucket(long nanos) {
+        for (int i = 0; i < BUCKET_LIMITS.length; i++) {
+            if (nanos <= BUCKET_LIMITS[i] * 1000000L) return i;
+        }
+        return BUCKET_LIMITS.length;
+    }
+
+    /**
+     * Executions of one statement.
+     */
+    public static class Statement {
+        private final String sql;
+        private long count;
+        private long rows;
+        private long totalNanos;
+        private long maxNanos;
+        private final long[] buckets = new long[BUCKET_LIMITS.length + 1];
+
+        Statement(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return the number of executions in each latency bucket. See {@link #BUCKET_LIMITS}.
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * @param percent Percentile, 0 to 100.
+         * @return the upper bound of the bucket with the percentile, in milliseconds, or -1
+         * if it is in the last bucket, which has no bound.
+         */
+        public int getPercentileMillis(int percent) {
+            if (count == 0) return 0;
+
+            long rank = (count * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_LIMITS.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return BUCKET_LIMITS[i];
+            }
+            return -1;
+        }
+
+        void add(long nanos, int rows) {
+            this.count++;
+            this.rows += rows;
+            this.totalNanos += nanos;
+            if (nanos > this.maxNanos) this.maxNanos = nanos;
+            this.buckets[getBucket(nanos)]++;
+        }
+
+        Statement copy() {
+            Statement result = new Statement(sql);
+            result.count = count;
+            result.rows = rows;
+            result.totalNanos = totalNanos;
+            result.maxNanos = maxNanos;
+            System.arraycopy(buckets, 0, result.buckets, 0, buckets.length);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.R;
+import com.money.manager.ex.utils.MmxFileUtils;
+
+import timber.log.Timber;
+
+/**
+ * Full-text search indexes (FTS4) over the transaction notes, payees, categories and
+ * transaction numbers, for the search and the type-ahead filters.
+ * The docid of an entry is the id of the indexed record, so the indexes are used as
+ * "ID IN (SELECT docid ... MATCH ?)" selections.
+ * The indexes are kept in sync by temporary triggers, created on every connection, so that the
+ * schema seen by the desktop application does not change. The changes made elsewhere do not
+ * fire the triggers; they are found by comparing the indexed text with the source tables,
+ * see isInSync(), and picked up by verify() when the database is opened, see
+ * {@link ExternalChanges}.
+ */
+public class SearchIndex {
+
+    public static final String TRANSACTIONS_TABLE = "TRANSACTIONSEARCH_V1";
+    public static final String PAYEES_TABLE = "PAYEESEARCH_V1";
+    public static final String CATEGORIES_TABLE = "CATEGORYSEARCH_V1";
+    public static final String SUBCATEGORIES_TABLE = "SUBCATEGORYSEARCH_V1";
+
+    // Transaction index columns
+    public static final String NOTES = "NOTES";
+    public static final String PAYEE = "PAYEE";
+    public static final String CATEGORY = "CATEGORY";
+    public static final String TRANSACTIONNUMBER = "TRANSACTIONNUMBER";
+
+    private static final String WHERE_PATTERN = "%%where%%";
+    /**
+     * Above this number of outdated transactions the index is rebuilt instead of updated.
+     */
+    private static final int REBUILD_THRESHOLD = 1000;
+
+    /**
+     * @param idColumn The transaction id column of the query.
+     * @return selection of the transactions matching the expression given as the parameter.
+     */
+    public static String getTransactionSelection(String idColumn) {
+        return getSelection(idColumn, TRANSACTIONS_TABLE);
+    }
+
+    /**
+     * @param idColumn The payee id column of the query.
+     * @return selection of the payees matching the expression given as the parameter.
+     */
+    public static String getPayeeSelection(String idColumn) {
+        return getSelection(idColumn, PAYEES_TABLE);
+    }
+
+    /**
+     * Selection of the categories or subcategories matching the expression. Takes the expression
+     * twice as the parameter.
+     */
+    public static String getCategorySelection(String categoryIdColumn, String subCategoryIdColumn) {
+        return "(" + getSelection(categoryIdColumn, CATEGORIES_TABLE) +
+            " OR " + getSelection(subCategoryIdColumn, SUBCATEGORIES_TABLE) + ")";
+    }
+
+    /**
+     * Converts the text entered by the user into a MATCH expression. Every word is searched
+     * as a prefix and all the words have to be found. The words are split the same way as
+     * by the simple tokenizer of the index, so the text can not contain any query syntax.
+     * @param column Restricts the search to the column of the index. Null for all the columns.
+     * @param text The text entered by the user.
+     * @return the expression, or null if the text contains no words.
+     */
+    public static String toMatchExpression(String column, String text) {
+        if (text == null) return null;
+
+        StringBuilder sb = new StringBuilder();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : ' ';
+            if (isTokenChar(ch)) {
+                if (start < 0) start = i;
+                continue;
+            }
+            if (start < 0) continue;
+
+            if (sb.length() > 0) sb.append(' ');
+            if (column != null) {
+                sb.append(column).append(':');
+            }
+            // The tokenizer folds only the ASCII letters. The lower case also keeps the words
+            // from being read as the AND/OR/NOT/NEAR operators.
+            for (int j = start; j < i; j++) {
+                char c = text.charAt(j);
+                sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            }
+            sb.append('*');
+            start = -1;
+        }
+
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    public SearchIndex(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+
+    /**
+     * Create the triggers that update the indexes on every write to the source tables.
+     * The triggers are temporary and have to be created on each new connection.
+     */
+    public void createTriggers(SQLiteDatabase db) {
+        // transactions
+        createTrigger(db, "SEARCH_TRANSACTION_INSERT", "INSERT ON CHECKINGACCOUNT_V1",
+            getRefreshStatements("new.TRANSID"));
+        createTrigger(db, "SEARCH_TRANSACTION_UPDATE",
+            "UPDATE OF TRANSID, PAYEEID, CATEGID, SUBCATEGID, TRANSACTIONNUMBER, NOTES ON CHECKINGACCOUNT_V1",
+            getRefreshStatements("old.TRANSID, new.TRANSID"));
+        createTrigger(db, "SEARCH_TRANSACTION_DELETE", "DELETE ON CHECKINGACCOUNT_V1",
+            getRefreshStatements("old.TRANSID"));
+
+        // split categories
+        createTrigger(db, "SEARCH_SPLIT_INSERT", "INSERT ON SPLITTRANSACTIONS_V1",
+            getRefreshStatements("new.TRANSID"));
+        createTrigger(db, "SEARCH_SPLIT_UPDATE", "UPDATE ON SPLITTRANSACTIONS_V1",
+            getRefreshStatements("old.TRANSID, new.TRANSID"));
+        createTrigger(db, "SEARCH_SPLIT_DELETE", "DELETE ON SPLITTRANSACTIONS_V1",
+            getRefreshStatements("old.TRANSID"));
+
+        // names, and the transactions that show them
+        createNameTriggers(db, PAYEES_TABLE, "PAYEE_V1", "PAYEEID", "PAYEENAME",
+            "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE PAYEEID = old.PAYEEID");
+        createNameTriggers(db, CATEGORIES_TABLE, "CATEGORY_V1", "CATEGID", "CATEGNAME",
+            "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE CATEGID = old.CATEGID" +
+            " UNION SELECT TRANSID FROM SPLITTRANSACTIONS_V1 WHERE CATEGID = old.CATEGID");
+        createNameTriggers(db, SUBCATEGORIES_TABLE, "SUBCATEGORY_V1", "SUBCATEGID", "SUBCATEGNAME",
+            "SELECT TRANSID FROM CHECKINGACCOUNT_V1 WHERE SUBCATEGID = old.SUBCATEGID" +
+            " UNION SELECT TRANSID FROM SPLITTRANSACTIONS_V1 WHERE SUBCATEGID = old.SUBCATEGID");
+    }
+
+    /**
+     * @return whether the transactions index is empty while there are transactions, i.e. the
+     * index tables were just created in an existing database.
+     */
+    public boolean isMissing(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db,
+            "SELECT EXISTS (SELECT 1 FROM CHECKINGACCOUNT_V1)" +
+            " AND NOT EXISTS (SELECT 1 FROM " + TRANSACTIONS_TABLE + ")", null) == 1;
+    }
+
+    /**
+     * Recreate all the index entries. Used after a schema upgrade.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        Timber.d("rebuilding search indexes");
+
+        db.beginTransaction();
+        try {
+            rebuildTransactions(db);
+            rebuildNames(db, PAYEES_TABLE, "PAYEE_V1", "PAYEEID", "PAYEENAME");
+            rebuildNames(db, CATEGORIES_TABLE, "CATEGORY_V1", "CATEGID", "CATEGNAME");
+            rebuildNames(db, SUBCATEGORIES_TABLE, "SUBCATEGORY_V1", "SUBCATEGID", "SUBCATEGNAME");
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Bring the indexes in line with the source tables, which could have been modified by
+     * another application. Nothing is written when the indexes are up to date.
+     * @return the number of entries that were out of sync.
+     */
+    public int verify(SQLiteDatabase db) {
+        int result = 0;
+        db.beginTransaction();
+        try {
+            result += verifyTransactions(db);
+            result += verifyNames(db, PAYEES_TABLE, "PAYEE_V1", "PAYEEID", "PAYEENAME");
+            result += verifyNames(db, CATEGORIES_TABLE, "CATEGORY_V1", "CATEGID", "CATEGNAME");
+            result += verifyNames(db, SUBCATEGORIES_TABLE, "SUBCATEGORY_V1", "SUBCATEGID", "SUBCATEGNAME");
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (result > 0) {
+            Timber.w("%d search index entries were out of sync", result);
+        }
+        return result;
+    }
+
+    /**
+     * Compare the indexed text with the source tables, without writing anything. The text is
+     * stored in the index, so an edit made by another application to the notes, the
+     * transaction numbers or the names is found here, while the stamps of the transactions
+     * do not change.
+     * Reads all the transactions, so it has to be called in the background.
+     * @return whether every record has an up-to-date index entry and nothing else is indexed.
+     */
+    public boolean isInSync(SQLiteDatabase db) {
+        String sql = "SELECT EXISTS (" + getOutdatedNamesSql(PAYEES_TABLE, "PAYEE_V1", "PAYEEID", "PAYEENAME") + ")" +
+            " OR EXISTS (" + getOutdatedNamesSql(CATEGORIES_TABLE, "CATEGORY_V1", "CATEGID", "CATEGNAME") + ")" +
+            " OR EXISTS (" + getOutdatedNamesSql(SUBCATEGORIES_TABLE, "SUBCATEGORY_V1", "SUBCATEGID", "SUBCATEGNAME") + ")" +
+            " OR EXISTS (" + getOrphanTransactionsSql() + ")" +
+            " OR EXISTS (" + getOutdatedTransactionsSql() + ")";
+
+        return DatabaseUtils.longForQuery(db, sql, null) == 0;
+    }
+
+    // Private
+
+    private static String getSelection(String idColumn, String indexTable) {
+        return idColumn + " IN (SELECT docid FROM " + indexTable + " WHERE " + indexTable + " MATCH ?)";
+    }
+
+    /**
+     * @return whether the tokenizer keeps the character in a word: ASCII letters and digits,
+     * and all the non-ASCII characters.
+     */
+    private static boolean isTokenChar(char ch) {
+        return ch >= 0x80 || (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private int verifyTransactions(SQLiteDatabase db) {
+        long[] ids = DerivedTables.queryIds(db, getOutdatedTransactionsSql(), null);
+        long[] orphanIds = DerivedTables.queryIds(db, getOrphanTransactionsSql(), null);
+        int result = ids.length + orphanIds.length;
+        if (result == 0) return 0;
+
+        if (result > REBUILD_THRESHOLD) {
+            // a new or replaced database. One statement is faster than the id lists.
+            rebuildTransactions(db);
+        } else {
+            String transactionIds = DerivedTables.joinIds(orphanIds) +
+                (orphanIds.length > 0 && ids.length > 0 ? "," : "") + DerivedTables.joinIds(ids);
+            db.execSQL(getDeleteSql(transactionIds));
+            db.execSQL(getInsertSql("WHERE TX.TRANSID IN (" + transactionIds + ")"));
+        }
+        return result;
+    }
+
+    private int verifyNames(SQLiteDatabase db, String indexTable, String table, String idColumn,
+                            String nameColumn) {
+        String sql = "SELECT count(*) FROM (" +
+            getOutdatedNamesSql(indexTable, table, idColumn, nameColumn) + ")";
+
+        int result = (int) DatabaseUtils.longForQuery(db, sql, null);
+        // only a few hundred records, recreated in one go.
+        if (result > 0) {
+            rebuildNames(db, indexTable, table, idColumn, nameColumn);
+        }
+        return result;
+    }
+
+    /**
+     * @return the transactions without an up-to-date index entry.
+     */
+    private String getOutdatedTransactionsSql() {
+        return "SELECT R.TRANSID FROM (" + getRowsSql("") + ") R" +
+            " LEFT JOIN " + TRANSACTIONS_TABLE + " S ON S.docid = R.TRANSID" +
+            " WHERE S.docid IS NULL" +
+            " OR S.NOTES IS NOT R.NOTES" +
+            " OR S.PAYEE IS NOT R.PAYEE" +
+            " OR S.CATEGORY IS NOT R.CATEGORY" +
+            " OR S.TRANSACTIONNUMBER IS NOT R.TRANSACTIONNUMBER";
+    }
+
+    /**
+     * @return the index entries of the transactions that no longer exist.
+     */
+    private String getOrphanTransactionsSql() {
+        return "SELECT docid FROM " + TRANSACTIONS_TABLE +
+            " WHERE docid NOT IN (SELECT TRANSID FROM CHECKINGACCOUNT_V1)";
+    }
+
+    /**
+     * @return the ids of the records without an up-to-date index entry and of the index
+     * entries of the records that no longer exist.
+     */
+    private String getOutdatedNamesSql(String indexTable, String table, String idColumn,
+                                       String nameColumn) {
+        return "SELECT T." + idColumn + " FROM " + table + " T" +
+            " LEFT JOIN " + indexTable + " S ON S.docid = T." + idColumn +
+            " WHERE S.docid IS NULL OR S." + nameColumn + " IS NOT T." + nameColumn +
+            " UNION ALL SELECT docid FROM " + indexTable +
+            " WHERE docid NOT IN (SELECT " + idColumn + " FROM " + table + ")";
+    }
+
+    private void rebuildTransactions(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TRANSACTIONS_TABLE);
+        db.execSQL(getInsertSql(""));
+    }
+
+    private void rebuildNames(SQLiteDatabase db, String indexTable, String table, String idColumn,
+                              String nameColumn) {
+        db.execSQL("DELETE FROM " + indexTable);
+        db.execSQL("INSERT INTO " + indexTable + " (docid, " + nameColumn + ")" +
+            " SELECT " + idColumn + ", " + nameColumn + " FROM " + table);
+    }
+
+    private void createNameTriggers(SQLiteDatabase db, String indexTable, String table,
+                                    String idColumn, String nameColumn, String transactionIds) {
+        String prefix = "SEARCH_" + table;
+        String delete = "DELETE FROM " + indexTable + " WHERE docid = old." + idColumn + ";";
+        String insert = "INSERT INTO " + indexTable + " (docid, " + nameColumn + ")" +
+            " VALUES (new." + idColumn + ", new." + nameColumn + ");";
+
+        createTrigger(db, prefix + "_INSERT", "INSERT ON " + table, insert);
+        createTrigger(db, prefix + "_UPDATE", "UPDATE OF " + idColumn + ", " + nameColumn + " ON " + table,
+            delete + insert);
+        createTrigger(db, prefix + "_DELETE", "DELETE ON " + table, delete);
+
+        // the transactions that show the name.
+        createTrigger(db, prefix + "_TRANSACTIONS_UPDATE", "UPDATE OF " + nameColumn + " ON " + table,
+            getRefreshStatements(transactionIds));
+        createTrigger(db, prefix + "_TRANSACTIONS_DELETE", "DELETE ON " + table,
+            getRefreshStatements(transactionIds));
+    }
+
+    private void createTrigger(SQLiteDatabase db, String name, String event, String statements) {
+        db.execSQL("CREATE TEMP TRIGGER IF NOT EXISTS " + name + " AFTER " + event +
+            " FOR EACH ROW BEGIN " + statements + " END");
+    }
+
+    /**
+     * Statements that recreate the index entries of the given transactions, for the triggers.
+     * @param transactionIds List of ids or a subquery.
+     */
+    private String getRefreshStatements(String transactionIds) {
+        return getDeleteSql(transactionIds) + ";" +
+            getInsertSql("WHERE TX.TRANSID IN (" + transactionIds + ")") + ";";
+    }
+
+    private String getDeleteSql(String transactionIds) {
+        return "DELETE FROM " + TRANSACTIONS_TABLE + " WHERE docid IN (" + transactionIds + ")";
+    }
+
+    private String getInsertSql(String where) {
+        return "INSERT INTO " + TRANSACTIONS_TABLE +
+            " (docid, " + NOTES + ", " + PAYEE + ", " + CATEGORY + ", " + TRANSACTIONNUMBER + ")" +
+            " SELECT TRANSID, NOTES, PAYEE, CATEGORY, TRANSACTIONNUMBER FROM (" + getRowsSql(where) + ")";
+    }
+
+    private String getRowsSql(String where) {
+        String sql = MmxFileUtils.getRawAsString(context, R.raw.search_index_transactions);
+        return sql.replace(WHERE_PATTERN, where);
+    }
+}
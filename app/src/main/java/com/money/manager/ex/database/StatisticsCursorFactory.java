@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * Creates the cursors of the database. While the query statistics are on, the cursors
+ * record how long it takes to run the query and how many rows it returns.
+ */
+public class StatisticsCursorFactory
+    implements SQLiteDatabase.CursorFactory {
+
+    /**
+     * SQLiteQuery.toString() returns the statement after this prefix.
+     */
+    private static final String QUERY_PREFIX = "SQLiteQuery: ";
+
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                            SQLiteQuery query) {
+        if (!QueryStatistics.isEnabled()) {
+            return new SQLiteCursor(masterQuery, editTable, query);
+        }
+        return new TimedCursor(masterQuery, editTable, query);
+    }
+
+    /**
+     * The query runs when the cursor counts the rows, on the first move or getCount().
+     * Only that first window of rows is timed, the later windows are filled while moving
+     * through large results.
+     */
+    private static class TimedCursor
+        extends SQLiteCursor {
+
+        TimedCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+            super(driver, editTable, query);
+
+            String sql = query.toString();
+            mSql = sql.startsWith(QUERY_PREFIX) ? sql.substring(QUERY_PREFIX.length()) : sql;
+        }
+
+        private final String mSql;
+        private boolean mCounted = false;
+
+        @Override
+        public int getCount() {
+            if (mCounted) return super.getCount();
+
+            mCounted = true;
+            long started = QueryStatistics.start();
+            int count = super.getCount();
+            QueryStatistics.record(mSql, started, count);
+            return count;
+        }
+
+        @Override
+        public boolean requery() {
+            mCounted = false;
+            return super.requery();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.money.manager.ex.R;
+import com.money.manager.ex.core.InfoKeys;
+import com.money.manager.ex.datalayer.InfoRepositorySql;
+import com.money.manager.ex.domainmodel.Info;
+import com.money.manager.ex.utils.MmxFileUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Materialized transaction facts (TRANSACTIONFACT_V1).
+ * Contains the values that QueryAllData and ViewMobileData used to derive with strftime()
+ * on every query: date parts, financial year and the date in the user's format.
+ * The accounts, dates and amounts are also kept, as the base for the balance checkpoints
+ * and the account balances.
+ * The table is maintained on every write to the transactions table and is specific to the
+ * Android app, so it is verified against the transactions when the database is opened after
+ * the file may have been modified elsewhere. See ExternalChanges.
+ */
+public class TransactionFact {
+
+    public static final String TABLE_NAME = "TRANSACTIONFACT_V1";
+
+    // FIELDS
+    public static final String TRANSID = "TRANSID";
+    public static final String ACCOUNTID = "ACCOUNTID";
+    public static final String TOACCOUNTID = "TOACCOUNTID";
+    public static final String TRANSCODE = "TRANSCODE";
+    public static final String STATUS = "STATUS";
+    public static final String TRANSDATE = "TRANSDATE";
+    public static final String TRANSAMOUNT = "TRANSAMOUNT";
+    public static final String TOTRANSAMOUNT = "TOTRANSAMOUNT";
+    public static final String DAY = "DAY";
+    public static final String MONTH = "MONTH";
+    public static final String YEAR = "YEAR";
+    public static final String FINYEAR = "FINYEAR";
+    public static final String USERDATE = "USERDATE";
+
+    private static final String TRANSACTIONS_TABLE = "CHECKINGACCOUNT_V1";
+    private static final String WHERE_PATTERN = "%%where%%";
+    /**
+     * The account into which a transaction goes, as stored in the facts: the source account
+     * when the target account does not exist.
+     */
+    private static final String TOACCOUNT_SQL = "ifnull((SELECT A.ACCOUNTID FROM ACCOUNTLIST_V1 A" +
+        " WHERE A.ACCOUNTID = TX.TOACCOUNTID), TX.ACCOUNTID)";
+
+    /**
+     * The info settings used in the calculation of the facts.
+     */
+    private static final List<String> SETTINGS = Arrays.asList(InfoKeys.DATEFORMAT,
+        InfoKeys.FINANCIAL_YEAR_START_MONTH, InfoKeys.FINANCIAL_YEAR_START_DAY);
+
+    /**
+     * @param infoName Name of the info setting.
+     * @return Indicates whether the facts need to be rebuilt when the setting changes.
+     */
+    public static boolean dependsOn(String infoName) {
+        return SETTINGS.contains(infoName);
+    }
+
+    public TransactionFact(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+
+    /**
+     * Ids of the transactions matching the given selection on the transactions table.
+     * Used to collect the transactions affected by an update or a delete before it happens.
+     */
+    public long[] loadIds(SQLiteDatabase db, String where, String[] whereArgs) {
+        String sql = "SELECT " + TRANSID + " FROM " + TRANSACTIONS_TABLE;
+        if (!TextUtils.isEmpty(where)) {
+            sql += " WHERE " + where;
+        }
+
+        return DerivedTables.queryIds(db, sql, whereArgs);
+    }
+
+    /**
+     * Recalculate the facts for the given transactions.
+     */
+    public void refresh(SQLiteDatabase db, long... ids) {
+        if (ids == null || ids.length == 0) return;
+
+        db.execSQL(getRefreshSql("WHERE TX." + TRANSID + " IN (" + DerivedTables.joinIds(ids) + ")"));
+    }
+
+    /**
+     * Remove the facts of the deleted transactions.
+     */
+    public void remove(SQLiteDatabase db, long... ids) {
+        if (ids == null || ids.length == 0) return;
+
+        db.delete(TABLE_NAME, TRANSID + " IN (" + DerivedTables.joinIds(ids) + ")", null);
+    }
+
+    /**
+     * Recalculate all the facts. Used after a schema upgrade or when the settings that the
+     * facts depend on are changed.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        Timber.d("rebuilding transaction facts");
+
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_NAME, null, null);
+            db.execSQL(getRefreshSql(""));
+            new BalanceCheckpoint().clear(db);
+            new AccountBalance().rebuild(db);
+            new IncomeExpenseRollup().rebuild(db);
+            saveSettings(db, loadSettings(db));
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compares a stamp of the transactions with the same stamp of the facts: the number of
+     * records, the highest id, and sums of the amounts and of the accounts, dates, statuses
+     * and types, weighted by the id. Detects the transactions added, deleted or edited by
+     * another application without comparing them with the facts one by one.
+     * @return false if the facts, or the date settings they depend on, need to be verified.
+     */
+    public boolean isInSync(SQLiteDatabase db) {
+        if (!loadSettings(db).equals(loadSavedSettings(db))) return false;
+
+        return DerivedTables.isSameRow(db,
+            "SELECT " + getStampSql("TX", TOACCOUNT_SQL) + " FROM " + TRANSACTIONS_TABLE + " TX",
+            "SELECT " + getStampSql("d", "d." + TOACCOUNTID) + " FROM " + TABLE_NAME + " d");
+    }
+
+    /**
+     * Bring the facts in line with the transactions. Rebuilds everything if the date settings
+     * changed, otherwise recalculates only the missing or outdated records.
+     * @return the number of records that were out of sync.
+     */
+    public int verify(SQLiteDatabase db) {
+        String settings = loadSettings(db);
+        if (!settings.equals(loadSavedSettings(db))) {
+            rebuild(db);
+            return (int) DatabaseUtils.queryNumEntries(db, TABLE_NAME);
+        }
+
+        String outdated = "SELECT TX.TRANSID FROM " + TRANSACTIONS_TABLE + " TX" +
+            " LEFT JOIN " + TABLE_NAME + " d ON d.TRANSID = TX.TRANSID" +
+            " WHERE d.TRANSID IS NULL" +
+            " OR d.TRANSDATE IS NOT date(TX.TRANSDATE)" +
+            " OR d.ACCOUNTID IS NOT TX.ACCOUNTID" +
+            " OR d.TRANSCODE IS NOT TX.TRANSCODE" +
+            " OR d.STATUS IS NOT TX.STATUS" +
+            " OR d.TRANSAMOUNT IS NOT TX.TRANSAMOUNT" +
+            " OR d.TOTRANSAMOUNT IS NOT TX.TOTRANSAMOUNT" +
+            " OR d.TOACCOUNTID IS NOT " + TOACCOUNT_SQL;
+        String orphans = "SELECT TRANSID FROM " + TABLE_NAME +
+            " WHERE TRANSID NOT IN (SELECT TRANSID FROM " + TRANSACTIONS_TABLE + ")";
+
+        int result = 0;
+        db.beginTransaction();
+        try {
+            long[] orphanIds = DerivedTables.queryIds(db, orphans, null);
+            long[] ids = DerivedTables.queryIds(db, outdated, null);
+
+            // the balances change from the earliest affected date.
+            BalanceCheckpoint checkpoints = new BalanceCheckpoint();
+            checkpoints.invalidate(db, orphanIds);
+            checkpoints.invalidate(db, ids);
+
+            AccountBalance balances = new AccountBalance();
+            long[] accountIds = balances.loadAccountIds(db, orphanIds);
+            long[] outdatedAccountIds = balances.loadAccountIds(db, ids);
+
+            remove(db, orphanIds);
+            refresh(db, ids);
+            balances.refresh(db, accountIds);
+            balances.refresh(db, outdatedAccountIds);
+            result += orphanIds.length + ids.length;
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (result > 0) {
+            Timber.w("%d transaction facts were out of sync", result);
+        }
+        return result;
+    }
+
+    // Private
+
+    /**
+     * The stamp columns. The amounts are summed in cents and the dates as day numbers, so
+     * that the sums are exact and do not depend on the order of the records.
+     * @param alias Alias of the transactions or of the facts.
+     * @param toAccount The account into which the transaction goes.
+     */
+    private String getStampSql(String alias, String toAccount) {
+        String weight = "(" + alias + "." + TRANSID + " % 1000 + 1)";
+
+        return "count(*), ifnull(max(" + alias + "." + TRANSID + "), 0)" +
+            ", total(" + weight + " * round(" + alias + "." + TRANSAMOUNT + " * 100))" +
+            ", total(" + weight + " * round(" + alias + "." + TOTRANSAMOUNT + " * 100))" +
+            ", total(" + weight + " * (ifnull(" + alias + "." + ACCOUNTID + ", 0)" +
+            " + 3 * ifnull(" + toAccount + ", 0)" +
+            " + 7 * ifnull(CAST(julianday(date(" + alias + "." + TRANSDATE + ")) AS INTEGER), 0)" +
+            " + 11 * ifnull(unicode(" + alias + "." + STATUS + "), 0)" +
+            " + 13 * ifnull(unicode(" + alias + "." + TRANSCODE + "), 0)))";
+    }
+
+    private String getRefreshSql(String where) {
+        String sql = MmxFileUtils.getRawAsString(context, R.raw.transaction_fact_refresh);
+        return sql.replace(WHERE_PATTERN, where);
+    }
+
+    /**
+     * @return the current values of the settings used in the facts, as one string.
+     */
+    private String loadSettings(SQLiteDatabase db) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : SETTINGS) {
+            sb.append(loadInfo(db, key));
+            sb.append('|');
+        }
+        return sb.toString();
+    }
+
+    private String loadSavedSettings(SQLiteDatabase db) {
+        return loadInfo(db, InfoKeys.TRANSACTION_FACT_SETTINGS);
+    }
+
+    private String loadInfo(SQLiteDatabase db, String key) {
+        String result = "";
+
+        Cursor c = db.rawQuery("SELECT " + Info.INFOVALUE + " FROM " + InfoRepositorySql.TABLE_NAME +
+            " WHERE " + Info.INFONAME + "=?", new String[] { key });
+        if (c == null) return result;
+
+        if (c.moveToFirst() && !c.isNull(0)) {
+            result = c.getString(0);
+        }
+        c.close();
+
+        return result;
+    }
+
+    private void saveSettings(SQLiteDatabase db, String settings) {
+        ContentValues values = new ContentValues();
+        values.put(Info.INFOVALUE, settings);
+
+        int updated = db.update(InfoRepositorySql.TABLE_NAME, values, Info.INFONAME + "=?",
+            new String[] { InfoKeys.TRANSACTION_FACT_SETTINGS });
+        if (updated <= 0) {
+            values.put(Info.INFONAME, InfoKeys.TRANSACTION_FACT_SETTINGS);
+            db.insert(InfoRepositorySql.TABLE_NAME, null, values);
+        }
+    }
+}
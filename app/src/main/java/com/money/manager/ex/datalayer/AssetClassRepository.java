@@ -19,7 +19,6 @@ package com.money.manager.ex.datalayer;
 import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
-import android.util.Log;
 
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.database.WhereStatementGenerator;
@@ -129,7 +128,7 @@ public class AssetClassRepository
         entities.toArray(values);
 
         ContentProviderResult[] results = bulkUpdate(values);
-        return results.length == entities.size();
+        return results != null && results.length == entities.size();
     }
 
     public boolean delete(int id) {
@@ -141,11 +140,6 @@ public class AssetClassRepository
         if (ids.size() == 0) return true;
 
         ContentProviderResult[] results = bulkDelete(ids);
-
-        for (ContentProviderResult result : results) {
-            Log.d("test", result.toString());
-        }
-
-        return true;
+        return results != null;
     }
 }
@@ -72,6 +72,26 @@ public class AssetClassStockRepository
         return this.delete(where.getWhere(), null) >= 0;
     }
 
+    /**
+     * Loads the stock links of all the asset classes, in one query.
+     */
+    public List<AssetClassStock> loadAll() {
+        Cursor c = openCursor(null, null, null);
+        if (c == null) return null;
+
+        List<AssetClassStock> result = new ArrayList<>();
+
+        while (c.moveToNext()) {
+            AssetClassStock entity = AssetClassStock.create(0, "");
+            entity.loadFromCursor(c);
+            result.add(entity);
+        }
+
+        c.close();
+
+        return result;
+    }
+
     public List<AssetClassStock> loadForClass(int assetClassId) {
         WhereStatementGenerator where = new WhereStatementGenerator();
         String selection = where.getStatement(AssetClassStock.ASSETCLASSID, "=", assetClassId);
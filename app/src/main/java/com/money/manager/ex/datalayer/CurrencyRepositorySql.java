@@ -33,7 +33,7 @@ public class CurrencyRepositorySql
 
     @Inject
     CurrencyRepositorySql(BriteDatabase db) {
-        super(TABLE_NAME, db);
+        super(TABLE_NAME, Currency.CURRENCYID, db);
     }
 
     public boolean exists(String currencyCode) {
@@ -19,6 +19,8 @@ package com.money.manager.ex.datalayer;
 
 import android.database.Cursor;
 
+import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.database.TransactionFact;
 import com.money.manager.ex.domainmodel.Info;
 import com.squareup.sqlbrite.BriteDatabase;
 
@@ -37,7 +39,7 @@ public class InfoRepositorySql
 
     @Inject
     public InfoRepositorySql(BriteDatabase db) {
-        super(TABLE_NAME, db);
+        super(TABLE_NAME, Info.INFOID, db);
     }
 
 //    @Override
@@ -69,10 +71,30 @@ public class InfoRepositorySql
     }
 
     public long insert(Info value) {
-        return insert(value.contentValues);
+        long id = insert(value.contentValues);
+
+        if (id > 0) {
+            onInfoChanged(value.getName());
+        }
+        return id;
     }
 
     public boolean update(Info entity) {
-        return update(entity, Info.INFONAME + "=?", entity.getName());
+        boolean result = update(entity, Info.INFONAME + "=?", entity.getName());
+
+        if (result) {
+            onInfoChanged(entity.getName());
+        }
+        return result;
+    }
+
+    /**
+     * The transaction facts contain dates formatted with the info settings.
+     * @param infoName Name of the info value that was written.
+     */
+    private void onInfoChanged(String infoName) {
+        if (!TransactionFact.dependsOn(infoName)) return;
+
+        new TransactionFact(MmexApplication.getApp()).rebuild(database.getWritableDatabase());
     }
 }
@@ -31,11 +31,11 @@ import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmxContentProvider;
 import com.money.manager.ex.database.Dataset;
 import com.money.manager.ex.database.DatasetType;
-import com.money.manager.ex.domainmodel.AssetClass;
 import com.money.manager.ex.domainmodel.EntityBase;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import timber.log.Timber;
 
@@ -52,6 +52,7 @@ public abstract class RepositoryBase<T extends EntityBase>
     }
 
     private Context context;
+    private String idColumn;
 
     public int count(String selection, String[] args) {
         Cursor c = openCursor(null, selection, args);
@@ -204,61 +205,137 @@ public abstract class RepositoryBase<T extends EntityBase>
     }
 
     /**
-     * Warning: this works only with Asset Class entities!
+     * Inserts all the entities in a single database transaction.
      * Ref:
      * http://www.grokkingandroid.com/better-performance-with-contentprovideroperation/
      * http://www.grokkingandroid.com/android-tutorial-using-content-providers/
+     * @param entities array of entities to insert in a transaction
+     * @return results of the bulk insert, or null if the transaction was rolled back.
+     */
+    public ContentProviderResult[] bulkInsert(EntityBase[] entities) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        for (EntityBase entity : entities) {
+            operations.add(newInsert(entity).build());
+        }
+
+        return applyBatch(operations);
+    }
+
+    /**
+     * Updates all the entities in a single database transaction. The records are matched
+     * by the primary key of the entities.
      * @param entities array of entities to update in a transaction
-     * @return results of the bulk update
+     * @return results of the bulk update, or null if the transaction was rolled back.
      */
-    protected ContentProviderResult[] bulkUpdate(EntityBase[] entities) {
+    public ContentProviderResult[] bulkUpdate(EntityBase[] entities) {
         ArrayList<ContentProviderOperation> operations = new ArrayList<>();
 
         for (EntityBase entity : entities) {
-            AssetClass assetClass = (AssetClass) entity;
+            operations.add(newUpdate(entity).build());
+        }
+
+        return applyBatch(operations);
+    }
+
+    /**
+     * Deletes the records with the given ids in a single database transaction.
+     * @param ids primary keys of the records to delete
+     * @return results of the bulk delete, or null if the transaction was rolled back.
+     */
+    public ContentProviderResult[] bulkDelete(List<Integer> ids) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
 
-            operations.add(ContentProviderOperation.newUpdate(this.getUri())
-                .withValues(entity.contentValues)
-                .withSelection(AssetClass.ID + "=?", new String[] {Integer.toString(assetClass.getId())})
-                .build());
+        for (int id : ids) {
+            operations.add(newDelete(id).build());
         }
 
+        return applyBatch(operations);
+    }
+
+    /**
+     * Runs the operations in a single database transaction. Listeners and the sync engine
+     * are notified once, after the transaction is committed. Operations for different
+     * repositories can be combined, i.e. to use back-references to inserted records.
+     * @param operations The operations to run.
+     * @return results of the operations, or null if the transaction was rolled back.
+     */
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) {
+        if (operations.isEmpty()) return new ContentProviderResult[0];
+
         ContentProviderResult[] results = null;
         try {
             results = getContext().getContentResolver()
                 .applyBatch(MmxContentProvider.getAuthority(), operations);
         } catch (RemoteException | OperationApplicationException e) {
-            Timber.e(e, "bulk updating");
+            Timber.e(e, "applying batch on %s", getSource());
         }
         return results;
     }
 
-    protected int delete(String where, String[] args) {
-        int result = getContext().getContentResolver().delete(this.getUri(),
-            where,
-            args
-        );
-        return result;
+    /**
+     * @return Insert operation for the entity. An unassigned primary key is not stored.
+     */
+    public ContentProviderOperation.Builder newInsert(EntityBase entity) {
+        ContentValues values = new ContentValues(entity.contentValues);
+        values.remove("_id");
+
+        Integer id = values.getAsInteger(getIdColumn());
+        if (id == null || id == Constants.NOT_SET) {
+            values.remove(getIdColumn());
+        }
+
+        return ContentProviderOperation.newInsert(this.getUri())
+            .withValues(values);
     }
 
-    protected ContentProviderResult[] bulkDelete(List<Integer> ids) {
-        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+    /**
+     * @return Update operation for the entity, matching the record by its primary key.
+     */
+    public ContentProviderOperation.Builder newUpdate(EntityBase entity) {
+        ContentValues values = new ContentValues(entity.contentValues);
+        values.remove("_id");
 
-        for (int id : ids) {
-            operations.add(ContentProviderOperation.newDelete(this.getUri())
-//                .withValues(entity.contentValues)
-                .withSelection(AssetClass.ID + "=?", new String[]{Integer.toString(id)})
-                .build());
+        String id = values.getAsString(getIdColumn());
+        if (id == null) {
+            throw new IllegalArgumentException("Entity has no " + getIdColumn() + " for " + getSource());
         }
 
-        ContentProviderResult[] results = null;
-        try {
-            results = getContext().getContentResolver()
-                .applyBatch(MmxContentProvider.getAuthority(), operations);
-        } catch (RemoteException | OperationApplicationException e) {
-            Timber.e(e, "bulk updating");
+        return ContentProviderOperation.newUpdate(this.getUri())
+            .withValues(values)
+            .withSelection(getIdColumn() + "=?", new String[] { id })
+            .withExpectedCount(1);
+    }
+
+    public ContentProviderOperation.Builder newDelete(int id) {
+        return ContentProviderOperation.newDelete(this.getUri())
+            .withSelection(getIdColumn() + "=?", new String[] { Integer.toString(id) });
+    }
+
+    /**
+     * The primary key column. By default, this is the column aliased as _id in the list
+     * of all columns.
+     * @return name of the primary key column
+     */
+    protected String getIdColumn() {
+        if (idColumn != null) return idColumn;
+
+        for (String column : getAllColumns()) {
+            int aliasIndex = column.toUpperCase(Locale.US).lastIndexOf(" AS _ID");
+            if (aliasIndex > 0 && aliasIndex + " AS _ID".length() == column.length()) {
+                idColumn = column.substring(0, aliasIndex).trim();
+                return idColumn;
+            }
         }
-        return results;
+        throw new IllegalStateException("No primary key column defined for " + getSource());
+    }
+
+    protected int delete(String where, String[] args) {
+        int result = getContext().getContentResolver().delete(this.getUri(),
+            where,
+            args
+        );
+        return result;
     }
 
 }
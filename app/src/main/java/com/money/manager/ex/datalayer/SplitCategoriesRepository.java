@@ -18,10 +18,14 @@ package com.money.manager.ex.datalayer;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.text.TextUtils;
 
+import com.money.manager.ex.database.Dataset;
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.database.ISplitTransaction;
 import com.money.manager.ex.database.ITransactionEntity;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.SQLDataSet;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.EntityBase;
 import com.money.manager.ex.domainmodel.SplitCategory;
@@ -74,6 +78,26 @@ public class SplitCategoriesRepository
         return listSplitTrans;
     }
 
+    /**
+     * Opens a cursor over the split categories of the split transactions of a query, in the
+     * order of the query and then of the splits, so that they are read along with the
+     * transactions. See {@link SplitCategoriesStream}.
+     * @param transactions Query of the transactions, with the ID and SPLITTED columns.
+     * @param query Selection of the transactions, and their sort qualified with the T alias.
+     * The sort has to identify the transactions.
+     */
+    public Cursor openSplitCategoriesFor(Dataset transactions, Select query) {
+        String sql = "SELECT S.* FROM (SELECT * FROM (" + transactions.getSource() + ")" +
+            (TextUtils.isEmpty(query.selection) ? "" : " WHERE " + query.selection) + ") T" +
+            " INNER JOIN " + SplitCategory.TABLE_NAME + " S" +
+            " ON S." + SplitCategory.TRANSID + " = T." + QueryAllData.ID +
+            " WHERE T." + QueryAllData.SPLITTED + " = 1" +
+            " ORDER BY " + query.sort + ", S." + SplitCategory.SPLITTRANSID;
+
+        return getContext().getContentResolver().query(new SQLDataSet().getUri(), null, sql,
+            query.selectionArgs, null);
+    }
+
     public boolean insert(SplitCategory item) {
         // Remove any existing id value.
         item.contentValues.remove(SplitCategory.SPLITTRANSID);
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.datalayer;
+
+import android.database.Cursor;
+
+import com.money.manager.ex.database.ISplitTransaction;
+import com.money.manager.ex.domainmodel.SplitCategory;
+
+import java.util.ArrayList;
+
+/**
+ * Reads the split categories of consecutive transactions from one cursor, ordered in the same
+ * way as the transactions, so that only the splits of the current transaction are held in
+ * memory. See {@link SplitCategoriesRepository#openSplitCategoriesFor}.
+ */
+public class SplitCategoriesStream {
+
+    /**
+     * @param cursor The split categories. Closed with the stream.
+     */
+    public SplitCategoriesStream(Cursor cursor) {
+        mCursor = cursor;
+        mCursor.moveToFirst();
+        mTransIdColumn = cursor.getColumnIndex(SplitCategory.TRANSID);
+    }
+
+    private final Cursor mCursor;
+    private final int mTransIdColumn;
+
+    /**
+     * Reads the splits of the next split transaction.
+     * @param transId Id of the transaction.
+     * @return the splits, or null when the cursor is not at the splits of the transaction,
+     * i.e. the data changed after the transactions were read. The splits are then loaded
+     * separately.
+     */
+    public ArrayList<ISplitTransaction> next(int transId) {
+        if (mCursor.isAfterLast() || mCursor.getInt(mTransIdColumn) != transId) return null;
+
+        ArrayList<ISplitTransaction> result = new ArrayList<>();
+        do {
+            SplitCategory splitCategory = new SplitCategory();
+            splitCategory.loadFromCursor(mCursor);
+            result.add(splitCategory);
+        } while (mCursor.moveToNext() && mCursor.getInt(mTransIdColumn) == transId);
+
+        return result;
+    }
+
+    public void close() {
+        mCursor.close();
+    }
+}
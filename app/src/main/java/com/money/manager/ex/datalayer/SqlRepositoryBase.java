@@ -19,12 +19,18 @@ package com.money.manager.ex.datalayer;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.SQLException;
 
+import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.MmxContentProvider;
+import com.money.manager.ex.budget.BudgetActuals;
 import com.money.manager.ex.domainmodel.EntityBase;
-import com.money.manager.ex.sync.SyncManager;
+import com.money.manager.ex.notifications.SmsLookupIndex;
 import com.squareup.sqlbrite.BriteDatabase;
 
+import java.util.List;
+
 import timber.log.Timber;
 
 /**
@@ -33,16 +39,26 @@ import timber.log.Timber;
  */
 
 abstract class SqlRepositoryBase<T extends EntityBase> {
-    SqlRepositoryBase(String tableName, BriteDatabase db) {
+    SqlRepositoryBase(String tableName, String idColumn, BriteDatabase db) {
         this.tableName = tableName;
+        this.idColumn = idColumn;
         this.database = db;
     }
 
     public BriteDatabase database;
     public String tableName;
+    /**
+     * The primary key column, used by the bulk operations.
+     */
+    public String idColumn;
 
     public long insert(ContentValues values) {
-        return database.insert(tableName, values);
+        long id = database.insert(tableName, values);
+
+        // the new record is not in the lookups yet.
+        SmsLookupIndex.onTableChanged(tableName);
+
+        return id;
     }
 
     public int delete(String where, String... whereArgs) {
@@ -53,6 +69,94 @@ abstract class SqlRepositoryBase<T extends EntityBase> {
         return result;
     }
 
+    /**
+     * Inserts all the entities in one transaction. The new primary keys are stored
+     * in the entities.
+     * @return number of inserted records, 0 if the transaction was rolled back.
+     */
+    public int bulkInsert(List<T> entities) {
+        int inserted = 0;
+
+        BriteDatabase.Transaction transaction = database.newTransaction();
+        try {
+            for (T entity : entities) {
+                ContentValues values = new ContentValues(entity.contentValues);
+                values.remove("_id");
+
+                long id = database.insert(tableName, values);
+                if (id == Constants.NOT_SET) {
+                    throw new SQLException("could not insert into " + tableName);
+                }
+                entity.contentValues.put(idColumn, id);
+                inserted++;
+            }
+            transaction.markSuccessful();
+        } catch (SQLException e) {
+            Timber.e(e, "bulk inserting into %s", tableName);
+            inserted = 0;
+        } finally {
+            transaction.end();
+        }
+
+        if (inserted > 0) notifySync();
+
+        return inserted;
+    }
+
+    /**
+     * Updates all the entities in one transaction, matching the records by primary key.
+     * @return number of updated records, 0 if the transaction was rolled back.
+     */
+    public int bulkUpdate(List<T> entities) {
+        int updated = 0;
+
+        BriteDatabase.Transaction transaction = database.newTransaction();
+        try {
+            for (T entity : entities) {
+                ContentValues values = new ContentValues(entity.contentValues);
+                values.remove("_id");
+
+                updated += database.update(tableName, values, idColumn + "=?",
+                    values.getAsString(idColumn));
+            }
+            transaction.markSuccessful();
+        } catch (SQLException e) {
+            Timber.e(e, "bulk updating %s", tableName);
+            updated = 0;
+        } finally {
+            transaction.end();
+        }
+
+        if (updated > 0) notifySync();
+
+        return updated;
+    }
+
+    /**
+     * Deletes the records with the given primary keys in one transaction.
+     * @return number of deleted records, 0 if the transaction was rolled back.
+     */
+    public int bulkDelete(List<Integer> ids) {
+        int deleted = 0;
+
+        BriteDatabase.Transaction transaction = database.newTransaction();
+        try {
+            for (int id : ids) {
+                deleted += database.delete(tableName, idColumn + "=?", Integer.toString(id));
+            }
+            transaction.markSuccessful();
+        } catch (SQLException e) {
+            Timber.e(e, "bulk deleting from %s", tableName);
+            deleted = 0;
+        } finally {
+            transaction.end();
+        }
+
+        if (deleted > 0) notifySync();
+
+        return deleted;
+    }
+
     public boolean exists(Select query) {
         Cursor c = database.query(query.toString(), query.selectionArgs);
         if (c == null) return false;
@@ -125,7 +229,12 @@ abstract class SqlRepositoryBase<T extends EntityBase> {
     /**
      * Notify sync engine about the database update.
      */
-    private void notifySync() {
-        new SyncManager(MmexApplication.getApp()).dataChanged();
+    protected void notifySync() {
+        // exchange rates are used in the budget totals.
+        BudgetActuals.invalidate();
+        // the payees, categories, accounts and currencies are used to parse the sms.
+        SmsLookupIndex.onTableChanged(tableName);
+
+        MmxContentProvider.notifyDataChanged(MmexApplication.getApp());
     }
 }
@@ -20,12 +20,18 @@ package com.money.manager.ex.datalayer;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 
 import com.money.manager.ex.domainmodel.StockHistory;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.MmxDate;
 import com.squareup.sqlbrite.BriteDatabase;
 
 import java.util.Date;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -42,7 +48,7 @@ public class StockHistoryRepositorySql
 
     @Inject
     public StockHistoryRepositorySql(BriteDatabase db) {
-        super(TABLE_NAME, db);
+        super(TABLE_NAME, StockHistory.HISTID, db);
 
 //        application.iocComponent.inject(this);
     }
@@ -73,6 +79,69 @@ public class StockHistoryRepositorySql
         return success;
     }
 
+    /**
+     * Saves the downloaded prices in one transaction. The price history record for the
+     * symbol and date is updated or inserted and the current price of all the stocks with the
+     * symbol is set, so a whole portfolio is refreshed at once.
+     * @return number of saved prices, 0 if the transaction was rolled back.
+     */
+    public int savePrices(List<PriceDownloadedEvent> prices) {
+        if (prices == null || prices.isEmpty()) return 0;
+
+        SQLiteDatabase db = database.getWritableDatabase();
+        // (SYMBOL, DATE) is unique. ON CONFLICT upserts need SQLite 3.24, so the record is
+        // updated and inserted only if it does not exist.
+        SQLiteStatement updateHistory = db.compileStatement("UPDATE " + TABLE_NAME +
+            " SET " + StockHistory.VALUE + "=?, " + StockHistory.UPDTYPE + "=?" +
+            " WHERE " + StockHistory.SYMBOL + "=? AND " + StockHistory.DATE + "=?");
+        SQLiteStatement insertHistory = db.compileStatement("INSERT INTO " + TABLE_NAME +
+            " (" + StockHistory.VALUE + ", " + StockHistory.UPDTYPE + ", " +
+            StockHistory.SYMBOL + ", " + StockHistory.DATE + ") VALUES (?, ?, ?, ?)");
+        SQLiteStatement updateStock = db.compileStatement("UPDATE " + StockRepositorySql.TABLE_NAME +
+            " SET " + StockFields.CURRENTPRICE + "=?, " +
+            StockFields.VALUE + "=" + StockFields.NUMSHARES + " * ?" +
+            " WHERE " + StockFields.SYMBOL + "=?");
+
+        int saved = 0;
+        BriteDatabase.Transaction transaction = database.newTransaction();
+        try {
+            for (PriceDownloadedEvent price : prices) {
+                if (price == null || TextUtils.isEmpty(price.symbol) || price.price == null
+                    || price.date == null) continue;
+
+                String value = price.price.toString();
+                String isoDate = new MmxDate(price.date).toIsoDateString();
+
+                bindHistory(updateHistory, value, price.symbol, isoDate);
+                if (updateHistory.executeUpdateDelete() == 0) {
+                    bindHistory(insertHistory, value, price.symbol, isoDate);
+                    insertHistory.executeInsert();
+                }
+
+                updateStock.bindString(1, value);
+                updateStock.bindDouble(2, price.price.toDouble());
+                updateStock.bindString(3, price.symbol);
+                updateStock.executeUpdateDelete();
+
+                saved++;
+            }
+            transaction.markSuccessful();
+        } catch (SQLException e) {
+            Timber.e(e, "saving %d prices", prices.size());
+            saved = 0;
+        } finally {
+            transaction.end();
+
+            updateHistory.close();
+            insertHistory.close();
+            updateStock.close();
+        }
+
+        if (saved > 0) notifySync();
+
+        return saved;
+    }
+
     public ContentValues getContentValues(String symbol, Money price, Date date) {
         String isoDate = new MmxDate(date).toIsoDateString();
 
@@ -121,4 +190,12 @@ public class StockHistoryRepositorySql
         return result;
     }
 
+    // Private
+
+    private void bindHistory(SQLiteStatement statement, String value, String symbol, String isoDate) {
+        statement.bindString(1, value);
+        statement.bindLong(2, StockHistoryRepository.UpdateType.Online.type);
+        statement.bindString(3, symbol);
+        statement.bindString(4, isoDate);
+    }
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.ObjectArrays;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.database.WhereStatementGenerator;
+import com.money.manager.ex.domainmodel.AssetClassStock;
 import com.money.manager.ex.domainmodel.Stock;
 import com.money.manager.ex.utils.MmxDatabaseUtils;
 
@@ -128,6 +129,22 @@ public class StockRepository
         return result;
     }
 
+    /**
+     * Loads the stock records of all the symbols linked to an asset class, in one query.
+     */
+    public List<Stock> loadForAssetClasses() {
+        AssetClassStockRepository linkRepo = new AssetClassStockRepository(getContext());
+
+        Cursor c = openCursor(null,
+            StockFields.SYMBOL + " IN (SELECT " + AssetClassStock.STOCKSYMBOL +
+                " FROM " + linkRepo.getSource() + ")",
+            null,
+            null);
+        if (c == null) return null;
+
+        return getEntities(c);
+    }
+
     /**
      * Retrieves all record ids which refer the given symbol.
      * @return array of ids of records which contain the symbol.
@@ -38,7 +38,7 @@ public class StockRepositorySql
 
     @Inject
     public StockRepositorySql(BriteDatabase db) {
-        super(TABLE_NAME, db);
+        super(TABLE_NAME, StockFields.STOCKID, db);
 
 //        application.iocComponent.inject(this);
     }
@@ -90,7 +90,7 @@ public class EntityBase
 
     protected Date getDate(String field) {
         String dateString = getString(field);
-        return new MmxDate(dateString).toDate();
+        return MmxDate.fromIsoDate(dateString);
     }
 
 //    protected void setDate(String fieldName, DateTime value) {
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.forecast;
+
+import com.money.manager.ex.core.TransactionStatuses;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.recurring.transactions.Recurrence;
+import com.money.manager.ex.utils.EpochDay;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Cash-flow forecast. Expands the recurring transactions into their occurrences over a
+ * horizon and adds them to the current balances, giving the projected balance of each account
+ * on each day. The dates are epoch days (see EpochDay) and the occurrences are accumulated
+ * into one array of daily movements per account, so no objects are created per occurrence.
+ * The amounts are in the currency of each account.
+ */
+public class CashFlowForecast {
+
+    /**
+     * @param startDay The first day of the forecast, usually today, as an epoch day.
+     * @param endDay The last day of the forecast, inclusive.
+     */
+    public CashFlowForecast(int startDay, int endDay) {
+        if (endDay < startDay) {
+            throw new IllegalArgumentException("The forecast ends before it starts");
+        }
+
+        this.startDay = startDay;
+        this.endDay = endDay;
+    }
+
+    private final int startDay;
+    private final int endDay;
+    private final Map<Integer, Integer> accountIndex = new HashMap<>();
+    private int[] accountIds = new int[16];
+    private double[] openingBalances = new double[16];
+    private double[][] movements = new double[16][];
+    private int accountCount;
+    private int occurrences;
+
+    /**
+     * Sets the current balance of the account.
+     */
+    public void setBalance(int accountId, double balance) {
+        // the arrays may be replaced when the account is added.
+        int index = getAccountIndex(accountId);
+        openingBalances[index] = balance;
+    }
+
+    /**
+     * Adds the occurrences of a recurring transaction (BILLSDEPOSITS_V1) within the horizon.
+     * The occurrences that are overdue are projected on the first day.
+     * @param repeats The REPEATS value, including the auto-execute flags.
+     * @param numOccurrences NUMOCCURRENCES: the payments left for the periodic recurrences,
+     *                       where 0 or less repeats forever, or the x for the IN_X and EVERY_X
+     *                       ones.
+     * @param nextDay The next occurrence, as an epoch day.
+     * @return the number of occurrences within the horizon.
+     */
+    public int addSchedule(int accountId, int toAccountId, String transCode, String status,
+                           double amount, double toAmount, int repeats, int numOccurrences,
+                           int nextDay) {
+        if (nextDay == EpochDay.INVALID || TransactionStatuses.VOID.getCode().equals(status)) return 0;
+
+        Recurrence recurrence;
+        try {
+            recurrence = Recurrence.valueOf(repeats);
+        } catch (InvalidParameterException e) {
+            return 0;
+        }
+
+        double fromAmount;
+        boolean transfer = false;
+        if (TransactionTypes.Deposit.name().equals(transCode)) {
+            fromAmount = amount;
+        } else if (TransactionTypes.Withdrawal.name().equals(transCode)) {
+            fromAmount = -amount;
+        } else if (TransactionTypes.Transfer.name().equals(transCode)) {
+            fromAmount = -amount;
+            transfer = toAccountId != accountId && toAccountId > 0;
+        } else {
+            return 0;
+        }
+
+        double[] from = getMovements(getAccountIndex(accountId));
+        double[] to = transfer ? getMovements(getAccountIndex(toAccountId)) : null;
+
+        // remaining occurrences, negative for unlimited.
+        int remaining;
+        switch (recurrence) {
+            case ONCE:
+                remaining = 1;
+                break;
+            case IN_X_DAYS:
+            case IN_X_MONTHS:
+                // once more, x periods after the next occurrence.
+                remaining = numOccurrences > 0 ? 2 : 1;
+                break;
+            case EVERY_X_DAYS:
+            case EVERY_X_MONTHS:
+                remaining = numOccurrences > 0 ? -1 : 1;
+                break;
+            default:
+                remaining = numOccurrences > 0 ? numOccurrences : -1;
+                break;
+        }
+
+        int added = 0;
+        int day = nextDay;
+        while (day <= endDay && remaining != 0) {
+            int index = day < startDay ? 0 : day - startDay;
+            from[index] += fromAmount;
+            if (to != null) {
+                to[index] += toAmount;
+            }
+            added++;
+            if (remaining > 0) remaining--;
+
+            int next = getNextDay(day, recurrence, numOccurrences);
+            if (next <= day) break;
+            day = next;
+        }
+
+        occurrences += added;
+        return added;
+    }
+
+    /**
+     * @return the projected balances.
+     */
+    public Result calculate() {
+        int days = endDay - startDay + 1;
+        int[] ids = Arrays.copyOf(accountIds, accountCount);
+        double[][] balances = new double[accountCount][];
+
+        for (int i = 0; i < accountCount; i++) {
+            double[] result = new double[days];
+            double[] accountMovements = movements[i];
+            double balance = openingBalances[i];
+            for (int day = 0; day < days; day++) {
+                if (accountMovements != null) {
+                    balance += accountMovements[day];
+                }
+                result[day] = balance;
+            }
+            balances[i] = result;
+        }
+
+        return new Result(startDay, endDay, ids, balances, occurrences);
+    }
+
+    /**
+     * The next occurrence, as RecurringTransactionService.getNextScheduledDate() calculates it,
+     * except that the last day of the month schedules always fall on the last (business) day.
+     */
+    static int getNextDay(int day, Recurrence recurrence, int numberOfPeriods) {
+        switch (recurrence) {
+            case WEEKLY:
+                return day + 7;
+            case BIWEEKLY:
+                return day + 14;
+            case FOUR_WEEKS:
+                return day + 28;
+            case DAILY:
+                return day + 1;
+            case IN_X_DAYS:
+            case EVERY_X_DAYS:
+                return day + numberOfPeriods;
+            case MONTHLY:
+                return EpochDay.plusMonths(day, 1);
+            case BIMONTHLY:
+                return EpochDay.plusMonths(day, 2);
+            case QUARTERLY:
+                return EpochDay.plusMonths(day, 3);
+            case FOUR_MONTHS:
+                return EpochDay.plusMonths(day, 4);
+            case SEMIANNUALLY:
+                return EpochDay.plusMonths(day, 6);
+            case ANNUALLY:
+                return EpochDay.plusMonths(day, 12);
+            case IN_X_MONTHS:
+            case EVERY_X_MONTHS:
+                return EpochDay.plusMonths(day, numberOfPeriods);
+            case MONTHLY_LAST_DAY:
+                int lastDay = EpochDay.lastDayOfMonth(day);
+                return day < lastDay ? lastDay : EpochDay.lastDayOfMonth(lastDay + 1);
+            case MONTHLY_LAST_BUSINESS_DAY:
+                int lastBusinessDay = getLastBusinessDay(day);
+                return day < lastBusinessDay
+                    ? lastBusinessDay
+                    : getLastBusinessDay(EpochDay.lastDayOfMonth(day) + 1);
+            default:
+                // ONCE
+                return day;
+        }
+    }
+
+    // Private
+
+    private static int getLastBusinessDay(int day) {
+        int result = EpochDay.lastDayOfMonth(day);
+        int dayOfWeek = EpochDay.dayOfWeek(result);
+        if (dayOfWeek == EpochDay.SATURDAY) return result - 1;
+        if (dayOfWeek == EpochDay.SUNDAY) return result - 2;
+        return result;
+    }
+
+    private int getAccountIndex(int accountId) {
+        Integer index = accountIndex.get(accountId);
+        if (index != null) return index;
+
+        if (accountCount == accountIds.length) {
+            int capacity = accountCount * 2;
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            openingBalances = Arrays.copyOf(openingBalances, capacity);
+            movements = Arrays.copyOf(movements, capacity);
+        }
+        accountIds[accountCount] = accountId;
+        accountIndex.put(accountId, accountCount);
+        return accountCount++;
+    }
+
+    private double[] getMovements(int accountIndex) {
+        if (movements[accountIndex] == null) {
+            movements[accountIndex] = new double[endDay - startDay + 1];
+        }
+        return movements[accountIndex];
+    }
+
+    /**
+     * Projected daily balances of the accounts.
+     */
+    public static class Result {
+
+        Result(int startDay, int endDay, int[] accountIds, double[][] balances, int occurrences) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.accountIds = accountIds;
+            this.balances = balances;
+            this.occurrences = occurrences;
+        }
+
+        private final int startDay;
+        private final int endDay;
+        private final int[] accountIds;
+        private final double[][] balances;
+        private final int occurrences;
+
+        public int getStartDay() {
+            return startDay;
+        }
+
+        public int getEndDay() {
+            return endDay;
+        }
+
+        public int[] getAccountIds() {
+            return accountIds.clone();
+        }
+
+        /**
+         * @return the number of occurrences of the recurring transactions in the forecast.
+         */
+        public int getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * @param epochDay The day. Days outside the forecast are limited to its first or last day.
+         * @return the projected balance at the end of the day, or null for an unknown account.
+         */
+        public Money getBalance(int accountId, int epochDay) {
+            double[] accountBalances = getBalances(accountId);
+            if (accountBalances == null) return null;
+
+            int index = Math.max(0, Math.min(epochDay, endDay) - startDay);
+            return MoneyFactory.fromDouble(accountBalances[index]);
+        }
+
+        /**
+         * @return the projected balances of the account, one for each day from the start day,
+         * or null for an unknown account. The array is not copied and must not be modified.
+         */
+        public double[] getBalances(int accountId) {
+            for (int i = 0; i < accountIds.length; i++) {
+                if (accountIds[i] == accountId) return balances[i];
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.forecast;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.money.manager.ex.database.ITransactionEntity;
+import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.datalayer.RecurringTransactionRepository;
+import com.money.manager.ex.domainmodel.RecurringTransaction;
+import com.money.manager.ex.servicelayer.ServiceBase;
+import com.money.manager.ex.utils.EpochDay;
+import com.money.manager.ex.utils.MmxDate;
+
+import timber.log.Timber;
+
+/**
+ * Calculates the cash-flow forecast from the recurring transactions and the current account
+ * balances.
+ */
+public class ForecastService
+    extends ServiceBase {
+
+    public static final int DEFAULT_MONTHS = 12;
+
+    public ForecastService(Context context) {
+        super(context);
+    }
+
+    /**
+     * @param months The horizon of the forecast, in months from today.
+     * @return the projected daily balances of the accounts, from today.
+     */
+    public CashFlowForecast.Result forecast(int months) {
+        long start = System.nanoTime();
+
+        int today = EpochDay.parseIso(new MmxDate().toIsoDateString());
+        CashFlowForecast forecast = new CashFlowForecast(today, EpochDay.plusMonths(today, months));
+
+        loadBalances(forecast);
+        int schedules = loadSchedules(forecast);
+        CashFlowForecast.Result result = forecast.calculate();
+
+        Timber.d("forecast of %d schedules, %d occurrences, in %d ms", schedules,
+            result.getOccurrences(), (System.nanoTime() - start) / 1000000);
+        return result;
+    }
+
+    // Private
+
+    private void loadBalances(CashFlowForecast forecast) {
+        QueryAccountBills accountBills = new QueryAccountBills(getContext());
+        Cursor c = getContext().getContentResolver().query(accountBills.getUri(),
+            new String[] { QueryAccountBills.ACCOUNTID, QueryAccountBills.TOTAL },
+            null, null, null);
+        if (c == null) return;
+
+        while (c.moveToNext()) {
+            forecast.setBalance(c.getInt(0), c.getDouble(1));
+        }
+        c.close();
+    }
+
+    /**
+     * @return the number of recurring transactions.
+     */
+    private int loadSchedules(CashFlowForecast forecast) {
+        RecurringTransactionRepository repo = new RecurringTransactionRepository(getContext());
+        Cursor c = getContext().getContentResolver().query(repo.getUri(),
+            new String[] {
+                ITransactionEntity.ACCOUNTID,
+                ITransactionEntity.TOACCOUNTID,
+                ITransactionEntity.TRANSCODE,
+                ITransactionEntity.STATUS,
+                ITransactionEntity.TRANSAMOUNT,
+                ITransactionEntity.TOTRANSAMOUNT,
+                RecurringTransaction.REPEATS,
+                RecurringTransaction.NUMOCCURRENCES,
+                RecurringTransaction.NEXTOCCURRENCEDATE
+            },
+            null, null, null);
+        if (c == null) return 0;
+
+        int result = c.getCount();
+        while (c.moveToNext()) {
+            forecast.addSchedule(c.getInt(0),
+                c.isNull(1) ? -1 : c.getInt(1),
+                c.getString(2),
+                c.getString(3),
+                c.getDouble(4),
+                c.getDouble(5),
+                c.getInt(6),
+                c.isNull(7) ? -1 : c.getInt(7),
+                EpochDay.parseIso(c.getString(8)));
+        }
+        c.close();
+
+        return result;
+    }
+}
@@ -46,6 +46,7 @@ import com.money.manager.ex.core.ContextMenuIds;
 import com.money.manager.ex.core.IntentFactory;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.database.SQLTypeTransaction;
+import com.money.manager.ex.database.SearchIndex;
 import com.money.manager.ex.datalayer.PayeeRepository;
 import com.money.manager.ex.datalayer.Select;
 import com.money.manager.ex.domainmodel.Payee;
@@ -257,8 +258,15 @@ public class PayeeListFragment
                 String whereClause = null;
                 String selectionArgs[] = null;
                 if (!TextUtils.isEmpty(mCurFilter)) {
-                    whereClause = Payee.PAYEENAME + " LIKE ?"; // + mCurFilter + "%'";
-                    selectionArgs = new String[]{mCurFilter + '%'};
+                    // word prefixes, from the search index.
+                    String match = SearchIndex.toMatchExpression(null, mCurFilter);
+                    if (match != null) {
+                        whereClause = SearchIndex.getPayeeSelection(Payee.PAYEEID);
+                        selectionArgs = new String[]{match};
+                    } else {
+                        whereClause = Payee.PAYEENAME + " LIKE ?";
+                        selectionArgs = new String[]{mCurFilter + '%'};
+                    }
                 }
                 PayeeRepository repo = new PayeeRepository(getActivity());
                 Select query = new Select(repo.getAllColumns())
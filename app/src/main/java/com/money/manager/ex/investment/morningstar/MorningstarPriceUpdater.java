@@ -23,18 +23,20 @@ import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.datalayer.StockHistoryRepositorySql;
-import com.money.manager.ex.datalayer.StockRepositorySql;
 import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
 import com.money.manager.ex.investment.prices.PriceUpdaterBase;
+import com.money.manager.ex.investment.prices.QuoteFetchScheduler;
+import com.money.manager.ex.investment.prices.QuoteHttpClient;
 import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.MmxDate;
-import com.squareup.sqlbrite.BriteDatabase;
 
 import org.greenrobot.eventbus.EventBus;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -42,9 +44,6 @@ import javax.inject.Inject;
 import dagger.Lazy;
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
-import retrofit2.Retrofit;
-import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
-import retrofit2.converter.scalars.ScalarsConverterFactory;
 import rx.Observable;
 import rx.Subscriber;
 import rx.android.schedulers.AndroidSchedulers;
@@ -61,6 +60,10 @@ public class MorningstarPriceUpdater
     extends PriceUpdaterBase
     implements ISecurityPriceUpdater {
 
+    private static final String PROVIDER = "morningstar";
+    private static final String BASE_URL = "http://quotes.morningstar.com";
+    private static final long MIN_REQUEST_INTERVAL_MS = 100;
+
     @Inject
     public MorningstarPriceUpdater(Context context) {
         super(context);
@@ -74,8 +77,12 @@ public class MorningstarPriceUpdater
     private int mCounter;
     private int mTotalRecords;
     private CompositeSubscription compositeSubscription;
-    @Inject Lazy<StockRepositorySql> stockRepository;
     @Inject Lazy<StockHistoryRepositorySql> stockHistoryRepository;
+    /**
+     * The downloaded prices. Saved together once all the downloads complete.
+     */
+    private final List<PriceDownloadedEvent> mPrices =
+        Collections.synchronizedList(new ArrayList<PriceDownloadedEvent>());
     private SymbolConverter symbolConverter;
     private IMorningstarService service;
 
@@ -85,6 +92,7 @@ public class MorningstarPriceUpdater
         mTotalRecords = symbols.size();
         if (mTotalRecords == 0) return;
 
+        mPrices.clear();
         showProgressDialog(mTotalRecords);
 
         service = getMorningstarService();
@@ -178,45 +186,57 @@ public class MorningstarPriceUpdater
 //    }
 
     private void processInParallel(List<String> symbols) {
-        for(int i = 0; i < symbols.size(); i++) {
-            final String symbol = symbols.get(i);
-            final String morningstarSymbol = symbolConverter.convert(symbol);
-
-            compositeSubscription.add(
-                    service.getPrice(morningstarSymbol)
-                        .subscribeOn(Schedulers.io())
-                            .doOnNext(new Action1<String>() {
-                                @Override
-                                public void call(String s) {
-                                    PriceDownloadedEvent event = parse(morningstarSymbol, s);
-                                    savePrice(event);
-                                }
-                            })
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .subscribe(new Subscriber<String>() {
-                            @Override
-                            public void onCompleted() {
-                                finishIfAllDone();
-                            }
-
-                            @Override
-                            public void onError(Throwable e) {
-                                mCounter++;
-                                setProgress(mCounter);
-
-                                Timber.e(e, "error downloading price %s", symbol);
+        List<String> morningstarSymbols = new ArrayList<>();
+        for (String symbol : symbols) {
+            morningstarSymbols.add(symbolConverter.convert(symbol));
+        }
 
-                                finishIfAllDone();
+        QuoteFetchScheduler scheduler = new QuoteFetchScheduler(PROVIDER, MIN_REQUEST_INTERVAL_MS);
+
+        compositeSubscription.add(
+                scheduler.fetch(morningstarSymbols, new QuoteFetchScheduler.Fetcher<String>() {
+                        @Override
+                        public Observable<String> fetch(String morningstarSymbol) {
+                            return service.getPrice(morningstarSymbol);
+                        }
+                    })
+                    .doOnNext(new Action1<QuoteFetchScheduler.Result<String>>() {
+                        @Override
+                        public void call(QuoteFetchScheduler.Result<String> result) {
+                            if (!result.isSuccessful()) return;
+
+                            try {
+                                mPrices.add(parse(result.key, result.value));
+                            } catch (Exception e) {
+                                Timber.e(e, "parsing price %s", result.key);
                             }
-
-                            @Override
-                            public void onNext(String s) {
-                                mCounter++;
-                                setProgress(mCounter);
+                        }
+                    })
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(new Subscriber<QuoteFetchScheduler.Result<String>>() {
+                        @Override
+                        public void onCompleted() {
+                            finish();
+                        }
+
+                        @Override
+                        public void onError(Throwable e) {
+                            Timber.e(e, "error downloading prices");
+
+                            finish();
+                        }
+
+                        @Override
+                        public void onNext(QuoteFetchScheduler.Result<String> result) {
+                            mCounter++;
+                            setProgress(mCounter);
+
+                            if (!result.isSuccessful()) {
+                                Timber.e(result.error, "error downloading price %s", result.key);
                             }
-                        })
-            );
-        }
+                        }
+                    })
+        );
         // unsubscribe if the user navigates away while downloading prices?
     }
 
@@ -262,42 +282,44 @@ public class MorningstarPriceUpdater
         return new PriceDownloadedEvent(yahooSymbol, price, dateTime.toDate());
     }
 
-    private synchronized void finishIfAllDone() {
-        if (mCounter != mTotalRecords) return;
-
+    private synchronized void finish() {
         compositeSubscription.unsubscribe();
 
-        closeProgressDialog();
-
-        // Notify user that all the prices have been downloaded.
-        new UIHelper(getContext()).showToast(R.string.download_complete);
-
-        // fire an event so that the data can be reloaded.
-        EventBus.getDefault().post(new AllPricesDownloadedEvent());
-    }
-
-    private void savePrice(PriceDownloadedEvent event) {
-        BriteDatabase.Transaction tx = stockRepository.get().database.newTransaction();
-
-        // update the current price of the stock.
-        stockRepository.get().updateCurrentPrice(event.symbol, event.price);
-
-        // update price history record.
-        stockHistoryRepository.get().addStockHistoryRecord(event.symbol,
-                event.price, event.date);
-
-        tx.markSuccessful();
-        tx.end();
+        // save all the prices in one transaction, off the main thread.
+        final List<PriceDownloadedEvent> prices = new ArrayList<>(mPrices);
+        mPrices.clear();
+
+        Observable.just(prices)
+            .subscribeOn(Schedulers.io())
+            .map(new Func1<List<PriceDownloadedEvent>, Integer>() {
+                @Override
+                public Integer call(List<PriceDownloadedEvent> events) {
+                    return stockHistoryRepository.get().savePrices(events);
+                }
+            })
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new Action1<Integer>() {
+                @Override
+                public void call(Integer saved) {
+                    closeProgressDialog();
+
+                    // Notify user that all the prices have been downloaded.
+                    new UIHelper(getContext()).showToast(R.string.download_complete);
+
+                    // fire an event so that the data can be reloaded.
+                    EventBus.getDefault().post(new AllPricesDownloadedEvent());
+                }
+            }, new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    closeProgressDialog();
+
+                    Timber.e(throwable, "saving prices");
+                }
+            });
     }
 
     private IMorningstarService getMorningstarService() {
-        String BASE_URL = "http://quotes.morningstar.com";
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .addConverterFactory(ScalarsConverterFactory.create())
-                .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
-                .baseUrl(BASE_URL)
-                .build();
-        return retrofit.create(IMorningstarService.class);
+        return QuoteHttpClient.createService(BASE_URL, IMorningstarService.class);
     }
 }
@@ -37,6 +37,7 @@ import org.greenrobot.eventbus.EventBus;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -44,12 +45,9 @@ import java.util.Set;
 
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
-import retrofit2.converter.scalars.ScalarsConverterFactory;
+import rx.Observable;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
 import timber.log.Timber;
 
 /**
@@ -61,6 +59,10 @@ public class FixerService
     extends PriceUpdaterBase
     implements IExchangeRateUpdater {
 
+    private static final String PROVIDER = "fixer";
+    private static final String BASE_URL = "https://api.fixer.io";
+    private static final long MIN_REQUEST_INTERVAL_MS = 1000;
+
     public FixerService(Context context) {
         super(context);
     }
@@ -73,30 +75,32 @@ public class FixerService
 
         showProgressDialog(items);
 
-        IFixerService service = getService();
-
-        Callback<JsonElement> callback = new Callback<JsonElement>() {
-            @Override
-            public void onResponse(Call<JsonElement> call, Response<JsonElement> response) {
-                onContentDownloaded(response.body());
-            }
-
-            @Override
-            public void onFailure(Call<JsonElement> call, Throwable t) {
-                closeProgressDialog();
-                Timber.e(t, "fetching price");
-            }
-        };
+        final IFixerService service = getService();
+        final String base = baseCurrency;
 
         // parameters
         String symbolsString = new ListUtils().toCommaDelimitedString(symbols);
 
-        try {
-            service.getPrices(baseCurrency, symbolsString).enqueue(callback);
-        } catch (Exception ex) {
-            Timber.e(ex, "downloading quotes");
-        }
-
+        // one request for all the currencies, retried on transient errors.
+        new QuoteFetchScheduler(PROVIDER, MIN_REQUEST_INTERVAL_MS)
+            .fetch(Collections.singletonList(symbolsString), new QuoteFetchScheduler.Fetcher<JsonElement>() {
+                @Override
+                public Observable<JsonElement> fetch(String key) {
+                    return QuoteFetchScheduler.fromCall(service.getPrices(base, key));
+                }
+            })
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new Action1<QuoteFetchScheduler.Result<JsonElement>>() {
+                @Override
+                public void call(QuoteFetchScheduler.Result<JsonElement> result) {
+                    if (result.isSuccessful()) {
+                        onContentDownloaded(result.value);
+                    } else {
+                        closeProgressDialog();
+                        Timber.e(result.error, "fetching price");
+                    }
+                }
+            });
     }
 
     private void onContentDownloaded(JsonElement response) {
@@ -131,12 +135,7 @@ public class FixerService
     }
 
     private IFixerService getService() {
-        String BASE_URL = "https://api.fixer.io";
-        Retrofit retrofit = new Retrofit.Builder()
-                .addConverterFactory(GsonConverterFactory.create())
-                .baseUrl(BASE_URL)
-                .build();
-        return retrofit.create(IFixerService.class);
+        return QuoteHttpClient.createService(BASE_URL, IFixerService.class);
     }
 
     private List<SecurityPriceModel> getPricesFromJson(JsonObject root) {
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.investment.prices;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Schedules the quote downloads of a provider.
+ * - At most the given number of requests run at the same time.
+ * - The requests to the same provider are spaced by its minimum interval, also across the
+ * schedulers, so that the provider does not throttle the app.
+ * - Duplicate symbols are fetched once, and a symbol that is already being fetched for the
+ * provider is not requested again.
+ * - Network errors, throttling (429) and server errors are retried with exponential backoff.
+ * Every key produces a Result, so one failed symbol does not stop the others.
+ */
+public class QuoteFetchScheduler {
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_RETRIES = 3;
+    public static final long DEFAULT_BACKOFF_MS = 500;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private static final Map<String, RateLimiter> sRateLimiters = new HashMap<>();
+    private static final ConcurrentMap<String, Observable<?>> sInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Fetches the quote for one key, i.e. a symbol.
+     */
+    public interface Fetcher<T> {
+        Observable<T> fetch(String key);
+    }
+
+    /**
+     * The outcome of the download for one key.
+     */
+    public static class Result<T> {
+        Result(String key, T value, Throwable error) {
+            this.key = key;
+            this.value = value;
+            this.error = error;
+        }
+
+        public final String key;
+        public final T value;
+        public final Throwable error;
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Wraps a Retrofit call. The call is cloned for each subscription, so it can be retried.
+     */
+    public static <T> Observable<T> fromCall(final Call<T> call) {
+        return Observable.fromCallable(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                Response<T> response = call.clone().execute();
+                if (!response.isSuccessful()) {
+                    throw new HttpException(response);
+                }
+                return response.body();
+            }
+        });
+    }
+
+    /**
+     * @param provider Name of the provider. The rate limit is shared by all its schedulers.
+     * @param minIntervalMs The minimum time between two requests to the provider.
+     */
+    public QuoteFetchScheduler(String provider, long minIntervalMs) {
+        this(provider, DEFAULT_PARALLELISM, minIntervalMs, DEFAULT_RETRIES, DEFAULT_BACKOFF_MS,
+            Schedulers.io());
+    }
+
+    /**
+     * @param parallelism The maximum number of requests running at the same time.
+     * @param maxRetries The number of retries after the first attempt.
+     * @param backoffMs The wait before the first retry. Doubled on each retry.
+     * @param scheduler Runs the requests and the waits.
+     */
+    public QuoteFetchScheduler(String provider, int parallelism, long minIntervalMs,
+                               int maxRetries, long backoffMs, Scheduler scheduler) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+
+        this.provider = provider;
+        this.parallelism = parallelism;
+        this.maxRetries = maxRetries;
+        this.backoffMs = backoffMs;
+        this.scheduler = scheduler;
+        this.rateLimiter = getRateLimiter(provider, minIntervalMs);
+    }
+
+    private final String provider;
+    private final int parallelism;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final Scheduler scheduler;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Downloads the quotes for the keys. The results arrive in the order the downloads
+     * complete, one for each distinct key.
+     */
+    public <T> Observable<Result<T>> fetch(Collection<String> keys, final Fetcher<T> fetcher) {
+        return Observable.from(new LinkedHashSet<>(keys))
+            .flatMap(new Func1<String, Observable<Result<T>>>() {
+                @Override
+                public Observable<Result<T>> call(String key) {
+                    return fetchOne(key, fetcher);
+                }
+            }, parallelism);
+    }
+
+    // Private
+
+    private static synchronized RateLimiter getRateLimiter(String provider, long minIntervalMs) {
+        RateLimiter limiter = sRateLimiters.get(provider);
+        if (limiter == null) {
+            limiter = new RateLimiter();
+            sRateLimiters.put(provider, limiter);
+        }
+        limiter.setInterval(minIntervalMs);
+        return limiter;
+    }
+
+    private <T> Observable<Result<T>> fetchOne(final String key, final Fetcher<T> fetcher) {
+        final String id = provider + ":" + key;
+
+        @SuppressWarnings("unchecked")
+        Observable<T> request = (Observable<T>) sInFlight.get(id);
+        if (request == null) {
+            Observable<T> newRequest = Observable.defer(new Func0<Observable<T>>() {
+                    @Override
+                    public Observable<T> call() {
+                        long wait = rateLimiter.reserve();
+                        Observable<T> result = fetcher.fetch(key);
+                        return wait > 0
+                            ? result.delaySubscription(wait, TimeUnit.MILLISECONDS, scheduler)
+                            : result;
+                    }
+                })
+                .subscribeOn(scheduler)
+                .retryWhen(new Func1<Observable<? extends Throwable>, Observable<?>>() {
+                    @Override
+                    public Observable<?> call(Observable<? extends Throwable> errors) {
+                        return errors.flatMap(new Backoff(key));
+                    }
+                })
+                .doOnTerminate(new Action0() {
+                    @Override
+                    public void call() {
+                        sInFlight.remove(id);
+                    }
+                })
+                // shared with the coalesced requests.
+                .cache();
+
+            @SuppressWarnings("unchecked")
+            Observable<T> existing = (Observable<T>) sInFlight.putIfAbsent(id, newRequest);
+            request = existing == null ? newRequest : existing;
+        }
+
+        return request
+            .map(new Func1<T, Result<T>>() {
+                @Override
+                public Result<T> call(T value) {
+                    return new Result<>(key, value, null);
+                }
+            })
+            .onErrorReturn(new Func1<Throwable, Result<T>>() {
+                @Override
+                public Result<T> call(Throwable throwable) {
+                    return new Result<>(key, null, throwable);
+                }
+            });
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof IOException) return true;
+        if (error instanceof HttpException) {
+            int code = ((HttpException) error).code();
+            return code == HTTP_TOO_MANY_REQUESTS || code >= HTTP_SERVER_ERROR;
+        }
+        return false;
+    }
+
+    /**
+     * Decides whether a failed attempt is retried, and when. One instance per request.
+     */
+    private class Backoff
+        implements Func1<Throwable, Observable<Long>> {
+
+        Backoff(String key) {
+            this.key = key;
+        }
+
+        private final String key;
+        private int attempt;
+
+        @Override
+        public Observable<Long> call(Throwable error) {
+            attempt++;
+            if (attempt > maxRetries || !isTransient(error)) {
+                return Observable.error(error);
+            }
+
+            long delay = backoffMs << (attempt - 1);
+            Timber.d("retrying %s %s in %d ms", provider, key, delay);
+            return Observable.timer(delay, TimeUnit.MILLISECONDS, scheduler);
+        }
+    }
+
+    /**
+     * Spaces the requests to a provider.
+     */
+    private static class RateLimiter {
+        private long intervalMs;
+        private long nextMs;
+
+        synchronized void setInterval(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        /**
+         * Reserves the next slot for a request.
+         * @return the time to wait for it, in milliseconds.
+         */
+        synchronized long reserve() {
+            long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+            long start = Math.max(now, nextMs);
+            nextMs = start + intervalMs;
+            return start - now;
+        }
+    }
+}
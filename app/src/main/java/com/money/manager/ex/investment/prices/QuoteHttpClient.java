@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.investment.prices;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.converter.scalars.ScalarsConverterFactory;
+
+/**
+ * The HTTP client shared by the price and exchange rate providers.
+ * One OkHttp client, and its connection pool, is used for all the downloads and the Retrofit
+ * instances are reused for each base url, instead of being built for every download.
+ */
+public final class QuoteHttpClient {
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CONNECT_TIMEOUT_SECONDS = 15;
+    private static final long READ_TIMEOUT_SECONDS = 30;
+
+    private static OkHttpClient sClient;
+    private static final Map<String, Retrofit> sRetrofits = new HashMap<>();
+
+    private QuoteHttpClient() {
+    }
+
+    public static synchronized OkHttpClient getClient() {
+        if (sClient == null) {
+            sClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+        }
+        return sClient;
+    }
+
+    /**
+     * Creates the Retrofit service for the provider. The responses can be read as String
+     * (scalars) or as Gson types, through Call or Observable.
+     * @param baseUrl The address of the provider, i.e. https://api.fixer.io
+     */
+    public static synchronized <T> T createService(String baseUrl, Class<T> service) {
+        Retrofit retrofit = sRetrofits.get(baseUrl);
+        if (retrofit == null) {
+            retrofit = new Retrofit.Builder()
+                .client(getClient())
+                .baseUrl(baseUrl)
+                .addConverterFactory(ScalarsConverterFactory.create())
+                .addConverterFactory(GsonConverterFactory.create())
+                .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                .build();
+            sRetrofits.put(baseUrl, retrofit);
+        }
+        return retrofit.create(service);
+    }
+}
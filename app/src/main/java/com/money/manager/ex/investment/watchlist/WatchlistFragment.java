@@ -43,14 +43,15 @@ import com.mikepenz.fontawesome_typeface_library.FontAwesome;
 import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 import com.mikepenz.iconics.IconicsDrawable;
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.account.AccountEditActivity;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.StockFields;
 import com.money.manager.ex.datalayer.StockHistoryRepository;
+import com.money.manager.ex.datalayer.StockHistoryRepositorySql;
 import com.money.manager.ex.log.ErrorRaisedEvent;
-import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
 import com.money.manager.ex.investment.PriceCsvExport;
@@ -70,12 +71,18 @@ import org.parceler.Parcels;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.inject.Inject;
 
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
-import info.javaperformance.money.Money;
+import dagger.Lazy;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -105,18 +112,26 @@ public class WatchlistFragment
 
     private WatchlistItemsFragment mDataFragment;
     private String mFragmentName;
-    private StockRepository mStockRepository;
     private Account mAccount;
 
     // price update counter. Used to know when all the prices are done downloading.
     private int mUpdateCounter;
     private int mToUpdateTotal;
+    private final List<PriceDownloadedEvent> mDownloadedPrices = new ArrayList<>();
+    /**
+     * Set when the list is reloaded after the last requested price has arrived, so that
+     * the AllPricesDownloadedEvent from the updater does not reload it again.
+     */
+    private boolean mPriceUpdateCompleted;
+    @Inject Lazy<StockHistoryRepositorySql> stockHistoryRepository;
     private WatchlistViewHolder viewHolder;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        MmexApplication.getApp().iocComponent.inject(this);
+
         loadAccount();
 
         if ((savedInstanceState != null)) {
@@ -140,6 +155,8 @@ public class WatchlistFragment
         super.onStop();
 
         EventBus.getDefault().unregister(this);
+        // in case not all the requested prices arrived.
+        savePendingPrices(false);
     }
 
     @Override
@@ -288,12 +305,20 @@ public class WatchlistFragment
 
     @Subscribe
     public void onEvent(AllPricesDownloadedEvent event) {
-        reloadData();
+        if (mPriceUpdateCompleted) {
+            // already saved and reloaded after the last price.
+            mPriceUpdateCompleted = false;
+            return;
+        }
+
+        if (!savePendingPrices(true)) {
+            reloadData();
+        }
     }
 
     @Subscribe
     public void onEvent(PriceDownloadedEvent event) {
-        onPriceDownloaded(event.symbol, event.price, event.date);
+        onPriceDownloaded(event);
     }
 
     @Subscribe
@@ -326,23 +351,17 @@ public class WatchlistFragment
     // Private
 
     /**
-     * Called from asynchronous task when a first price is downloaded.
-     * @param symbol Stock symbol
-     * @param price Stock price
-     * @param date Date of the price
+     * Called from asynchronous task when a price is downloaded.
+     * The prices are collected and saved together when all the downloads are done.
      */
-    private void onPriceDownloaded(String symbol, Money price, Date date) {
+    private void onPriceDownloaded(PriceDownloadedEvent event) {
         // prices updated.
 
-        if (TextUtils.isEmpty(symbol)) return;
-
-        // update the current price of the stock.
-        StockRepository repo = getStockRepository();
-        repo.updateCurrentPrice(symbol, price);
+        if (TextUtils.isEmpty(event.symbol)) return;
 
-        // update price history record.
-        StockHistoryRepository historyRepo = mDataFragment.getStockHistoryRepository();
-        historyRepo.addStockHistoryRecord(symbol, price, date);
+        synchronized (mDownloadedPrices) {
+            mDownloadedPrices.add(event);
+        }
 
         mUpdateCounter += 1;
         if (mUpdateCounter == mToUpdateTotal) {
@@ -358,6 +377,7 @@ public class WatchlistFragment
         // reset counter & max.
         mToUpdateTotal = 1;
         mUpdateCounter = 0;
+        mPriceUpdateCompleted = false;
 
         // http://stackoverflow.com/questions/1005073/initialization-of-an-arraylist-in-one-line
         List<String> symbols = new ArrayList<>();
@@ -403,24 +423,50 @@ public class WatchlistFragment
     }
 
     private void completePriceUpdate() {
-        // this call is made from async task so have to get back to the main thread.
-        getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                // refresh the data.
-                mDataFragment.reloadData();
-
-                // notify about db file change.
-                new SyncManager(getActivity()).dataChanged();
-            }
-        });
+        // Not all the updaters post AllPricesDownloadedEvent, so the list is reloaded here.
+        mPriceUpdateCompleted = true;
+        if (!savePendingPrices(true)) {
+            reloadData();
+        }
     }
 
-    private StockRepository getStockRepository() {
-        if (mStockRepository == null) {
-            mStockRepository = new StockRepository(getActivity());
+    /**
+     * Saves the downloaded prices, and the current prices of the stocks, in one transaction
+     * off the main thread.
+     * @param reload Reload the list once the prices are saved.
+     * @return false if there were no prices to save.
+     */
+    private boolean savePendingPrices(final boolean reload) {
+        final List<PriceDownloadedEvent> prices;
+        synchronized (mDownloadedPrices) {
+            if (mDownloadedPrices.isEmpty()) return false;
+
+            prices = new ArrayList<>(mDownloadedPrices);
+            mDownloadedPrices.clear();
         }
-        return mStockRepository;
+
+        Single.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return stockHistoryRepository.get().savePrices(prices);
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Integer>() {
+                @Override
+                public void onSuccess(Integer saved) {
+                    if (reload && isAdded()) {
+                        reloadData();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    Timber.e(error, "saving downloaded prices");
+                }
+            });
+        return true;
     }
 
     private String[] getAllShownSymbols() {
@@ -471,6 +517,7 @@ public class WatchlistFragment
                         String[] symbols = getAllShownSymbols();
                         mToUpdateTotal = symbols.length;
                         mUpdateCounter = 0;
+                        mPriceUpdateCompleted = false;
 
                         // update security prices
                         ISecurityPriceUpdater updater = SecurityPriceUpdaterFactory
@@ -24,6 +24,8 @@ import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
 import com.money.manager.ex.investment.PriceCsvParser;
 import com.money.manager.ex.investment.prices.PriceUpdaterBase;
+import com.money.manager.ex.investment.prices.QuoteFetchScheduler;
+import com.money.manager.ex.investment.prices.QuoteHttpClient;
 import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 
@@ -31,11 +33,9 @@ import org.greenrobot.eventbus.EventBus;
 
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.scalars.ScalarsConverterFactory;
+import rx.Observable;
+import rx.Subscriber;
+import rx.android.schedulers.AndroidSchedulers;
 import timber.log.Timber;
 
 /**
@@ -45,8 +45,12 @@ public class YahooCsvQuoteDownloaderRetrofit
     extends PriceUpdaterBase
     implements ISecurityPriceUpdater {
 
+    private static final String PROVIDER = "yahoocsv";
+    private static final String BASE_URL = "https://download.finance.yahoo.com";
+    private static final long MIN_REQUEST_INTERVAL_MS = 100;
+
     /**
-     * Tracks the number of records to update. Used to close progress binaryDialog when all done.
+     * Tracks the number of records updated, for the progress.
      */
     private int mCounter;
     private int mTotalRecords;
@@ -63,34 +67,44 @@ public class YahooCsvQuoteDownloaderRetrofit
 
         showProgressDialog(mTotalRecords);
 
-        IYahooCsvService service = getYahooCsvService();
-
-        Callback<String> callback = new Callback<String>() {
-            @Override
-            public void onResponse(Call<String> call, Response<String> response) {
-                onContentDownloaded(response.body());
-            }
-
-            @Override
-            public void onFailure(Call<String> call, Throwable t) {
-                closeProgressDialog();
-
-                Timber.e(t, "fetching price");
-            }
-        };
-
-        for (String symbol : symbols) {
-            try {
-                service.getPrice(symbol).enqueue(callback);
-            } catch (Exception ex) {
-                Timber.e(ex, "downloading quotes");
-            }
-        }
+        final IYahooCsvService service = getYahooCsvService();
+
+        new QuoteFetchScheduler(PROVIDER, MIN_REQUEST_INTERVAL_MS)
+            .fetch(symbols, new QuoteFetchScheduler.Fetcher<String>() {
+                @Override
+                public Observable<String> fetch(String symbol) {
+                    return QuoteFetchScheduler.fromCall(service.getPrice(symbol));
+                }
+            })
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new Subscriber<QuoteFetchScheduler.Result<String>>() {
+                @Override
+                public void onCompleted() {
+                    finish();
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    closeProgressDialog();
+
+                    Timber.e(e, "downloading quotes");
+                }
+
+                @Override
+                public void onNext(QuoteFetchScheduler.Result<String> result) {
+                    if (result.isSuccessful()) {
+                        onContentDownloaded(result.value);
+                    } else {
+                        mCounter++;
+                        setProgress(mCounter);
+
+                        Timber.e(result.error, "fetching price %s", result.key);
+                    }
+                }
+            });
     }
 
-    private synchronized void finishIfAllDone() {
-        if (mCounter != mTotalRecords) return;
-
+    private void finish() {
         closeProgressDialog();
 
         // Notify user that all the prices have been downloaded.
@@ -106,7 +120,6 @@ public class YahooCsvQuoteDownloaderRetrofit
 
         if (content == null) {
             new UIHelper(getContext()).showToast(getContext().getString(R.string.error_updating_rates));
-            closeProgressDialog();
             return;
         }
 
@@ -123,16 +136,9 @@ public class YahooCsvQuoteDownloaderRetrofit
         if (event != null) {
             EventBus.getDefault().post(event);
         }
-
-        finishIfAllDone();
     }
 
     public IYahooCsvService getYahooCsvService() {
-        String BASE_URL = "https://download.finance.yahoo.com";
-        Retrofit retrofit = new Retrofit.Builder()
-                .addConverterFactory(ScalarsConverterFactory.create())
-                .baseUrl(BASE_URL)
-                .build();
-        return retrofit.create(IYahooCsvService.class);
+        return QuoteHttpClient.createService(BASE_URL, IYahooCsvService.class);
     }
 }
@@ -27,6 +27,8 @@ import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.core.NumericHelper;
 import com.money.manager.ex.investment.prices.ISecurityPriceUpdater;
 import com.money.manager.ex.investment.prices.PriceUpdaterBase;
+import com.money.manager.ex.investment.prices.QuoteFetchScheduler;
+import com.money.manager.ex.investment.prices.QuoteHttpClient;
 import com.money.manager.ex.investment.SecurityPriceModel;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.MmxDate;
@@ -34,16 +36,15 @@ import com.money.manager.ex.utils.MmxDate;
 import org.greenrobot.eventbus.EventBus;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
+import rx.Observable;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
 import timber.log.Timber;
 
 /**
@@ -53,6 +54,10 @@ public class YqlSecurityPriceUpdaterRetrofit
     extends PriceUpdaterBase
     implements ISecurityPriceUpdater {
 
+    private static final String PROVIDER = "yql";
+    private static final String BASE_URL = "https://query.yahooapis.com";
+    private static final long MIN_REQUEST_INTERVAL_MS = 500;
+
     /**
      *
      * @param context Executing context
@@ -81,29 +86,28 @@ public class YqlSecurityPriceUpdaterRetrofit
         YqlQueryGenerator queryGenerator = new YqlQueryGenerator();
         String query = queryGenerator.getQueryFor(symbols);
 
-        IYqlService yql = getYqlService();
-
-        // Async response handler.
-        Callback<JsonElement> callback = new Callback<JsonElement>() {
-            @Override
-            public void onResponse(Call<JsonElement> call, Response<JsonElement> response) {
-                onContentDownloaded(response.body());
-            }
-
-            @Override
-            public void onFailure(Call<JsonElement> call, Throwable t) {
-                Timber.e(t, "fetching price");
-                closeProgressDialog();
-            }
-        };
-
-        try {
-            // This would be the synchronous call.
-//            prices = yql.getPrices(query).execute().body();
-            yql.getPrices(query).enqueue(callback);
-        } catch (Exception e) {
-            Timber.e(e, "fetching prices");
-        }
+        final IYqlService yql = getYqlService();
+
+        // one request for all the symbols, retried on transient errors.
+        new QuoteFetchScheduler(PROVIDER, MIN_REQUEST_INTERVAL_MS)
+            .fetch(Collections.singletonList(query), new QuoteFetchScheduler.Fetcher<JsonElement>() {
+                @Override
+                public Observable<JsonElement> fetch(String key) {
+                    return QuoteFetchScheduler.fromCall(yql.getPrices(key));
+                }
+            })
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new Action1<QuoteFetchScheduler.Result<JsonElement>>() {
+                @Override
+                public void call(QuoteFetchScheduler.Result<JsonElement> result) {
+                    if (result.isSuccessful()) {
+                        onContentDownloaded(result.value);
+                    } else {
+                        Timber.e(result.error, "fetching price");
+                        closeProgressDialog();
+                    }
+                }
+            });
     }
 
     /**
@@ -207,13 +211,7 @@ public class YqlSecurityPriceUpdaterRetrofit
     }
 
     public IYqlService getYqlService() {
-        String BASE_URL = "https://query.yahooapis.com";
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .addConverterFactory(GsonConverterFactory.create())
-                .baseUrl(BASE_URL)
-                .build();
-        return retrofit.create(IYqlService.class);
+        return QuoteHttpClient.createService(BASE_URL, IYqlService.class);
     }
 
     private Money readPrice(String priceString, JsonObject quote) {
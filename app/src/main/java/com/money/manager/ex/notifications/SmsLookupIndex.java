@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.notifications;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import timber.log.Timber;
+
+/**
+ * In-memory index of the payees, categories, accounts and currency symbols used when parsing
+ * bank transaction SMS. Loaded with one query per table and shared until one of the tables
+ * changes, instead of a LIKE query for every candidate found in a message.
+ * The lookups match the SQL they replace: LIKE '%value%' (case-insensitive for ASCII) for
+ * payees and account numbers, exact names for categories, first match in id/name order.
+ */
+public class SmsLookupIndex {
+
+    private static final List<String> TABLES = Arrays.asList("PAYEE_V1", "CATEGORY_V1",
+        "SUBCATEGORY_V1", "ACCOUNTLIST_V1", "CURRENCYFORMATS_V1");
+
+    /**
+     * Held while the index is loaded, so that it is loaded once for concurrent callers.
+     * The instance and the generation are guarded by the class.
+     */
+    private static final Object sLoadLock = new Object();
+    private static volatile SmsLookupIndex sInstance;
+    /**
+     * Incremented on every invalidation, so that an index loaded while one of the tables
+     * changed is not kept.
+     */
+    private static int sGeneration;
+
+    /**
+     * @return the shared index, loaded from the given database if necessary.
+     */
+    public static SmsLookupIndex getInstance(SQLiteDatabase db) {
+        SmsLookupIndex result = sInstance;
+        if (result != null) return result;
+
+        synchronized (sLoadLock) {
+            int generation;
+            synchronized (SmsLookupIndex.class) {
+                result = sInstance;
+                if (result != null) return result;
+                generation = sGeneration;
+            }
+
+            result = load(db);
+
+            synchronized (SmsLookupIndex.class) {
+                if (generation == sGeneration) {
+                    sInstance = result;
+                }
+            }
+            return result;
+        }
+    }
+
+    public static synchronized void invalidate() {
+        sGeneration++;
+        sInstance = null;
+    }
+
+    /**
+     * Invalidate the shared index if the changed table is one of the indexed ones.
+     */
+    public static void onTableChanged(String tableName) {
+        if (tableName != null && TABLES.contains(tableName.toUpperCase(Locale.US))) {
+            invalidate();
+        }
+    }
+
+    public static SmsLookupIndex load(SQLiteDatabase db) {
+        SmsLookupIndex index = new SmsLookupIndex();
+
+        Cursor c = db.rawQuery("SELECT PAYEEID, PAYEENAME, CATEGID, SUBCATEGID " +
+            "FROM PAYEE_V1 ORDER BY PAYEENAME", null);
+        while (c.moveToNext()) {
+            index.addPayee(c.getString(0), c.getString(1), c.getString(2), c.getString(3));
+        }
+        c.close();
+
+        c = db.rawQuery("SELECT c.CATEGID, s.SUBCATEGID, s.SUBCATEGNAME " +
+            "FROM CATEGORY_V1 c " +
+            "INNER JOIN SUBCATEGORY_V1 s ON s.CATEGID=c.CATEGID " +
+            "ORDER BY s.SUBCATEGID", null);
+        while (c.moveToNext()) {
+            index.addSubcategory(c.getString(0), c.getString(1), c.getString(2));
+        }
+        c.close();
+
+        c = db.rawQuery("SELECT CATEGID, CATEGNAME FROM CATEGORY_V1 ORDER BY CATEGID", null);
+        while (c.moveToNext()) {
+            index.addCategory(c.getString(0), c.getString(1));
+        }
+        c.close();
+
+        c = db.rawQuery("SELECT A.ACCOUNTID, A.ACCOUNTNAME, A.CURRENCYID, " +
+            "C.CURRENCY_SYMBOL, C.DECIMAL_POINT, C.GROUP_SEPARATOR, A.ACCOUNTNUM " +
+            "FROM ACCOUNTLIST_V1 A " +
+            "INNER JOIN CURRENCYFORMATS_V1 C ON C.CURRENCYID = A.CURRENCYID " +
+            "WHERE A.STATUS='Open' " +
+            "ORDER BY A.ACCOUNTID", null);
+        while (c.moveToNext()) {
+            index.addAccount(c.getString(0), c.getString(1), c.getString(2), c.getString(3),
+                c.getString(4), c.getString(5), c.getString(6));
+        }
+        c.close();
+
+        c = db.rawQuery("SELECT CURRENCYID, CURRENCY_SYMBOL FROM CURRENCYFORMATS_V1", null);
+        while (c.moveToNext()) {
+            index.addCurrency(c.getInt(0), c.getString(1));
+        }
+        c.close();
+
+        Timber.d("sms lookup index loaded: %d payees, %d accounts", index.mPayees.size(),
+            index.mAccounts.size());
+
+        return index;
+    }
+
+    // payee: id, name, category id, subcategory id
+    private final List<String[]> mPayees = new ArrayList<>();
+    private final List<String> mPayeeKeys = new ArrayList<>();
+    // subcategory name -> category id, subcategory id
+    private final HashMap<String, String[]> mSubcategories = new HashMap<>();
+    // category name -> category id
+    private final HashMap<String, String> mCategories = new HashMap<>();
+    // account: id, name, currency id, symbol, decimal point, group separator
+    private final List<String[]> mAccounts = new ArrayList<>();
+    private final List<String> mAccountKeys = new ArrayList<>();
+    private final HashMap<Integer, String> mCurrencySymbols = new HashMap<>();
+
+    /**
+     * Payees are matched in the order they are added.
+     */
+    public void addPayee(String id, String name, String categoryId, String subCategoryId) {
+        mPayees.add(new String[] { id, name, categoryId, subCategoryId });
+        mPayeeKeys.add(toLowerAscii(name));
+    }
+
+    /**
+     * Only the first subcategory with a given name is kept.
+     */
+    public void addSubcategory(String categoryId, String subCategoryId, String name) {
+        if (name == null || mSubcategories.containsKey(name)) return;
+        mSubcategories.put(name, new String[] { categoryId, subCategoryId });
+    }
+
+    /**
+     * Only the first category with a given name is kept.
+     */
+    public void addCategory(String categoryId, String name) {
+        if (name == null || mCategories.containsKey(name)) return;
+        mCategories.put(name, categoryId);
+    }
+
+    /**
+     * Accounts are matched in the order they are added.
+     */
+    public void addAccount(String id, String name, String currencyId, String currencySymbol,
+                           String decimalPoint, String groupSeparator, String accountNumber) {
+        mAccounts.add(new String[] { id, name, currencyId, currencySymbol, decimalPoint, groupSeparator });
+        mAccountKeys.add(toLowerAscii(accountNumber));
+    }
+
+    public void addCurrency(int currencyId, String symbol) {
+        mCurrencySymbols.put(currencyId, symbol);
+    }
+
+    /**
+     * @return payee id, name, category id, subcategory id. The id is empty if the payee
+     * was not found.
+     */
+    public String[] getPayeeDetails(String payeeName) {
+        String[] payeeDetails = new String[]{"", payeeName.trim(), "", ""};
+        if (payeeName.trim().isEmpty()) return payeeDetails;
+
+        int position = find(mPayeeKeys, payeeName);
+        if (position == -1) return payeeDetails;
+
+        return mPayees.get(position).clone();
+    }
+
+    /**
+     * Finds the subcategory with the given name or, if none, the category.
+     * @return category id, subcategory id. Empty if not found.
+     */
+    public String[] getCategoryOrSubCategoryByName(String searchName) {
+        if (searchName.trim().isEmpty()) return new String[]{"", ""};
+
+        String[] subcategory = mSubcategories.get(searchName);
+        if (subcategory != null) return subcategory.clone();
+
+        String categoryId = mCategories.get(searchName);
+        if (categoryId != null) return new String[]{ categoryId, "-1" };
+
+        return new String[]{"", ""};
+    }
+
+    /**
+     * Finds an open account by (part of) the account number.
+     * @return account id, name, currency id, currency symbol, decimal point, group separator,
+     * and the account number searched for. Only the account number is set if not found.
+     */
+    public String[] getAccountDetails(String accountNumber) {
+        int position = find(mAccountKeys, accountNumber);
+        if (position == -1) {
+            return new String[] {"", "", "", "", "", "", accountNumber };
+        }
+
+        String[] account = mAccounts.get(position);
+        String[] result = Arrays.copyOf(account, account.length + 1);
+        result[account.length] = accountNumber;
+        return result;
+    }
+
+    /**
+     * @return the currency symbol or an empty string.
+     */
+    public String getCurrencySymbol(int currencyId) {
+        String symbol = mCurrencySymbols.get(currencyId);
+        return symbol == null ? "" : symbol;
+    }
+
+    // Private
+
+    /**
+     * @return position of the first key containing the value, or -1.
+     */
+    private int find(List<String> keys, String value) {
+        String search = toLowerAscii(value);
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            if (key != null && key.contains(search)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * SQLite LIKE ignores the case of ASCII characters only.
+     */
+    private String toLowerAscii(String value) {
+        if (value == null) return null;
+
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] = (char) (chars[i] + ('a' - 'A'));
+            }
+        }
+        return new String(chars);
+    }
+}
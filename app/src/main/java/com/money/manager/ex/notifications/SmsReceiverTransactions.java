@@ -25,7 +25,6 @@
 package com.money.manager.ex.notifications;
 
 import java.util.Date;
-import java.util.regex.*;
 
 import android.app.Notification;
 import android.app.NotificationChannel;
@@ -43,12 +42,12 @@ import android.telephony.SmsMessage;
 import android.widget.Toast;
 
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.ITransactionEntity;
-import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
 import com.money.manager.ex.domainmodel.AccountTransaction;
@@ -79,9 +78,9 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
     private EditTransactionCommonFunctions mCommon;
 
-    /// Db setup
-    public static MmxOpenHelper MmxHelper;
-    public static SQLiteDatabase db;
+    /// Parsing rules and lookups
+    private SmsRuleSet mRules;
+    private SmsLookupIndex mIndex;
 
     static String[] fromAccountDetails;
     static String[] toAccountDetails;
@@ -131,7 +130,9 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
                     //msgSender = "AT-SIBSMS";
 
-                    if(isTransactionSms(msgSender)) {
+                    mRules = SmsRuleSet.getInstance();
+
+                    if(mRules.isTransactionSms(msgSender)) {
                         // Transaction Sms sender will have format like this AT-SIBSMS,
                         // Promotional sms will have sender like AT-012345
                         // Not sure how this format will be in out side of India. I may need to update if I get sample
@@ -139,31 +140,26 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                         ITransactionEntity model = AccountTransaction.create();
                         mCommon = new EditTransactionCommonFunctions(null, model, database);
 
-                        // find out the trans type using reg ex
-                        String[] key_credit_search = {"(credited)", "(received)", "(added)", "(reloaded)", "(deposited)", "(refunded)",
-                                "(debited)(.*?)(towards)(\\s)", "(\\s)(received)(.*?)(in(\\s)your)(\\s)", "(sent)(.*?)(to)(\\s)", "(debited)(.*?)(to)(\\s)",
-                                "(credited)(.*?)(in)(\\s)", "(credited)(.*?)(to)(\\s)"};
-
-                        // - Sales Draft added for LBP currency. Request from HussienH
-                        String[] key_debit_search = {"(made)", "(debited)", "(using)", "(paid)", "(purchase)", "(withdrawn)", "(done)",
-                                "(credited)(.*?)(from)(\\s)", "(sent)(.*?)(from)(\\s)", "(\\s)(received)(.*?)(from)(\\s)",
-                                "(Sales\\sDraft)"}; //
+                        // Db setup
+                        SQLiteDatabase db = getDatabase();
+                        mIndex = SmsLookupIndex.getInstance(db);
 
                         String transType = "";
 
                         //Handle the string
-                        msgBody = msgBody.replaceAll("[\\t\\n\\r]+"," ");
-                        msgBody = msgBody.replaceAll("  "," ");
+                        msgBody = mRules.normalize(msgBody);
+                        String msgBodyLower = msgBody.toLowerCase();
 
-                        Boolean isDeposit = validateTransType(key_credit_search, msgBody.toLowerCase());
-                        Boolean isWithdrawal = validateTransType(key_debit_search, msgBody.toLowerCase());
+                        // find out the trans type using reg ex
+                        Boolean isDeposit = mRules.isDeposit(msgBodyLower);
+                        Boolean isWithdrawal = mRules.isWithdrawal(msgBodyLower);
 
                         if (isDeposit == true)
                         {
                             if (isWithdrawal == true)
                             {
                                 transType = "Transfer";
-                                String[] transCategory = getCategoryOrSubCategoryByName("Transfer");
+                                String[] transCategory = mIndex.getCategoryOrSubCategoryByName("Transfer");
 
                                 if (!transCategory[0].isEmpty()) {
                                     mCommon.transactionEntity.setCategoryId(parseInt(transCategory[0]));
@@ -177,7 +173,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
                             } else {
                                 transType = "Deposit";
-                                String[] incomeCategory = getCategoryOrSubCategoryByName("Income");
+                                String[] incomeCategory = mIndex.getCategoryOrSubCategoryByName("Income");
 
                                 if (!incomeCategory[0].isEmpty()) {
                                     mCommon.transactionEntity.setCategoryId(parseInt(incomeCategory[0]));
@@ -198,15 +194,11 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                         mCommon.transactionEntity.setStatus("");
                         mCommon.payeeName = "";
 
-                        if (transType != "" && msgBody.toLowerCase().contains("otp") == false) { // if not from blank, then nothing to do with sms
+                        if (transType != "" && msgBodyLower.contains("otp") == false) { // if not from blank, then nothing to do with sms
 
                             //Create the intent that’ll fire when the user taps the notification//
                             Intent t_intent = new Intent(mContext, CheckingTransactionEditActivity.class);
 
-                            // Db setup
-                            MmxHelper = new MmxOpenHelper(mContext, app_settings.getDatabaseSettings().getDatabasePath());
-                            db = MmxHelper.getReadableDatabase();
-
                             baseCurencyID = gen_settings.getBaseCurrencytId();
                             baseAccountID = gen_settings.getDefaultAccountId();
                             baseAccountName = "";
@@ -222,7 +214,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                             }
 
                             //Get the base currency sysmbl
-                            baseCurrencySymbl = getCurrencySymbl(baseCurencyID);
+                            baseCurrencySymbl = mIndex.getCurrencySymbol(baseCurencyID);
                             fromAccCurrencySymbl = baseCurrencySymbl;
 
                             //get te from acount details
@@ -240,9 +232,9 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                             mCommon.transactionEntity.setDate(new MmxDate().toDate());
 
                             //get the trans amount
-                            String transAmount = extractTransAmount(0, msgBody, fromAccCurrencySymbl);
-                            String balanceAmount = extractTransAmount(1, msgBody, fromAccCurrencySymbl);
-                            String[] transPayee = extractTransPayee(msgBody);
+                            String transAmount = mRules.extractTransAmount(0, msgBody, fromAccCurrencySymbl);
+                            String balanceAmount = mRules.extractTransAmount(1, msgBody, fromAccCurrencySymbl);
+                            String[] transPayee = mRules.extractTransPayee(msgBody, mIndex);
 
                             //If there is no account no. or payee in the msg & no amt, then this is not valid sms to do transaction
                             if ((!fromAccountDetails[6].isEmpty() || !toAccountDetails[6].isEmpty() ||
@@ -250,14 +242,14 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
                                 mCommon.transactionEntity.setAmount(MoneyFactory.fromString(transAmount));
 
-                                String transRefNo = extractTransRefNo(msgBody);
+                                String transRefNo = mRules.extractTransRefNo(msgBody);
 
                                 //set the ref no. if exists
                                 if(!transRefNo.isEmpty()){
                                     mCommon.transactionEntity.setTransactionNumber(transRefNo);
                                 }
 
-                                int txnId = getTxnId(transRefNo.trim(), mCommon.transactionEntity.getDateString());
+                                int txnId = getTxnId(db, transRefNo.trim(), mCommon.transactionEntity.getDateString());
 
                                 switch (txnId)
                                 {
@@ -287,7 +279,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                                                 //if there is no to account found from mmex db, then check for payee
                                                 //This will helps me to handle 3rd party transfer thru IMPS
                                                 if (!toAccountDetails[6].isEmpty() && transPayee[0].isEmpty()) {
-                                                    transPayee = getPayeeDetails(toAccountDetails[6].trim());
+                                                    transPayee = mIndex.getPayeeDetails(toAccountDetails[6].trim());
                                                 }
                                             }
                                         }
@@ -348,7 +340,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
                                                 mCommon.transactionEntity.setPayeeId(Constants.NOT_SET);
 
-                                                String[] transCategory = getCategoryOrSubCategoryByName("Transfer");
+                                                String[] transCategory = mIndex.getCategoryOrSubCategoryByName("Transfer");
                                                 if (!transCategory[0].isEmpty()) {
                                                     mCommon.transactionEntity.setCategoryId(parseInt(transCategory[0]));
                                                     mCommon.transactionEntity.setSubcategoryId(parseInt(transCategory[1]));
@@ -466,88 +458,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
         }
     }
 
-    private static String getCurrencySymbl(int currencyID)
-    {
-        //Get the currency sysmbl
-        String currencySymbl = "";
-        String reqCurrFields[] = {"CURRENCYID", "DECIMAL_POINT", "GROUP_SEPARATOR",  "CURRENCY_SYMBOL"};
-
-        try
-        {
-            Cursor currencyCursor = db.query("CURRENCYFORMATS_V1", reqCurrFields, "CURRENCYID = ?",
-                    new String[] { String.valueOf(currencyID)}, null, null, null );
-
-            if(currencyCursor.moveToFirst()) {
-                currencySymbl = currencyCursor.getString(currencyCursor.getColumnIndex("CURRENCY_SYMBOL"));
-            }
-
-            currencyCursor.close();
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "getCurrencySymbl");
-        }
-
-        return  currencySymbl;
-
-    }
-
-    private static boolean isTransactionSms(String smsSender)
-    {
-        boolean reqMatch = false;
-
-        try
-        {
-            Pattern p = Pattern.compile("(-?[a-zA-Z]+)");
-            Matcher m = p.matcher(smsSender);
-
-            if (m != null)
-            {
-                while(m.find())
-                {
-                    reqMatch = true;
-                    break;
-                }
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "isTransactionSms");
-        }
-
-        return reqMatch;
-    }
-
-    private static boolean validateTransType(String[] keySearch, String smsMsg)
-    {
-        boolean reqMatch = false;
-
-        try
-        {
-            for(int i=0; i<=keySearch.length-1; i++)
-            {
-                Pattern p = Pattern.compile(keySearch[i]);
-                Matcher m = p.matcher(smsMsg);
-
-                if (m != null && reqMatch == false)
-                {
-                    while(m.find())
-                    {
-                        reqMatch = true;
-                        break;
-                    }
-                }
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "validateTransType");
-        }
-
-        return reqMatch;
-    }
-
-    private static void extractAccountDetails(String smsMsg, String transType)
+    private void extractAccountDetails(String smsMsg, String transType)
     {
         String[] reqMatch =  new String[]{"", ""};
 
@@ -570,7 +481,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
                     for(int j=0; j<=mIndx.length-1; j++)
                     {
-                        reqMatch[j] = searchForAccountNum(smsMsg, mIndx[j]);
+                        reqMatch[j] = mRules.searchForAccountNum(smsMsg, mIndx[j]);
                     }
                     break;
 
@@ -591,26 +502,26 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
 
                     if(fromIndex > 0) {
                         if(fromIndex > toIndex) {
-                            reqMatch[0] = searchForAccountNum(smsMsg.substring(fromIndex), 1);
+                            reqMatch[0] = mRules.searchForAccountNum(smsMsg.substring(fromIndex), 1);
                             if(toIndex == -1) { nonUPIMsg = smsMsg.substring(0, fromIndex); }
                         }else{
-                            reqMatch[0] = searchForAccountNum(smsMsg.substring(fromIndex, toIndex), 1);
+                            reqMatch[0] = mRules.searchForAccountNum(smsMsg.substring(fromIndex, toIndex), 1);
                             nonUPIMsg = smsMsg.substring(0, fromIndex);
                         }
                     }
 
                     if(toIndex > 0) {
                         if(toIndex > fromIndex) {
-                            reqMatch[1] = searchForAccountNum(smsMsg.substring(toIndex), 1);
+                            reqMatch[1] = mRules.searchForAccountNum(smsMsg.substring(toIndex), 1);
                             if(toIndex == -1) { nonUPIMsg = smsMsg.substring(0, toIndex); }
                         }else{
-                            reqMatch[1] = searchForAccountNum(smsMsg.substring(toIndex, fromIndex), 1);
+                            reqMatch[1] = mRules.searchForAccountNum(smsMsg.substring(toIndex, fromIndex), 1);
                             nonUPIMsg = smsMsg.substring(0, toIndex);
                         }
                     }
 
-                    if(fromIndex == -1) { reqMatch[0] = searchForAccountNum(nonUPIMsg, 1); }
-                    if(toIndex == -1) { reqMatch[1] = searchForAccountNum(nonUPIMsg, 1); }
+                    if(fromIndex == -1) { reqMatch[0] = mRules.searchForAccountNum(nonUPIMsg, 1); }
+                    if(toIndex == -1) { reqMatch[1] = mRules.searchForAccountNum(nonUPIMsg, 1); }
 
                     //if both the str are same then, reset 2nd index
                     if(reqMatch[0].contains(reqMatch[1])) { reqMatch[1] = ""; }
@@ -627,235 +538,7 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
         }
     }
 
-    private static String searchForAccountNum(String smsMsg, int mIndx)
-    {
-        String reqMatch =  "";
-
-        // - ((\s)using\scard\s(.*?)\s.emaining) added for LBP currency. Request from HussienH
-        String[] searchFor =
-                {
-                        "((\\s)?((\\d+)?[X]+(\\d+))(\\s)?)", "((\\s)?((\\d+)?[x]+(\\d+))(\\s)?)", "((\\s)?((\\d+)?[\\*]+(\\d+))(\\s)?)",
-                        "((\\s)?Account\\s?No(.*?)\\s?(\\d+)(\\s)?)", "((\\s)?A/.\\s?No(.*?)\\s?(\\d+)(\\s)?)",
-                        "[N-n][O-o](.)?(:)?(\\s)?'(.*?)'", "((\\s)using\\scard\\s(.*?)\\s.emaining)",
-                        "([\\(]((.*?)[@](.*?))[\\)])", "(from((.*?)@(.*?))[.])", "(linked((.*?)@(.*?))[.])",
-                        "((\\s)virtual(\\s)address((.*?)@(.*?))(\\s))", "(your\\s(.*?)\\s+using)",
-                        "([\\[](\\d+)[\\]])", "(using(.*?)(\\.))", "(.ay.m\\s.allet)"
-                };
-
-        int[] getGroup =
-                {
-                        5, 5, 5,
-                        4, 4,
-                        4, 3,
-                        2, 2, 2,
-                        4, 2,
-                        2, 2, 1
-                };
-
-        int mFound;
-
-        try
-        {
-            for(int i=0; i<=searchFor.length-1; i++)
-            {
-                mFound = 1;
-
-                Pattern p = Pattern.compile(searchFor[i]);
-                Matcher m = p.matcher(smsMsg);
-
-                if (m != null && reqMatch.isEmpty())
-                {
-                    while(m.find())
-                    {
-                        if(mFound == mIndx)
-                        {
-                            // Append X with acc no, bcz start with X for non UPI trans
-                            if (m.group(getGroup[i]).trim().matches("\\d+") == true &&
-                                m.group(getGroup[i]).trim().matches("[a-zA-Z@]+") == false )
-                            {
-                                reqMatch = "X" + m.group(getGroup[i]).trim();
-                            }
-                            else{
-                                reqMatch = m.group(getGroup[i]).trim();
-                            }
-                            break;
-                        }
-                        else { mFound = mFound + 1; }
-                    }
-                }
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "searchForAccountNum");
-        }
-
-        return reqMatch;
-    }
-
-    private static String extractTransAmount(int indexOfAmt, String smsMsg, String fromAccCurrencySymbl)
-    {
-        String reqMatch = "";
-        smsMsg = smsMsg.replace(",", "");
-        String searchFor = "((\\s)?##SEARCH4CURRENCY##(.)?(\\s)?((\\d+)(\\.\\d+)?))";
-        int[] getGroup = {5};
-        int indx = 0;
-
-        //Handle multiple symbol for currency
-        String[] searchCurrency;
-
-        if (fromAccCurrencySymbl.contentEquals("INR")) {
-            searchCurrency = new String[]{"INR", "Rs"};
-        } else {
-            searchCurrency = new String[]{fromAccCurrencySymbl};
-        }
-
-        try
-        {
-            for(int i=0; i<=searchCurrency.length-1; i++)
-            {
-                Pattern p = Pattern.compile(searchFor.replace("##SEARCH4CURRENCY##", searchCurrency[i]));
-                Matcher m = p.matcher(smsMsg);
-
-                if (m != null && reqMatch.isEmpty())
-                {
-                    while(m.find())
-                    {
-                        if (indx==indexOfAmt){
-                            reqMatch = m.group(getGroup[0]).trim();
-                            break;
-                        }
-
-                        indx = indx + 1;
-                    }
-                }
-            }
-
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "extractTransAmount");
-        }
-
-        return reqMatch;
-    }
-
-    private static String[] extractTransPayee(String smsMsg)
-    {
-        // - ((\s)at\s(.*?)\s+using) added for LBP currency. Request from HussienH
-        String[] searchFor = {
-                "((\\s)at\\s(.*?)\\s+on)", "((\\s)favoring\\s(.*?)\\s+is)",
-                "((\\s)to\\s(.*?)\\s+at)", "((\\s)to\\s(.*?)[.])",
-                "((\\s)at\\s(.*?)[.])", "([\\*](.*?)[.])",
-                "((\\s)FROM\\s(.*?)\\s+\\d)", "(from\\s(.*?)\\s(\\())", "(([a-zA-Z]+)(\\s)has(\\s)added)",
-                "((\\s)paid\\s(.*?)\\s)",
-                "((\\s)at\\s(.*?)\\s+using)" };
-
-        int[] getGroup = {3, 3, 3, 3, 3, 2, 3, 2, 2, 3, 3};
-        String[] reqMatch = new String[]{"", "", "", ""};
-
-        try
-        {
-            for(int i=0; i<=searchFor.length-1; i++)
-            {
-                Pattern p = Pattern.compile(searchFor[i]);
-                Matcher m = p.matcher(smsMsg);
-
-                if (m != null && reqMatch[0].isEmpty())
-                {
-                    while(m.find())
-                    {
-                        reqMatch = getPayeeDetails(String.valueOf(m.group(getGroup[i]).trim()));
-
-                        if(!reqMatch[0].isEmpty()){
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "extractTransPayee");
-        }
-
-        return reqMatch;
-    }
-
-    private static String extractTransRefNo(String smsMsg)
-    {
-        String reqMatch = "";
-        String[] searchFor = {"(Cheque\\sNo[.*?](\\d+))", "(Ref\\sno(:)?\\s(\\d+))", "(\\s(\\d+(.*?)\\d+)TXN\\s)",
-                "(I[D//d](.)?(:)?(\\s)?((.*?)\\w+))", "(I[D//d](.)?(:)?)(\\s)?(\\d+)", "(id(\\s)is(\\s)?(:)?(\\d+))",
-                "((Reference:)(\\s)?(\\d+))",  "([\\*](\\d+)[\\*])", "(Info(:)+(.*?)(\\d+)[:]?[-]?)",
-                "((reference number)(.*?)(\\d+))", "(\\s)?#(\\s?)(\\d+)(\\s?)",  "(\\/+(\\d+)+\\/)"};
-        int[] getGroup = {2, 3, 2,
-                          5, 5, 5,
-                          4, 2, 4,
-                          4, 3, 2};
-
-        try
-        {
-            for(int i=0; i<=searchFor.length-1; i++)
-            {
-                Pattern p = Pattern.compile(searchFor[i]);
-                Matcher m = p.matcher(smsMsg);
-
-                if (m != null && reqMatch.isEmpty())
-                {
-                    while(m.find())
-                    {
-                        reqMatch = m.group(getGroup[i]).trim();
-                        break;
-                    }
-                }
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "extractTransRefNo");
-        }
-
-        return reqMatch;
-    }
-
-    private static String[] getPayeeDetails(String payeeName)
-    {
-        String[] payeeDetails = new String[]{"", payeeName.trim(), "", ""};
-
-        try
-        {
-            if(!payeeName.trim().isEmpty()) {
-
-                String sql = "SELECT PAYEEID, PAYEENAME, CATEGID, SUBCATEGID " +
-                                "FROM PAYEE_V1 " +
-                                "WHERE PAYEENAME LIKE '%" + payeeName + "%' " +
-                                "ORDER BY PAYEENAME LIMIT 1";
-
-                Cursor payeeCursor = db.rawQuery(sql, null);
-
-                if(payeeCursor.moveToFirst())
-                {
-                    payeeDetails = new String[] {
-                            payeeCursor.getString(payeeCursor.getColumnIndex("PAYEEID")),
-                            payeeCursor.getString(payeeCursor.getColumnIndex("PAYEENAME")),
-                            payeeCursor.getString(payeeCursor.getColumnIndex("CATEGID")),
-                            payeeCursor.getString(payeeCursor.getColumnIndex("SUBCATEGID"))
-                    };
-                }
-
-                payeeCursor.close();
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "getPayeeDetails");
-        }
-
-        return payeeDetails;
-    }
-
-    private static Integer getTxnId(String refNumber, String transDate)
+    private static Integer getTxnId(SQLiteDatabase db, String refNumber, String transDate)
     {
         int txnId = 0;
 
@@ -866,15 +549,15 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                 String sql =
                         "SELECT TRANSID " +
                                 "FROM CHECKINGACCOUNT_V1 " +
-                                "WHERE TRANSACTIONNUMBER  LIKE '%" + refNumber + "%' " +
-                                "AND TRANSDATE ='" + transDate + "' " +
+                                "WHERE TRANSDATE = ? " +
+                                "AND TRANSACTIONNUMBER LIKE ? " +
                                 "ORDER BY TRANSID LIMIT 1";
 
-                Cursor txnCursor = db.rawQuery(sql, null);
+                Cursor txnCursor = db.rawQuery(sql, new String[] { transDate, "%" + refNumber + "%" });
 
                 if(txnCursor.moveToFirst())
                 {
-                    txnId = parseInt(txnCursor.getString(txnCursor.getColumnIndex("TRANSID")));
+                    txnId = txnCursor.getInt(txnCursor.getColumnIndex("TRANSID"));
                 }
 
                 txnCursor.close();
@@ -888,94 +571,15 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
         return txnId;
     }
 
-    private static String[] getCategoryOrSubCategoryByName(String searchName)
-    {
-        String[] cTran = new String[]{"", ""};
-
-        try
-        {
-            if(!searchName.trim().isEmpty()) {
-
-                String sql =
-                        "SELECT c.CATEGID, c.CATEGNAME, s.SUBCATEGID, s.SUBCATEGNAME " +
-                                "FROM CATEGORY_V1 c  " +
-                                "INNER JOIN SUBCATEGORY_V1 s ON s.CATEGID=c.CATEGID " +
-                                "WHERE s.SUBCATEGNAME = '" + searchName + "' " +
-                                "ORDER BY s.SUBCATEGID  LIMIT 1";
-
-                Cursor cCursor = db.rawQuery(sql, null);
-
-                if(cCursor.moveToFirst())
-                {
-                    cTran = new String[]{
-                            cCursor.getString(cCursor.getColumnIndex("CATEGID")),
-                            cCursor.getString(cCursor.getColumnIndex("SUBCATEGID"))
-                    };
-                } else{ //search in only catogery
-
-                    sql =
-                            "SELECT c.CATEGID, c.CATEGNAME " +
-                                    "FROM CATEGORY_V1 c  " +
-                                    "WHERE c.CATEGNAME = '" + searchName + "' " +
-                                    "ORDER BY c.CATEGID  LIMIT 1";
-
-                    cCursor = db.rawQuery(sql, null);
-
-                    if(cCursor.moveToFirst())
-                    {
-                        cTran = new String[]{
-                                cCursor.getString(cCursor.getColumnIndex("CATEGID")),
-                                "-1"
-                        };
-                    }
-                }
-
-                cCursor.close();
-            }
-        }
-        catch(Exception e)
-        {
-            Timber.e(e, "getCategoryOrSubCategoryByName");
-        }
-
-        return cTran;
-    }
-
-    private static void getAccountDetails(String[] reqMatch)
+    private void getAccountDetails(String[] reqMatch)
     {
-        String[] accountDetails = new String[]{"", "", "", "", "", "", ""};
-
         try
         {
             for(int j=0; j<=reqMatch.length-1; j++)
             {
-                if (reqMatch[j] != "") {
-
-                    accountDetails = new String[] {"", "", "", "", "", "", reqMatch[j] };
-
-                    String sql =
-                            "SELECT A.ACCOUNTID, A.ACCOUNTNAME, A.ACCOUNTNUM, A.CURRENCYID, " +
-                                    "C.CURRENCY_SYMBOL, C.DECIMAL_POINT, C.GROUP_SEPARATOR " +
-                                    "FROM ACCOUNTLIST_V1 A " +
-                                    "INNER JOIN CURRENCYFORMATS_V1 C ON C.CURRENCYID = A.CURRENCYID " +
-                                    "WHERE A.STATUS='Open' AND A.ACCOUNTNUM LIKE '%" + reqMatch[j] + "%' " +
-                                    "ORDER BY A.ACCOUNTID " +
-                                    "LIMIT 1";
+                if (!reqMatch[j].isEmpty()) {
 
-                    Cursor accountCursor = db.rawQuery(sql, null);
-
-                    if(accountCursor.moveToFirst())
-                    {
-                        accountDetails = new String[] {
-                                accountCursor.getString(accountCursor.getColumnIndex("ACCOUNTID")),
-                                accountCursor.getString(accountCursor.getColumnIndex("ACCOUNTNAME")),
-                                accountCursor.getString(accountCursor.getColumnIndex("CURRENCYID")),
-                                accountCursor.getString(accountCursor.getColumnIndex("CURRENCY_SYMBOL")),
-                                accountCursor.getString(accountCursor.getColumnIndex("DECIMAL_POINT")),
-                                accountCursor.getString(accountCursor.getColumnIndex("GROUP_SEPARATOR")),
-                                reqMatch[j]
-                        };
-                    }
+                    String[] accountDetails = mIndex.getAccountDetails(reqMatch[j]);
 
                     switch (j)
                     {
@@ -986,8 +590,6 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
                             toAccountDetails = accountDetails;
                             break;
                     }
-
-                    accountCursor.close();
                 }
             }
         }
@@ -997,6 +599,17 @@ public class SmsReceiverTransactions extends BroadcastReceiver {
         }
     }
 
+    /**
+     * @return the database of the application, shared with the content provider.
+     */
+    private SQLiteDatabase getDatabase() {
+        MmexApplication app = MmexApplication.getApp();
+        if (app.openHelperAtomicReference == null) {
+            app.initDb(null);
+        }
+        return app.openHelperAtomicReference.get().getReadableDatabase();
+    }
+
     public boolean validateData() {
 
         boolean isTransfer = mCommon.transactionEntity.getTransactionType().equals(TransactionTypes.Transfer);
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.notifications;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import timber.log.Timber;
+
+/**
+ * The rules for parsing bank transaction SMS.
+ * All the patterns are compiled once, when the rule set is created, and the rule set is
+ * immutable so that it can be shared by all the received messages.
+ * The amount patterns depend on the currency symbol and are compiled on first use of each
+ * symbol.
+ */
+public class SmsRuleSet {
+
+    private static class Holder {
+        static final SmsRuleSet INSTANCE = new SmsRuleSet();
+    }
+
+    /**
+     * @return the shared rule set.
+     */
+    public static SmsRuleSet getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Transaction Sms sender will have format like this AT-SIBSMS,
+     * Promotional sms will have sender like AT-012345
+     */
+    private static final Pattern SENDER = Pattern.compile("(-?[a-zA-Z]+)");
+
+    private static final Pattern LINE_BREAKS = Pattern.compile("[\\t\\n\\r]+");
+    private static final Pattern DOUBLE_SPACE = Pattern.compile("  ");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern LETTERS = Pattern.compile("[a-zA-Z@]+");
+
+    private static final String[] CREDIT = {"(credited)", "(received)", "(added)", "(reloaded)", "(deposited)", "(refunded)",
+            "(debited)(.*?)(towards)(\\s)", "(\\s)(received)(.*?)(in(\\s)your)(\\s)", "(sent)(.*?)(to)(\\s)", "(debited)(.*?)(to)(\\s)",
+            "(credited)(.*?)(in)(\\s)", "(credited)(.*?)(to)(\\s)"};
+
+    // - Sales Draft added for LBP currency. Request from HussienH
+    private static final String[] DEBIT = {"(made)", "(debited)", "(using)", "(paid)", "(purchase)", "(withdrawn)", "(done)",
+            "(credited)(.*?)(from)(\\s)", "(sent)(.*?)(from)(\\s)", "(\\s)(received)(.*?)(from)(\\s)",
+            "(Sales\\sDraft)"};
+
+    // - ((\s)using\scard\s(.*?)\s.emaining) added for LBP currency. Request from HussienH
+    private static final String[] ACCOUNT_NUMBER = {
+            "((\\s)?((\\d+)?[X]+(\\d+))(\\s)?)", "((\\s)?((\\d+)?[x]+(\\d+))(\\s)?)", "((\\s)?((\\d+)?[\\*]+(\\d+))(\\s)?)",
+            "((\\s)?Account\\s?No(.*?)\\s?(\\d+)(\\s)?)", "((\\s)?A/.\\s?No(.*?)\\s?(\\d+)(\\s)?)",
+            "[N-n][O-o](.)?(:)?(\\s)?'(.*?)'", "((\\s)using\\scard\\s(.*?)\\s.emaining)",
+            "([\\(]((.*?)[@](.*?))[\\)])", "(from((.*?)@(.*?))[.])", "(linked((.*?)@(.*?))[.])",
+            "((\\s)virtual(\\s)address((.*?)@(.*?))(\\s))", "(your\\s(.*?)\\s+using)",
+            "([\\[](\\d+)[\\]])", "(using(.*?)(\\.))", "(.ay.m\\s.allet)"
+    };
+    private static final int[] ACCOUNT_NUMBER_GROUP = {
+            5, 5, 5,
+            4, 4,
+            4, 3,
+            2, 2, 2,
+            4, 2,
+            2, 2, 1
+    };
+
+    private static final String AMOUNT = "((\\s)?##SEARCH4CURRENCY##(.)?(\\s)?((\\d+)(\\.\\d+)?))";
+    private static final String AMOUNT_CURRENCY = "##SEARCH4CURRENCY##";
+    private static final int AMOUNT_GROUP = 5;
+
+    // - ((\s)at\s(.*?)\s+using) added for LBP currency. Request from HussienH
+    private static final String[] PAYEE = {
+            "((\\s)at\\s(.*?)\\s+on)", "((\\s)favoring\\s(.*?)\\s+is)",
+            "((\\s)to\\s(.*?)\\s+at)", "((\\s)to\\s(.*?)[.])",
+            "((\\s)at\\s(.*?)[.])", "([\\*](.*?)[.])",
+            "((\\s)FROM\\s(.*?)\\s+\\d)", "(from\\s(.*?)\\s(\\())", "(([a-zA-Z]+)(\\s)has(\\s)added)",
+            "((\\s)paid\\s(.*?)\\s)",
+            "((\\s)at\\s(.*?)\\s+using)" };
+    private static final int[] PAYEE_GROUP = {3, 3, 3, 3, 3, 2, 3, 2, 2, 3, 3};
+
+    private static final String[] REFERENCE = {"(Cheque\\sNo[.*?](\\d+))", "(Ref\\sno(:)?\\s(\\d+))", "(\\s(\\d+(.*?)\\d+)TXN\\s)",
+            "(I[D//d](.)?(:)?(\\s)?((.*?)\\w+))", "(I[D//d](.)?(:)?)(\\s)?(\\d+)", "(id(\\s)is(\\s)?(:)?(\\d+))",
+            "((Reference:)(\\s)?(\\d+))",  "([\\*](\\d+)[\\*])", "(Info(:)+(.*?)(\\d+)[:]?[-]?)",
+            "((reference number)(.*?)(\\d+))", "(\\s)?#(\\s?)(\\d+)(\\s?)",  "(\\/+(\\d+)+\\/)"};
+    private static final int[] REFERENCE_GROUP = {2, 3, 2,
+            5, 5, 5,
+            4, 2, 4,
+            4, 3, 2};
+
+    private SmsRuleSet() {
+        mCredit = compile(CREDIT);
+        mDebit = compile(DEBIT);
+        mAccountNumber = compile(ACCOUNT_NUMBER);
+        mPayee = compile(PAYEE);
+        mReference = compile(REFERENCE);
+        mAmount = new ConcurrentHashMap<>();
+    }
+
+    private final Pattern[] mCredit;
+    private final Pattern[] mDebit;
+    private final Pattern[] mAccountNumber;
+    private final Pattern[] mPayee;
+    private final Pattern[] mReference;
+    /**
+     * Amount patterns, by currency symbol.
+     */
+    private final ConcurrentHashMap<String, Pattern> mAmount;
+
+    /**
+     * Remove the line breaks and the double spaces from the message body.
+     */
+    public String normalize(String msgBody) {
+        String result = LINE_BREAKS.matcher(msgBody).replaceAll(" ");
+        return DOUBLE_SPACE.matcher(result).replaceAll(" ");
+    }
+
+    public boolean isTransactionSms(String smsSender) {
+        try {
+            return SENDER.matcher(smsSender).find();
+        } catch (Exception e) {
+            Timber.e(e, "isTransactionSms");
+        }
+        return false;
+    }
+
+    /**
+     * @param smsMsg Message in lower case.
+     */
+    public boolean isDeposit(String smsMsg) {
+        return findAny(mCredit, smsMsg);
+    }
+
+    /**
+     * @param smsMsg Message in lower case.
+     */
+    public boolean isWithdrawal(String smsMsg) {
+        return findAny(mDebit, smsMsg);
+    }
+
+    /**
+     * @param mIndx The occurrence to find, starting with 1.
+     * @return the account number or UPI address, or an empty string.
+     */
+    public String searchForAccountNum(String smsMsg, int mIndx) {
+        String reqMatch = "";
+        int mFound;
+
+        try {
+            for (int i = 0; i < mAccountNumber.length && reqMatch.isEmpty(); i++) {
+                mFound = 1;
+
+                Matcher m = mAccountNumber[i].matcher(smsMsg);
+                while (m.find()) {
+                    if (mFound == mIndx) {
+                        String group = m.group(ACCOUNT_NUMBER_GROUP[i]).trim();
+                        // Append X with acc no, bcz start with X for non UPI trans
+                        if (DIGITS.matcher(group).matches() && !LETTERS.matcher(group).matches()) {
+                            reqMatch = "X" + group;
+                        } else {
+                            reqMatch = group;
+                        }
+                        break;
+                    } else {
+                        mFound = mFound + 1;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Timber.e(e, "searchForAccountNum");
+        }
+
+        return reqMatch;
+    }
+
+    /**
+     * @param indexOfAmt The occurrence of the amount. 0 = transaction amount, 1 = balance.
+     * @return the amount or an empty string.
+     */
+    public String extractTransAmount(int indexOfAmt, String smsMsg, String fromAccCurrencySymbl) {
+        String reqMatch = "";
+        smsMsg = smsMsg.replace(",", "");
+        int indx = 0;
+
+        //Handle multiple symbol for currency
+        String[] searchCurrency;
+        if (fromAccCurrencySymbl.contentEquals("INR")) {
+            searchCurrency = new String[]{"INR", "Rs"};
+        } else {
+            searchCurrency = new String[]{fromAccCurrencySymbl};
+        }
+
+        try {
+            for (int i = 0; i < searchCurrency.length && reqMatch.isEmpty(); i++) {
+                Matcher m = getAmountPattern(searchCurrency[i]).matcher(smsMsg);
+                while (m.find()) {
+                    if (indx == indexOfAmt) {
+                        reqMatch = m.group(AMOUNT_GROUP).trim();
+                        break;
+                    }
+                    indx = indx + 1;
+                }
+            }
+        } catch (Exception e) {
+            Timber.e(e, "extractTransAmount");
+        }
+
+        return reqMatch;
+    }
+
+    /**
+     * Find the payee by matching the candidate names in the message against the payees.
+     * @return payee details: id, name, category id, subcategory id.
+     */
+    public String[] extractTransPayee(String smsMsg, SmsLookupIndex index) {
+        String[] reqMatch = new String[]{"", "", "", ""};
+
+        try {
+            for (int i = 0; i < mPayee.length && reqMatch[0].isEmpty(); i++) {
+                Matcher m = mPayee[i].matcher(smsMsg);
+                while (m.find()) {
+                    reqMatch = index.getPayeeDetails(String.valueOf(m.group(PAYEE_GROUP[i]).trim()));
+
+                    if (!reqMatch[0].isEmpty()) {
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Timber.e(e, "extractTransPayee");
+        }
+
+        return reqMatch;
+    }
+
+    public String extractTransRefNo(String smsMsg) {
+        String reqMatch = "";
+
+        try {
+            for (int i = 0; i < mReference.length && reqMatch.isEmpty(); i++) {
+                Matcher m = mReference[i].matcher(smsMsg);
+                if (m.find()) {
+                    reqMatch = m.group(REFERENCE_GROUP[i]).trim();
+                }
+            }
+        } catch (Exception e) {
+            Timber.e(e, "extractTransRefNo");
+        }
+
+        return reqMatch;
+    }
+
+    // Private
+
+    private Pattern[] compile(String[] expressions) {
+        Pattern[] result = new Pattern[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            result[i] = Pattern.compile(expressions[i]);
+        }
+        return result;
+    }
+
+    private boolean findAny(Pattern[] patterns, String smsMsg) {
+        try {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(smsMsg).find()) return true;
+            }
+        } catch (Exception e) {
+            Timber.e(e, "validateTransType");
+        }
+        return false;
+    }
+
+    private Pattern getAmountPattern(String currencySymbol) {
+        Pattern pattern = mAmount.get(currencySymbol);
+        if (pattern == null) {
+            pattern = Pattern.compile(AMOUNT.replace(AMOUNT_CURRENCY, currencySymbol));
+            mAmount.put(currencySymbol, pattern);
+        }
+        return pattern;
+    }
+}
@@ -36,14 +36,16 @@ import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
 import com.money.manager.ex.R;
 import com.money.manager.ex.common.MmxCursorLoader;
+import com.money.manager.ex.core.InfoKeys;
 import com.money.manager.ex.core.IntentFactory;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.IncomeExpenseRollup;
 import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
 import com.money.manager.ex.database.SQLDataSet;
-import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.datalayer.Select;
 import com.money.manager.ex.search.SearchParameters;
+import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.utils.MmxDate;
 import com.money.manager.ex.viewmodels.IncomeVsExpenseReportEntity;
 
@@ -74,10 +76,14 @@ public class IncomeVsExpensesListFragment
     private static final String SORT_ASCENDING = "ASC";
     private static final String SORT_DESCENDING = "DESC";
     private static final String KEY_BUNDLE_YEAR = "IncomeVsExpensesListFragment:Years";
+    private static final String KEY_BUNDLE_FINANCIAL_YEARS = "IncomeVsExpensesListFragment:FinancialYears";
 
     private View mFooterListView;
     private SparseBooleanArray mYearsSelected = new SparseBooleanArray();
     private String mSort = SORT_ASCENDING;
+    private boolean mFinancialYears = false;
+    private int mFinancialYearStartMonth = 1;
+    private int mFinancialYearStartDay = 1;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -92,6 +98,10 @@ public class IncomeVsExpensesListFragment
         } else {
             mYearsSelected.put(Calendar.getInstance().get(Calendar.YEAR), true);
         }
+        if (savedInstanceState != null) {
+            mFinancialYears = savedInstanceState.getBoolean(KEY_BUNDLE_FINANCIAL_YEARS, false);
+        }
+        loadFinancialYearStart();
 
         initializeListView();
 
@@ -130,16 +140,17 @@ public class IncomeVsExpensesListFragment
                 if (TextUtils.isEmpty(selection)) {
                     selection = "1=2";
                 }
-                QueryReportIncomeVsExpenses report = new QueryReportIncomeVsExpenses(getActivity());
+                QueryReportIncomeVsExpenses report = new QueryReportIncomeVsExpenses(getActivity(), mFinancialYears);
                 query = new Select(report.getAllColumns())
                     .where(selection)
-                    .orderBy(IncomeVsExpenseReportEntity.YEAR + " " + mSort + ", " + IncomeVsExpenseReportEntity.Month + " " + mSort);
+                    .orderBy(IncomeVsExpenseReportEntity.YEAR + " " + mSort + ", " + getMonthOrder() + " " + mSort);
 
                 return new MmxCursorLoader(getActivity(), report.getUri(), query);
 
             case ID_LOADER_YEARS:
-                ViewMobileData mobileData = new ViewMobileData(getContext());
-                selection = "SELECT DISTINCT Year FROM " + mobileData.getSource() + " ORDER BY Year DESC";
+                String yearColumn = mFinancialYears ? IncomeExpenseRollup.FINYEAR : IncomeExpenseRollup.YEAR;
+                selection = "SELECT DISTINCT " + yearColumn + " AS Year FROM " +
+                    IncomeExpenseRollup.TABLE_NAME + " ORDER BY Year DESC";
                 query = new Select().where(selection);
                 return new MmxCursorLoader(getActivity(), new SQLDataSet().getUri(), query);
         }
@@ -193,6 +204,10 @@ public class IncomeVsExpensesListFragment
 
             case ID_LOADER_YEARS:
                 if (data != null && data.moveToFirst()) {
+                    // After switching between calendar and financial years, show the latest one.
+                    if (mYearsSelected.indexOfValue(true) < 0) {
+                        mYearsSelected.put(data.getInt(data.getColumnIndex("Year")), true);
+                    }
                     while (!data.isAfterLast()) {
                         int year = data.getInt(data.getColumnIndex("Year"));
                         if (mYearsSelected.get(year, false) == false) {
@@ -221,6 +236,16 @@ public class IncomeVsExpensesListFragment
         }
     }
 
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+        super.onPrepareOptionsMenu(menu);
+
+        MenuItem itemFinancialYears = menu.findItem(R.id.menu_financial_years);
+        if (itemFinancialYears != null) {
+            itemFinancialYears.setChecked(mFinancialYears);
+        }
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -233,6 +258,12 @@ public class IncomeVsExpensesListFragment
             showChart();
         } else if (item.getItemId() == R.id.menu_period) {
             showDialogYears();
+        } else if (item.getItemId() == R.id.menu_financial_years) {
+            mFinancialYears = !mFinancialYears;
+            item.setChecked(mFinancialYears);
+            // the years are different, select again.
+            mYearsSelected.clear();
+            getLoaderManager().restartLoader(ID_LOADER_YEARS, null, this);
         }
 
         return super.onOptionsItemSelected(item);
@@ -253,6 +284,7 @@ public class IncomeVsExpensesListFragment
         // ArrayUtils.toPrimitive(years.toArray(new Integer[0]))
         int[] yearsArray = Ints.toArray(years);
         outState.putIntArray(KEY_BUNDLE_YEAR, yearsArray);
+        outState.putBoolean(KEY_BUNDLE_FINANCIAL_YEARS, mFinancialYears);
     }
 
     // Other
@@ -354,9 +386,13 @@ public class IncomeVsExpensesListFragment
                 SearchParameters params = new SearchParameters();
 
                 // show the details for the selected month/year.
-                MmxDate dateTime = new MmxDate();
-                dateTime.setYear(entity.getYear());
                 int month = entity.getMonth();
+                if (mFinancialYears && month == IncomeVsExpensesActivity.SUBTOTAL_MONTH) {
+                    showFinancialYear(entity.getYear());
+                    return;
+                }
+                MmxDate dateTime = new MmxDate();
+                dateTime.setYear(entity.getCalendarYear());
                 if (month != IncomeVsExpensesActivity.SUBTOTAL_MONTH) {
                     dateTime.setMonth(entity.getMonth() - 1);
                 } else {
@@ -372,12 +408,61 @@ public class IncomeVsExpensesListFragment
                 dateTime.lastDayOfMonth();
                 params.dateTo = dateTime.toDate();
 
+                if (mFinancialYears && month == mFinancialYearStartMonth && mFinancialYearStartDay > 1) {
+                    // only the part of the start month in the financial year.
+                    MmxDate start = new MmxDate(entity.getCalendarYear(), month - 1, mFinancialYearStartDay);
+                    if (entity.getCalendarYear() == entity.getYear()) {
+                        params.dateFrom = start.toDate();
+                    } else {
+                        params.dateTo = start.minusDays(1).toDate();
+                    }
+                }
+
                 Intent intent = IntentFactory.getSearchIntent(getActivity(), params);
                 startActivity(intent);
             }
         });
     }
 
+    /**
+     * Sort expression for the months, in the order of the financial year when grouping by
+     * financial years. The start month of a financial year that does not start on the first
+     * day of the month is both the first and the last. The year totals, with the financial
+     * year as the calendar year, stay last.
+     */
+    private String getMonthOrder() {
+        String month = IncomeVsExpenseReportEntity.Month;
+        if (!mFinancialYears) return month;
+
+        return "(" + IncomeVsExpenseReportEntity.CALENDAR_YEAR + " * 12 + " + month + ")";
+    }
+
+    private void loadFinancialYearStart() {
+        InfoService infoService = new InfoService(getActivity());
+        try {
+            mFinancialYearStartMonth = Integer.parseInt(infoService.getInfoValue(InfoKeys.FINANCIAL_YEAR_START_MONTH));
+            mFinancialYearStartDay = Integer.parseInt(infoService.getInfoValue(InfoKeys.FINANCIAL_YEAR_START_DAY));
+        } catch (NumberFormatException e) {
+            Timber.w("invalid financial year start, using January 1st");
+            mFinancialYearStartMonth = 1;
+            mFinancialYearStartDay = 1;
+        }
+    }
+
+    /**
+     * Show the transactions of the whole financial year.
+     */
+    private void showFinancialYear(int year) {
+        SearchParameters params = new SearchParameters();
+
+        MmxDate dateTime = new MmxDate(year, mFinancialYearStartMonth - 1, mFinancialYearStartDay);
+        params.dateFrom = dateTime.toDate();
+        params.dateTo = dateTime.plusYears(1).minusDays(1).toDate();
+
+        Intent intent = IntentFactory.getSearchIntent(getActivity(), params);
+        startActivity(intent);
+    }
+
     /**
      * Start loader with arrays year
      *
@@ -467,7 +552,7 @@ public class IncomeVsExpensesListFragment
                 incomes.add(cursor.getDouble(cursor.getColumnIndex(IncomeVsExpenseReportEntity.Income)));
                 expenses.add(Math.abs(cursor.getDouble(cursor.getColumnIndex(IncomeVsExpenseReportEntity.Expenses))));
                 // titles
-                int year = cursor.getInt(cursor.getColumnIndex(IncomeVsExpenseReportEntity.YEAR));
+                int year = cursor.getInt(cursor.getColumnIndex(IncomeVsExpenseReportEntity.CALENDAR_YEAR));
 
                 // format month
                 Calendar calendar = Calendar.getInstance();
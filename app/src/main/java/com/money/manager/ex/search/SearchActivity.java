@@ -35,6 +35,8 @@ import com.money.manager.ex.database.QueryAllData;
 
 import org.parceler.Parcels;
 
+import java.util.ArrayList;
+
 import androidx.core.view.MenuItemCompat;
 import androidx.fragment.app.FragmentTransaction;
 
@@ -165,11 +167,12 @@ public class SearchActivity
 
     private void performSearch() {
         SearchParametersFragment searchParametersFragment = getSearchFragment();
-        String where = searchParametersFragment.getWhereStatement();
-        showSearchResultsFragment(where);
+        ArrayList<String> whereParams = new ArrayList<>();
+        String where = searchParametersFragment.getWhereStatement(whereParams);
+        showSearchResultsFragment(where, whereParams.toArray(new String[whereParams.size()]));
     }
 
-    private void showSearchResultsFragment(String where) {
+    private void showSearchResultsFragment(String where, String[] whereParams) {
         //create a fragment for search results.
         AllDataListFragment searchResultsFragment = (AllDataListFragment) this.getSupportFragmentManager()
             .findFragmentByTag(AllDataListFragment.class.getSimpleName());
@@ -187,6 +190,7 @@ public class SearchActivity
         //create parameter bundle
         Bundle args = new Bundle();
         args.putString(AllDataListFragment.KEY_ARGUMENTS_WHERE, where);
+        args.putStringArray(AllDataListFragment.KEY_ARGUMENTS_WHERE_PARAMS, whereParams);
         // Sorting
         args.putString(AllDataListFragment.KEY_ARGUMENTS_SORT,
                 QueryAllData.TOACCOUNTID + ", " + QueryAllData.Date + ", " +
@@ -48,6 +48,7 @@ import com.money.manager.ex.core.RequestCodes;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.SearchIndex;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Currency;
@@ -324,12 +325,15 @@ public class SearchParametersFragment
         return parameters;
     }
 
-    public String getWhereStatement() {
+    /**
+     * @param whereParams Receives the parameters of the statement.
+     */
+    public String getWhereStatement(List<String> whereParams) {
         // Store parameters from UI.
         SearchParameters searchParameters = collectSearchCriteria();
         setSearchParameters(searchParameters);
 
-        String where = assembleWhereClause();
+        String where = assembleWhereClause(whereParams);
 
         return where;
     }
@@ -421,9 +425,10 @@ public class SearchParametersFragment
 
     /**
      * Assemble SQL query from the search parameters.
+     * @param whereParams Receives the parameters of the where clause.
      * @return where clause with parameters
      */
-    private String assembleWhereClause() {
+    private String assembleWhereClause(List<String> whereParams) {
         WhereStatementGenerator where = new WhereStatementGenerator();
         SearchParameters searchParameters = getSearchParameters();
 
@@ -496,18 +501,36 @@ public class SearchParametersFragment
             }
         }
 
-        // transaction number
+        // Transaction number, matched as a whole. The user can add wildcards.
         if (!TextUtils.isEmpty(searchParameters.transactionNumber)) {
-            where.addStatement(QueryAllData.TransactionNumber, " LIKE ", searchParameters.transactionNumber);
-        }
-        // notes
-        if (!TextUtils.isEmpty(searchParameters.notes)) {
-            where.addStatement(QueryAllData.Notes + " LIKE '%" + searchParameters.notes + "%'");
+            where.addStatement(QueryAllData.TransactionNumber + " LIKE ?");
+            whereParams.add(searchParameters.transactionNumber);
         }
+        // Notes, as word prefixes, from the search index.
+        addTextStatement(where, whereParams, QueryAllData.Notes, SearchIndex.NOTES,
+                searchParameters.notes);
 
         return where.getWhere();
     }
 
+    /**
+     * Search for the words of the text in the given column of the transaction search index.
+     * Text without any words, i.e. only punctuation, is searched for in the field itself.
+     */
+    private void addTextStatement(WhereStatementGenerator where, List<String> whereParams,
+                                  String field, String indexColumn, String text) {
+        if (TextUtils.isEmpty(text)) return;
+
+        String match = SearchIndex.toMatchExpression(indexColumn, text);
+        if (match != null) {
+            where.addStatement(SearchIndex.getTransactionSelection(QueryAllData.ID));
+            whereParams.add(match);
+        } else {
+            where.addStatement(field + " LIKE ?");
+            whereParams.add("%" + text + "%");
+        }
+    }
+
     private void addAmountStatements(WhereStatementGenerator where, SearchParameters searchParameters) {
         if (searchParameters.amountFrom != null && searchParameters.amountTo != null) {
             addAmountStatementForBothAmounts(where, searchParameters);
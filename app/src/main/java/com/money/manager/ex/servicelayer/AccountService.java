@@ -21,22 +21,23 @@ import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.MatrixCursor;
 import android.database.MergeCursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.widget.SimpleCursorAdapter;
 import android.widget.Spinner;
 
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.account.AccountStatuses;
 import com.money.manager.ex.account.AccountTypes;
 import com.money.manager.ex.core.ToolbarSpinnerAdapter;
-import com.money.manager.ex.core.TransactionStatuses;
-import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.BalanceCheckpoint;
 import com.money.manager.ex.database.ITransactionEntity;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.database.QueryAccountBills;
-import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
 import com.money.manager.ex.datalayer.StockFields;
@@ -44,12 +45,14 @@ import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.LookAndFeelSettings;
-import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.inject.Inject;
+
+import dagger.Lazy;
+
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
 import timber.log.Timber;
@@ -63,8 +66,11 @@ public class AccountService
     public AccountService(Context context) {
         super(context);
 
+        MmexApplication.getApp().iocComponent.inject(this);
     }
 
+    @Inject Lazy<MmxOpenHelper> openHelper;
+
     public Account createAccount(String name, AccountTypes accountType, AccountStatuses status,
                                  boolean favourite, int currencyId) {
         Account account = Account.create(name, accountType, status, favourite, currencyId);
@@ -105,78 +111,13 @@ public class AccountService
      * Calculate simple balance by adding together all transactions before and on the
      * given date. To get the real balance, this amount should be subtracted from the
      * account initial balance.
+     * The amount is read from the monthly balance checkpoints, so only the transactions in the
+     * month of the given date are added together here.
      * @param isoDate date in ISO format
      */
     public Money calculateBalanceOn(int accountId, String isoDate) {
-        Money total = MoneyFactory.fromBigDecimal(BigDecimal.ZERO);
-
-        WhereStatementGenerator where = new WhereStatementGenerator();
-        // load all transactions on the account before and on given date.
-        where.addStatement(
-            where.concatenateOr(
-                where.getStatement(ITransactionEntity.ACCOUNTID, "=", accountId),
-                where.getStatement(ITransactionEntity.TOACCOUNTID, "=", accountId)
-            )
-        );
-
-        where.addStatement(ITransactionEntity.TRANSDATE, "<=", isoDate);
-        where.addStatement(ITransactionEntity.STATUS, "<>", TransactionStatuses.VOID.getCode());
-
-        String selection = where.getWhere();
-
-        AccountTransactionRepository repo = new AccountTransactionRepository(getContext());
-
-        Cursor cursor = getContext().getContentResolver().query(repo.getUri(),
-            null,
-            selection,
-            null,
-            null);
-        if (cursor == null) return total;
-
-        AccountTransactionDisplay tx = new AccountTransactionDisplay();
-        Money amount;
-
-        // calculate balance.
-        while (cursor.moveToNext()) {
-            tx.contentValues.clear();
-            String transType = cursor.getString(cursor.getColumnIndex(ITransactionEntity.TRANSCODE));
-
-            // Some users have invalid Transaction Type. Should we check .contains()?
-
-            switch (TransactionTypes.valueOf(transType)) {
-                case Withdrawal:
-                    DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TRANSAMOUNT,
-                            tx.contentValues, QueryAllData.Amount);
-                    amount = tx.getAmount();
-                    total = total.subtract(amount);
-                    break;
-                case Deposit:
-                    DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TRANSAMOUNT,
-                            tx.contentValues, QueryAllData.Amount);
-                    amount = tx.getAmount();
-                    total = total.add(amount);
-                    break;
-                case Transfer:
-                    DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.ACCOUNTID,
-                            tx.contentValues, QueryAllData.ACCOUNTID);
-
-                    if (tx.getAccountId().equals(accountId)) {
-                        DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TRANSAMOUNT,
-                                tx.contentValues, QueryAllData.Amount);
-                        amount = tx.getAmount();
-                        total = total.subtract(amount);
-                    } else {
-                        DatabaseUtils.cursorDoubleToContentValues(cursor, ITransactionEntity.TOTRANSAMOUNT,
-                                tx.contentValues, QueryAllData.Amount);
-                        amount = tx.getAmount();
-                        total = total.add(amount);
-                    }
-                    break;
-            }
-        }
-
-        cursor.close();
-        return total;
+        SQLiteDatabase db = openHelper.get().getWritableDatabase();
+        return new BalanceCheckpoint().getBalanceOn(db, accountId, isoDate);
     }
 
     public String getAccountCurrencyCode(int accountId) {
@@ -347,18 +288,17 @@ public class AccountService
     public Money loadBalance(String where) {
         Money curTotal = MoneyFactory.fromString("0");
 
+        // the sum is calculated in the database.
         QueryAccountBills accountBills = new QueryAccountBills(getContext());
         Cursor cursor = getContext().getContentResolver().query(accountBills.getUri(),
-                null,
+                new String[] { "total(" + QueryAccountBills.TOTAL + ")" },
                 where,
                 null,
                 null);
         if (cursor == null) return curTotal;
 
-        // calculate summary
-        while (cursor.moveToNext()) {
-//            curTotal = curTotal.add(MoneyFactory.fromDouble(cursor.getDouble(cursor.getColumnIndex(QueryAccountBills.TOTAL))));
-            curTotal = curTotal.add(MoneyFactory.fromString(cursor.getString(cursor.getColumnIndex(QueryAccountBills.TOTAL))));
+        if (cursor.moveToFirst()) {
+            curTotal = MoneyFactory.fromDouble(cursor.getDouble(0));
         }
         cursor.close();
 
@@ -39,8 +39,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
 import info.javaperformance.money.MoneyFactory;
 
 /*
@@ -76,6 +78,10 @@ public class AssetAllocationService
      * Hashmap of Account Id / Currency Id pairs to speed up the calculation with caching.
      */
     private HashMap<Integer, Integer> mAccountCurrencies;
+    /**
+     * The investment accounts, loaded together with the account currencies.
+     */
+    private List<Account> mInvestmentAccounts;
 
     public boolean deleteAllocation(int assetClassId) {
         ExceptionHandler handler = new ExceptionHandler(getContext(), this);
@@ -151,8 +157,8 @@ public class AssetAllocationService
         // Assign children to their parents. Create a hierarchical list.
         List<AssetClass> list = assignChildren(map);
 
-        // Load stock links and stocks to asset allocations.
-        loadStocks(list);
+        // Load stock links and stocks to asset allocations, for all the classes at once.
+        loadStocks(list, loadStockLinks(), loadStocksBySymbol());
 
         root.setChildren(list);
 
@@ -280,6 +286,25 @@ public class AssetAllocationService
         return result;
     }
 
+    /**
+     * Applies downloaded prices to a loaded asset allocation. Only the allocations that hold the
+     * securities, and the groups above them, are valued again. The other current values are
+     * kept, and the set values and allocations are recalculated from the new portfolio total,
+     * which does not need any queries.
+     * @param assetAllocation The loaded asset allocation (root).
+     * @param prices New prices, by stock symbol.
+     * @return Indicates whether the asset allocation holds any of the securities.
+     */
+    public boolean updatePrices(AssetClass assetAllocation, Map<String, Money> prices) {
+        if (assetAllocation == null || prices.isEmpty()) return false;
+
+        boolean changed = updateCurrentValues(assetAllocation, prices);
+        if (!changed) return false;
+
+        calculateStats(assetAllocation, assetAllocation.getCurrentValue());
+        return true;
+    }
+
     // Private.
 
     /**
@@ -328,9 +353,8 @@ public class AssetAllocationService
         Money setValue = calculateSetValue(portfolioValue, allocation);
         item.setValue(setValue);
 
-        // Current value
-        Money currentValue = sumStockValues(item.getStocks());
-        item.setCurrentValue(currentValue);
+        // Current value. Calculated with the current values of the tree.
+        Money currentValue = item.getCurrentValue();
 
         // Current allocation.
         Money currentAllocation = calculateCurrentAllocation(currentValue, portfolioValue);
@@ -361,25 +385,23 @@ public class AssetAllocationService
     }
 
     private Money calculateCashCurrentValue() {
-        // get all investment accounts, their currencies and cash balances.
-        AccountService accountService = new AccountService(getContext());
-        List<String> investmentAccounts = new ArrayList<>();
-        investmentAccounts.add(AccountTypes.INVESTMENT.toString());
+        // the investment accounts, their currencies and cash balances.
         int destinationCurrency = mCurrencyService.getBaseCurrencyId();
 
-        List<Account> accounts = accountService.loadAccounts(false, false, investmentAccounts);
+        loadAccounts();
+        List<Account> accounts = mInvestmentAccounts;
 
-        Money sum = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
 
         // Get the balances in base currency.
         for (Account account : accounts) {
             int sourceCurrency = account.getCurrencyId();
             Money amountInBase = mCurrencyService.doCurrencyExchange(destinationCurrency,
                     account.getInitialBalance(), sourceCurrency);
-            sum = sum.add(amountInBase);
+            sum.add(amountInBase);
         }
 
-        return sum;
+        return sum.toMoney();
     }
 
     private Cursor loadData() {
@@ -428,48 +450,117 @@ public class AssetAllocationService
         return children;
     }
 
-    private List<AssetClass> loadStocks(List<AssetClass> allocation) {
-        // iterate
-        for (AssetClass ac : allocation) {
-            // if element has no children, load related stocks
-            if (ac.getChildren().size() == 0) {
-                loadStocks(ac);
-            } else {
-                loadStocks(ac.getChildren());
+    /**
+     * @return the stock links of all the asset classes, by asset class id.
+     */
+    private HashMap<Integer, List<AssetClassStock>> loadStockLinks() {
+        HashMap<Integer, List<AssetClassStock>> result = new HashMap<>();
+
+        AssetClassStockRepository linkRepo = new AssetClassStockRepository(getContext());
+        List<AssetClassStock> links = linkRepo.loadAll();
+        if (links == null) return result;
+
+        for (AssetClassStock link : links) {
+            List<AssetClassStock> classLinks = result.get(link.getAssetClassId());
+            if (classLinks == null) {
+                classLinks = new ArrayList<>();
+                result.put(link.getAssetClassId(), classLinks);
+            }
+            classLinks.add(link);
+        }
+        return result;
+    }
+
+    /**
+     * @return the stock records of all the linked symbols, by symbol. A symbol can be held
+     * in several accounts.
+     */
+    private HashMap<String, List<Stock>> loadStocksBySymbol() {
+        HashMap<String, List<Stock>> result = new HashMap<>();
+
+        StockRepository stockRepo = new StockRepository(getContext());
+        List<Stock> stocks = stockRepo.loadForAssetClasses();
+        if (stocks == null) return result;
+
+        for (Stock stock : stocks) {
+            List<Stock> symbolStocks = result.get(stock.getSymbol());
+            if (symbolStocks == null) {
+                symbolStocks = new ArrayList<>();
+                result.put(stock.getSymbol(), symbolStocks);
             }
+            symbolStocks.add(stock);
         }
-        return allocation;
+        return result;
     }
 
-    private void loadStocks(AssetClass assetClass) {
-        if (assetClass.getChildren().size() > 0) {
-            // Group. Load values for child elements.
-            for (AssetClass child : assetClass.getChildren()) {
-                loadStocks(child);
+    private void loadStocks(List<AssetClass> allocation, HashMap<Integer, List<AssetClassStock>> links,
+                            HashMap<String, List<Stock>> stocks) {
+        for (AssetClass ac : allocation) {
+            if (ac.getChildren().size() > 0) {
+                // Group. Load values for child elements.
+                loadStocks(ac.getChildren(), links, stocks);
+                continue;
             }
-        } else {
-            // No child elements. This is the actual allocation. Load value from linked stocks.
 
-            assetClass.setType(ItemType.Allocation);
+            // No child elements. This is the actual allocation. Load value from linked stocks.
+            ac.setType(ItemType.Allocation);
 
-            // load stock links
-            AssetClassStockRepository linkRepo = new AssetClassStockRepository(getContext());
-            List<AssetClassStock> links = linkRepo.loadForClass(assetClass.getId());
-            assetClass.setStockLinks(links);
+            List<AssetClassStock> classLinks = links.get(ac.getId());
+            if (classLinks == null) {
+                classLinks = new ArrayList<>();
+            }
+            ac.setStockLinks(classLinks);
 
-            if (assetClass.getStockLinks().size() == 0) return;
+            if (classLinks.size() == 0) continue;
 
-            int size = assetClass.getStockLinks().size();
-            String[] symbols = new String[size];
-            for (int i = 0; i < size; i++) {
-                AssetClassStock link = assetClass.getStockLinks().get(i);
-                symbols[i] = link.getStockSymbol();
+            List<Stock> classStocks = new ArrayList<>();
+            for (AssetClassStock link : classLinks) {
+                List<Stock> symbolStocks = stocks.get(link.getStockSymbol());
+                if (symbolStocks != null) {
+                    classStocks.addAll(symbolStocks);
+                }
             }
+            ac.setStocks(classStocks);
+        }
+    }
+
+    /**
+     * Sets the new prices on the stocks and recalculates the current values of the asset classes
+     * that hold them.
+     * @return Indicates whether the current value of the asset class changed.
+     */
+    private boolean updateCurrentValues(AssetClass assetClass, Map<String, Money> prices) {
+        boolean changed = false;
+
+        switch (assetClass.getType()) {
+            case Group:
+                for (AssetClass child : assetClass.getChildren()) {
+                    changed |= updateCurrentValues(child, prices);
+                }
+                if (changed) {
+                    assetClass.setCurrentValue(getCurrentValueSum(assetClass.getChildren()));
+                }
+                break;
+
+            case Allocation:
+                for (Stock stock : assetClass.getStocks()) {
+                    Money price = prices.get(stock.getSymbol());
+                    if (price == null) continue;
+
+                    stock.setCurrentPrice(price);
+                    changed = true;
+                }
+                if (changed) {
+                    assetClass.setCurrentValue(sumStockValues(assetClass.getStocks()));
+                }
+                break;
 
-            StockRepository stockRepo = new StockRepository(getContext());
-            List<Stock> stocks = stockRepo.loadForSymbols(symbols);
-            assetClass.setStocks(stocks);
+            default:
+                // Cash does not depend on the prices.
+                break;
         }
+
+        return changed;
     }
 
     private Money calculateCurrentValue(List<AssetClass> allocations) {
@@ -565,48 +656,43 @@ public class AssetAllocationService
     }
 
     private Money getAllocationSum(List<AssetClass> group) {
-        List<Money> allocations = new ArrayList<>();
+        MoneyAccumulator sum = new MoneyAccumulator();
         for (AssetClass item : group) {
-            allocations.add(item.getAllocation());
-        }
-
-        Money sum = MoneyFactory.fromString("0");
-        for (Money allocation : allocations) {
-            sum = sum.add(allocation);
+            sum.add(item.getAllocation());
         }
-        return sum;
+        return sum.toMoney();
     }
 
     private Money getValueSum(List<AssetClass> group) {
-        Money sum = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
         for (AssetClass item : group) {
-            sum = sum.add(item.getValue());
+            sum.add(item.getValue());
         }
-        return sum;
+        return sum.toMoney();
     }
 
     private Money getCurrentAllocationSum(List<AssetClass> group) {
-        Money sum = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
         for (AssetClass item : group) {
-            sum = sum.add(item.getCurrentAllocation());
+            sum.add(item.getCurrentAllocation());
         }
-        return sum;
+        return sum.toMoney();
     }
 
     private Money getCurrentValueSum(List<AssetClass> group) {
-        Money sum = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
         for (AssetClass item : group) {
-            sum = sum.add(item.getCurrentValue());
+            sum.add(item.getCurrentValue());
         }
-        return sum;
+        return sum.toMoney();
     }
 
     private Money getDifferenceSum(List<AssetClass> group) {
-        Money sum = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
         for (AssetClass item : group) {
-            sum = sum.add(item.getDifference());
+            sum.add(item.getDifference());
         }
-        return sum;
+        return sum.toMoney();
     }
 
     private void sortChildren(AssetClass allocation) {
@@ -625,7 +711,7 @@ public class AssetAllocationService
     }
 
     private Money sumStockValues(List<Stock> stocks) {
-        Money sum = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
         int baseCurrencyId = mCurrencyService.getBaseCurrencyId();
 
         for (Stock stock : stocks) {
@@ -634,15 +720,41 @@ public class AssetAllocationService
             int currencyId = getAccountCurrencyId(accountId);
             Money value = mCurrencyService.doCurrencyExchange(baseCurrencyId, stock.getValue(), currencyId);
 
-            sum = sum.add(value);
+            sum.add(value);
         }
-        return sum;
+        return sum.toMoney();
     }
 
-    private Integer getAccountCurrencyId(int accountId) {
-        if (mAccountCurrencies == null) {
-            mAccountCurrencies = new HashMap<>();
+    /**
+     * Loads the currencies of all the accounts, and the investment accounts, in one query.
+     */
+    private void loadAccounts() {
+        if (mAccountCurrencies != null) return;
+
+        mAccountCurrencies = new HashMap<>();
+        mInvestmentAccounts = new ArrayList<>();
+
+        AccountRepository repo = new AccountRepository(getContext());
+        Cursor c = repo.openCursor(
+            new String[] { Account.ACCOUNTID, Account.ACCOUNTTYPE, Account.CURRENCYID, Account.INITIALBAL },
+            null, null);
+        if (c == null) return;
+
+        String investment = AccountTypes.INVESTMENT.toString();
+        while (c.moveToNext()) {
+            Account account = new Account();
+            account.loadFromCursor(c);
+
+            mAccountCurrencies.put(account.getId(), account.getCurrencyId());
+            if (investment.equals(account.getTypeName())) {
+                mInvestmentAccounts.add(account);
+            }
         }
+        c.close();
+    }
+
+    private Integer getAccountCurrencyId(int accountId) {
+        loadAccounts();
 
         if (mAccountCurrencies.containsKey(accountId)) {
             return mAccountCurrencies.get(accountId);
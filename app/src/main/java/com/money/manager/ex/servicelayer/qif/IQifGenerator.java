@@ -18,6 +18,8 @@ package com.money.manager.ex.servicelayer.qif;
 
 import com.money.manager.ex.adapter.AllDataAdapter;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.text.ParseException;
 
 /**
@@ -26,5 +28,8 @@ import java.text.ParseException;
  */
 public interface IQifGenerator {
     // todo: replace AllDataAdapter with generic adapter (i.e. CursorAdapter).
-    String createFromAdapter(AllDataAdapter adapter) throws ParseException;
+    /**
+     * Writes the transactions from the adapter, in qif format, into the given writer.
+     */
+    void createFromAdapter(AllDataAdapter adapter, Writer writer) throws ParseException, IOException;
 }
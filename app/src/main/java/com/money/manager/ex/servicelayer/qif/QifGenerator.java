@@ -21,8 +21,11 @@ import android.database.Cursor;
 
 import com.money.manager.ex.adapter.AllDataAdapter;
 import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.datalayer.SplitCategoriesStream;
 import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.text.ParseException;
 
 /**
@@ -38,21 +41,38 @@ public class QifGenerator implements IQifGenerator {
 
     private Context mContext;
 
-    public String createFromAdapter(AllDataAdapter adapter)
-            throws ParseException {
-        StringBuilder builder = new StringBuilder();
-
-        Cursor cursor = adapter.getCursor();
-        int originalCursorPosition = cursor.getPosition();
-        cursor.moveToFirst();
+    /**
+     * Streams the qif records into the writer, one transaction at a time.
+     * The split categories of the exported transactions are read along with them, from a
+     * second cursor in the same order.
+     * All the rows of the list are exported, also the ones the list has not loaded yet.
+     */
+    public void createFromAdapter(AllDataAdapter adapter, Writer writer)
+            throws ParseException, IOException {
+        Cursor cursor = adapter.queryAllRows(null);
+        if (cursor == null) return;
+        Cursor splitCursor = adapter.queryAllSplits();
+        SplitCategoriesStream splits = splitCursor == null ? null : new SplitCategoriesStream(splitCursor);
+        try {
+            write(cursor, splits, writer);
+        } finally {
+            cursor.close();
+            if (splits != null) splits.close();
+        }
+    }
 
+    private void write(Cursor cursor, SplitCategoriesStream splits, Writer writer)
+            throws ParseException, IOException {
         int previousAccountId = 0;
         QifHeader header = new QifHeader(mContext);
         QifRecord record = new QifRecord(mContext);
+        record.setSplitCategories(splits);
         AccountTransactionDisplay transaction = new AccountTransactionDisplay();
 
+        cursor.moveToFirst();
         while (!cursor.isAfterLast()) {
             // get data from cursor.
+            transaction.contentValues.clear();
             transaction.loadFromCursor(cursor);
 
             int accountId;
@@ -64,21 +84,13 @@ public class QifGenerator implements IQifGenerator {
             if (accountId != previousAccountId) {
                 previousAccountId = accountId;
                 // add header record
-                String headerRecord = header.parse(cursor);
-                builder.append(headerRecord);
+                writer.write(header.parse(cursor));
             }
 
             // add transaction record
-            String row = record.parse(transaction);
+            writer.write(record.parse(transaction));
 
-            builder.append(row);
             cursor.moveToNext();
         }
-        // No need to close the cursor here because it is used in the parent fragment.
-//        cursor.close();
-        cursor.moveToPosition(originalCursorPosition);
-
-        return builder.toString();
     }
-
 }
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.os.Build;
 import android.text.TextUtils;
+import android.util.SparseArray;
 
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.domainmodel.Account;
@@ -37,6 +38,10 @@ public class QifHeader {
     }
 
     private Context mContext;
+    /**
+     * The accounts already loaded, by id.
+     */
+    private SparseArray<Account> mAccounts = new SparseArray<>();
 
     public Context getContext() {
         return mContext;
@@ -145,8 +150,13 @@ L5,000.00
     private Account loadAccount(Cursor cursor) {
 //        int accountId = cursor.getInt(cursor.getColumnIndex(QueryAllData.ACCOUNTID));
         int accountId = cursor.getInt(cursor.getColumnIndex(QueryAllData.TOACCOUNTID));
-        AccountRepository repo = new AccountRepository(getContext());
-        Account account = repo.load(accountId);
+
+        Account account = mAccounts.get(accountId);
+        if (account == null) {
+            AccountRepository repo = new AccountRepository(getContext());
+            account = repo.load(accountId);
+            mAccounts.put(accountId, account);
+        }
         return account;
     }
 }
@@ -23,6 +23,7 @@ import com.money.manager.ex.Constants;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.database.ISplitTransaction;
 import com.money.manager.ex.datalayer.SplitCategoriesRepository;
+import com.money.manager.ex.datalayer.SplitCategoriesStream;
 import com.money.manager.ex.servicelayer.CategoryService;
 import com.money.manager.ex.utils.MmxDate;
 import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
@@ -30,6 +31,7 @@ import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 
 import info.javaperformance.money.Money;
 
@@ -47,6 +49,14 @@ public class QifRecord {
     }
 
     private Context mContext;
+    /**
+     * Split categories, read along with the transactions.
+     */
+    private SplitCategoriesStream mSplits;
+    /**
+     * Full category names (category:subcategory) already resolved.
+     */
+    private HashMap<String, String> mCategoryNames = new HashMap<>();
 
     public Context getContext() {
         return mContext;
@@ -138,13 +148,27 @@ public class QifRecord {
         return builder.toString();
     }
 
+    /**
+     * Read the split categories from the given stream instead of one query per split
+     * transaction. The transactions have to be parsed in the order of the stream.
+     */
+    public void setSplitCategories(SplitCategoriesStream splits) {
+        mSplits = splits;
+    }
+
     public String getSplitCategories(AccountTransactionDisplay transaction) {
         StringBuilder builder = new StringBuilder();
 
         // retrieve splits
-        SplitCategoriesRepository repo = new SplitCategoriesRepository(mContext);
         int transactionId = transaction.getId();
-        ArrayList<ISplitTransaction> splits = repo.loadSplitCategoriesFor(transactionId);
+        ArrayList<ISplitTransaction> splits = null;
+        if (mSplits != null) {
+            splits = mSplits.next(transactionId);
+        }
+        if (splits == null) {
+            SplitCategoriesRepository repo = new SplitCategoriesRepository(mContext);
+            splits = repo.loadSplitCategoriesFor(transactionId);
+        }
         if (splits == null) return Constants.EMPTY_STRING;
 
         String transactionType = transaction.getTransactionTypeName();
@@ -167,8 +191,7 @@ public class QifRecord {
         // E = memo in split
 
         // category
-        CategoryService service = new CategoryService(getContext());
-        String category = service.getCategorySubcategoryName(split.getCategoryId(), split.getSubcategoryId());
+        String category = getCategoryName(split.getCategoryId(), split.getSubcategoryId());
         builder.append("S");
         builder.append(category);
         builder.append(lineSeparator);
@@ -192,6 +215,17 @@ public class QifRecord {
         return builder.toString();
     }
 
+    private String getCategoryName(int categoryId, int subCategoryId) {
+        String key = categoryId + ":" + subCategoryId;
+        String name = mCategoryNames.get(key);
+        if (name == null) {
+            CategoryService service = new CategoryService(getContext());
+            name = service.getCategorySubcategoryName(categoryId, subCategoryId);
+            mCategoryNames.put(key, name);
+        }
+        return name;
+    }
+
     private String parseDate(AccountTransactionDisplay transaction) throws ParseException {
         Date date = transaction.getDate();
 
@@ -37,4 +37,29 @@ public class DatabaseSettings {
     public void setDatabasePath(String path) {
         mAppSettings.set(R.string.pref_database_path, path);
     }
+
+    /**
+     * @return Whether the database is opened in the write-ahead logging (WAL) mode.
+     */
+    public boolean getWriteAheadLogging() {
+        return mAppSettings.get(R.string.pref_database_wal, false);
+    }
+
+    public void setWriteAheadLogging(boolean value) {
+        mAppSettings.set(R.string.pref_database_wal, value);
+    }
+
+    /**
+     * @return Whether the SQL statements are written to the log.
+     */
+    public boolean getSqlLogging() {
+        return mAppSettings.get(R.string.pref_database_sql_logging, false);
+    }
+
+    /**
+     * @return Whether the query statistics are recorded.
+     */
+    public boolean getQueryStatistics() {
+        return mAppSettings.get(R.string.pref_database_query_statistics, false);
+    }
 }
@@ -16,6 +16,7 @@
  */
 package com.money.manager.ex.settings;
 
+import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.text.Html;
@@ -24,30 +25,47 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.afollestad.materialdialogs.DialogAction;
 import com.afollestad.materialdialogs.MaterialDialog;
 import com.money.manager.ex.BuildConfig;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.core.database.DatabaseManager;
+import com.money.manager.ex.core.file.TextFileExport;
 import com.money.manager.ex.home.DatabaseMetadata;
 import com.money.manager.ex.home.DatabaseMetadataFactory;
 import com.money.manager.ex.MmexApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.Core;
+import com.money.manager.ex.database.AccountBalance;
+import com.money.manager.ex.database.BriteDatabaseHolder;
 import com.money.manager.ex.database.DatabaseMigrator14To20;
+import com.money.manager.ex.database.IncomeExpenseRollup;
 import com.money.manager.ex.database.MmxOpenHelper;
+import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.database.QueryStatistics;
+import com.money.manager.ex.database.SearchIndex;
+import com.money.manager.ex.database.TransactionFact;
 import com.money.manager.ex.home.MainActivity;
 import com.money.manager.ex.home.RecentDatabasesProvider;
 import com.money.manager.ex.utils.DonateDialogUtils;
 import com.money.manager.ex.utils.MmxDatabaseUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.inject.Inject;
 
+import androidx.annotation.NonNull;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceScreen;
 import dagger.Lazy;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 /**
@@ -57,6 +75,7 @@ public class DatabaseSettingsFragment
     extends PreferenceFragmentCompat {
 
     @Inject Lazy<MmxOpenHelper> openHelper;
+    @Inject Lazy<BriteDatabaseHolder> briteDatabase;
     @Inject Lazy<RecentDatabasesProvider> mDatabases;
 
     @Override
@@ -98,6 +117,16 @@ public class DatabaseSettingsFragment
 
         // Fix duplicates
         initFixDuplicates();
+
+        // Journal mode
+        initWriteAheadLogging();
+
+        // Account balances
+        initVerifyBalances();
+
+        // Diagnostics
+        initSqlLogging();
+        initQueryStatistics();
     }
 
     @Override
@@ -352,6 +381,179 @@ public class DatabaseSettingsFragment
         Toast.makeText(getActivity(), resourceId, duration).show();
     }
 
+    private void initWriteAheadLogging() {
+        Preference preference = findPreference(getString(R.string.pref_database_wal));
+        if (preference == null) return;
+
+        preference.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                // apply to the open database. Otherwise, it applies the next time it is opened.
+                openHelper.get().setWriteAheadLogging((Boolean) newValue);
+                return true;
+            }
+        });
+    }
+
+    private void initVerifyBalances() {
+        Preference preference = findPreference(getString(R.string.pref_db_verify_balances));
+        if (preference == null) return;
+
+        preference.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                verifyBalances();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Verifies all the derived tables, in the background. Each one reads all the transactions.
+     */
+    private void verifyBalances() {
+        final Context context = getActivity().getApplicationContext();
+        final MaterialDialog progress = new MaterialDialog.Builder(getActivity())
+            .content(R.string.please_wait)
+            .progress(true, 0)
+            .cancelable(false)
+            .show();
+
+        Single.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                SQLiteDatabase db = openHelper.get().getWritableDatabase();
+
+                // The facts first, as the balances are calculated from them.
+                new TransactionFact(context).verify(db);
+                int corrected = new AccountBalance().verify(db);
+                new IncomeExpenseRollup().verify(db);
+                new SearchIndex(context).verify(db);
+                return corrected;
+            }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(new SingleSubscriber<Integer>() {
+                @Override
+                public void onSuccess(Integer corrected) {
+                    progress.dismiss();
+                    if (corrected > 0) {
+                        context.getContentResolver().notifyChange(
+                            new QueryAccountBills(context).getUri(), null);
+                    }
+
+                    new UIHelper(context).showToast(
+                        context.getString(R.string.db_verify_balances_result, corrected));
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    progress.dismiss();
+                    Timber.e(error, "verifying account balances");
+                    new UIHelper(context).showToast(R.string.error);
+                }
+            });
+    }
+
+    private void initSqlLogging() {
+        Preference preference = findPreference(getString(R.string.pref_database_sql_logging));
+        if (preference == null) return;
+
+        preference.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                briteDatabase.get().setLoggingEnabled((Boolean) newValue);
+                return true;
+            }
+        });
+    }
+
+    private void initQueryStatistics() {
+        Preference preference = findPreference(getString(R.string.pref_database_query_statistics));
+        if (preference != null) {
+            preference.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+                    QueryStatistics.setEnabled((Boolean) newValue);
+                    return true;
+                }
+            });
+        }
+
+        Preference show = findPreference(getString(R.string.pref_database_query_statistics_show));
+        if (show == null) return;
+
+        show.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                showQueryStatistics();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * The slowest statements in total. All of them are in the export.
+     */
+    private void showQueryStatistics() {
+        final List<QueryStatistics.Statement> statements = QueryStatistics.getStatements();
+        if (statements.isEmpty()) {
+            showToast(R.string.db_query_statistics_empty, Toast.LENGTH_LONG);
+            return;
+        }
+
+        StringBuilder content = new StringBuilder();
+        int shown = Math.min(statements.size(), 20);
+        for (int i = 0; i < shown; i++) {
+            QueryStatistics.Statement statement = statements.get(i);
+            if (i > 0) content.append("\n\n");
+            content.append(statement.getSql()).append('\n')
+                .append(getString(R.string.db_query_statistics_line,
+                    statement.getCount(),
+                    formatPercentile(statement.getPercentileMillis(50)),
+                    formatPercentile(statement.getPercentileMillis(95)),
+                    QueryStatistics.formatMillis(statement.getMaxNanos()),
+                    statement.getRows()));
+        }
+
+        new MaterialDialog.Builder(getActivity())
+                .title(R.string.db_query_statistics_show)
+                .content(content)
+                .positiveText(R.string.export_data_to_csv)
+                .neutralText(R.string.reset)
+                .negativeText(android.R.string.cancel)
+                .onPositive(new MaterialDialog.SingleButtonCallback() {
+                    @Override
+                    public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
+                        exportQueryStatistics(statements);
+                    }
+                })
+                .onNeutral(new MaterialDialog.SingleButtonCallback() {
+                    @Override
+                    public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
+                        QueryStatistics.reset();
+                    }
+                })
+                .show();
+    }
+
+    private String formatPercentile(int millis) {
+        return millis < 0
+            ? ">" + QueryStatistics.BUCKET_LIMITS[QueryStatistics.BUCKET_LIMITS.length - 1]
+            : "<=" + millis;
+    }
+
+    private void exportQueryStatistics(List<QueryStatistics.Statement> statements) {
+        try {
+            new TextFileExport(getActivity()).export("query_statistics.csv",
+                QueryStatistics.toCsv(statements), getString(R.string.db_query_statistics_show));
+        } catch (IOException e) {
+            Timber.e(e, "exporting query statistics");
+            showToast(R.string.error, Toast.LENGTH_SHORT);
+        }
+    }
+
     private void initFixDuplicates() {
         Preference preference = findPreference(getString(R.string.pref_db_fix_duplicates));
         if (preference == null) return;
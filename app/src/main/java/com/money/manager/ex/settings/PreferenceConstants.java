@@ -68,6 +68,7 @@ public class PreferenceConstants {
     // Recent files preferences
     public static final String RECENT_DB_PREFERENCES = "com.money.manager.ex.recent_db";
     public static final String SYNC_PREFERENCES = "com.money.manager.ex.sync_preferences";
+    public static final String EXTERNAL_CHANGES_PREFERENCES = "com.money.manager.ex.external_changes";
 
     //SMS Prefs
     public static final Integer PREF_SMS_AUTOMATIC_TRANSACTIONS = R.string.pref_sms_auto_trans;
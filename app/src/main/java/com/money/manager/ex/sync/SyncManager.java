@@ -30,10 +30,13 @@ import com.evernote.android.job.JobManager;
 import com.google.common.io.ByteStreams;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MmexApplication;
+import com.money.manager.ex.MmxContentProvider;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.IntentFactory;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.core.database.DatabaseManager;
+import com.money.manager.ex.database.ExternalChanges;
+import com.money.manager.ex.database.MmxOpenHelper;
 import com.money.manager.ex.home.DatabaseMetadata;
 import com.money.manager.ex.home.DatabaseMetadataFactory;
 import com.money.manager.ex.home.MainActivity;
@@ -257,6 +260,9 @@ public class SyncManager {
         // We need a value in remote file name preferences.
         if (TextUtils.isEmpty(remoteFile)) return;
 
+        // Record any changes still waiting to be dispatched.
+        MmxContentProvider.flushChanges();
+
         // Action
 
         ProgressDialog progressDialog = null;
@@ -460,6 +466,8 @@ public class SyncManager {
     }
 
     public void triggerUpload() {
+        MmxContentProvider.flushChanges();
+
         DatabaseMetadata db = getDatabases().getCurrent();
         if (db == null) {
             throw new RuntimeException("Cannot upload: local database not set.");
@@ -486,6 +494,12 @@ public class SyncManager {
         File localFile = new File(localPath);
         if (!localFile.exists()) return false;
 
+        // The file must contain all the changes, without the write-ahead log.
+        if (!MmxOpenHelper.checkpointIfOpen(localPath)) {
+            Timber.e("uploading database file: the write-ahead log could not be merged");
+            return false;
+        }
+
         FileInputStream input;
         try {
             input = new FileInputStream(localFile);
@@ -545,6 +559,8 @@ public class SyncManager {
         if (db == null) {
             db = DatabaseMetadataFactory.getInstance(localFile, getRemotePath());
         }
+        // The derived tables are verified when the downloaded file is opened.
+        new ExternalChanges(getContext()).markReplaced(localFile);
         boolean isDbSet = dbUtils.useDatabase(db);
 
         if (!isDbSet) {
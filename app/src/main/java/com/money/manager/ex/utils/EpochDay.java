@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.utils;
+
+/**
+ * Date arithmetic on epoch days (days since 1970-01-01), without allocations.
+ * Used where many dates are calculated at once. The calendar is the proleptic Gregorian
+ * one, as in ISO dates, for the years 0 to 9999.
+ */
+public final class EpochDay {
+
+    /**
+     * Returned when a date can not be parsed.
+     */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    public static final int SUNDAY = 0;
+    public static final int SATURDAY = 6;
+
+    private EpochDay() {
+    }
+
+    public static int of(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @param isoDate Date in ISO format (yyyy-MM-dd). Any time part is ignored.
+     * @return the epoch day, or INVALID.
+     */
+    public static int parseIso(String isoDate) {
+        if (isoDate == null || isoDate.length() < 10
+            || isoDate.charAt(4) != '-' || isoDate.charAt(7) != '-') {
+            return INVALID;
+        }
+
+        int year = parseDigits(isoDate, 0, 4);
+        int month = parseDigits(isoDate, 5, 7);
+        int day = parseDigits(isoDate, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return of(year, month, day);
+    }
+
+    /**
+     * @return the date in ISO format (yyyy-MM-dd).
+     */
+    public static String toIso(int epochDay) {
+        int civil = toCivil(epochDay);
+        char[] chars = new char[10];
+        writeDigits(chars, 0, 4, civil / 10000);
+        chars[4] = '-';
+        writeDigits(chars, 5, 2, civil / 100 % 100);
+        chars[7] = '-';
+        writeDigits(chars, 8, 2, civil % 100);
+        return new String(chars);
+    }
+
+    /**
+     * @return the date as one number, yyyyMMdd.
+     */
+    public static int toCivil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * @return the day of the week, from SUNDAY (0) to SATURDAY (6).
+     */
+    public static int dayOfWeek(int epochDay) {
+        int result = (epochDay + 4) % 7;
+        return result < 0 ? result + 7 : result;
+    }
+
+    /**
+     * Adds months as Calendar.add() does, i.e. the day is limited to the end of the month.
+     */
+    public static int plusMonths(int epochDay, int months) {
+        int civil = toCivil(epochDay);
+        int month0 = civil / 10000 * 12 + civil / 100 % 100 - 1 + months;
+        int year = month0 >= 0 ? month0 / 12 : (month0 - 11) / 12;
+        int month = month0 - year * 12 + 1;
+        int day = Math.min(civil % 100, lengthOfMonth(year, month));
+        return of(year, month, day);
+    }
+
+    public static int lastDayOfMonth(int epochDay) {
+        int civil = toCivil(epochDay);
+        int year = civil / 10000;
+        int month = civil / 100 % 100;
+        return of(year, month, lengthOfMonth(year, month));
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Private
+
+    private static int parseDigits(String text, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static void writeDigits(char[] chars, int start, int length, int value) {
+        for (int i = start + length - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -227,6 +227,14 @@ public class MmxDatabaseUtils {
 
     // Private
 
+    /**
+     * Only the tables of the generation script are checked. The tables that exist in the
+     * database but not in the script are not reported: the Android-only derived tables
+     * (transaction facts, balances, rollups) and the FTS4 search index tables
+     * (TRANSACTIONSEARCH_V1, PAYEESEARCH_V1, CATEGORYSEARCH_V1, SUBCATEGORYSEARCH_V1 and their
+     * shadow tables) are created inside the user's .mmb file, which is shared with the desktop
+     * application.
+     */
     private boolean checkSchemaInternal() {
         boolean result = false;
 
@@ -20,13 +20,14 @@ import android.text.TextUtils;
 
 import com.money.manager.ex.Constants;
 
-import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 import androidx.annotation.NonNull;
@@ -54,8 +55,7 @@ public class MmxDate {
             if (dateString.charAt(23) == 'Z') {
                 dateString = dateString.substring(0, 23);
                 // append the current time zone time
-                DateFormat offsetFormat = new SimpleDateFormat("Z");
-                String offsetString = offsetFormat.format(new MmxDate().toDate());
+                String offsetString = getFormatterFor("Z").format(new Date());
                 dateString += offsetString;
             }
         }
@@ -74,6 +74,31 @@ public class MmxDate {
         }
     }
 
+    /**
+     * Parses an ISO date (yyyy-MM-dd) into the local midnight of that day.
+     * Faster than new MmxDate(isoDate).toDate(), for use on every row of a list.
+     */
+    public static Date fromIsoDate(String isoDate) {
+        int epochDay = EpochDay.parseIso(isoDate);
+        if (epochDay == EpochDay.INVALID) {
+            // lenient parsing, as before.
+            return new MmxDate(isoDate).toDate();
+        }
+
+        Calendar calendar = getThreadCalendar();
+        setCivilDate(calendar, EpochDay.toCivil(epochDay));
+        return calendar.getTime();
+    }
+
+    /**
+     * Formats the date as ISO date (yyyy-MM-dd) in the local time zone, without a formatter.
+     */
+    public static String toIsoDate(Date date) {
+        Calendar calendar = getThreadCalendar();
+        calendar.setTime(date);
+        return toIsoDate(calendar);
+    }
+
     public static MmxDate newDate() {
         MmxDate result = new MmxDate()
                 .setTimeToBeginningOfDay();
@@ -108,10 +133,16 @@ public class MmxDate {
      * @param isoString ISO date string
      */
     public MmxDate(@NonNull String isoString) {
-        String pattern = Constants.ISO_DATE_FORMAT;
-        Date date = from(isoString, pattern);
-
         mCalendar = new GregorianCalendar();
+
+        int epochDay = EpochDay.parseIso(isoString);
+        if (epochDay != EpochDay.INVALID) {
+            setCivilDate(mCalendar, EpochDay.toCivil(epochDay));
+            return;
+        }
+
+        // lenient parsing of the other values, i.e. 2001-02-29.
+        Date date = from(isoString, Constants.ISO_DATE_FORMAT);
         mCalendar.setTime(date);
     }
 
@@ -357,18 +388,66 @@ public class MmxDate {
     }
 
     public String toIsoDateString() {
-        SimpleDateFormat format = new SimpleDateFormat(Constants.ISO_DATE_FORMAT, Locale.ENGLISH);
-        return format.format(toDate());
+        // The formatters use the default time zone.
+        if (mCalendar.getTimeZone().getID().equals(TimeZone.getDefault().getID())) {
+            return toIsoDate(mCalendar);
+        }
+        return getFormatterFor(Constants.ISO_DATE_FORMAT).format(toDate());
     }
 
     public String toIsoString() {
-        SimpleDateFormat format = new SimpleDateFormat(Constants.ISO_8601_FORMAT, Locale.ENGLISH);
-        return format.format(toDate());
+        return getFormatterFor(Constants.ISO_8601_FORMAT).format(toDate());
     }
 
     public String toIsoDateShortTimeString() {
-        SimpleDateFormat format = new SimpleDateFormat(Constants.ISO_DATE_SHORT_TIME_FORMAT, Locale.ENGLISH);
-        return format.format(toDate());
+        return getFormatterFor(Constants.ISO_DATE_SHORT_TIME_FORMAT).format(toDate());
+    }
+
+    /*
+        Formatters
+     */
+
+    /**
+     * The formatters, by locale and pattern. SimpleDateFormat is not thread-safe and expensive
+     * to create, so each thread keeps its own instances.
+     */
+    private static final ThreadLocal<Map<Locale, Map<String, SimpleDateFormat>>> sFormatters =
+        new ThreadLocal<Map<Locale, Map<String, SimpleDateFormat>>>() {
+            @Override
+            protected Map<Locale, Map<String, SimpleDateFormat>> initialValue() {
+                return new HashMap<>();
+            }
+        };
+
+    private static final ThreadLocal<Calendar> sCalendar = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return new GregorianCalendar();
+        }
+    };
+
+    /**
+     * Returns the formatter for the pattern, cached for the current thread.
+     * The instance is shared so it must only be used to parse and format, not modified.
+     */
+    static SimpleDateFormat getFormatter(String pattern, Locale locale) {
+        Map<Locale, Map<String, SimpleDateFormat>> byLocale = sFormatters.get();
+        Map<String, SimpleDateFormat> byPattern = byLocale.get(locale);
+        if (byPattern == null) {
+            byPattern = new HashMap<>();
+            byLocale.put(locale, byPattern);
+        }
+
+        SimpleDateFormat formatter = byPattern.get(pattern);
+        TimeZone timeZone = TimeZone.getDefault();
+        if (formatter == null) {
+            formatter = new SimpleDateFormat(pattern, locale);
+            byPattern.put(pattern, formatter);
+        } else if (!formatter.getTimeZone().getID().equals(timeZone.getID())) {
+            // the device time zone has changed since the formatter was created.
+            formatter.setTimeZone(timeZone);
+        }
+        return formatter;
     }
 
     /*
@@ -376,6 +455,33 @@ public class MmxDate {
      */
 
     private static SimpleDateFormat getFormatterFor(String format) {
-        return new SimpleDateFormat(format, Locale.ENGLISH);
+        return getFormatter(format, Locale.ENGLISH);
+    }
+
+    private static Calendar getThreadCalendar() {
+        Calendar calendar = sCalendar.get();
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!calendar.getTimeZone().getID().equals(timeZone.getID())) {
+            calendar.setTimeZone(timeZone);
+        }
+        return calendar;
+    }
+
+    /**
+     * Sets the calendar to the midnight of the day.
+     * @param civil The date as yyyyMMdd.
+     */
+    private static void setCivilDate(Calendar calendar, int civil) {
+        calendar.clear();
+        calendar.set(civil / 10000, civil / 100 % 100 - 1, civil % 100);
+    }
+
+    private static String toIsoDate(Calendar calendar) {
+        int year = calendar.get(Calendar.YEAR);
+        if (calendar.get(Calendar.ERA) != GregorianCalendar.AD || year > 9999) {
+            return getFormatterFor(Constants.ISO_DATE_FORMAT).format(calendar.getTime());
+        }
+        return EpochDay.toIso(EpochDay.of(year, calendar.get(Calendar.MONTH) + 1,
+            calendar.get(Calendar.DAY_OF_MONTH)));
     }
 }
@@ -207,6 +207,6 @@ public class MmxDateTimeUtils {
      */
 
     private SimpleDateFormat getFormatterFor(String format) {
-        return new SimpleDateFormat(format, _locale);
+        return MmxDate.getFormatter(format, _locale);
     }
 }
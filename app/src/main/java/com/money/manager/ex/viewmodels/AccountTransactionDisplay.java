@@ -75,7 +75,7 @@ public class AccountTransactionDisplay
     public Date getDate() {
         String dateString = getDateString();
 
-        Date dateTime = new MmxDate(dateString).toDate();
+        Date dateTime = MmxDate.fromIsoDate(dateString);
 
         return dateTime;
     }
@@ -30,6 +30,10 @@ public class IncomeVsExpenseReportEntity
     extends EntityBase {
 
     public static final String YEAR = "Year";
+    /**
+     * The calendar year of the month, when the rows are grouped by financial year.
+     */
+    public static final String CALENDAR_YEAR = "CalendarYear";
     public static final String Month = "Month";
     public static final String Income = "Income";
     public static final String Expenses = "Expenses";
@@ -55,6 +59,10 @@ public class IncomeVsExpenseReportEntity
         return getInt(YEAR);
     }
 
+    public int getCalendarYear() {
+        return getInt(CALENDAR_YEAR);
+    }
+
     public int getMonth() {
         return getInt(Month);
     }
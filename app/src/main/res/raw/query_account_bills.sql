@@ -8,56 +8,23 @@ SELECT
     ACCOUNTLIST_V1.FAVORITEACCT,
     ACCOUNTLIST_V1.CURRENCYID,
     ACCOUNTLIST_V1.ACCOUNTTYPE,
-    (INITIALBAL + ifnull(T1.TOTAL, 0)) AS TOTAL,
-    (INITIALBAL + ifnull(T1.reconciled, 0)) AS RECONCILED,
-    (INITIALBAL + ifnull(T1.TOTAL, 0)) * ifnull(CURRENCYFORMATS_V1.BASECONVRATE, 1) AS TOTALBASECONVRATE,
-    (INITIALBAL + ifnull(T1.reconciled, 0)) * ifnull(CURRENCYFORMATS_V1.BASECONVRATE, 1) AS RECONCILEDBASECONVRATE
-FROM ACCOUNTLIST_V1 LEFT OUTER JOIN ( 
-    select accountid, SUM(total) as total, SUM(reconciled) as reconciled
-    from (
-        -- Withdrawals
-        select accountid, transcode, sum(case when status in ('R', 'F', 'D', '') then -transamount else 0 end) as total,
-            sum(case when status = 'R' then -transamount else 0 end) as reconciled
-        from checkingaccount_v1
-        where transcode in ('Withdrawal')
-        group by accountid, transcode
-
-        union
-
-        select accountid, transcode, sum(case when status in ('R', 'F', 'D', '')  then transamount else 0 end) as total,
-            sum(case when status = 'R' then transamount else 0 end) as reconciled
-        from checkingaccount_v1
-        where transcode in ('Deposit')
-        group by accountid, transcode
-
-        union
-
-        select accountid, transcode, sum(case when status in ('R', 'F', 'D', '')  then -transamount else 0 end) as total,
-            sum(case when status = 'R' then -transamount else 0 end) as reconciled
-        from checkingaccount_v1
-        where transcode in ('Transfer')
-        group by accountid, transcode
-
-        union
-
-        select toaccountid AS accountid, transcode, sum(case when status in ('R', 'F', 'D', '')  then totransamount else 0 end) as total,
-            sum(case when status = 'R' then totransamount else 0 end) as reconciled
-        from checkingaccount_v1
-        where transcode in ('Transfer') and toaccountid <> -1
-        group by toaccountid, transcode
-
-        union
-
-        -- Investments
-        select HeldAt as accountid,
-            'Deposit' as transcode,
-            sum(NumShares * CurrentPrice) as total,
-            sum(NumShares * CurrentPrice) as reconciled
-        from stock_v1
-        group by accountid, transcode
-
-    )  t
-    group by accountid
-) T1 ON ACCOUNTLIST_V1.ACCOUNTID=T1.ACCOUNTID 
+    (INITIALBAL + ifnull(B.TOTAL, 0) + ifnull(S.TOTAL, 0)) AS TOTAL,
+    (INITIALBAL + ifnull(B.RECONCILED, 0) + ifnull(S.TOTAL, 0)) AS RECONCILED,
+    (INITIALBAL + ifnull(B.TOTAL, 0) + ifnull(S.TOTAL, 0)) * ifnull(CURRENCYFORMATS_V1.BASECONVRATE, 1) AS TOTALBASECONVRATE,
+    (INITIALBAL + ifnull(B.RECONCILED, 0) + ifnull(S.TOTAL, 0)) * ifnull(CURRENCYFORMATS_V1.BASECONVRATE, 1) AS RECONCILEDBASECONVRATE
+FROM ACCOUNTLIST_V1 LEFT OUTER JOIN (
+    -- Transactions, maintained with every write. Void transactions are not included.
+    select accountid,
+        reconciled + unreconciled + followup + duplicate as total,
+        reconciled
+    from accountbalance_v1
+) B ON ACCOUNTLIST_V1.ACCOUNTID=B.ACCOUNTID
+LEFT OUTER JOIN (
+    -- Investments
+    select HeldAt as accountid,
+        sum(NumShares * CurrentPrice) as total
+    from stock_v1
+    group by HeldAt
+) S ON ACCOUNTLIST_V1.ACCOUNTID=S.ACCOUNTID
 LEFT OUTER JOIN CURRENCYFORMATS_V1 ON ACCOUNTLIST_V1.CURRENCYID=CURRENCYFORMATS_V1.CURRENCYID 
 --WHERE ACCOUNTLIST_V1.ACCOUNTTYPE IN ('Cash', 'Checking', 'Term', 'Credit Card', 'Investment')
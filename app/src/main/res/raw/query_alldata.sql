@@ -2,7 +2,8 @@
 SELECT 	TX.TransID AS ID,
 	TX.TransCode AS TransactionType,
 	date( TX.TransDate ) AS Date,
-	d.userdate AS UserDate,
+	CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.userdate
+	    ELSE ifnull( ifnull( strftime( df.infovalue, TX.TransDate ), ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TX.TransDate ), 3, 2 ) ), TX.TransDate ) ) ), date( TX.TransDate ) ) END AS UserDate,
 	CAT.CategName as Category,
 	SUBCAT.SUBCategName as Subcategory,
 --	CASE
@@ -31,11 +32,19 @@ SELECT 	TX.TransID AS ID,
 	ifnull( PAYEE.PayeeName, '') AS Payee,
 	ifnull( PAYEE.PayeeID, -1 ) AS PayeeID,
 	TX.TRANSACTIONNUMBER AS TransactionNumber,
-	d.year AS Year,
-	d.month AS Month,
-	d.day AS Day,
-	d.finyear AS finyear
-FROM CHECKINGACCOUNT_V1 TX 
+	CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.year
+	    ELSE round( strftime( '%Y', TX.TransDate ) ) END AS Year,
+	CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.month
+	    ELSE round( strftime( '%m', TX.TransDate ) ) END AS Month,
+	CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.day
+	    ELSE round( strftime( '%d', TX.TransDate ) ) END AS Day,
+	CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.finyear
+	    ELSE round( strftime( '%Y', TX.TransDate, 'start of month', ( ( CASE WHEN fd.infovalue <= round( strftime( '%d', TX.TransDate ) ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' ) ) END AS finyear
+-- The date parts are read from the precalculated transaction facts. They are calculated here
+-- for a transaction without facts, or with an outdated date, e.g. when it was written by
+-- another application and the facts are not verified yet.
+FROM CHECKINGACCOUNT_V1 TX
+	LEFT JOIN TRANSACTIONFACT_V1 d ON d.TRANSID = TX.TRANSID
 	LEFT JOIN CATEGORY_V1 CAT ON CAT.CATEGID = TX.CATEGID
 	LEFT JOIN SUBCATEGORY_V1 SUBCAT ON SUBCAT.SUBCATEGID = TX.SUBCATEGID AND SUBCAT.CATEGID = TX.CATEGID
 	LEFT JOIN PAYEE_V1 PAYEE ON PAYEE.PAYEEID = TX.PAYEEID 
@@ -43,15 +52,6 @@ FROM CHECKINGACCOUNT_V1 TX
 	LEFT JOIN ACCOUNTLIST_V1 TOACC ON TOACC.ACCOUNTID = TX.TOACCOUNTID
 	LEFT JOIN currencyformats_v1 cf ON cf.currencyid = FROMACC.currencyid
 	LEFT JOIN currencyformats_v1 cfTo ON cfTo.currencyid = TOACC.currencyid
-	LEFT JOIN (
-        SELECT	transid AS id,
-			date( transdate ) AS transdate,
-			round( strftime( '%d', transdate )  ) AS day,
-			round( strftime( '%m', transdate )  ) AS month,
-			round( strftime( '%Y', transdate )  ) AS year,
-			round( strftime( '%Y', transdate, 'start of month', ( (CASE WHEN fd.infovalue <= round( strftime( '%d', transdate )  ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' )  ) AS finyear,
-			ifnull( ifnull( strftime( df.infovalue, TransDate ) ,  ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TransDate ) , 3, 2 )  ) , TransDate )  )  ) , date( TransDate )  ) AS UserDate
-	    FROM CHECKINGACCOUNT_V1 LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
-		LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
-		LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
-    ) d ON d.id = TX.TRANSID
+	LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
+	LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
+	LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
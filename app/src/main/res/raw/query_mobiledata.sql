@@ -1,10 +1,13 @@
 /*
     Query mobiledata. This is the base for most other queries.
+    The date parts come from the precalculated transaction facts (TRANSACTIONFACT_V1), and are
+    calculated here for a transaction without facts or with an outdated date.
 */
 SELECT 	TX.TransID AS ID,
     TX.TransCode AS TransactionType,
     date( TX.TransDate ) AS Date,
-    d.userdate AS UserDate,
+    CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.userdate
+        ELSE ifnull( ifnull( strftime( df.infovalue, TX.TransDate ), ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TX.TransDate ), 3, 2 ) ), TX.TransDate ) ) ), date( TX.TransDate ) ) END AS UserDate,
     coalesce( CAT.CategName, SCAT.CategName ) AS Category,
     coalesce( SUBCAT.SUBCategName, SSCAT.SUBCategName, '' ) AS Subcategory,
     cf.currency_symbol AS currency,
@@ -26,13 +29,18 @@ SELECT 	TX.TransID AS ID,
     ifnull( PAYEE.PayeeName, '' ) AS Payee,
     ifnull( PAYEE.PayeeID, -1 ) AS PAYEEID,
     TX.TRANSACTIONNUMBER AS TransactionNumber,
-    d.year AS Year,
-    d.month AS Month,
-    d.day AS Day,
-    d.finyear AS finyear,
+    CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.year
+        ELSE round( strftime( '%Y', TX.TransDate ) ) END AS Year,
+    CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.month
+        ELSE round( strftime( '%m', TX.TransDate ) ) END AS Month,
+    CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.day
+        ELSE round( strftime( '%d', TX.TransDate ) ) END AS Day,
+    CASE WHEN d.TransDate IS date( TX.TransDate ) THEN d.finyear
+        ELSE round( strftime( '%Y', TX.TransDate, 'start of month', ( ( CASE WHEN fd.infovalue <= round( strftime( '%d', TX.TransDate ) ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' ) ) END AS finyear,
     ROUND( ( CASE TX.TRANSCODE WHEN 'Withdrawal' THEN -1 ELSE 1 END ) * ( CASE TX.CATEGID WHEN -1 THEN st.splittransamount ELSE TX.TRANSAMOUNT END) , 2 )
         * ifnull(cf.BaseConvRate, 1) As AmountBaseConvRate
 FROM CHECKINGACCOUNT_V1 TX
+    LEFT JOIN TRANSACTIONFACT_V1 d ON d.TRANSID = TX.TRANSID
     LEFT JOIN CATEGORY_V1 CAT ON CAT.CATEGID = TX.CATEGID
     LEFT JOIN SUBCATEGORY_V1 SUBCAT ON SUBCAT.SUBCATEGID = TX.SUBCATEGID AND SUBCAT.CATEGID = TX.CATEGID
     LEFT JOIN PAYEE_V1 PAYEE ON PAYEE.PAYEEID = TX.PAYEEID
@@ -42,15 +50,6 @@ FROM CHECKINGACCOUNT_V1 TX
     LEFT JOIN CATEGORY_V1 SCAT ON SCAT.CATEGID = st.CATEGID AND TX.TransId = st.transid
     LEFT JOIN SUBCATEGORY_V1 SSCAT ON SSCAT.SUBCATEGID = st.SUBCATEGID AND SSCAT.CATEGID = st.CATEGID AND TX.TransId = st.transid
     LEFT JOIN currencyformats_v1 cf ON cf.currencyid = FROMACC.currencyid
-    LEFT JOIN  (
-        SELECT	transid AS id,
-            date( transdate ) AS transdate,
-            round( strftime( '%d', transdate )  ) AS day,
-            round( strftime( '%m', transdate )  ) AS month,
-            round( strftime( '%Y', transdate )  ) AS year,
-            round( strftime( '%Y', transdate, 'start of month', ( ( CASE WHEN fd.infovalue <= round( strftime( '%d', transdate ) ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' )  ) AS finyear,
-            ifnull( ifnull( strftime( df.infovalue, TransDate ), ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TransDate ) , 3, 2 ) ) , TransDate ) ) ), date( TransDate )  ) AS UserDate
-        FROM CHECKINGACCOUNT_V1 LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
-            LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
-            LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
-    ) d ON d.id = TX.TRANSID
\ No newline at end of file
+    LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
+    LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
+    LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
\ No newline at end of file
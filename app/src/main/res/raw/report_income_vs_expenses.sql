@@ -1,32 +1,30 @@
-SELECT SUB2.Year, SUB2.Month, SUM(SUB2.i) AS Income, SUM(SUB2.e) AS Expenses, SUM(SUB2.t) AS Transfers
+-- Income vs expenses, from the monthly rollups (INCOMEEXPENSEROLLUP_V1).
+-- The amounts are converted to the base currency with the current rates.
+-- %%year%% is the calendar (YEAR) or the financial (FINYEAR) year.
+-- The months are also grouped by the calendar year: a financial year that does not start on the
+-- first day of a month has its start month twice, at the beginning and at the end.
+SELECT SUB.Year, SUB.CalendarYear, SUB.Month, SUM(SUB.i) AS Income, SUM(SUB.e) AS Expenses, SUM(SUB.t) AS Transfers
 FROM (
-    select sub1.month, sub1.year,
-    case when lower(sub1.transactiontype)='deposit' then sub1.total else 0 end as i,
-    case when lower(sub1.transactiontype)='withdrawal' then sub1.total else 0 end as e,
-    case when lower(sub1.transactiontype)='transfer' then sub1.total else 0 end as t
-    from (
-        select mobiledata.month, mobiledata.year, mobiledata.transactiontype, sum(mobiledata.AmountBaseConvRate) as total
-        from %%mobiledata%%
-        where not(mobiledata.status = 'V')
-        group by month, year, transactiontype
-        ) sub1
-    ) SUB2
-GROUP BY SUB2.Year, SUB2.Month
+    select r.%%year%% as year, r.year as calendaryear, r.month,
+    case when lower(r.transcode)='deposit' then r.amount * ifnull(cf.baseconvrate, 1) else 0 end as i,
+    case when lower(r.transcode)='withdrawal' then r.amount * ifnull(cf.baseconvrate, 1) else 0 end as e,
+    case when lower(r.transcode)='transfer' then r.amount * ifnull(cf.baseconvrate, 1) else 0 end as t
+    from incomeexpenserollup_v1 r
+    left join accountlist_v1 a on a.accountid = r.accountid
+    left join currencyformats_v1 cf on cf.currencyid = a.currencyid
+    ) SUB
+GROUP BY SUB.Year, SUB.CalendarYear, SUB.Month
 
 UNION
 -- 	 The total for the year
-SELECT SUB2.Year, 99 AS Month, SUM(SUB2.i) AS Income, SUM(SUB2.e) AS Expenses, SUM(SUB2.t) AS Transfers
+SELECT SUB.Year, SUB.Year AS CalendarYear, 99 AS Month, SUM(SUB.i) AS Income, SUM(SUB.e) AS Expenses, SUM(SUB.t) AS Transfers
 FROM (
-	select sub1.month, sub1.year,
-	case when lower(sub1.transactiontype)='deposit' then sub1.total else 0 end as i,
-	case when lower(sub1.transactiontype)='withdrawal' then sub1.total else 0 end as e,
-	case when lower(sub1.transactiontype)='transfer' then sub1.total else 0 end as t
-	from (
-		select mobiledata.month, mobiledata.year, mobiledata.transactiontype, sum(mobiledata.AmountBaseConvRate) as total
-		from %%mobiledata%%
-    where not(mobiledata.status = 'V')
-    group by month, year, transactiontype
-    ) sub1
-) SUB2
-GROUP BY SUB2.Year
-
+    select r.%%year%% as year,
+    case when lower(r.transcode)='deposit' then r.amount * ifnull(cf.baseconvrate, 1) else 0 end as i,
+    case when lower(r.transcode)='withdrawal' then r.amount * ifnull(cf.baseconvrate, 1) else 0 end as e,
+    case when lower(r.transcode)='transfer' then r.amount * ifnull(cf.baseconvrate, 1) else 0 end as t
+    from incomeexpenserollup_v1 r
+    left join accountlist_v1 a on a.accountid = r.accountid
+    left join currencyformats_v1 cf on cf.currencyid = a.currencyid
+    ) SUB
+GROUP BY SUB.Year
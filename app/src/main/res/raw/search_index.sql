@@ -0,0 +1,7 @@
+-- Full-text search indexes. Android-only, derived from CHECKINGACCOUNT_V1, SPLITTRANSACTIONS_V1,
+-- PAYEE_V1, CATEGORY_V1 and SUBCATEGORY_V1. The docid is the id of the source record.
+-- Kept in sync by temporary triggers, created on every connection. See SearchIndex.
+CREATE VIRTUAL TABLE IF NOT EXISTS TRANSACTIONSEARCH_V1 USING fts4 (NOTES, PAYEE, CATEGORY, TRANSACTIONNUMBER);
+CREATE VIRTUAL TABLE IF NOT EXISTS PAYEESEARCH_V1 USING fts4 (PAYEENAME);
+CREATE VIRTUAL TABLE IF NOT EXISTS CATEGORYSEARCH_V1 USING fts4 (CATEGNAME);
+CREATE VIRTUAL TABLE IF NOT EXISTS SUBCATEGORYSEARCH_V1 USING fts4 (SUBCATEGNAME);
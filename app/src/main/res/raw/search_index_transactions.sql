@@ -0,0 +1,20 @@
+/*
+    The search index entries of the selected transactions.
+    The category contains the category and subcategory names of the transaction and of its splits.
+    The selection is placed instead of the %%where%% pattern.
+*/
+SELECT TX.TRANSID AS TRANSID,
+    TX.NOTES AS NOTES,
+    P.PAYEENAME AS PAYEE,
+    trim( ifnull( C.CATEGNAME, '' ) || ' ' || ifnull( S.SUBCATEGNAME, '' ) || ' ' ||
+        ifnull( ( SELECT group_concat( ifnull( SC.CATEGNAME, '' ) || ' ' || ifnull( SS.SUBCATEGNAME, '' ), ' ' )
+            FROM SPLITTRANSACTIONS_V1 SP
+                LEFT JOIN CATEGORY_V1 SC ON SC.CATEGID = SP.CATEGID
+                LEFT JOIN SUBCATEGORY_V1 SS ON SS.SUBCATEGID = SP.SUBCATEGID
+            WHERE SP.TRANSID = TX.TRANSID ), '' ) ) AS CATEGORY,
+    TX.TRANSACTIONNUMBER AS TRANSACTIONNUMBER
+FROM CHECKINGACCOUNT_V1 TX
+    LEFT JOIN PAYEE_V1 P ON P.PAYEEID = TX.PAYEEID
+    LEFT JOIN CATEGORY_V1 C ON C.CATEGID = TX.CATEGID
+    LEFT JOIN SUBCATEGORY_V1 S ON S.SUBCATEGID = TX.SUBCATEGID
+%%where%%
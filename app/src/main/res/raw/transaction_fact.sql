@@ -0,0 +1,55 @@
+-- Transaction facts. Android-only, derived from CHECKINGACCOUNT_V1 and INFOTABLE_V1.
+-- Holds the per-transaction values that used to be calculated with strftime() on every query.
+CREATE TABLE IF NOT EXISTS TRANSACTIONFACT_V1 (
+TRANSID integer NOT NULL primary key
+, ACCOUNTID integer
+, TOACCOUNTID integer
+, TRANSCODE TEXT
+, STATUS TEXT
+, TRANSDATE TEXT
+, TRANSAMOUNT numeric
+, TOTRANSAMOUNT numeric
+, DAY integer
+, MONTH integer
+, YEAR integer
+, FINYEAR integer
+, USERDATE TEXT
+);
+-- Covering indexes for the balance queries, from the account and into the account.
+CREATE INDEX IF NOT EXISTS IDX_TRANSACTIONFACT_ACCOUNT_BALANCE ON TRANSACTIONFACT_V1 (ACCOUNTID, TRANSDATE, STATUS, TRANSCODE, TRANSAMOUNT);
+CREATE INDEX IF NOT EXISTS IDX_TRANSACTIONFACT_TOACCOUNT_BALANCE ON TRANSACTIONFACT_V1 (TOACCOUNTID, TRANSDATE, STATUS, TRANSCODE, TOTRANSAMOUNT, ACCOUNTID, TRANSAMOUNT);
+CREATE INDEX IF NOT EXISTS IDX_TRANSACTIONFACT_TRANSDATE ON TRANSACTIONFACT_V1 (TRANSDATE);
+CREATE INDEX IF NOT EXISTS IDX_TRANSACTIONFACT_YEAR_MONTH ON TRANSACTIONFACT_V1 (YEAR, MONTH);
+CREATE INDEX IF NOT EXISTS IDX_TRANSACTIONFACT_FINYEAR ON TRANSACTIONFACT_V1 (FINYEAR);
+-- Running balance checkpoints. Android-only, derived from TRANSACTIONFACT_V1.
+-- The balance of each account at the end of every month, without the initial balance.
+CREATE TABLE IF NOT EXISTS BALANCECHECKPOINT_V1 (
+ACCOUNTID integer NOT NULL
+, PERIOD TEXT NOT NULL
+, BALANCE numeric NOT NULL
+, PRIMARY KEY (ACCOUNTID, PERIOD)
+);
+-- Account balances. Android-only, derived from TRANSACTIONFACT_V1.
+-- The sum of the transactions of each account by status, without the initial balance.
+CREATE TABLE IF NOT EXISTS ACCOUNTBALANCE_V1 (
+ACCOUNTID integer NOT NULL primary key
+, RECONCILED numeric NOT NULL DEFAULT 0
+, UNRECONCILED numeric NOT NULL DEFAULT 0
+, FOLLOWUP numeric NOT NULL DEFAULT 0
+, DUPLICATE numeric NOT NULL DEFAULT 0
+, VOID numeric NOT NULL DEFAULT 0
+, TRANSACTIONS integer NOT NULL DEFAULT 0
+);
+-- Income and expense rollups. Android-only, derived from TRANSACTIONFACT_V1, CHECKINGACCOUNT_V1
+-- and SPLITTRANSACTIONS_V1. The non-void transactions per month, type and account, in the
+-- currency of the account.
+CREATE TABLE IF NOT EXISTS INCOMEEXPENSEROLLUP_V1 (
+YEAR integer NOT NULL
+, MONTH integer NOT NULL
+, FINYEAR integer NOT NULL
+, TRANSCODE TEXT NOT NULL
+, ACCOUNTID integer NOT NULL
+, AMOUNT numeric NOT NULL DEFAULT 0
+, TRANSACTIONS integer NOT NULL DEFAULT 0
+, PRIMARY KEY (YEAR, MONTH, FINYEAR, TRANSCODE, ACCOUNTID)
+);
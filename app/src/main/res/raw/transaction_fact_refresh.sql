@@ -0,0 +1,24 @@
+/*
+    Recalculate the transaction facts for the selected transactions.
+    The selection is placed instead of the %%where%% pattern.
+*/
+INSERT OR REPLACE INTO TRANSACTIONFACT_V1 (TRANSID, ACCOUNTID, TOACCOUNTID, TRANSCODE, STATUS,
+    TRANSDATE, TRANSAMOUNT, TOTRANSAMOUNT, DAY, MONTH, YEAR, FINYEAR, USERDATE)
+SELECT TX.TRANSID,
+    TX.ACCOUNTID,
+    ifnull( ( SELECT TOACC.ACCOUNTID FROM ACCOUNTLIST_V1 TOACC WHERE TOACC.ACCOUNTID = TX.TOACCOUNTID ), TX.ACCOUNTID ),
+    TX.TRANSCODE,
+    TX.STATUS,
+    date( TX.TRANSDATE ),
+    TX.TRANSAMOUNT,
+    TX.TOTRANSAMOUNT,
+    round( strftime( '%d', TX.TRANSDATE ) ),
+    round( strftime( '%m', TX.TRANSDATE ) ),
+    round( strftime( '%Y', TX.TRANSDATE ) ),
+    round( strftime( '%Y', TX.TRANSDATE, 'start of month', ( ( CASE WHEN fd.infovalue <= round( strftime( '%d', TX.TRANSDATE ) ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' ) ),
+    ifnull( ifnull( strftime( df.infovalue, TX.TRANSDATE ), ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TX.TRANSDATE ), 3, 2 ) ), TX.TRANSDATE ) ) ), date( TX.TRANSDATE ) )
+FROM CHECKINGACCOUNT_V1 TX
+    LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
+    LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
+    LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
+%%where%%
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.forecast.CashFlowForecast;
+import com.money.manager.ex.recurring.transactions.Recurrence;
+import com.money.manager.ex.utils.EpochDay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Cash-flow forecast. Checks the expansion of the recurrences. The time needed to forecast a
+ * large number of recurring transactions is measured by CashFlowForecastBenchmark in the
+ * benchmarks module.
+ */
+public class CashFlowForecastTests {
+
+    @Test
+    public void epochDays() {
+        assertEquals(0, EpochDay.of(1970, 1, 1));
+        assertEquals("2000-02-29", EpochDay.toIso(EpochDay.parseIso("2000-02-29")));
+        assertEquals(EpochDay.INVALID, EpochDay.parseIso("2001-02-29"));
+        assertEquals(EpochDay.INVALID, EpochDay.parseIso("29/02/2000"));
+        assertEquals("2019-02-28", EpochDay.toIso(EpochDay.plusMonths(EpochDay.parseIso("2019-01-31"), 1)));
+        assertEquals("2017-11-28", EpochDay.toIso(EpochDay.plusMonths(EpochDay.parseIso("2018-02-28"), -3)));
+        // Monday
+        assertEquals(1, EpochDay.dayOfWeek(EpochDay.parseIso("2018-12-31")));
+    }
+
+    @Test
+    public void paymentsLeft() {
+        int start = EpochDay.parseIso("2018-01-15");
+        CashFlowForecast forecast = new CashFlowForecast(start, EpochDay.plusMonths(start, 12));
+        forecast.setBalance(1, 1000);
+
+        int added = forecast.addSchedule(1, -1, TransactionTypes.Withdrawal.name(), "", 100, 100,
+            Recurrence.MONTHLY.getValue(), 3, EpochDay.parseIso("2018-01-31"));
+        CashFlowForecast.Result result = forecast.calculate();
+
+        assertEquals(3, added);
+        assertEquals(1000, result.getBalance(1, EpochDay.parseIso("2018-01-30")).toDouble(), 0.001);
+        assertEquals(900, result.getBalance(1, EpochDay.parseIso("2018-01-31")).toDouble(), 0.001);
+        // January 31st, February 28th, March 28th.
+        assertEquals(800, result.getBalance(1, EpochDay.parseIso("2018-03-27")).toDouble(), 0.001);
+        assertEquals(700, result.getBalance(1, EpochDay.parseIso("2019-01-15")).toDouble(), 0.001);
+        assertNull(result.getBalance(2, start));
+    }
+
+    @Test
+    public void transfersAndOverdue() {
+        int start = EpochDay.parseIso("2018-06-01");
+        CashFlowForecast forecast = new CashFlowForecast(start, EpochDay.plusMonths(start, 2));
+        forecast.setBalance(1, 500);
+        forecast.setBalance(2, 0);
+
+        // overdue, projected on the first day.
+        forecast.addSchedule(1, 2, TransactionTypes.Transfer.name(), "", 50, 40,
+            Recurrence.EVERY_X_DAYS.getValue(), 30, EpochDay.parseIso("2018-05-20"));
+        // void transactions are not projected.
+        forecast.addSchedule(1, -1, TransactionTypes.Deposit.name(), "V", 1000, 1000,
+            Recurrence.ONCE.getValue(), 0, start);
+        CashFlowForecast.Result result = forecast.calculate();
+
+        assertEquals(450, result.getBalance(1, start).toDouble(), 0.001);
+        assertEquals(40, result.getBalance(2, start).toDouble(), 0.001);
+        // then on 2018-06-19 and 2018-07-19.
+        assertEquals(350, result.getBalance(1, EpochDay.parseIso("2018-07-31")).toDouble(), 0.001);
+        assertEquals(120, result.getBalance(2, EpochDay.parseIso("2018-07-31")).toDouble(), 0.001);
+        assertEquals(3, result.getOccurrences());
+    }
+
+    @Test
+    public void lastBusinessDay() {
+        int june30 = EpochDay.parseIso("2018-06-30");
+        int next = EpochDay.parseIso("2018-06-10");
+
+        next = nextDay(next, Recurrence.MONTHLY_LAST_BUSINESS_DAY);
+        assertEquals("2018-06-29", EpochDay.toIso(next));
+        next = nextDay(next, Recurrence.MONTHLY_LAST_BUSINESS_DAY);
+        assertEquals("2018-07-31", EpochDay.toIso(next));
+        assertEquals("2018-07-31", EpochDay.toIso(nextDay(june30, Recurrence.MONTHLY_LAST_DAY)));
+    }
+
+    private int nextDay(int day, Recurrence recurrence) {
+        CashFlowForecast forecast = new CashFlowForecast(day, day + 100);
+        forecast.addSchedule(1, -1, TransactionTypes.Deposit.name(), "", 1, 1,
+            recurrence.getValue(), 2, day);
+        double[] balances = forecast.calculate().getBalances(1);
+        for (int i = 1; i < balances.length; i++) {
+            if (balances[i] != balances[i - 1]) return day + i;
+        }
+        return day;
+    }
+}
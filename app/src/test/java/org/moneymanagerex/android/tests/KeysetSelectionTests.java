@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.common.KeysetSelection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Keyset pagination of the transaction lists.
+ */
+public class KeysetSelectionTests {
+
+    @Test
+    public void appendsTheIdToTheSort() {
+        KeysetSelection keyset = new KeysetSelection("Date DESC", "ID");
+
+        assertEquals("Date DESC, ID DESC", keyset.getOrderBy());
+        assertEquals(2, keyset.getColumns().length);
+    }
+
+    @Test
+    public void keepsTheIdWhenItIsLast() {
+        KeysetSelection keyset = new KeysetSelection("ToAccountId, Date, TransactionType, ID", "ID");
+
+        assertEquals("ToAccountId, Date, TransactionType, ID", keyset.getOrderBy());
+    }
+
+    @Test
+    public void qualifiesTheSortColumns() {
+        KeysetSelection keyset = new KeysetSelection("Date DESC", "ID");
+
+        assertEquals("T.Date DESC, T.ID DESC", keyset.getOrderBy("T"));
+    }
+
+    @Test
+    public void sortsByIdWithoutSort() {
+        assertEquals("ID", new KeysetSelection(null, "ID").getOrderBy());
+        assertEquals("ID", new KeysetSelection("", "ID").getOrderBy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsExpressions() {
+        new KeysetSelection("upper(Payee), ID", "ID");
+    }
+
+    @Test
+    public void selectsAfterTheKey() {
+        KeysetSelection keyset = new KeysetSelection("Date DESC, ID DESC", "ID");
+
+        String actual = keyset.getSelectionAfter(new Object[] { "2018-03-01", 15L });
+
+        assertEquals("((Date < '2018-03-01' OR Date IS NULL))" +
+            " OR (Date = '2018-03-01' AND (ID < 15 OR ID IS NULL))", actual);
+    }
+
+    @Test
+    public void nullsComeFirstInAscendingOrder() {
+        KeysetSelection keyset = new KeysetSelection("Notes, ID", "ID");
+
+        String actual = keyset.getSelectionAfter(new Object[] { null, 3L });
+
+        assertEquals("(Notes IS NOT NULL) OR (Notes IS NULL AND ID > 3)", actual);
+    }
+
+    @Test
+    public void nothingAfterTheLastKey() {
+        KeysetSelection keyset = new KeysetSelection("Notes DESC", "ID");
+
+        assertEquals("0", keyset.getSelectionAfter(new Object[] { null, null }));
+    }
+
+    @Test
+    public void escapesText() {
+        assertEquals("'O''Neil'", KeysetSelection.toLiteral("O'Neil"));
+        assertEquals("1.5", KeysetSelection.toLiteral(1.5));
+        assertEquals("NULL", KeysetSelection.toLiteral(null));
+    }
+}
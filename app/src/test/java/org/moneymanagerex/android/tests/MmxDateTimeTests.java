@@ -20,8 +20,10 @@ package org.moneymanagerex.android.tests;
 import android.util.Log;
 
 import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.Constants;
 import com.money.manager.ex.utils.MmxDate;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,6 +31,16 @@ import org.moneymanagerex.android.testhelpers.TestApplication;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
 /**
  * Tests for conversion from JodaTime back to the standard Java date types.
  */
@@ -38,11 +50,23 @@ import org.robolectric.annotation.Config;
 
 public class MmxDateTimeTests {
 
+    private static final int DAYS = 3650;
+
     private MmxDate _util;
+    private TimeZone defaultTimeZone;
 
     @Before
     public void setup() {
         _util = new MmxDate();
+
+        defaultTimeZone = TimeZone.getDefault();
+        // with daylight saving time.
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
     }
 
     @Test
@@ -50,4 +74,46 @@ public class MmxDateTimeTests {
         String current = _util.getCalendar().toString();
         Log.d("test", current);
     }
+
+    /**
+     * The ISO dates are parsed and printed without SimpleDateFormat, with the same results.
+     */
+    @Test
+    public void matchesSimpleDateFormat() throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat(Constants.ISO_DATE_FORMAT, Locale.ENGLISH);
+        Calendar calendar = new GregorianCalendar(2010, Calendar.JANUARY, 1);
+
+        for (int i = 0; i < DAYS; i++) {
+            String isoDate = format.format(calendar.getTime());
+            Date expected = format.parse(isoDate);
+
+            assertEquals(isoDate, expected, MmxDate.fromIsoDate(isoDate));
+            assertEquals(isoDate, expected, new MmxDate(isoDate).toDate());
+            assertEquals(isoDate, MmxDate.toIsoDate(expected));
+            assertEquals(isoDate, new MmxDate(expected).toIsoDateString());
+
+            calendar.add(Calendar.DATE, 1);
+        }
+
+        // invalid dates are still parsed leniently.
+        assertEquals("2001-03-01", new MmxDate("2001-02-29").toIsoDateString());
+        // other time zones are formatted in the default one.
+        assertEquals(format.format(new MmxDate(2018, Calendar.MARCH, 1).setHour(23).toDate()),
+            new MmxDate(2018, Calendar.MARCH, 1).setHour(23).inTimeZone("Asia/Tokyo").toIsoDateString());
+    }
+
+    /**
+     * The cached formatters follow the changes of the default time zone.
+     */
+    @Test
+    public void followsTimeZoneChanges() {
+        Date date = new MmxDate(2018, Calendar.JUNE, 1).setHour(23).toDate();
+        String before = new MmxDate(date).toString("yyyy-MM-dd HH");
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH", Locale.ENGLISH);
+
+        assertEquals("2018-06-01 23", before);
+        assertEquals(format.format(date), new MmxDate(date).toString("yyyy-MM-dd HH"));
+    }
 }
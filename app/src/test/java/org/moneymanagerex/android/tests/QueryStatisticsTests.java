@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.database.QueryStatistics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per-statement latency histograms.
+ */
+public class QueryStatisticsTests {
+
+    private static final long MS = 1000000L;
+
+    @Before
+    public void setup() {
+        QueryStatistics.reset();
+        QueryStatistics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        QueryStatistics.setEnabled(false);
+        QueryStatistics.reset();
+    }
+
+    @Test
+    public void groupsStatementsWithDifferentLiterals() {
+        QueryStatistics.recordElapsed("SELECT * FROM ACCOUNTLIST_V1 WHERE ACCOUNTID=12", MS, 1);
+        QueryStatistics.recordElapsed("SELECT *  FROM ACCOUNTLIST_V1\n WHERE ACCOUNTID=7", MS, 1);
+        QueryStatistics.recordElapsed("SELECT * FROM PAYEE_V1 WHERE PAYEENAME='It''s' AND PAYEEID IN (1, 2, 3)", MS, 0);
+
+        List<QueryStatistics.Statement> statements = QueryStatistics.getStatements();
+
+        assertEquals(2, statements.size());
+        assertStatement(statements, "SELECT * FROM ACCOUNTLIST_V1 WHERE ACCOUNTID=?", 2);
+        assertStatement(statements, "SELECT * FROM PAYEE_V1 WHERE PAYEENAME=? AND PAYEEID IN (?)", 1);
+    }
+
+    @Test
+    public void keepsTheNumbersInNames() {
+        QueryStatistics.recordElapsed("SELECT ACCOUNTID FROM CHECKINGACCOUNT_V1 LIMIT 10", MS, 10);
+
+        assertEquals("SELECT ACCOUNTID FROM CHECKINGACCOUNT_V1 LIMIT ?",
+            QueryStatistics.getStatements().get(0).getSql());
+    }
+
+    @Test
+    public void countsExecutionsPerBucket() {
+        String sql = "SELECT 1";
+        QueryStatistics.recordElapsed(sql, MS / 2, 1);
+        QueryStatistics.recordElapsed(sql, 3 * MS, 5);
+        QueryStatistics.recordElapsed(sql, 3 * MS, 5);
+        QueryStatistics.recordElapsed(sql, 5000 * MS, 10);
+
+        QueryStatistics.Statement statement = QueryStatistics.getStatements().get(0);
+
+        assertEquals(4, statement.getCount());
+        assertEquals(21, statement.getRows());
+        assertEquals(5000 * MS, statement.getMaxNanos());
+        long[] buckets = statement.getBuckets();
+        assertEquals(1, buckets[0]);
+        assertEquals(2, buckets[2]);
+        assertEquals(1, buckets[buckets.length - 1]);
+        assertEquals(4, statement.getPercentileMillis(50));
+        assertEquals(-1, statement.getPercentileMillis(95));
+    }
+
+    @Test
+    public void sortsByTotalTime() {
+        QueryStatistics.recordElapsed("SELECT 1", MS, 1);
+        QueryStatistics.recordElapsed("SELECT 1", MS, 1);
+        QueryStatistics.recordElapsed("DELETE FROM PAYEE_V1", 10 * MS, 1);
+
+        assertEquals("DELETE FROM PAYEE_V1", QueryStatistics.getStatements().get(0).getSql());
+    }
+
+    @Test
+    public void recordsNothingWhenDisabled() {
+        QueryStatistics.setEnabled(false);
+
+        long started = QueryStatistics.start();
+        QueryStatistics.record("SELECT 1", started, 1);
+        QueryStatistics.recordElapsed("SELECT 1", MS, 1);
+
+        assertEquals(0, started);
+        assertTrue(QueryStatistics.getStatements().isEmpty());
+    }
+
+    @Test
+    public void exportsOneLinePerStatement() {
+        QueryStatistics.recordElapsed("SELECT \"Name\" FROM PAYEE_V1", 2 * MS, 3);
+
+        String[] lines = QueryStatistics.toCsv(QueryStatistics.getStatements()).split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("Statement,Count,Rows,TotalMs,MaxMs,Le1Ms,"));
+        assertTrue(lines[0].endsWith(",Le1024Ms,Gt1024Ms"));
+        assertEquals("\"SELECT \"\"Name\"\" FROM PAYEE_V1\",1,3,2.000,2.000,0,1,0,0,0,0,0,0,0,0,0,0",
+            lines[1]);
+    }
+
+    private void assertStatement(List<QueryStatistics.Statement> statements, String sql, long count) {
+        for (QueryStatistics.Statement statement : statements) {
+            if (statement.getSql().equals(sql)) {
+                assertEquals(count, statement.getCount());
+                return;
+            }
+        }
+        throw new AssertionError("statement not recorded: " + sql);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.investment.prices.QuoteFetchScheduler;
+import com.money.manager.ex.investment.prices.QuoteHttpClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.HttpException;
+import retrofit2.http.GET;
+import retrofit2.http.Query;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Quote download scheduler, against a local http server.
+ */
+public class QuoteFetchSchedulerTests {
+
+    interface IQuoteService {
+        @GET("/quote")
+        Observable<String> getPrice(@Query("s") String symbol);
+    }
+
+    private MockWebServer server;
+    private IQuoteService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        service = QuoteHttpClient.createService(server.url("/").toString(), IQuoteService.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void retriesTransientErrors() {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody("1.23"));
+
+        List<QuoteFetchScheduler.Result<String>> results = fetch(
+            new QuoteFetchScheduler("retry", 2, 0, 3, 10, Schedulers.io()), "AAPL");
+
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals("1.23", results.get(0).value);
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        List<QuoteFetchScheduler.Result<String>> results = fetch(
+            new QuoteFetchScheduler("client-error", 2, 0, 3, 10, Schedulers.io()), "NONE");
+
+        assertFalse(results.get(0).isSuccessful());
+        assertEquals(404, ((HttpException) results.get(0).error).code());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void givesUpAfterRetries() {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+
+        List<QuoteFetchScheduler.Result<String>> results = fetch(
+            new QuoteFetchScheduler("give-up", 2, 0, 2, 10, Schedulers.io()), "AAPL");
+
+        assertFalse(results.get(0).isSuccessful());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void coalescesDuplicateSymbols() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(request.getRequestUrl().queryParameter("s"));
+            }
+        });
+
+        List<QuoteFetchScheduler.Result<String>> results = fetch(
+            new QuoteFetchScheduler("coalesce", 4, 0, 0, 10, Schedulers.io()),
+            "AAPL", "MSFT", "AAPL", "MSFT", "AAPL");
+
+        assertEquals(2, results.size());
+        assertEquals(2, server.getRequestCount());
+        for (QuoteFetchScheduler.Result<String> result : results) {
+            assertEquals(result.key, result.value);
+        }
+    }
+
+    @Test
+    public void limitsParallelism() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int current = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    if (current > maxRunning.get()) maxRunning.set(current);
+                }
+                Thread.sleep(50);
+                running.decrementAndGet();
+                return new MockResponse().setBody("1");
+            }
+        });
+
+        List<QuoteFetchScheduler.Result<String>> results = fetch(
+            new QuoteFetchScheduler("parallel", 3, 0, 0, 10, Schedulers.io()),
+            "A", "B", "C", "D", "E", "F", "G", "H", "I", "J");
+
+        assertEquals(10, results.size());
+        assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void spacesRequestsToProvider() {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("1"));
+        }
+
+        long start = System.nanoTime();
+        fetch(new QuoteFetchScheduler("rate", 4, 50, 0, 10, Schedulers.io()), "A", "B", "C", "D");
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 150);
+    }
+
+    private List<QuoteFetchScheduler.Result<String>> fetch(QuoteFetchScheduler scheduler,
+                                                           String... symbols) {
+        return scheduler.fetch(Arrays.asList(symbols), new QuoteFetchScheduler.Fetcher<String>() {
+                @Override
+                public Observable<String> fetch(String symbol) {
+                    return service.getPrice(symbol);
+                }
+            })
+            .toList()
+            .toBlocking()
+            .single();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.database.SearchIndex;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * MATCH expressions for the full-text search indexes.
+ */
+public class SearchIndexTests {
+
+    @Test
+    public void searchesEveryWordAsPrefix() {
+        assertEquals("gas* station*", SearchIndex.toMatchExpression(null, " Gas  Station "));
+    }
+
+    @Test
+    public void restrictsToTheColumn() {
+        assertEquals("TRANSACTIONNUMBER:chk* TRANSACTIONNUMBER:1001*",
+            SearchIndex.toMatchExpression(SearchIndex.TRANSACTIONNUMBER, "CHK-1001"));
+    }
+
+    @Test
+    public void dropsTheQuerySyntax() {
+        assertEquals("NOTES:or* NOTES:1* NOTES:1* NOTES:near*",
+            SearchIndex.toMatchExpression(SearchIndex.NOTES, "\"') OR 1=1 -- NEAR*"));
+    }
+
+    @Test
+    public void keepsTheNonAsciiCharacters() {
+        assertEquals("supermarch\u00e9* \u00c9picerie*",
+            SearchIndex.toMatchExpression(null, "Supermarch\u00e9 \u00c9PICERIE"));
+    }
+
+    @Test
+    public void returnsNullWithoutWords() {
+        assertNull(SearchIndex.toMatchExpression(null, null));
+        assertNull(SearchIndex.toMatchExpression(null, " -- % "));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.notifications.SmsLookupIndex;
+import com.money.manager.ex.notifications.SmsRuleSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the SMS parsing pipeline over a corpus of bank messages.
+ * The time per message is measured by SmsRuleSetBenchmark in the benchmarks module.
+ */
+public class SmsRuleSetTests {
+
+    private SmsRuleSet rules;
+    private SmsLookupIndex index;
+    private List<String[]> corpus;
+
+    @Before
+    public void setup() throws Exception {
+        rules = SmsRuleSet.getInstance();
+        corpus = loadCorpus();
+
+        index = new SmsLookupIndex();
+        for (int i = 0; i < 500; i++) {
+            index.addPayee(Integer.toString(i), "Payee " + i, "1", "-1");
+        }
+        index.addPayee("1000", "AMAZON RETAIL", "2", "3");
+        for (int i = 0; i < 50; i++) {
+            index.addAccount(Integer.toString(i), "Account " + i, "1", "Rs", ".", ",",
+                    String.format("XX%04d", i));
+        }
+        index.addAccount("100", "Savings", "1", "Rs", ".", ",", "XX1234");
+        index.addCurrency(1, "INR");
+    }
+
+    @Test
+    public void parsesCorpus() {
+        assertFalse(corpus.isEmpty());
+
+        String msg = rules.normalize(corpus.get(0)[1]);
+        assertTrue(rules.isTransactionSms(corpus.get(0)[0]));
+        assertTrue(rules.isWithdrawal(msg.toLowerCase()));
+        assertEquals("1250.00", rules.extractTransAmount(0, msg, "INR"));
+        assertEquals("AMAZON RETAIL", rules.extractTransPayee(msg, index)[1]);
+        assertEquals("100", index.getAccountDetails(rules.searchForAccountNum(msg, 1))[0]);
+    }
+
+    @Test
+    public void findsTransactionsInCorpus() {
+        assertTrue(parseCorpus() > 0);
+    }
+
+    private int parseCorpus() {
+        int found = 0;
+        for (String[] sms : corpus) {
+            if (!rules.isTransactionSms(sms[0])) continue;
+
+            String msg = rules.normalize(sms[1]);
+            String lowerMsg = msg.toLowerCase();
+            boolean deposit = rules.isDeposit(lowerMsg);
+            boolean withdrawal = rules.isWithdrawal(lowerMsg);
+            if (!deposit && !withdrawal) continue;
+
+            String[] account = index.getAccountDetails(rules.searchForAccountNum(msg, 1));
+            String amount = rules.extractTransAmount(0, msg, "INR");
+            String[] payee = rules.extractTransPayee(msg, index);
+            String reference = rules.extractTransRefNo(msg);
+
+            if (!amount.isEmpty() && account != null && payee != null && reference != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private List<String[]> loadCorpus() throws Exception {
+        List<String[]> result = new ArrayList<>();
+        InputStream stream = getClass().getClassLoader().getResourceAsStream("sms/bank_sms_corpus.txt");
+        assertNotNull(stream);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                result.add(line.split("\\|", 2));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.ISplitTransaction;
+import com.money.manager.ex.datalayer.SplitCategoriesStream;
+import com.money.manager.ex.domainmodel.SplitCategory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.TestApplication;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Split categories read along with the transactions of the QIF export.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, application = TestApplication.class)
+public class SplitCategoriesStreamTests {
+
+    @Test
+    public void readsTheSplitsOfEachTransactionInOrder() {
+        // transactions in the order of the list: 3, 1
+        MatrixCursor cursor = createCursor();
+        cursor.addRow(new Object[] { 1, 3, 1, 1, 3.0 });
+        cursor.addRow(new Object[] { 4, 3, 5, 5, 4.0 });
+        cursor.addRow(new Object[] { 2, 1, 2, 2, 4.0 });
+        cursor.addRow(new Object[] { 3, 1, 3, 3, 6.0 });
+        SplitCategoriesStream stream = new SplitCategoriesStream(cursor);
+
+        ArrayList<ISplitTransaction> first = stream.next(3);
+        assertEquals(2, first.size());
+        assertEquals(1, (int) first.get(0).getId());
+        assertEquals(5, (int) first.get(1).getCategoryId());
+
+        ArrayList<ISplitTransaction> second = stream.next(1);
+        assertEquals(2, second.size());
+        assertEquals(3, (int) second.get(1).getId());
+
+        assertNull(stream.next(7));
+
+        stream.close();
+        assertTrue(cursor.isClosed());
+    }
+
+    @Test
+    public void doesNotSkipTheSplitsOfOtherTransactions() {
+        MatrixCursor cursor = createCursor();
+        cursor.addRow(new Object[] { 1, 5, 1, 1, 3.0 });
+        SplitCategoriesStream stream = new SplitCategoriesStream(cursor);
+
+        // a transaction without splits, e.g. added after the splits were read.
+        assertNull(stream.next(4));
+        assertEquals(1, stream.next(5).size());
+
+        stream.close();
+    }
+
+    @Test
+    public void emptyCursor() {
+        SplitCategoriesStream stream = new SplitCategoriesStream(createCursor());
+
+        assertNull(stream.next(1));
+
+        stream.close();
+    }
+
+    private MatrixCursor createCursor() {
+        return new MatrixCursor(new String[] { SplitCategory.SPLITTRANSID, SplitCategory.TRANSID,
+            SplitCategory.CATEGID, SplitCategory.SUBCATEGID, SplitCategory.SPLITTRANSAMOUNT });
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.caverock.androidsvg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the CSS rules that apply to every element of a large, stylesheet-heavy document,
+ * as the renderer does once per element and render.
+ * In the androidSVG package, as the CSS classes are package-private. The document tree is built
+ * directly, as the XML parser and the rendering need the Android runtime, and are not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CSSRuleMatchBenchmark {
+
+    private static final long SEED = 42;
+
+    /**
+     * Number of rules in the stylesheet. The document has 10 elements per rule.
+     */
+    @Param({ "100", "1000" })
+    public int size;
+
+    private SVG document;
+    private CSSParser.Ruleset ruleset;
+    private List<SVG.SvgElementBase> elements;
+
+    @Setup
+    public void setup() throws SVGParseException {
+        String stylesheet = generateStylesheet(size);
+        ruleset = new CSSParser().parse(stylesheet);
+
+        document = generateDocument(size);
+        document.addCSSRules(new CSSParser().parse(stylesheet));
+
+        elements = new ArrayList<>();
+        addElements(document.getRootElement(), elements);
+        // the matches found by this are kept for the memoized benchmark.
+        document.checkMatchingCSSRules(null);
+    }
+
+    /**
+     * Every rule checked against every element: the way the renderer matched before the index.
+     */
+    @Benchmark
+    public int allRules() {
+        int count = 0;
+        for (SVG.SvgElementBase element : elements) {
+            for (CSSParser.Rule rule : ruleset.getRules()) {
+                if (CSSParser.ruleMatch(null, rule.selector, element)) count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Only the candidate rules from the index are checked, as in the first render of a document.
+     */
+    @Benchmark
+    public int indexed() {
+        int count = 0;
+        for (SVG.SvgElementBase element : elements) {
+            count += ruleset.getMatchingRules(null, element).size();
+        }
+        return count;
+    }
+
+    /**
+     * The matches kept from a previous render, as in every later render of the document.
+     */
+    @Benchmark
+    public int memoized() {
+        int count = 0;
+        for (SVG.SvgElementBase element : elements) {
+            count += document.getMatchingCSSRules(null, element).size();
+        }
+        return count;
+    }
+
+    private static void addElements(SVG.SvgElementBase element, List<SVG.SvgElementBase> result) {
+        result.add(element);
+        if (!(element instanceof SVG.SvgContainer)) return;
+
+        for (SVG.SvgObject child : ((SVG.SvgContainer) element).getChildren()) {
+            if (child instanceof SVG.SvgElementBase) {
+                addElements((SVG.SvgElementBase) child, result);
+            }
+        }
+    }
+
+    /**
+     * Rules of the usual kinds, by class, by id, by element name, with descendant and child
+     * combinators, and a few universal ones.
+     */
+    static String generateStylesheet(int count) {
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            int c = random.nextInt(count);
+            String colour = String.format(Locale.US, "#%06x", random.nextInt(0x1000000));
+            switch (i % 10) {
+                case 0:
+                    sb.append("#e").append(random.nextInt(count * 10));
+                    break;
+                case 1:
+                    sb.append("g.group").append(random.nextInt(20)).append(" .c").append(c);
+                    break;
+                case 2:
+                    sb.append("g > rect.c").append(c);
+                    break;
+                case 3:
+                    sb.append(i % 20 == 3 ? "rect" : "circle");
+                    break;
+                case 4:
+                    sb.append(i % 40 == 4 ? "*" : "g .c" + c);
+                    break;
+                default:
+                    sb.append(".c").append(c);
+                    break;
+            }
+            sb.append(" { fill: ").append(colour).append("; stroke-width: ").append(1 + random.nextInt(5)).append(" }\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Groups nested a few levels deep, each with rectangles and circles with one or two classes.
+     */
+    static SVG generateDocument(int rules) throws SVGParseException {
+        Random random = new Random(SEED + 1);
+        int elements = rules * 10;
+
+        SVG document = new SVG();
+        SVG.Svg root = new SVG.Svg();
+        root.document = document;
+        document.setRootElement(root);
+
+        int id = 0;
+        while (id < elements) {
+            SVG.SvgContainer parent = root;
+            int depth = 1 + random.nextInt(4);
+            for (int level = 0; level < depth; level++) {
+                SVG.Group group = new SVG.Group();
+                add(document, parent, group, null, "group" + random.nextInt(20));
+                parent = group;
+            }
+            for (int i = 0; i < 10 && id < elements; i++, id++) {
+                String classes = "c" + random.nextInt(rules) + (random.nextBoolean() ? " c" + random.nextInt(rules) : "");
+                SVG.SvgElementBase shape = random.nextBoolean() ? new SVG.Rect() : new SVG.Circle();
+                add(document, parent, shape, "e" + id, classes);
+            }
+        }
+        return document;
+    }
+
+    private static void add(SVG document, SVG.SvgContainer parent, SVG.SvgElementBase element,
+                            String id, String classes) throws SVGParseException {
+        element.document = document;
+        element.parent = parent;
+        element.id = id;
+        element.classNames = CSSParser.parseClassAttribute(classes);
+        parent.addChild(element);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.benchmarks;
+
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.forecast.CashFlowForecast;
+import com.money.manager.ex.recurring.transactions.Recurrence;
+import com.money.manager.ex.utils.EpochDay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cash-flow forecast of 500 recurring transactions, on 20 accounts, over 24 months.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CashFlowForecastBenchmark {
+
+    private static final int ACCOUNTS = 20;
+    private static final int SCHEDULES = 500;
+
+    private int start;
+    private int end;
+    private double[] balances;
+    private int[] accountIds;
+    private int[] toAccountIds;
+    private String[] transCodes;
+    private double[] amounts;
+    private double[] toAmounts;
+    private int[] repeats;
+    private int[] numOccurrences;
+    private int[] nextDays;
+
+    @Setup
+    public void setup() {
+        start = EpochDay.parseIso("2018-01-01");
+        end = EpochDay.plusMonths(start, 24);
+
+        Random random = new Random(Datasets.SEED);
+        Recurrence[] recurrences = Recurrence.values();
+        TransactionTypes[] types = TransactionTypes.values();
+
+        balances = new double[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            balances[i] = random.nextInt(10000);
+        }
+
+        accountIds = new int[SCHEDULES];
+        toAccountIds = new int[SCHEDULES];
+        transCodes = new String[SCHEDULES];
+        amounts = new double[SCHEDULES];
+        toAmounts = new double[SCHEDULES];
+        repeats = new int[SCHEDULES];
+        numOccurrences = new int[SCHEDULES];
+        nextDays = new int[SCHEDULES];
+        for (int i = 0; i < SCHEDULES; i++) {
+            accountIds[i] = 1 + random.nextInt(ACCOUNTS);
+            toAccountIds[i] = 1 + random.nextInt(ACCOUNTS);
+            transCodes[i] = types[random.nextInt(types.length)].name();
+            amounts[i] = random.nextInt(100000) / 100.0;
+            toAmounts[i] = random.nextInt(100000) / 100.0;
+            // half of them in the automatic mode.
+            repeats[i] = recurrences[random.nextInt(recurrences.length)].getValue() +
+                (random.nextBoolean() ? 100 : 0);
+            numOccurrences[i] = random.nextInt(12);
+            nextDays[i] = start + random.nextInt(60) - 30;
+        }
+    }
+
+    @Benchmark
+    public CashFlowForecast.Result forecast() {
+        CashFlowForecast forecast = new CashFlowForecast(start, end);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            forecast.setBalance(i + 1, balances[i]);
+        }
+        for (int i = 0; i < SCHEDULES; i++) {
+            forecast.addSchedule(accountIds[i], toAccountIds[i], transCodes[i], "", amounts[i],
+                toAmounts[i], repeats[i], numOccurrences[i], nextDays[i]);
+        }
+        return forecast.calculate();
+    }
+}
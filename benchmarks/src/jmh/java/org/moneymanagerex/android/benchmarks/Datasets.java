@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.benchmarks;
+
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The inputs of the benchmarks. Generated from a fixed seed, so that every run, and the
+ * baseline, measure the same values.
+ */
+final class Datasets {
+
+    static final long SEED = 42;
+
+    private Datasets() {
+    }
+
+    /**
+     * Amounts as stored in the database: mostly cents, some whole numbers and some values with
+     * more digits than a long can hold at the maximal precision (the BigDecimal path).
+     */
+    static String[] amountStrings(int count) {
+        Random random = new Random(SEED);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(10);
+            long cents = random.nextInt(20000000) - 10000000;
+            if (kind < 7) {
+                result[i] = String.format(Locale.US, "%.2f", cents / 100.0);
+            } else if (kind < 9) {
+                result[i] = Long.toString(cents / 100);
+            } else {
+                result[i] = (cents / 100) + "." + Math.abs(random.nextLong());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Amounts as read from a cursor with getDouble.
+     */
+    static double[] amountDoubles(int count) {
+        Random random = new Random(SEED);
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (random.nextInt(20000000) - 10000000) / 100.0;
+        }
+        return result;
+    }
+
+    /**
+     * Exchange rates and prices, with up to 6 decimals.
+     */
+    static double[] rates(int count) {
+        Random random = new Random(SEED + 1);
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (1 + random.nextInt(2000000)) / 1000000.0;
+        }
+        return result;
+    }
+
+    /**
+     * Transaction dates (yyyy-MM-dd) between 2000 and 2029.
+     */
+    static String[] isoDates(int count) {
+        Random random = new Random(SEED);
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = String.format(Locale.US, "%04d-%02d-%02d",
+                2000 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        }
+        return result;
+    }
+
+    /**
+     * Rows of the transaction list, without split categories.
+     */
+    static AccountTransactionDisplay[] transactions(int count) {
+        Random random = new Random(SEED);
+        String[] dates = isoDates(count);
+        String[] amounts = amountStrings(count);
+        TransactionTypes[] types = { TransactionTypes.Withdrawal, TransactionTypes.Deposit,
+            TransactionTypes.Transfer };
+        String[] statuses = { "", "R", "F", "D" };
+
+        AccountTransactionDisplay[] result = new AccountTransactionDisplay[count];
+        for (int i = 0; i < count; i++) {
+            AccountTransactionDisplay tx = new AccountTransactionDisplay();
+            tx.contentValues.put(QueryAllData.ID, i + 1);
+            tx.contentValues.put(QueryAllData.Date, dates[i]);
+            tx.contentValues.put(QueryAllData.Amount, amounts[i]);
+            tx.contentValues.put(QueryAllData.ToAmount, amounts[i]);
+            tx.contentValues.put(QueryAllData.TransactionType, types[random.nextInt(types.length)].name());
+            tx.contentValues.put(QueryAllData.Status, statuses[random.nextInt(statuses.length)]);
+            tx.contentValues.put(QueryAllData.SPLITTED, 0);
+            tx.contentValues.put(QueryAllData.AccountName, "Account " + random.nextInt(10));
+            tx.contentValues.put(QueryAllData.Payee, "Payee " + random.nextInt(500));
+            tx.contentValues.put(QueryAllData.Category, "Category " + random.nextInt(40));
+            if (random.nextBoolean()) {
+                tx.contentValues.put(QueryAllData.Subcategory, "Subcategory " + random.nextInt(10));
+            }
+            if (random.nextInt(4) == 0) {
+                tx.contentValues.put(QueryAllData.Notes, "Note for transaction " + i);
+            }
+            result[i] = tx;
+        }
+        return result;
+    }
+}
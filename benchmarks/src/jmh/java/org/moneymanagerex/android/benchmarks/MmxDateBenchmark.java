@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.benchmarks;
+
+import com.money.manager.ex.utils.MmxDate;
+import com.money.manager.ex.utils.MmxDateTimeUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date handling per row of the transaction lists and the exports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MmxDateBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private String[] isoDates;
+    private Date[] dates;
+    private MmxDateTimeUtils dateUtils;
+
+    @Setup
+    public void setup() {
+        isoDates = Datasets.isoDates(SIZE);
+        dates = new Date[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            dates[i] = new MmxDate(isoDates[i]).toDate();
+        }
+        dateUtils = new MmxDateTimeUtils(Locale.ENGLISH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void parseIsoDate(Blackhole blackhole) {
+        for (String isoDate : isoDates) {
+            blackhole.consume(new MmxDate(isoDate).toDate());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void fromIsoDate(Blackhole blackhole) {
+        for (String isoDate : isoDates) {
+            blackhole.consume(MmxDate.fromIsoDate(isoDate));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void toIsoDateString(Blackhole blackhole) {
+        for (Date date : dates) {
+            blackhole.consume(new MmxDate(date).toIsoDateString());
+        }
+    }
+
+    /**
+     * The QIF export date.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void formatPattern(Blackhole blackhole) {
+        for (Date date : dates) {
+            blackhole.consume(new MmxDate(date).toString("MM/dd''yy"));
+        }
+    }
+
+    /**
+     * The date box of the transaction list: month, year and day.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void listRowDate(Blackhole blackhole) {
+        for (String isoDate : isoDates) {
+            Date date = MmxDate.fromIsoDate(isoDate);
+            blackhole.consume(dateUtils.format(date, "MMM"));
+            blackhole.consume(dateUtils.format(date, "yyyy"));
+            blackhole.consume(dateUtils.format(date, "dd"));
+        }
+    }
+}
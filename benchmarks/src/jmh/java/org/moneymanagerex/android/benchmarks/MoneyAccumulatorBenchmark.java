@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyAccumulator;
+import info.javaperformance.money.MoneyFactory;
+import info.javaperformance.money.MoneyVector;
+
+/**
+ * Sums of amounts: the Money.add chain against MoneyAccumulator and MoneyVector.
+ * Run with the main method, or with gradlew :benchmarks:jmh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyAccumulatorBenchmark {
+
+    @Param({ "100", "10000" })
+    public int size;
+
+    private Money[] amounts;
+    private double[] doubles;
+    private double[] rates;
+    private MoneyVector vector;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Datasets.SEED);
+        amounts = new Money[size];
+        doubles = new double[size];
+        rates = new double[size];
+        vector = new MoneyVector(2, size);
+        for (int i = 0; i < size; i++) {
+            long cents = random.nextInt(2000000) - 1000000;
+            amounts[i] = MoneyFactory.fromUnits(cents, 2);
+            doubles[i] = cents / 100.0;
+            rates[i] = 0.5 + random.nextInt(1000) / 1000.0;
+            vector.addUnits(cents);
+        }
+    }
+
+    @Benchmark
+    public Money addChain() {
+        Money sum = MoneyFactory.fromDouble(0);
+        for (Money amount : amounts) {
+            sum = sum.add(amount);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Money accumulator() {
+        MoneyAccumulator sum = new MoneyAccumulator();
+        for (Money amount : amounts) {
+            sum.add(amount);
+        }
+        return sum.toMoney();
+    }
+
+    /**
+     * Values read from a cursor, as in the balance calculations.
+     */
+    @Benchmark
+    public Money addChainFromDoubles() {
+        Money sum = MoneyFactory.fromDouble(0);
+        for (double value : doubles) {
+            sum = sum.add(MoneyFactory.fromDouble(value));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Money accumulatorFromDoubles() {
+        MoneyAccumulator sum = new MoneyAccumulator();
+        for (double value : doubles) {
+            sum.add(value);
+        }
+        return sum.toMoney();
+    }
+
+    @Benchmark
+    public Money vectorSum() {
+        return vector.sum();
+    }
+
+    /**
+     * Conversion to the base currency and sum, as in the asset allocation.
+     */
+    @Benchmark
+    public Money convertChain() {
+        Money sum = MoneyFactory.fromDouble(0);
+        for (int i = 0; i < amounts.length; i++) {
+            sum = sum.add(amounts[i].multiply(rates[i]).truncate(2));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Money vectorSumProduct() {
+        return vector.sumProduct(rates);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MoneyAccumulatorBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Creating Money values, per value: parsing the strings stored in the database (parseFast or
+ * the BigDecimal fallback) and converting the doubles read from cursors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyFactoryBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private String[] strings;
+    private double[] doubles;
+
+    @Setup
+    public void setup() {
+        strings = Datasets.amountStrings(SIZE);
+        doubles = Datasets.amountDoubles(SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void fromString(Blackhole blackhole) {
+        for (String value : strings) {
+            blackhole.consume(MoneyFactory.fromString(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void fromDouble(Blackhole blackhole) {
+        for (double value : doubles) {
+            blackhole.consume(MoneyFactory.fromDouble(value));
+        }
+    }
+
+    /**
+     * With the precision of the currency, as the adapters should call it.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void fromDoublePrecision2(Blackhole blackhole) {
+        for (double value : doubles) {
+            blackhole.consume(MoneyFactory.fromDouble(value, 2));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void toStringRoundTrip(Blackhole blackhole) {
+        for (String value : strings) {
+            Money money = MoneyFactory.fromString(value);
+            blackhole.consume(money.toString());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.benchmarks;
+
+import com.money.manager.ex.notifications.SmsLookupIndex;
+import com.money.manager.ex.notifications.SmsRuleSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SMS parsing pipeline over the corpus of bank messages of the unit tests
+ * (app/src/test/resources/sms), with a few hundred payees and accounts to look up.
+ * The score is per corpus; divide by the number of messages for the time per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmsRuleSetBenchmark {
+
+    private SmsRuleSet rules;
+    private SmsLookupIndex index;
+    private List<String[]> corpus;
+
+    @Setup
+    public void setup() throws Exception {
+        rules = SmsRuleSet.getInstance();
+        corpus = loadCorpus();
+
+        index = new SmsLookupIndex();
+        for (int i = 0; i < 500; i++) {
+            index.addPayee(Integer.toString(i), "Payee " + i, "1", "-1");
+        }
+        index.addPayee("1000", "AMAZON RETAIL", "2", "3");
+        for (int i = 0; i < 50; i++) {
+            index.addAccount(Integer.toString(i), "Account " + i, "1", "Rs", ".", ",",
+                    String.format("XX%04d", i));
+        }
+        index.addAccount("100", "Savings", "1", "Rs", ".", ",", "XX1234");
+        index.addCurrency(1, "INR");
+    }
+
+    @Benchmark
+    public void parseCorpus(Blackhole blackhole) {
+        for (String[] sms : corpus) {
+            if (!rules.isTransactionSms(sms[0])) continue;
+
+            String msg = rules.normalize(sms[1]);
+            String lowerMsg = msg.toLowerCase();
+            boolean deposit = rules.isDeposit(lowerMsg);
+            boolean withdrawal = rules.isWithdrawal(lowerMsg);
+            if (!deposit && !withdrawal) continue;
+
+            blackhole.consume(index.getAccountDetails(rules.searchForAccountNum(msg, 1)));
+            blackhole.consume(rules.extractTransAmount(0, msg, "INR"));
+            blackhole.consume(rules.extractTransPayee(msg, index));
+            blackhole.consume(rules.extractTransRefNo(msg));
+        }
+    }
+
+    private List<String[]> loadCorpus() throws Exception {
+        List<String[]> result = new ArrayList<>();
+        InputStream stream = getClass().getClassLoader().getResourceAsStream("sms/bank_sms_corpus.txt");
+        if (stream == null) {
+            throw new IllegalStateException("sms/bank_sms_corpus.txt is not on the classpath");
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                result.add(line.split("\\|", 2));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.benchmarks;
+
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.WhereStatementGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Building the selection of a transaction search with all the criteria set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WhereStatementGeneratorBenchmark {
+
+    private Money amountFrom;
+    private Money amountTo;
+
+    @Setup
+    public void setup() {
+        amountFrom = MoneyFactory.fromString("10.50");
+        amountTo = MoneyFactory.fromString("2500");
+    }
+
+    @Benchmark
+    public String searchCriteria() {
+        WhereStatementGenerator where = new WhereStatementGenerator();
+
+        where.addStatement(QueryAllData.ACCOUNTID, "=", 3);
+        where.addStatement(QueryAllData.TransactionType + " IN ('Withdrawal', 'Transfer')");
+        where.addStatement(QueryAllData.Status, "=", "R");
+        where.addStatement(QueryAllData.Amount, ">=", amountFrom);
+        where.addStatement(QueryAllData.Amount, "<=", amountTo);
+        where.addStatement(QueryAllData.Date, ">=", "2018-01-01");
+        where.addStatement(QueryAllData.Date, "<=", "2018-12-31");
+        where.addStatement(QueryAllData.PayeeID, "=", 42);
+        where.addStatement(where.concatenateOr(
+            where.getStatement(QueryAllData.CategID, "=", 7),
+            where.getStatement(QueryAllData.SubcategID, "=", 12)));
+        where.addStatement(QueryAllData.Notes, "LIKE", "%o'neil%");
+
+        return where.getWhere();
+    }
+}
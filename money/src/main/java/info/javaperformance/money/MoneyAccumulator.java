@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * <p>
+ *     A mutable sum of Money values, for loops adding many values together. Adding does not allocate:
+ *     the sum is kept as a number of currency units in a <code>long</code> field, like <code>MoneyLong</code>.
+ * </p>
+ * <p>
+ *     The precision starts at the given one and is increased when a value with more decimal digits is added,
+ *     up to <code>MAX_ALLOWED_PRECISION</code>, so the result is the same as adding the values one by one
+ *     with {@link Money#add(Money)}. Only the part of the sum which does not fit into a <code>long</code> is
+ *     moved into a BigDecimal.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ */
+public final class MoneyAccumulator {
+
+    /** Default initial precision, cents */
+    public static final int DEFAULT_PRECISION = 2;
+
+    /** Number of currency units in the current precision */
+    private long m_units;
+    /** Current precision of <code>m_units</code> */
+    private int m_precision;
+    /** Initial precision, restored on reset */
+    private final int m_initialPrecision;
+    /** The part of the sum that overflowed <code>m_units</code>, or null */
+    private BigDecimal m_overflow;
+
+    public MoneyAccumulator() {
+        this( DEFAULT_PRECISION );
+    }
+
+    /**
+     * @param precision Initial number of digits after the decimal point. Should be between
+     *                  0 and <code>MAX_ALLOWED_PRECISION</code> (inclusive).
+     */
+    public MoneyAccumulator( final int precision ) {
+        MoneyFactory.checkPrecision( precision );
+        m_precision = precision;
+        m_initialPrecision = precision;
+    }
+
+    /**
+     * Add a Money value to the sum.
+     * @param value Value to add
+     * @return This accumulator
+     */
+    public MoneyAccumulator add( final Money value ) {
+        if ( value instanceof MoneyLong ) {
+            final MoneyLong money = ( MoneyLong ) value;
+            addUnits( money.getUnits(), money.getPrecision() );
+        } else {
+            addBigDecimal( value.toBigDecimal() );
+        }
+        return this;
+    }
+
+    /**
+     * Subtract a Money value from the sum.
+     * @param value Value to subtract
+     * @return This accumulator
+     */
+    public MoneyAccumulator subtract( final Money value ) {
+        if ( value instanceof MoneyLong && ( ( MoneyLong ) value ).getUnits() != Long.MIN_VALUE ) {
+            final MoneyLong money = ( MoneyLong ) value;
+            addUnits( -money.getUnits(), money.getPrecision() );
+        } else {
+            addBigDecimal( value.toBigDecimal().negate() );
+        }
+        return this;
+    }
+
+    /**
+     * Add a double value, i.e. read from a database cursor. The value is converted as in
+     * {@link MoneyFactory#fromDouble(double)}, without allocating when it has no more decimal digits than
+     * the current precision.
+     * @param value Value to add
+     * @return This accumulator
+     */
+    public MoneyAccumulator add( final double value ) {
+        if ( !addDouble0( value )
+                && !addDouble0( Math.nextAfter( value, -Double.MAX_VALUE ) )
+                && !addDouble0( Math.nextAfter( value, Double.MAX_VALUE ) ) ) {
+            add( MoneyFactory.fromDouble( value ) );
+        }
+        return this;
+    }
+
+    /**
+     * Add a number of currency units.
+     * @param units Currency units (cents, for example)
+     * @param precision Number of digits after decimal point of the units. Should be between
+     *                  0 and <code>MAX_ALLOWED_PRECISION</code> (inclusive).
+     * @return This accumulator
+     */
+    public MoneyAccumulator add( final long units, final int precision ) {
+        MoneyFactory.checkPrecision( precision );
+        addUnits( units, precision );
+        return this;
+    }
+
+    /**
+     * Add the sum of another accumulator.
+     * @param other Accumulator to add
+     * @return This accumulator
+     */
+    public MoneyAccumulator add( final MoneyAccumulator other ) {
+        addUnits( other.m_units, other.m_precision );
+        if ( other.m_overflow != null )
+            addBigDecimal( other.m_overflow );
+        return this;
+    }
+
+    /**
+     * Set the sum back to zero, at the initial precision.
+     * @return This accumulator
+     */
+    public MoneyAccumulator reset() {
+        m_units = 0;
+        m_precision = m_initialPrecision;
+        m_overflow = null;
+        return this;
+    }
+
+    /**
+     * @return true if the sum did not fit into a <code>long</code> and a BigDecimal is used.
+     */
+    public boolean isOverflowed() {
+        return m_overflow != null;
+    }
+
+    /**
+     * Convert the sum into a Money object. The accumulator can still be used afterwards.
+     * @return A new Money object normalized to the efficient representation if possible
+     */
+    public Money toMoney() {
+        if ( m_overflow == null )
+            return new MoneyLong( m_units, m_precision ).normalize();
+        return MoneyFactory.fromBigDecimal( m_overflow.add( BigDecimal.valueOf( m_units, m_precision ),
+                MathContext.DECIMAL128 ) );
+    }
+
+    public double toDouble() {
+        if ( m_overflow == null )
+            return ( ( double ) m_units ) / MoneyFactory.MULTIPLIERS[ m_precision ];
+        return toMoney().toDouble();
+    }
+
+    @Override
+    public String toString() {
+        return toMoney().toString();
+    }
+
+    // Private
+
+    private boolean addDouble0( final double value ) {
+        final double multiplied = value * MoneyFactory.MULTIPLIERS[ m_precision ];
+        final long converted = ( long ) multiplied;
+        if ( multiplied != converted ) //here is an implicit conversion from long to double
+            return false;
+        addUnits( converted, m_precision );
+        return true;
+    }
+
+    private void addUnits( long units, final int precision ) {
+        if ( precision > m_precision ) {
+            rescale( precision );
+        } else if ( precision < m_precision ) {
+            final long multiplier = MoneyFactory.MULTIPLIERS[ m_precision - precision ];
+            final long scaled = units * multiplier;
+            if ( scaled / multiplier != units ) { //overflow check
+                addBigDecimal( BigDecimal.valueOf( units, precision ) );
+                return;
+            }
+            units = scaled;
+        }
+
+        final long result = m_units + units;
+        //overflow if both operands have the sign opposite to the result
+        if ( ( ( m_units ^ result ) & ( units ^ result ) ) < 0 ) {
+            spill();
+            m_units = units;
+        } else {
+            m_units = result;
+        }
+    }
+
+    /**
+     * Increase the precision of the units.
+     */
+    private void rescale( final int precision ) {
+        final long multiplier = MoneyFactory.MULTIPLIERS[ precision - m_precision ];
+        final long scaled = m_units * multiplier;
+        if ( scaled / multiplier != m_units ) //overflow check
+            spill();
+        else
+            m_units = scaled;
+        m_precision = precision;
+    }
+
+    /**
+     * Move the units into the BigDecimal part.
+     */
+    private void spill() {
+        addBigDecimal( BigDecimal.valueOf( m_units, m_precision ) );
+        m_units = 0;
+    }
+
+    private void addBigDecimal( final BigDecimal value ) {
+        m_overflow = m_overflow == null ? value : m_overflow.add( value, MathContext.DECIMAL128 );
+    }
+}
@@ -35,6 +35,16 @@ class MoneyLong extends AbstractMoney {
         m_precision = precision;
     }
 
+    /** Number of currency units, for the bulk calculations in this package */
+    long getUnits() {
+        return m_units;
+    }
+
+    /** Precision of the units, for the bulk calculations in this package */
+    int getPrecision() {
+        return m_precision;
+    }
+
     /**
      * Convert to the original currency - divide <code>units</code> by <code>10^precision</code>.
      * @return <code>units / (10^precision)</code>
@@ -134,28 +144,26 @@ class MoneyLong extends AbstractMoney {
 
     public Money add( final MoneyLong other )
     {
-        long normUnitsRes;
+        long left = m_units;
+        long right = other.m_units;
         int precision = m_precision;
-        if ( m_precision == other.m_precision )
-            normUnitsRes = m_units + other.m_units;
-        else if ( m_precision > other.m_precision ) {
+        if ( m_precision > other.m_precision ) {
             long multiplier = MoneyFactory.MULTIPLIERS[m_precision - other.m_precision];
-            long mult = other.m_units * multiplier;
-            if ( mult / multiplier != other.m_units ) //overflow check, alternative is double multiplication and compare with Long.MAX_VALUE.
+            right = other.m_units * multiplier;
+            if ( right / multiplier != other.m_units ) //overflow check, alternative is double multiplication and compare with Long.MAX_VALUE.
                 return other.add( new MoneyBigDecimal( toBigDecimal() ) );
-            normUnitsRes = m_units + mult;
         }
-        else
+        else if ( m_precision < other.m_precision )
         {
             long multiplier = MoneyFactory.MULTIPLIERS[other.m_precision - m_precision];
-            long mult = m_units * multiplier;
-            if ( mult / multiplier != m_units ) //overflow check
+            left = m_units * multiplier;
+            if ( left / multiplier != m_units ) //overflow check
                 return  other.add( new MoneyBigDecimal( toBigDecimal() ) );
-            normUnitsRes = mult + other.m_units;
             precision = other.m_precision;
         }
-        //cheap overflow check, it does not cover a case when normUnitsRes get positive
-        if ( m_units >= 0 && other.m_units >= 0 && normUnitsRes < 0 )
+        final long normUnitsRes = left + right;
+        //overflow check: both operands have the sign opposite to the result
+        if ( ( ( left ^ normUnitsRes ) & ( right ^ normUnitsRes ) ) < 0 )
             return other.add( new MoneyBigDecimal( toBigDecimal() ) );
         return new MoneyLong( normUnitsRes, precision ).normalize();
     }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     A list of Money values at a fixed precision, stored as currency units in a <code>long</code> array.
+ *     Used for bulk calculations over many amounts, i.e. converting and summing the rows of a report,
+ *     without creating a Money object for each value.
+ * </p>
+ * <p>
+ *     Values with more decimal digits than the precision are rounded half away from zero when added,
+ *     as are the results of the multiplications. Sums fall back to BigDecimal only on overflow.
+ * </p>
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ */
+public final class MoneyVector {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Doubles at or above this magnitude do not fit into a <code>long</code> */
+    private static final double LONG_LIMIT = 9.223372036854775807E18;
+
+    private final int m_precision;
+    private long[] m_units;
+    private int m_size;
+
+    /**
+     * @param precision Number of digits after decimal point of the values. Should be between
+     *                  0 and <code>MAX_ALLOWED_PRECISION</code> (inclusive).
+     */
+    public MoneyVector( final int precision ) {
+        this( precision, DEFAULT_CAPACITY );
+    }
+
+    public MoneyVector( final int precision, final int capacity ) {
+        MoneyFactory.checkPrecision( precision );
+        m_precision = precision;
+        m_units = new long[ Math.max( capacity, 1 ) ];
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public int getPrecision() {
+        return m_precision;
+    }
+
+    public void clear() {
+        m_size = 0;
+    }
+
+    /**
+     * Append a value, rounded to the precision of the vector.
+     * @param value Value to append
+     * @return This vector
+     * @throws ArithmeticException if the value does not fit into a <code>long</code> at this precision
+     */
+    public MoneyVector add( final Money value ) {
+        if ( value instanceof MoneyLong ) {
+            final MoneyLong money = ( MoneyLong ) value;
+            final long units = money.getUnits();
+            final int precision = money.getPrecision();
+            if ( precision <= m_precision ) {
+                final long multiplier = MoneyFactory.MULTIPLIERS[ m_precision - precision ];
+                final long scaled = units * multiplier;
+                if ( scaled / multiplier == units ) //overflow check
+                    return addUnits( scaled );
+            }
+        }
+        return addUnits( toUnits( value.toBigDecimal() ) );
+    }
+
+    /**
+     * Append a double value, i.e. read from a database cursor, rounded to the precision of the vector.
+     * @param value Value to append
+     * @return This vector
+     * @throws ArithmeticException if the value does not fit into a <code>long</code> at this precision
+     */
+    public MoneyVector add( final double value ) {
+        return addUnits( round( value * MoneyFactory.MULTIPLIERS[ m_precision ] ) );
+    }
+
+    /**
+     * Append a number of currency units at the precision of the vector.
+     * @param units Currency units (cents, for example)
+     * @return This vector
+     */
+    public MoneyVector addUnits( final long units ) {
+        if ( m_size == m_units.length )
+            m_units = Arrays.copyOf( m_units, m_size * 2 );
+        m_units[ m_size++ ] = units;
+        return this;
+    }
+
+    public long getUnits( final int index ) {
+        checkIndex( index );
+        return m_units[ index ];
+    }
+
+    public Money get( final int index ) {
+        return MoneyFactory.fromUnits( getUnits( index ), m_precision );
+    }
+
+    /**
+     * @return The sum of all the values
+     */
+    public Money sum() {
+        return sum( 0, m_size );
+    }
+
+    /**
+     * @param from First index, inclusive
+     * @param to Last index, exclusive
+     * @return The sum of the values in the range
+     */
+    public Money sum( final int from, final int to ) {
+        if ( from < 0 || to > m_size || from > to )
+            throw new IndexOutOfBoundsException( "Range " + from + ".." + to + ", size " + m_size );
+
+        final long[] units = m_units;
+        long sum = 0;
+        MoneyAccumulator overflow = null;
+        for ( int i = from; i < to; ++i ) {
+            final long value = units[ i ];
+            final long result = sum + value;
+            //overflow if both operands have the sign opposite to the result
+            if ( ( ( sum ^ result ) & ( value ^ result ) ) < 0 ) {
+                if ( overflow == null )
+                    overflow = new MoneyAccumulator( m_precision );
+                overflow.add( sum, m_precision );
+                sum = value;
+            } else {
+                sum = result;
+            }
+        }
+
+        if ( overflow == null )
+            return MoneyFactory.fromUnits( sum, m_precision );
+        return overflow.add( sum, m_precision ).toMoney();
+    }
+
+    /**
+     * Multiply all the values by the same rate, i.e. to convert them into another currency.
+     * The results are rounded to the precision of the vector.
+     * @param rate Multiplier
+     * @return This vector
+     * @throws ArithmeticException if a result does not fit into a <code>long</code>
+     */
+    public MoneyVector multiply( final double rate ) {
+        final long[] units = m_units;
+        for ( int i = 0; i < m_size; ++i ) {
+            units[ i ] = round( units[ i ] * rate );
+        }
+        return this;
+    }
+
+    /**
+     * Multiply each value by its own rate, i.e. the exchange rates of the currencies of the values.
+     * The results are rounded to the precision of the vector.
+     * @param rates Multipliers, one for each value
+     * @return This vector
+     * @throws ArithmeticException if a result does not fit into a <code>long</code>
+     */
+    public MoneyVector multiply( final double[] rates ) {
+        checkRates( rates );
+        final long[] units = m_units;
+        for ( int i = 0; i < m_size; ++i ) {
+            units[ i ] = round( units[ i ] * rates[ i ] );
+        }
+        return this;
+    }
+
+    /**
+     * The sum of the values, each multiplied by its own rate and rounded to the precision of the vector,
+     * without changing the values. The products and the sum fall back to BigDecimal on overflow.
+     * @param rates Multipliers, one for each value
+     * @return The sum of the products
+     */
+    public Money sumProduct( final double[] rates ) {
+        checkRates( rates );
+        final long[] units = m_units;
+        final MoneyAccumulator sum = new MoneyAccumulator( m_precision );
+        for ( int i = 0; i < m_size; ++i ) {
+            final double product = units[ i ] * rates[ i ];
+            if ( Math.abs( product ) < LONG_LIMIT ) {
+                sum.add( roundUnchecked( product ), m_precision );
+            } else {
+                sum.add( MoneyFactory.fromBigDecimal( BigDecimal.valueOf( units[ i ], m_precision )
+                        .multiply( new BigDecimal( rates[ i ] ) )
+                        .setScale( m_precision, RoundingMode.HALF_UP ) ) );
+            }
+        }
+        return sum.toMoney();
+    }
+
+    // Private
+
+    private long toUnits( final BigDecimal value ) {
+        final BigInteger units = value.setScale( m_precision, RoundingMode.HALF_UP ).unscaledValue();
+        if ( units.bitLength() > 63 )
+            throw new ArithmeticException( "Value " + value + " does not fit at precision " + m_precision );
+        return units.longValue();
+    }
+
+    private static long round( final double value ) {
+        if ( Math.abs( value ) >= LONG_LIMIT || Double.isNaN( value ) )
+            throw new ArithmeticException( "Value " + value + " does not fit into long" );
+        return roundUnchecked( value );
+    }
+
+    /**
+     * Round half away from zero, as BigDecimal HALF_UP.
+     */
+    private static long roundUnchecked( final double value ) {
+        return value < 0 ? -Math.round( -value ) : Math.round( value );
+    }
+
+    private void checkIndex( final int index ) {
+        if ( index < 0 || index >= m_size )
+            throw new IndexOutOfBoundsException( "Index " + index + ", size " + m_size );
+    }
+
+    private void checkRates( final double[] rates ) {
+        if ( rates.length < m_size )
+            throw new IllegalArgumentException( "Expected " + m_size + " rates, got " + rates.length );
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012-2018 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package info.javaperformance.money;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk summation, compared with the Money.add chain.
+ */
+public class MoneyAccumulatorTest {
+
+    @Test
+    public void matchesAddChain() {
+        Random random = new Random(42);
+        Money expected = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
+
+        for (int i = 0; i < 10000; i++) {
+            // amounts with 0 to 6 decimals, some negative
+            int precision = random.nextInt(7);
+            Money value = MoneyFactory.fromUnits(random.nextInt(2000000) - 1000000, precision);
+
+            expected = expected.add(value);
+            sum.add(value);
+        }
+
+        assertEquals(0, expected.compareTo(sum.toMoney()));
+        assertFalse(sum.isOverflowed());
+    }
+
+    @Test
+    public void addsDoubles() {
+        Money expected = MoneyFactory.fromDouble(0);
+        MoneyAccumulator sum = new MoneyAccumulator();
+        double[] values = { 12.34, -0.1, 0.2, 1234567.89, 1.0 / 3, 0.0001, -99.999 };
+
+        for (double value : values) {
+            expected = expected.add(MoneyFactory.fromDouble(value));
+            sum.add(value);
+        }
+
+        assertEquals(expected.toString(), sum.toString());
+    }
+
+    @Test
+    public void overflowsToBigDecimal() {
+        Money large = MoneyFactory.fromUnits(Long.MAX_VALUE - 1, 2);
+        MoneyAccumulator sum = new MoneyAccumulator();
+        sum.add(large).add(large).add(MoneyFactory.fromUnits(1, 4));
+
+        assertTrue(sum.isOverflowed());
+        BigDecimal expected = large.toBigDecimal().add(large.toBigDecimal()).add(new BigDecimal("0.0001"));
+        assertEquals(0, expected.compareTo(sum.toMoney().toBigDecimal()));
+
+        sum.subtract(large).subtract(large);
+        assertEquals("0.0001", sum.toString());
+
+        sum.reset();
+        assertEquals(0, sum.toDouble(), 0);
+    }
+
+    @Test
+    public void addChainDetectsNegativeOverflow() {
+        Money large = MoneyFactory.fromUnits(-(Long.MAX_VALUE - 1), 2);
+        Money sum = large.add(MoneyFactory.fromUnits(-10, 2));
+
+        BigDecimal expected = large.toBigDecimal().subtract(new BigDecimal("0.10"));
+        assertEquals(0, expected.compareTo(sum.toBigDecimal()));
+    }
+
+    @Test
+    public void vectorSumAndRates() {
+        MoneyVector vector = new MoneyVector(2);
+        vector.add(10.005).add(MoneyFactory.fromString("-2.5")).add(MoneyFactory.fromString("1.004"));
+
+        assertEquals(3, vector.size());
+        // rounded half away from zero
+        assertEquals("10.01", vector.get(0).toString());
+        assertEquals("1", vector.get(2).toString());
+        assertEquals("8.51", vector.sum().toString());
+
+        assertEquals("13.02", vector.sumProduct(new double[] { 1.5, 1, 0.5 }).toString());
+
+        vector.multiply(2);
+        assertEquals("17.02", vector.sum().toString());
+        vector.multiply(new double[] { 0.5, 0.5, 0.5 });
+        assertEquals("8.51", vector.sum().toString());
+    }
+
+    @Test
+    public void vectorSumOverflow() {
+        MoneyVector vector = new MoneyVector(0);
+        vector.addUnits(Long.MAX_VALUE).addUnits(Long.MAX_VALUE).addUnits(-5);
+
+        BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2))
+            .subtract(BigDecimal.valueOf(5));
+        assertEquals(0, expected.compareTo(vector.sum().toBigDecimal()));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void vectorMultiplyOverflow() {
+        new MoneyVector(2).addUnits(Long.MAX_VALUE / 2).multiply(4);
+    }
+}